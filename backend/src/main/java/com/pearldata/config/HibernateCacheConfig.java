@@ -0,0 +1,97 @@
+package com.pearldata.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process second-level and query cache for Hibernate: JCache backed by Caffeine.
+ * Each region is created here with the size and time-to-live from cache.hibernate.* and reports
+ * hits, misses, puts and evictions as cache.* metrics tagged with the region name.
+ * The update timestamps region never expires entries, since cached query results are checked against it.
+ * <p>
+ * The regions are local to each instance and are not invalidated by other instances' writes, so only
+ * users and students, which change rarely and whose staleness is bounded by the TTL, are cached.
+ * Events are not: writes are accepted or rejected by their status.
+ * Every application context gets a cache manager of its own, so several contexts can share a JVM.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+
+    public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Value("${cache.hibernate.users.max-size:10000}")
+    private long usersMaxSize;
+
+    @Value("${cache.hibernate.users.ttl-ms:600000}")
+    private long usersTtlMs;
+
+    @Value("${cache.hibernate.students.max-size:20000}")
+    private long studentsMaxSize;
+
+    @Value("${cache.hibernate.students.ttl-ms:600000}")
+    private long studentsTtlMs;
+
+    @Value("${cache.hibernate.queries.max-size:10000}")
+    private long queriesMaxSize;
+
+    @Value("${cache.hibernate.queries.ttl-ms:300000}")
+    private long queriesTtlMs;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(MeterRegistry meterRegistry) {
+        // The provider's default manager is a JVM-wide singleton; a unique URI gives this context its own
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("pearldata-hibernate:" + UUID.randomUUID()), HibernateCacheConfig.class.getClassLoader());
+        createRegion(cacheManager, meterRegistry, "users", usersMaxSize, usersTtlMs);
+        createRegion(cacheManager, meterRegistry, "students", studentsMaxSize, studentsTtlMs);
+        createRegion(cacheManager, meterRegistry, QUERY_RESULTS_REGION, queriesMaxSize, queriesTtlMs);
+        createRegion(cacheManager, meterRegistry, UPDATE_TIMESTAMPS_REGION, 0, 0);
+        return cacheManager;
+    }
+
+    // Hand the regions above to Hibernate's JCache region factory
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", true);
+            properties.put("hibernate.cache.use_query_cache", true);
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put("hibernate.javax.cache.cache_manager", hibernateCacheManager);
+        };
+    }
+
+    // A region bounded to maxSize entries (unbounded if 0) that expire ttlMs after being written (never if 0)
+    private void createRegion(CacheManager cacheManager, MeterRegistry meterRegistry, String name, long maxSize, long ttlMs) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        if (maxSize > 0) {
+            configuration.setMaximumSize(OptionalLong.of(maxSize));
+        }
+        if (ttlMs > 0) {
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+        }
+        // Hibernate's cache entries are immutable, so there is no need to copy them in and out
+        configuration.setStoreByValue(false);
+        configuration.setNativeStatisticsEnabled(true);
+
+        Cache<Object, Object> cache = cacheManager.createCache(name, configuration);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class), name);
+    }
+}
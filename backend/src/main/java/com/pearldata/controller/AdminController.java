@@ -2,7 +2,16 @@ package com.pearldata.controller;
 
 import com.pearldata.dto.SignupRequest;
 import com.pearldata.dto.AdminCreateStudentDTO;
+import com.pearldata.entity.Event;
 import com.pearldata.entity.User;
+import com.pearldata.repository.AttendanceRollupRepository;
+import com.pearldata.security.TokenRevocationRegistry;
+import com.pearldata.service.AttendanceAnalyticsEngine;
+import com.pearldata.service.AttendanceArchiveService;
+import com.pearldata.service.AttendanceBitmapIndex;
+import com.pearldata.service.AttendancePartitionService;
+import com.pearldata.service.AttendanceRollupService;
+import com.pearldata.service.StudentAttendanceStatsService;
 import com.pearldata.service.UserService;
 import com.pearldata.service.StudentService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,12 +19,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +44,27 @@ public class AdminController {
     @Autowired
     private StudentService studentService;
 
+    @Autowired
+    private AttendancePartitionService attendancePartitionService;
+
+    @Autowired
+    private AttendanceArchiveService attendanceArchiveService;
+
+    @Autowired
+    private StudentAttendanceStatsService studentAttendanceStatsService;
+
+    @Autowired
+    private AttendanceAnalyticsEngine attendanceAnalyticsEngine;
+
+    @Autowired
+    private AttendanceBitmapIndex attendanceBitmapIndex;
+
+    @Autowired
+    private AttendanceRollupService attendanceRollupService;
+
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
     @PostMapping("/users/student")
     public ResponseEntity<?> createStudent(@Valid @RequestBody AdminCreateStudentDTO adminCreateStudentDTO) {
         try {
@@ -245,6 +277,7 @@ public class AdminController {
             }
             
             User user = userOpt.get();
+            boolean emailChanged = !user.getEmail().equals(signupRequest.getEmail());
             user.setName(signupRequest.getName());
             user.setEmail(signupRequest.getEmail());
             user.setPhoneNumber(signupRequest.getPhoneNumber());
@@ -253,6 +286,10 @@ public class AdminController {
             }
             
             User updatedUser = userService.saveUser(user);
+            // Issued tokens carry the old email as their subject
+            if (emailChanged) {
+                tokenRevocationRegistry.revokeTokens(id);
+            }
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -342,4 +379,165 @@ public class AdminController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
     }
+
+    // List attendance partitions
+    @GetMapping("/attendance/partitions")
+    public ResponseEntity<?> getAttendancePartitions() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", attendancePartitionService.getPartitions());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error fetching attendance partitions: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Detach attendance partitions of past terms for archiving
+    @PostMapping("/attendance/partitions/detach")
+    public ResponseEntity<?> detachAttendancePartitions(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+        try {
+            List<String> detached = attendancePartitionService.detachPartitionsBefore(before);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Detached " + detached.size() + " attendance partitions");
+            response.put("data", detached);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error detaching attendance partitions: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // List attendance archive files
+    @GetMapping("/attendance/archive")
+    public ResponseEntity<?> getAttendanceArchives() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", attendanceArchiveService.getArchiveFiles());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error fetching attendance archives: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Move finished events and their attendance before a date into the cold archive
+    @PostMapping("/attendance/archive")
+    public ResponseEntity<?> archiveAttendance(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Attendance archived successfully");
+            response.put("data", attendanceArchiveService.archiveBefore(before));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error archiving attendance: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Rebuild the per-student attendance totals from attendance and the cold archive
+    @PostMapping("/attendance/stats/rebuild")
+    public ResponseEntity<?> rebuildAttendanceStats() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Attendance statistics rebuilt successfully");
+            response.put("data", studentAttendanceStatsService.rebuild());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error rebuilding attendance statistics: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Reload the in-memory attendance analytics engine from attendance and the cold archive
+    @PostMapping("/analytics/engine/reload")
+    public ResponseEntity<?> reloadAnalyticsEngine() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Analytics engine reloaded successfully");
+            response.put("data", attendanceAnalyticsEngine.reload());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error reloading analytics engine: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Rebuild the attendance bitmap index used by cohort queries
+    @PostMapping("/analytics/bitmaps/rebuild")
+    public ResponseEntity<?> rebuildAttendanceBitmaps() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Attendance bitmap index rebuilt successfully");
+            response.put("data", attendanceBitmapIndex.rebuild());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error rebuilding attendance bitmap index: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Attendance trend per day or week from the rollup tables, optionally broken down by department, course and event type
+    @GetMapping("/analytics/trends")
+    public ResponseEntity<?> getAttendanceTrends(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "WEEK") AttendanceRollupRepository.Granularity granularity,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) String course,
+            @RequestParam(required = false) Event.EventType eventType,
+            @RequestParam(required = false) List<AttendanceRollupRepository.Dimension> breakdown) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", attendanceRollupService.getTrend(granularity, from, to, department, course, eventType,
+                    breakdown != null ? breakdown : List.of()));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error fetching attendance trends: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Rebuild the daily and weekly attendance rollups from attendance and the archive
+    @PostMapping("/analytics/rollups/rebuild")
+    public ResponseEntity<?> rebuildAttendanceRollups() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Attendance rollups rebuilt successfully");
+            response.put("data", attendanceRollupService.rebuild());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Error rebuilding attendance rollups: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 }
@@ -5,7 +5,9 @@ import com.pearldata.dto.LoginResponse;
 import com.pearldata.dto.SignupRequest;
 import com.pearldata.entity.User;
 import com.pearldata.security.JwtUtil;
+import com.pearldata.security.TokenRevocationRegistry;
 import com.pearldata.service.UserService;
+import io.jsonwebtoken.Claims;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -26,6 +28,9 @@ public class AuthController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
     @PostMapping("/signup")
     public ResponseEntity<?> signup(@Valid @RequestBody SignupRequest signupRequest) {
         try {
@@ -73,7 +78,8 @@ public class AuthController {
                 return ResponseEntity.badRequest().body(error);
             }
 
-            String token = jwtUtil.generateToken(user.getEmail(), user.getRole().name(), user.getId());
+            String token = jwtUtil.generateToken(user.getEmail(), user.getRole().name(), user.getId(),
+                tokenRevocationRegistry.getTokenVersion(user.getId()));
             
             LoginResponse loginResponse = new LoginResponse(
                 token,
@@ -97,11 +103,12 @@ public class AuthController {
         try {
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String token = authHeader.substring(7);
-                String username = jwtUtil.extractUsername(token);
-                String role = jwtUtil.extractRole(token);
-                Long userId = jwtUtil.extractUserId(token);
+                Claims claims = jwtUtil.parseToken(token);
+                String username = claims.getSubject();
+                String role = claims.get("role", String.class);
+                Long userId = claims.get("userId", Long.class);
 
-                if (jwtUtil.validateToken(token, username)) {
+                if (userId != null && !tokenRevocationRegistry.isRevoked(userId, jwtUtil.getTokenVersion(claims))) {
                     Map<String, Object> response = new HashMap<>();
                     response.put("valid", true);
                     response.put("username", username);
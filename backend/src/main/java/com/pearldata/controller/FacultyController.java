@@ -1,22 +1,31 @@
 package com.pearldata.controller;
 
 import com.pearldata.dto.*;
+import com.pearldata.entity.AtRiskAlert;
 import com.pearldata.entity.Attendance;
+import com.pearldata.entity.Event;
 import com.pearldata.entity.Student;
-import com.pearldata.entity.User;
+import com.pearldata.entity.StudentAttendanceStats;
+import com.pearldata.security.CurrentUser;
 import com.pearldata.service.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.validation.Valid;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -26,9 +35,6 @@ import java.util.stream.Collectors;
 @PreAuthorize("hasRole('FACULTY')")
 public class FacultyController {
 
-    @Autowired
-    private UserService userService;
-
     @Autowired
     private EventService eventService;
 
@@ -38,27 +44,63 @@ public class FacultyController {
     @Autowired
     private AttendanceService attendanceService;
 
-    // Helper method to get current faculty user
-    private User getCurrentFaculty() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        return userService.getUserByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Faculty not found"));
+    @Autowired
+    private AttendanceImportService attendanceImportService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private CheckInService checkInService;
+
+    @Autowired
+    private StudentAttendanceStatsService studentAttendanceStatsService;
+
+    @Autowired
+    private AnalyticsSummaryService analyticsSummaryService;
+
+    @Autowired
+    private AttendanceAnalyticsEngine attendanceAnalyticsEngine;
+
+    @Autowired
+    private AttendanceBitmapIndex attendanceBitmapIndex;
+
+    @Autowired
+    private AtRiskDetector atRiskDetector;
+
+    @Autowired
+    private CurrentUser currentUser;
+
+    @Autowired
+    private ChangeWatermarks changeWatermarks;
+
+    // Helper method to get the authenticated username without a database lookup
+    private String getCurrentUsername() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
+    // Helper method to get current faculty user, resolved from the identity cache
+    private CurrentUser getCurrentFaculty() {
+        // Resolve now, so an unknown user fails here as the user lookup did
+        currentUser.getId();
+        return currentUser;
     }
 
     // ==================== DASHBOARD ====================
 
     // Get faculty dashboard statistics
     @GetMapping("/dashboard-stats")
-    public ResponseEntity<?> getDashboardStats() {
+    public ResponseEntity<?> getDashboardStats(WebRequest webRequest) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
+            if (changeWatermarks.facultyTag(faculty.getId()).checkNotModified(webRequest)) {
+                return null;
+            }
             
             long totalStudents = studentService.countAllStudents();
             long totalEvents = eventService.countEventsByFaculty(faculty.getId());
             long upcomingEvents = eventService.countUpcomingEventsByFaculty(faculty.getId());
-            double avgAttendance = attendanceService.getAverageAttendanceRateByFaculty(faculty.getId());
+            double avgAttendance = attendanceService.getEventAttendanceRateByFaculty(faculty.getId());
             
             Map<String, Object> stats = new HashMap<>();
             stats.put("totalStudents", totalStudents);
@@ -80,23 +122,27 @@ public class FacultyController {
 
     // ==================== EVENT MANAGEMENT ====================
 
-    // Create event
+    // Create event (retries carrying the same Idempotency-Key replay the first response)
     @PostMapping("/events")
-    public ResponseEntity<?> createEvent(@Valid @RequestBody CreateEventDTO createEventDTO) {
-        try {
-            User faculty = getCurrentFaculty();
-            EventResponseDTO event = eventService.createEvent(createEventDTO, faculty.getId());
-            return ResponseEntity.ok(Map.of(
-                "success", true,
-                "message", "Event created successfully",
-                "data", event
-            ));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of(
-                "success", false,
-                "message", e.getMessage()
-            ));
-        }
+    public ResponseEntity<?> createEvent(
+            @Valid @RequestBody CreateEventDTO createEventDTO,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, getCurrentUsername(), "POST /api/faculty/events", createEventDTO, () -> {
+            try {
+                CurrentUser faculty = getCurrentFaculty();
+                EventResponseDTO event = eventService.createEvent(createEventDTO, faculty.getId());
+                return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", "Event created successfully",
+                    "data", event
+                ));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+                ));
+            }
+        });
     }
 
     // Get all events by faculty
@@ -105,9 +151,13 @@ public class FacultyController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "startTime") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDir) {
+            @RequestParam(defaultValue = "desc") String sortDir,
+            WebRequest webRequest) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
+            if (changeWatermarks.facultyTag(faculty.getId()).checkNotModified(webRequest)) {
+                return null;
+            }
             
             Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
@@ -156,7 +206,7 @@ public class FacultyController {
     @PutMapping("/events/{eventId}")
     public ResponseEntity<?> updateEvent(@PathVariable Long eventId, @Valid @RequestBody UpdateEventDTO updateEventDTO) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             EventResponseDTO event = eventService.updateEvent(eventId, updateEventDTO, faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -175,7 +225,7 @@ public class FacultyController {
     @DeleteMapping("/events/{eventId}")
     public ResponseEntity<?> deleteEvent(@PathVariable Long eventId) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             eventService.deleteEvent(eventId, faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -193,7 +243,7 @@ public class FacultyController {
     @GetMapping("/events/upcoming")
     public ResponseEntity<?> getUpcomingEvents() {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             List<EventResponseDTO> events = eventService.getUpcomingEventsByFaculty(faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -211,7 +261,7 @@ public class FacultyController {
     @GetMapping("/events/current")
     public ResponseEntity<?> getCurrentEvents() {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             List<EventResponseDTO> events = eventService.getCurrentEventsByFaculty(faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -229,7 +279,7 @@ public class FacultyController {
     @GetMapping("/events/completed")
     public ResponseEntity<?> getCompletedEvents() {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             List<EventResponseDTO> events = eventService.getCompletedEventsByFaculty(faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -247,7 +297,7 @@ public class FacultyController {
     @GetMapping("/events/search")
     public ResponseEntity<?> searchEvents(@RequestParam String query) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             List<EventResponseDTO> events = eventService.searchEventsByFaculty(faculty.getId(), query);
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -265,7 +315,7 @@ public class FacultyController {
     @GetMapping("/events/statistics")
     public ResponseEntity<?> getEventStatistics() {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             EventService.EventStatisticsDTO stats = eventService.getEventStatisticsByFaculty(faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -279,6 +329,24 @@ public class FacultyController {
         }
     }
 
+    // Get the current self check-in code for an event
+    @GetMapping("/events/{eventId}/check-in-code")
+    public ResponseEntity<?> getCheckInCode(@PathVariable Long eventId) {
+        try {
+            CurrentUser faculty = getCurrentFaculty();
+            Map<String, Object> code = checkInService.getCurrentCode(eventId, faculty.getId());
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", code
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        }
+    }
+
     // ==================== STUDENT MANAGEMENT ====================
 
     // Get all students
@@ -406,7 +474,7 @@ public class FacultyController {
     @PostMapping("/attendance")
     public ResponseEntity<?> markAttendance(@Valid @RequestBody MarkAttendanceDTO markAttendanceDTO) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             List<Attendance> attendanceRecords = attendanceService.markAttendance(markAttendanceDTO, faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -421,13 +489,46 @@ public class FacultyController {
         }
     }
 
-    // Enhanced endpoint: Mark attendance and optionally update event status
+    // Enhanced endpoint: Mark attendance and optionally update event status (idempotent with Idempotency-Key)
     @PostMapping("/attendance/enhanced")
-    public ResponseEntity<?> markAttendanceAndUpdateEvent(@Valid @RequestBody MarkAttendanceAndUpdateEventDTO dto) {
+    public ResponseEntity<?> markAttendanceAndUpdateEvent(
+            @Valid @RequestBody MarkAttendanceAndUpdateEventDTO dto,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, getCurrentUsername(), "POST /api/faculty/attendance/enhanced", dto, () -> {
+            try {
+                CurrentUser faculty = getCurrentFaculty();
+                AttendanceMarkingResponseDTO response = attendanceService.markAttendanceAndUpdateEvent(dto, faculty.getId());
+                return ResponseEntity.ok(response);
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+                ));
+            }
+        });
+    }
+
+    // Import attendance from a CSV or NDJSON file (streamed row by row, written in batches)
+    @PostMapping(value = "/attendance/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importAttendance(
+            @RequestParam Long eventId,
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String format) {
         try {
-            User faculty = getCurrentFaculty();
-            AttendanceMarkingResponseDTO response = attendanceService.markAttendanceAndUpdateEvent(dto, faculty.getId());
-            return ResponseEntity.ok(response);
+            CurrentUser faculty = getCurrentFaculty();
+            AttendanceImportService.ImportFormat importFormat =
+                AttendanceImportService.ImportFormat.resolve(format, file.getOriginalFilename());
+            
+            AttendanceImportReportDTO report;
+            try (InputStream input = file.getInputStream()) {
+                report = attendanceImportService.importAttendance(eventId, input, importFormat, faculty.getId());
+            }
+            
+            return ResponseEntity.ok(Map.of(
+                "success", report.getFailedRows() == 0,
+                "message", "Imported " + report.getImportedRows() + " of " + report.getTotalRows() + " rows",
+                "data", report
+            ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
                 "success", false,
@@ -453,6 +554,34 @@ public class FacultyController {
         }
     }
 
+    // Get students not yet marked for an event
+    @GetMapping("/attendance/event/{eventId}/unmarked")
+    public ResponseEntity<?> getUnmarkedAttendance(@PathVariable Long eventId) {
+        try {
+            CurrentUser faculty = getCurrentFaculty();
+            List<Map<String, Object>> unmarked = attendanceService.getUnmarkedAttendanceByEvent(eventId, faculty.getId())
+                    .stream()
+                    .map(attendance -> {
+                        Map<String, Object> row = new HashMap<>();
+                        row.put("attendanceId", attendance.getId());
+                        row.put("studentId", attendance.getStudent().getId());
+                        row.put("studentName", attendance.getStudent().getName());
+                        row.put("studentRollNumber", attendance.getStudent().getStudentId());
+                        return row;
+                    })
+                    .collect(Collectors.toList());
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", unmarked
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        }
+    }
+
     // Get attendance by student
     @GetMapping("/attendance/student/{studentId}")
     public ResponseEntity<?> getAttendanceByStudent(@PathVariable Long studentId) {
@@ -478,7 +607,7 @@ public class FacultyController {
             @RequestParam(defaultValue = "markedAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             
             Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
@@ -506,7 +635,7 @@ public class FacultyController {
     @PutMapping("/attendance/{attendanceId}")
     public ResponseEntity<?> updateAttendance(@PathVariable Long attendanceId, @Valid @RequestBody MarkAttendanceDTO.AttendanceRecordDTO recordDTO) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             Attendance attendance = attendanceService.updateAttendance(attendanceId, recordDTO, faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -525,7 +654,7 @@ public class FacultyController {
     @DeleteMapping("/attendance/{attendanceId}")
     public ResponseEntity<?> deleteAttendance(@PathVariable Long attendanceId) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             attendanceService.deleteAttendance(attendanceId, faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -577,7 +706,7 @@ public class FacultyController {
     @GetMapping("/attendance/statistics")
     public ResponseEntity<?> getAttendanceStatisticsByFaculty() {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             AttendanceService.AttendanceStatisticsDTO stats = attendanceService.getAttendanceStatisticsByFaculty(faculty.getId());
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -597,7 +726,7 @@ public class FacultyController {
     @GetMapping("/dashboard")
     public ResponseEntity<?> getDashboard() {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             
             // Get event statistics
             EventService.EventStatisticsDTO eventStats = eventService.getEventStatisticsByFaculty(faculty.getId());
@@ -649,109 +778,17 @@ public class FacultyController {
             @RequestParam(defaultValue = "desc") String sortDir,
             @RequestParam(required = false) String searchTerm) {
         try {
-            User faculty = getCurrentFaculty();
+            getCurrentFaculty();
             
-            Sort sort = sortDir.equalsIgnoreCase("desc") ? 
-                Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
-            Pageable pageable = PageRequest.of(page, size, sort);
-            
-            // Get all students with attendance statistics
-            List<Student> students = studentService.getAllStudentsList();
-            List<StudentAttendanceAnalyticsDTO> analytics = new ArrayList<>();
-            
-            for (Student student : students) {
-                // Filter by search term if provided
-                if (searchTerm != null && !searchTerm.trim().isEmpty()) {
-                    if (!student.getName().toLowerCase().contains(searchTerm.toLowerCase()) &&
-                        !student.getEmail().toLowerCase().contains(searchTerm.toLowerCase()) &&
-                        !student.getStudentId().toLowerCase().contains(searchTerm.toLowerCase())) {
-                        continue;
-                    }
-                }
-                
-                StudentAttendanceAnalyticsDTO analyticsDTO = new StudentAttendanceAnalyticsDTO(
-                    student.getId(),
-                    student.getName(),
-                    student.getEmail(),
-                    student.getStudentId(),
-                    student.getDepartment(),
-                    student.getCourse(),
-                    student.getAcademicYear().toString(),
-                    student.getSemester().toString()
-                );
-                
-                // Get attendance statistics for this student
-                List<Attendance> attendanceRecords = attendanceService.getAttendanceByStudent(student);
-                
-                long totalEvents = attendanceRecords.size();
-                long presentCount = attendanceRecords.stream()
-                    .filter(a -> a.getStatus() == Attendance.AttendanceStatus.PRESENT)
-                    .count();
-                long absentCount = attendanceRecords.stream()
-                    .filter(a -> a.getStatus() == Attendance.AttendanceStatus.ABSENT)
-                    .count();
-                long lateCount = attendanceRecords.stream()
-                    .filter(a -> a.getStatus() == Attendance.AttendanceStatus.LATE)
-                    .count();
-                long excusedCount = attendanceRecords.stream()
-                    .filter(a -> a.getStatus() == Attendance.AttendanceStatus.EXCUSED)
-                    .count();
-                
-                analyticsDTO.setTotalEvents(totalEvents);
-                analyticsDTO.setPresentCount(presentCount);
-                analyticsDTO.setAbsentCount(absentCount);
-                analyticsDTO.setLateCount(lateCount);
-                analyticsDTO.setExcusedCount(excusedCount);
-                
-                // Calculate attendance percentage
-                analyticsDTO.calculateAttendancePercentage();
-                analyticsDTO.determineAttendanceStatus();
-                
-                // Calculate average marks
-                double avgMarks = attendanceRecords.stream()
-                    .filter(a -> a.getMarksObtained() != null)
-                    .mapToDouble(Attendance::getMarksObtained)
-                    .average()
-                    .orElse(0.0);
-                analyticsDTO.setAverageMarks(avgMarks);
-                
-                // Get last attendance details
-                if (!attendanceRecords.isEmpty()) {
-                    Attendance lastAttendance = attendanceRecords.stream()
-                        .max(Comparator.comparing(Attendance::getMarkedAt))
-                        .orElse(null);
-                    
-                    if (lastAttendance != null) {
-                        analyticsDTO.setLastAttendanceDate(lastAttendance.getMarkedAt());
-                        analyticsDTO.setLastAttendanceStatus(lastAttendance.getStatus().toString());
-                        analyticsDTO.setLastAttendanceEvent(lastAttendance.getEvent().getTitle());
-                    }
-                }
-                
-                analytics.add(analyticsDTO);
-            }
-            
-            // Sort the results
-            if (sortBy.equals("attendancePercentage")) {
-                analytics.sort((a, b) -> sortDir.equals("desc") ? 
-                    Double.compare(b.getAttendancePercentage(), a.getAttendancePercentage()) :
-                    Double.compare(a.getAttendancePercentage(), b.getAttendancePercentage()));
-            } else if (sortBy.equals("studentName")) {
-                analytics.sort((a, b) -> sortDir.equals("desc") ? 
-                    b.getStudentName().compareTo(a.getStudentName()) :
-                    a.getStudentName().compareTo(b.getStudentName()));
-            }
-            
-            // Apply pagination
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), analytics.size());
-            List<StudentAttendanceAnalyticsDTO> paginatedAnalytics = analytics.subList(start, end);
+            // Filtering, sorting and paging are done by the analytics query
+            Page<StudentAttendanceAnalyticsDTO> analytics = studentAttendanceStatsService.getStudentAnalytics(
+                searchTerm, page, size, sortBy, sortDir);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("data", paginatedAnalytics);
-            response.put("totalElements", analytics.size());
-            response.put("totalPages", (int) Math.ceil((double) analytics.size() / size));
+            response.put("data", analytics.getContent());
+            response.put("totalElements", analytics.getTotalElements());
+            response.put("totalPages", analytics.getTotalPages());
             response.put("currentPage", page);
             response.put("size", size);
             
@@ -774,7 +811,7 @@ public class FacultyController {
             @RequestParam(defaultValue = "markedAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir) {
         try {
-            User faculty = getCurrentFaculty();
+            CurrentUser faculty = getCurrentFaculty();
             
             // Get student
             Optional<StudentResponseDTO> studentOpt = studentService.getStudentById(studentId);
@@ -849,67 +886,8 @@ public class FacultyController {
     @GetMapping("/analytics/summary")
     public ResponseEntity<?> getAnalyticsSummary() {
         try {
-            // Get all students
-            List<Student> students = studentService.getAllStudentsList();
-            
-            // Calculate overall statistics
-            long totalStudents = students.size();
-            long studentsWithAttendance = 0;
-            double totalAttendanceRate = 0.0;
-            double totalAverageMarks = 0.0;
-            
-            Map<String, Long> attendanceStatusCount = new HashMap<>();
-            attendanceStatusCount.put("Excellent", 0L);
-            attendanceStatusCount.put("Good", 0L);
-            attendanceStatusCount.put("Average", 0L);
-            attendanceStatusCount.put("Poor", 0L);
-            
-            for (Student student : students) {
-                List<Attendance> attendanceRecords = attendanceService.getAttendanceByStudent(student);
-                
-                if (!attendanceRecords.isEmpty()) {
-                    studentsWithAttendance++;
-                    
-                    long presentCount = attendanceRecords.stream()
-                        .filter(a -> a.getStatus() == Attendance.AttendanceStatus.PRESENT)
-                        .count();
-                    long lateCount = attendanceRecords.stream()
-                        .filter(a -> a.getStatus() == Attendance.AttendanceStatus.LATE)
-                        .count();
-                    
-                    double studentAttendanceRate = ((double) (presentCount + lateCount) / attendanceRecords.size()) * 100;
-                    totalAttendanceRate += studentAttendanceRate;
-                    
-                    // Determine attendance status
-                    if (studentAttendanceRate >= 90) {
-                        attendanceStatusCount.put("Excellent", attendanceStatusCount.get("Excellent") + 1);
-                    } else if (studentAttendanceRate >= 80) {
-                        attendanceStatusCount.put("Good", attendanceStatusCount.get("Good") + 1);
-                    } else if (studentAttendanceRate >= 70) {
-                        attendanceStatusCount.put("Average", attendanceStatusCount.get("Average") + 1);
-                    } else {
-                        attendanceStatusCount.put("Poor", attendanceStatusCount.get("Poor") + 1);
-                    }
-                    
-                    // Calculate average marks
-                    double studentAvgMarks = attendanceRecords.stream()
-                        .filter(a -> a.getMarksObtained() != null)
-                        .mapToDouble(Attendance::getMarksObtained)
-                        .average()
-                        .orElse(0.0);
-                    totalAverageMarks += studentAvgMarks;
-                }
-            }
-            
-            double overallAttendanceRate = studentsWithAttendance > 0 ? totalAttendanceRate / studentsWithAttendance : 0.0;
-            double overallAverageMarks = studentsWithAttendance > 0 ? totalAverageMarks / studentsWithAttendance : 0.0;
-            
-            Map<String, Object> summary = new HashMap<>();
-            summary.put("totalStudents", totalStudents);
-            summary.put("studentsWithAttendance", studentsWithAttendance);
-            summary.put("overallAttendanceRate", String.format("%.2f", overallAttendanceRate));
-            summary.put("overallAverageMarks", String.format("%.2f", overallAverageMarks));
-            summary.put("attendanceStatusDistribution", attendanceStatusCount);
+            // One grouped query, cached briefly and refreshed after attendance writes
+            Map<String, Object> summary = analyticsSummaryService.getSummary();
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -923,4 +901,166 @@ public class FacultyController {
             ));
         }
     }
-}
\ No newline at end of file
+
+    // Attendance rates, status counts and average marks per department, course, event type, faculty member or event
+    @GetMapping("/analytics/breakdown")
+    public ResponseEntity<?> getAnalyticsBreakdown(
+            @RequestParam(defaultValue = "department") String groupBy,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) String course,
+            @RequestParam(required = false) Event.EventType eventType,
+            @RequestParam(required = false) Long facultyId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            getCurrentFaculty();
+
+            AttendanceAnalyticsEngine.Filter filter = AttendanceAnalyticsEngine.Filter.all()
+                .department(department)
+                .course(course)
+                .eventType(eventType)
+                .faculty(facultyId)
+                .between(from != null ? from.atStartOfDay() : null, to != null ? to.atTime(23, 59, 59) : null);
+
+            Map<?, AttendanceAnalyticsEngine.Aggregate> groups;
+            switch (groupBy) {
+                case "department": groups = attendanceAnalyticsEngine.aggregateBy(AttendanceAnalyticsEngine.GroupBy.DEPARTMENT, filter); break;
+                case "course": groups = attendanceAnalyticsEngine.aggregateBy(AttendanceAnalyticsEngine.GroupBy.COURSE, filter); break;
+                case "eventType": groups = attendanceAnalyticsEngine.aggregateBy(AttendanceAnalyticsEngine.GroupBy.EVENT_TYPE, filter); break;
+                case "faculty": groups = attendanceAnalyticsEngine.aggregateBy(AttendanceAnalyticsEngine.GroupBy.FACULTY, filter); break;
+                case "event": groups = attendanceAnalyticsEngine.aggregateBy(AttendanceAnalyticsEngine.GroupBy.EVENT, filter); break;
+                default: throw new RuntimeException("Unsupported groupBy: " + groupBy);
+            }
+
+            List<Map<String, Object>> breakdown = new ArrayList<>();
+            groups.forEach((key, totals) -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("key", key != null ? key.toString() : null);
+                row.put("totalRecords", totals.getTotal());
+                row.put("statusCounts", totals.getHistogram());
+                row.put("attendanceRate", String.format("%.2f", totals.getAttendanceRate()));
+                row.put("averageMarks", String.format("%.2f", totals.getAverageMarks()));
+                breakdown.add(row);
+            });
+
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", breakdown
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Error fetching analytics breakdown: " + e.getMessage()
+            ));
+        }
+    }
+
+    // Students with one of the statuses in at least minCount of the most recent completed events, e.g. absent from 3 of the last 5 lectures
+    @GetMapping("/analytics/cohort")
+    public ResponseEntity<?> getAttendanceCohort(
+            @RequestParam(required = false) Event.EventType eventType,
+            @RequestParam(required = false) Long facultyId,
+            @RequestParam(defaultValue = "5") int lastEvents,
+            @RequestParam(defaultValue = "ABSENT") List<Attendance.AttendanceStatus> status,
+            @RequestParam(required = false) Integer minCount,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) String course) {
+        try {
+            getCurrentFaculty();
+
+            if (lastEvents < 1 || lastEvents > 100) {
+                throw new RuntimeException("lastEvents must be between 1 and 100");
+            }
+            int threshold = minCount != null ? minCount : lastEvents;
+            if (threshold < 1 || threshold > lastEvents) {
+                throw new RuntimeException("minCount must be between 1 and lastEvents (" + lastEvents + ")");
+            }
+
+            List<Long> eventIds = eventService.getRecentCompletedEventIds(eventType, facultyId, lastEvents);
+            if (threshold > eventIds.size()) {
+                throw new RuntimeException("minCount " + threshold + " exceeds the " + eventIds.size()
+                        + " completed events found");
+            }
+            List<Long> studentIds = attendanceBitmapIndex.findStudents(eventIds, status, threshold, department, course);
+
+            Map<String, Object> cohort = new HashMap<>();
+            cohort.put("eventIds", eventIds);
+            cohort.put("minCount", threshold);
+            cohort.put("totalStudents", studentIds.size());
+            cohort.put("students", studentService.getStudentsByIds(studentIds));
+
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", cohort
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Error fetching attendance cohort: " + e.getMessage()
+            ));
+        }
+    }
+
+    // Alerts raised by the at-risk detector, newest first; poll with since for alerts raised after the last poll
+    @GetMapping("/analytics/at-risk")
+    public ResponseEntity<?> getAtRiskAlerts(
+            @RequestParam(required = false) AtRiskAlert.AlertType type,
+            @RequestParam(defaultValue = "true") boolean activeOnly,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) String department,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            getCurrentFaculty();
+
+            Page<AtRiskAlertDTO> alerts = atRiskDetector.getAlerts(type, activeOnly, since, department, page, size);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", alerts.getContent());
+            response.put("totalElements", alerts.getTotalElements());
+            response.put("totalPages", alerts.getTotalPages());
+            response.put("currentPage", page);
+            response.put("size", size);
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Error fetching at-risk alerts: " + e.getMessage()
+            ));
+        }
+    }
+
+    // Compare the attendance of several departments, courses, academic years and semesters in one report
+    @GetMapping("/analytics/cohorts")
+    public ResponseEntity<?> compareCohorts(
+            @RequestParam(required = false) List<String> department,
+            @RequestParam(required = false) List<String> course,
+            @RequestParam(required = false) List<String> academicYear,
+            @RequestParam(required = false) List<String> semester) {
+        try {
+            getCurrentFaculty();
+
+            Map<String, Object> report = studentAttendanceStatsService.compareCohorts(
+                department != null ? department : List.of(),
+                course != null ? course : List.of(),
+                academicYear != null ? academicYear : List.of(),
+                semester != null ? semester : List.of());
+
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", report
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Error comparing cohorts: " + e.getMessage()
+            ));
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.pearldata.controller;
 
-import com.pearldata.dto.EventResponseDTO;
+import com.pearldata.dto.CheckInRequest;
+import com.pearldata.dto.StudentProgressDTO;
 import com.pearldata.entity.Attendance;
 import com.pearldata.entity.Event;
 import com.pearldata.entity.Student;
+import com.pearldata.entity.StudentAttendanceStats;
 import com.pearldata.entity.User;
 import com.pearldata.repository.EventRepository;
+import com.pearldata.security.CurrentUser;
 import com.pearldata.service.AttendanceService;
+import com.pearldata.service.ChangeWatermarks;
+import com.pearldata.service.CheckInService;
+import com.pearldata.service.EventCatalogService;
 import com.pearldata.service.EventService;
+import com.pearldata.service.StudentAttendanceStatsService;
 import com.pearldata.service.StudentService;
 import com.pearldata.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,17 +22,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import jakarta.validation.Valid;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/student")
@@ -42,24 +50,46 @@ public class StudentController {
     @Autowired
     private EventService eventService;
 
+    @Autowired
+    private EventCatalogService eventCatalogService;
+
+    @Autowired
+    private ChangeWatermarks changeWatermarks;
+
     @Autowired
     private EventRepository eventRepository;
 
     @Autowired
     private AttendanceService attendanceService;
 
+    @Autowired
+    private CheckInService checkInService;
+
+    @Autowired
+    private StudentAttendanceStatsService studentAttendanceStatsService;
+
+    @Autowired
+    private CurrentUser currentUser;
+
+    // Helper method to get current student's ID, resolved from the identity cache
+    private Long getCurrentStudentId() {
+        Long studentId = currentUser.getStudentId();
+        if (studentId == null) {
+            throw new RuntimeException("Student not found");
+        }
+        return studentId;
+    }
+
     // Helper method to get current student
-    private Student getCurrentStudent(Authentication authentication) {
-        String email = authentication.getName();
-        return studentService.getStudentEntityByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Student not found"));
+    private Student getCurrentStudent() {
+        return studentService.getStudentEntityById(getCurrentStudentId());
     }
 
     // Get student profile
     @GetMapping("/profile")
-    public ResponseEntity<?> getStudentProfile(Authentication authentication) {
+    public ResponseEntity<?> getStudentProfile() {
         try {
-            Student student = getCurrentStudent(authentication);
+            Student student = getCurrentStudent();
             
             Map<String, Object> profile = new HashMap<>();
             profile.put("id", student.getId());
@@ -90,44 +120,27 @@ public class StudentController {
 
     // Get dashboard statistics
     @GetMapping("/dashboard-stats")
-    public ResponseEntity<?> getDashboardStats(Authentication authentication) {
+    public ResponseEntity<?> getDashboardStats(WebRequest webRequest) {
         try {
-            Student student = getCurrentStudent(authentication);
-            
+            Long studentId = getCurrentStudentId();
+            if (changeWatermarks.studentTag(studentId).checkNotModified(webRequest)) {
+                return null;
+            }
+
             // Get attendance statistics
-            List<Attendance> attendanceRecords = attendanceService.getAttendanceByStudent(student);
-            long totalEvents = attendanceRecords.size();
-            long presentCount = attendanceRecords.stream()
-                .filter(a -> a.getStatus() == Attendance.AttendanceStatus.PRESENT)
-                .count();
-            long absentCount = attendanceRecords.stream()
-                .filter(a -> a.getStatus() == Attendance.AttendanceStatus.ABSENT)
-                .count();
-            long lateCount = attendanceRecords.stream()
-                .filter(a -> a.getStatus() == Attendance.AttendanceStatus.LATE)
-                .count();
-            
-            double attendancePercentage = totalEvents > 0 ? 
-                ((double) (presentCount + lateCount) / totalEvents) * 100 : 0.0;
+            StudentAttendanceStats attendanceStats = studentAttendanceStatsService.getStatsByStudent(studentId);
             
             // Get upcoming events
             long upcomingEvents = eventService.countUpcomingEvents();
-            
-            // Get average marks
-            double averageMarks = attendanceRecords.stream()
-                .filter(a -> a.getMarksObtained() != null)
-                .mapToDouble(Attendance::getMarksObtained)
-                .average()
-                .orElse(0.0);
 
             Map<String, Object> stats = new HashMap<>();
-            stats.put("totalEvents", totalEvents);
-            stats.put("presentCount", presentCount);
-            stats.put("absentCount", absentCount);
-            stats.put("lateCount", lateCount);
-            stats.put("attendancePercentage", Math.round(attendancePercentage * 100.0) / 100.0);
+            stats.put("totalEvents", attendanceStats.getTotalCount());
+            stats.put("presentCount", attendanceStats.getPresentCount());
+            stats.put("absentCount", attendanceStats.getAbsentCount());
+            stats.put("lateCount", attendanceStats.getLateCount());
+            stats.put("attendancePercentage", Math.round(attendanceStats.getAttendancePercentage() * 100.0) / 100.0);
             stats.put("upcomingEvents", upcomingEvents);
-            stats.put("averageMarks", Math.round(averageMarks * 100.0) / 100.0);
+            stats.put("averageMarks", Math.round(attendanceStats.getAverageMarks() * 100.0) / 100.0);
 
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -148,15 +161,18 @@ public class StudentController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "markedAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
-            Authentication authentication) {
+            WebRequest webRequest) {
         try {
-            Student student = getCurrentStudent(authentication);
+            Long studentId = getCurrentStudentId();
+            if (changeWatermarks.studentTag(studentId).checkNotModified(webRequest)) {
+                return null;
+            }
             
             Sort sort = sortDir.equalsIgnoreCase("desc") ?
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
             Pageable pageable = PageRequest.of(page, size, sort);
 
-            List<Attendance> attendanceRecords = attendanceService.getAttendanceByStudent(student);
+            List<Attendance> attendanceRecords = attendanceService.getAttendanceByStudent(studentId);
             
             // Convert to response format
             List<Map<String, Object>> attendanceData = attendanceRecords.stream()
@@ -212,50 +228,18 @@ public class StudentController {
         }
     }
 
-    // Get all events grouped by status (upcoming, today, completed)
+    // Get all events grouped by status (ongoing, scheduled, completed), served from the event catalog snapshot
     @GetMapping("/events")
-    public ResponseEntity<?> getAllEventsGrouped(Authentication authentication) {
+    public ResponseEntity<?> getAllEventsGrouped() {
         try {
-            Student student = getCurrentStudent(authentication);
-            
-            // Get all events using the EventService (same as admin)
-            List<EventResponseDTO> allEvents = eventService.getAllEvents();
-            
-            LocalDateTime now = LocalDateTime.now();
-            LocalDateTime startOfToday = now.toLocalDate().atStartOfDay();
-            LocalDateTime endOfToday = now.toLocalDate().atTime(23, 59, 59);
-            
-            // Group events by status: Ongoing, Scheduled, Completed
-            List<EventResponseDTO> ongoingEvents = allEvents.stream()
-                .filter(event -> event.getStatus() == Event.EventStatus.ONGOING)
-                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
-                .collect(Collectors.toList());
-            
-            List<EventResponseDTO> scheduledEvents = allEvents.stream()
-                .filter(event -> event.getStatus() == Event.EventStatus.SCHEDULED)
-                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
-                .collect(Collectors.toList());
-            
-            List<EventResponseDTO> completedEvents = allEvents.stream()
-                .filter(event -> event.getStatus() == Event.EventStatus.COMPLETED)
-                .sorted((a, b) -> b.getStartTime().compareTo(a.getStartTime())) // Most recent first
-                .collect(Collectors.toList());
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("data", Map.of(
-                "ongoing", ongoingEvents,
-                "scheduled", scheduledEvents,
-                "completed", completedEvents
-            ));
-            response.put("summary", Map.of(
-                "ongoingCount", ongoingEvents.size(),
-                "scheduledCount", scheduledEvents.size(),
-                "completedCount", completedEvents.size()
-            ));
-            response.put("studentName", student.getName());
+            String studentName = currentUser.getName();
+            EventCatalogService.Snapshot catalog = eventCatalogService.getSnapshot();
 
-            return ResponseEntity.ok(response);
+            // Clients sending the ETag back get 304 Not Modified while the catalog is unchanged
+            return ResponseEntity.ok()
+                .eTag(catalog.getETag(studentName))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalog.render(studentName));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
                 "success", false,
@@ -268,10 +252,9 @@ public class StudentController {
     @GetMapping("/events/upcoming")
     public ResponseEntity<?> getUpcomingEvents(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size,
-            Authentication authentication) {
+            @RequestParam(defaultValue = "10") int size) {
         try {
-            getCurrentStudent(authentication); // Just to verify authentication
+            getCurrentStudentId(); // Just to verify authentication
             
             Sort sort = Sort.by("startTime").ascending();
             Pageable pageable = PageRequest.of(page, size, sort);
@@ -297,79 +280,15 @@ public class StudentController {
 
     // Get student progress
     @GetMapping("/progress")
-    public ResponseEntity<?> getStudentProgress(Authentication authentication) {
+    public ResponseEntity<?> getStudentProgress(WebRequest webRequest) {
         try {
-            Student student = getCurrentStudent(authentication);
-            List<Attendance> attendanceRecords = attendanceService.getAttendanceByStudent(student);
-            
-            // Calculate progress metrics
-            long totalEvents = attendanceRecords.size();
-            long presentCount = attendanceRecords.stream()
-                .filter(a -> a.getStatus() == Attendance.AttendanceStatus.PRESENT)
-                .count();
-            long lateCount = attendanceRecords.stream()
-                .filter(a -> a.getStatus() == Attendance.AttendanceStatus.LATE)
-                .count();
-            
-            double attendanceRate = totalEvents > 0 ? 
-                ((double) (presentCount + lateCount) / totalEvents) * 100 : 0.0;
-            
-            // Calculate grade based on attendance
-            String grade;
-            if (attendanceRate >= 90) grade = "A+";
-            else if (attendanceRate >= 80) grade = "A";
-            else if (attendanceRate >= 70) grade = "B+";
-            else if (attendanceRate >= 60) grade = "B";
-            else if (attendanceRate >= 50) grade = "C+";
-            else grade = "C";
-            
-            // Get performance by subject/event type
-            Map<String, Map<String, Object>> subjectPerformance = new HashMap<>();
-            
-            attendanceRecords.stream()
-                .filter(a -> a.getEvent().getEventType() != null)
-                .forEach(attendance -> {
-                    String eventType = attendance.getEvent().getEventType().toString();
-                    subjectPerformance.computeIfAbsent(eventType, k -> new HashMap<>());
-                    
-                    Map<String, Object> subjectStats = subjectPerformance.get(eventType);
-                    subjectStats.put("totalEvents", (int) subjectStats.getOrDefault("totalEvents", 0) + 1);
-                    
-                    if (attendance.getStatus() == Attendance.AttendanceStatus.PRESENT || 
-                        attendance.getStatus() == Attendance.AttendanceStatus.LATE) {
-                        subjectStats.put("attended", (int) subjectStats.getOrDefault("attended", 0) + 1);
-                    }
-                    
-                    if (attendance.getMarksObtained() != null) {
-                        @SuppressWarnings("unchecked")
-                        List<Double> marks = (List<Double>) subjectStats.getOrDefault("marks", new java.util.ArrayList<>());
-                        marks.add(attendance.getMarksObtained());
-                        subjectStats.put("marks", marks);
-                    }
-                });
-
-            // Calculate average marks for each subject
-            subjectPerformance.forEach((subject, stats) -> {
-                @SuppressWarnings("unchecked")
-                List<Double> marks = (List<Double>) stats.get("marks");
-                if (marks != null && !marks.isEmpty()) {
-                    double avgMarks = marks.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                    stats.put("averageMarks", Math.round(avgMarks * 100.0) / 100.0);
-                }
-                
-                int total = (int) stats.get("totalEvents");
-                int attended = (int) stats.getOrDefault("attended", 0);
-                double subjectAttendance = total > 0 ? ((double) attended / total) * 100 : 0.0;
-                stats.put("attendanceRate", Math.round(subjectAttendance * 100.0) / 100.0);
-            });
-
-            Map<String, Object> progress = new HashMap<>();
-            progress.put("overallAttendance", Math.round(attendanceRate * 100.0) / 100.0);
-            progress.put("totalEvents", totalEvents);
-            progress.put("presentCount", presentCount);
-            progress.put("lateCount", lateCount);
-            progress.put("grade", grade);
-            progress.put("subjectPerformance", subjectPerformance);
+            Long studentId = getCurrentStudentId();
+            if (changeWatermarks.studentTag(studentId).checkNotModified(webRequest)) {
+                return null;
+            }
+
+            // Served from the student's maintained totals, overall and per event type
+            StudentProgressDTO progress = studentAttendanceStatsService.getStudentProgress(studentId);
 
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -383,11 +302,33 @@ public class StudentController {
         }
     }
 
+    // Check in to an event with the code shown in class
+    @PostMapping("/check-in")
+    public ResponseEntity<?> checkIn(@Valid @RequestBody CheckInRequest request) {
+        try {
+            CheckInService.CheckInResult result = checkInService.checkIn(request.getEventId(), request.getCode(), getCurrentStudentId());
+
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", result == CheckInService.CheckInResult.ACCEPTED ? "Checked in successfully" : "Already checked in",
+                "data", Map.of(
+                    "eventId", request.getEventId(),
+                    "result", result
+                )
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Error checking in: " + e.getMessage()
+            ));
+        }
+    }
+
     // Update student profile
     @PutMapping("/profile")
-    public ResponseEntity<?> updateProfile(@RequestBody Map<String, String> updateData, Authentication authentication) {
+    public ResponseEntity<?> updateProfile(@RequestBody Map<String, String> updateData) {
         try {
-            Student student = getCurrentStudent(authentication);
+            Student student = getCurrentStudent();
             
             // Update allowed fields
             if (updateData.containsKey("name")) {
@@ -0,0 +1,158 @@
+package com.pearldata.dto;
+
+import com.pearldata.entity.AtRiskAlert;
+
+import java.time.LocalDateTime;
+
+public class AtRiskAlertDTO {
+    private Long alertId;
+    private Long studentId;
+    private String studentName;
+    private String studentIdNumber;
+    private String department;
+    private String course;
+    private String alertType;
+    private double observedValue;
+    private double referenceValue;
+    private Long eventId;
+    private String eventTitle;
+    private LocalDateTime raisedAt;
+    private LocalDateTime resolvedAt;
+    private boolean active;
+
+    // Constructors
+    public AtRiskAlertDTO() {}
+
+    public AtRiskAlertDTO(Long alertId, Long studentId, String studentName, String studentIdNumber,
+                          String department, String course, AtRiskAlert.AlertType alertType,
+                          double observedValue, double referenceValue, Long eventId, String eventTitle,
+                          LocalDateTime raisedAt, LocalDateTime resolvedAt) {
+        this.alertId = alertId;
+        this.studentId = studentId;
+        this.studentName = studentName;
+        this.studentIdNumber = studentIdNumber;
+        this.department = department;
+        this.course = course;
+        this.alertType = alertType.toString();
+        this.observedValue = observedValue;
+        this.referenceValue = referenceValue;
+        this.eventId = eventId;
+        this.eventTitle = eventTitle;
+        this.raisedAt = raisedAt;
+        this.resolvedAt = resolvedAt;
+        this.active = resolvedAt == null;
+    }
+
+    // Getters and Setters
+    public Long getAlertId() {
+        return alertId;
+    }
+
+    public void setAlertId(Long alertId) {
+        this.alertId = alertId;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public String getStudentName() {
+        return studentName;
+    }
+
+    public void setStudentName(String studentName) {
+        this.studentName = studentName;
+    }
+
+    public String getStudentIdNumber() {
+        return studentIdNumber;
+    }
+
+    public void setStudentIdNumber(String studentIdNumber) {
+        this.studentIdNumber = studentIdNumber;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    public void setDepartment(String department) {
+        this.department = department;
+    }
+
+    public String getCourse() {
+        return course;
+    }
+
+    public void setCourse(String course) {
+        this.course = course;
+    }
+
+    public String getAlertType() {
+        return alertType;
+    }
+
+    public void setAlertType(String alertType) {
+        this.alertType = alertType;
+    }
+
+    public double getObservedValue() {
+        return observedValue;
+    }
+
+    public void setObservedValue(double observedValue) {
+        this.observedValue = observedValue;
+    }
+
+    public double getReferenceValue() {
+        return referenceValue;
+    }
+
+    public void setReferenceValue(double referenceValue) {
+        this.referenceValue = referenceValue;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getEventTitle() {
+        return eventTitle;
+    }
+
+    public void setEventTitle(String eventTitle) {
+        this.eventTitle = eventTitle;
+    }
+
+    public LocalDateTime getRaisedAt() {
+        return raisedAt;
+    }
+
+    public void setRaisedAt(LocalDateTime raisedAt) {
+        this.raisedAt = raisedAt;
+    }
+
+    public LocalDateTime getResolvedAt() {
+        return resolvedAt;
+    }
+
+    public void setResolvedAt(LocalDateTime resolvedAt) {
+        this.resolvedAt = resolvedAt;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+}
@@ -0,0 +1,120 @@
+package com.pearldata.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AttendanceImportReportDTO {
+
+    private Long eventId;
+    private long totalRows;
+    private long importedRows;
+    private long failedRows;
+    private int batchesWritten;
+    private boolean errorsTruncated;
+    private List<RowError> errors = new ArrayList<>();
+
+    // Constructors
+    public AttendanceImportReportDTO() {}
+
+    public AttendanceImportReportDTO(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    // Getters and Setters
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public long getImportedRows() {
+        return importedRows;
+    }
+
+    public void setImportedRows(long importedRows) {
+        this.importedRows = importedRows;
+    }
+
+    public long getFailedRows() {
+        return failedRows;
+    }
+
+    public void setFailedRows(long failedRows) {
+        this.failedRows = failedRows;
+    }
+
+    public int getBatchesWritten() {
+        return batchesWritten;
+    }
+
+    public void setBatchesWritten(int batchesWritten) {
+        this.batchesWritten = batchesWritten;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public void setErrorsTruncated(boolean errorsTruncated) {
+        this.errorsTruncated = errorsTruncated;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+
+    // Inner class for a rejected row
+    public static class RowError {
+        private long lineNumber;
+        private String studentId;
+        private String message;
+
+        // Constructors
+        public RowError() {}
+
+        public RowError(long lineNumber, String studentId, String message) {
+            this.lineNumber = lineNumber;
+            this.studentId = studentId;
+            this.message = message;
+        }
+
+        // Getters and Setters
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public void setLineNumber(long lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+
+        public String getStudentId() {
+            return studentId;
+        }
+
+        public void setStudentId(String studentId) {
+            this.studentId = studentId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.pearldata.dto;
+
+import java.time.LocalDate;
+
+public class AttendanceTrendPointDTO {
+    private LocalDate periodStart;
+    private String department;
+    private String course;
+    private String eventType;
+    private long totalCount;
+    private long presentCount;
+    private long absentCount;
+    private long lateCount;
+    private long excusedCount;
+    private long partialCount;
+    private double attendanceRate;
+    private double averageMarks;
+    private long marksCount;
+
+    // Constructors
+    public AttendanceTrendPointDTO() {}
+
+    public AttendanceTrendPointDTO(LocalDate periodStart, String department, String course, String eventType,
+                                   long totalCount, long presentCount, long absentCount, long lateCount,
+                                   long excusedCount, long partialCount, double marksSum, long marksCount) {
+        this.periodStart = periodStart;
+        this.department = department;
+        this.course = course;
+        this.eventType = eventType;
+        this.totalCount = totalCount;
+        this.presentCount = presentCount;
+        this.absentCount = absentCount;
+        this.lateCount = lateCount;
+        this.excusedCount = excusedCount;
+        this.partialCount = partialCount;
+        this.marksCount = marksCount;
+        this.attendanceRate = totalCount > 0 ? (double) (presentCount + lateCount) / totalCount * 100 : 0.0;
+        this.averageMarks = marksCount > 0 ? marksSum / marksCount : 0.0;
+    }
+
+    // Getters and Setters
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(LocalDate periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    public void setDepartment(String department) {
+        this.department = department;
+    }
+
+    public String getCourse() {
+        return course;
+    }
+
+    public void setCourse(String course) {
+        this.course = course;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public long getPresentCount() {
+        return presentCount;
+    }
+
+    public void setPresentCount(long presentCount) {
+        this.presentCount = presentCount;
+    }
+
+    public long getAbsentCount() {
+        return absentCount;
+    }
+
+    public void setAbsentCount(long absentCount) {
+        this.absentCount = absentCount;
+    }
+
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    public void setLateCount(long lateCount) {
+        this.lateCount = lateCount;
+    }
+
+    public long getExcusedCount() {
+        return excusedCount;
+    }
+
+    public void setExcusedCount(long excusedCount) {
+        this.excusedCount = excusedCount;
+    }
+
+    public long getPartialCount() {
+        return partialCount;
+    }
+
+    public void setPartialCount(long partialCount) {
+        this.partialCount = partialCount;
+    }
+
+    public double getAttendanceRate() {
+        return attendanceRate;
+    }
+
+    public void setAttendanceRate(double attendanceRate) {
+        this.attendanceRate = attendanceRate;
+    }
+
+    public double getAverageMarks() {
+        return averageMarks;
+    }
+
+    public void setAverageMarks(double averageMarks) {
+        this.averageMarks = averageMarks;
+    }
+
+    public long getMarksCount() {
+        return marksCount;
+    }
+
+    public void setMarksCount(long marksCount) {
+        this.marksCount = marksCount;
+    }
+}
@@ -0,0 +1,38 @@
+package com.pearldata.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+public class CheckInRequest {
+
+    @NotNull(message = "Event ID is required")
+    private Long eventId;
+
+    @NotBlank(message = "Check-in code is required")
+    private String code;
+
+    // Constructors
+    public CheckInRequest() {}
+
+    public CheckInRequest(Long eventId, String code) {
+        this.eventId = eventId;
+        this.code = code;
+    }
+
+    // Getters and Setters
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+}
@@ -0,0 +1,143 @@
+package com.pearldata.dto;
+
+public class CohortStatsDTO {
+    private String dimension;
+    private String cohort;
+    private long studentCount;
+    private long studentsWithAttendance;
+    private long totalCount;
+    private long presentCount;
+    private long absentCount;
+    private long lateCount;
+    private long excusedCount;
+    private long partialCount;
+    private double attendanceRate;
+    private double averageMarks;
+    private long studentsBelowThreshold;
+
+    // Constructors
+    public CohortStatsDTO() {}
+
+    public CohortStatsDTO(String dimension, String cohort, long studentCount, long studentsWithAttendance,
+                          long totalCount, long presentCount, long absentCount, long lateCount, long excusedCount,
+                          long partialCount, double marksSum, long marksCount, long studentsBelowThreshold) {
+        this.dimension = dimension;
+        this.cohort = cohort;
+        this.studentCount = studentCount;
+        this.studentsWithAttendance = studentsWithAttendance;
+        this.totalCount = totalCount;
+        this.presentCount = presentCount;
+        this.absentCount = absentCount;
+        this.lateCount = lateCount;
+        this.excusedCount = excusedCount;
+        this.partialCount = partialCount;
+        this.attendanceRate = totalCount > 0 ? (double) (presentCount + lateCount) / totalCount * 100 : 0.0;
+        this.averageMarks = marksCount > 0 ? marksSum / marksCount : 0.0;
+        this.studentsBelowThreshold = studentsBelowThreshold;
+    }
+
+    // Getters and Setters
+    public String getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(String dimension) {
+        this.dimension = dimension;
+    }
+
+    public String getCohort() {
+        return cohort;
+    }
+
+    public void setCohort(String cohort) {
+        this.cohort = cohort;
+    }
+
+    public long getStudentCount() {
+        return studentCount;
+    }
+
+    public void setStudentCount(long studentCount) {
+        this.studentCount = studentCount;
+    }
+
+    public long getStudentsWithAttendance() {
+        return studentsWithAttendance;
+    }
+
+    public void setStudentsWithAttendance(long studentsWithAttendance) {
+        this.studentsWithAttendance = studentsWithAttendance;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public long getPresentCount() {
+        return presentCount;
+    }
+
+    public void setPresentCount(long presentCount) {
+        this.presentCount = presentCount;
+    }
+
+    public long getAbsentCount() {
+        return absentCount;
+    }
+
+    public void setAbsentCount(long absentCount) {
+        this.absentCount = absentCount;
+    }
+
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    public void setLateCount(long lateCount) {
+        this.lateCount = lateCount;
+    }
+
+    public long getExcusedCount() {
+        return excusedCount;
+    }
+
+    public void setExcusedCount(long excusedCount) {
+        this.excusedCount = excusedCount;
+    }
+
+    public long getPartialCount() {
+        return partialCount;
+    }
+
+    public void setPartialCount(long partialCount) {
+        this.partialCount = partialCount;
+    }
+
+    public double getAttendanceRate() {
+        return attendanceRate;
+    }
+
+    public void setAttendanceRate(double attendanceRate) {
+        this.attendanceRate = attendanceRate;
+    }
+
+    public double getAverageMarks() {
+        return averageMarks;
+    }
+
+    public void setAverageMarks(double averageMarks) {
+        this.averageMarks = averageMarks;
+    }
+
+    public long getStudentsBelowThreshold() {
+        return studentsBelowThreshold;
+    }
+
+    public void setStudentsBelowThreshold(long studentsBelowThreshold) {
+        this.studentsBelowThreshold = studentsBelowThreshold;
+    }
+}
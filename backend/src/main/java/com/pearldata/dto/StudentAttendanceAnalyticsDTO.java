@@ -1,5 +1,7 @@
 package com.pearldata.dto;
 
+import com.pearldata.entity.Attendance;
+
 import java.time.LocalDateTime;
 
 public class StudentAttendanceAnalyticsDTO {
@@ -46,6 +48,28 @@ public class StudentAttendanceAnalyticsDTO {
         this.semester = semester;
     }
     
+    // Used by the analytics query: student columns plus that student's attendance totals
+    public StudentAttendanceAnalyticsDTO(Long studentId, String studentName, String studentEmail,
+                                       String studentIdNumber, String department, String course,
+                                       String academicYear, String semester,
+                                       long totalEvents, long presentCount, long absentCount,
+                                       long lateCount, long excusedCount, double marksSum, long marksCount,
+                                       LocalDateTime lastAttendanceDate, Attendance.AttendanceStatus lastAttendanceStatus,
+                                       String lastAttendanceEvent) {
+        this(studentId, studentName, studentEmail, studentIdNumber, department, course, academicYear, semester);
+        this.totalEvents = totalEvents;
+        this.presentCount = presentCount;
+        this.absentCount = absentCount;
+        this.lateCount = lateCount;
+        this.excusedCount = excusedCount;
+        this.averageMarks = marksCount > 0 ? marksSum / marksCount : 0.0;
+        this.lastAttendanceDate = lastAttendanceDate;
+        this.lastAttendanceStatus = lastAttendanceStatus != null ? lastAttendanceStatus.toString() : null;
+        this.lastAttendanceEvent = lastAttendanceEvent;
+        calculateAttendancePercentage();
+        determineAttendanceStatus();
+    }
+    
     // Getters and Setters
     public Long getStudentId() {
         return studentId;
@@ -0,0 +1,74 @@
+package com.pearldata.dto;
+
+import java.util.Map;
+
+public class StudentProgressDTO {
+    private double overallAttendance;
+    private long totalEvents;
+    private long presentCount;
+    private long lateCount;
+    private String grade;
+    private Map<String, SubjectPerformanceDTO> subjectPerformance;
+
+    // Constructors
+    public StudentProgressDTO() {}
+
+    public StudentProgressDTO(double overallAttendance, long totalEvents, long presentCount, long lateCount, String grade,
+                              Map<String, SubjectPerformanceDTO> subjectPerformance) {
+        this.overallAttendance = overallAttendance;
+        this.totalEvents = totalEvents;
+        this.presentCount = presentCount;
+        this.lateCount = lateCount;
+        this.grade = grade;
+        this.subjectPerformance = subjectPerformance;
+    }
+
+    // Getters and Setters
+    public double getOverallAttendance() {
+        return overallAttendance;
+    }
+
+    public void setOverallAttendance(double overallAttendance) {
+        this.overallAttendance = overallAttendance;
+    }
+
+    public long getTotalEvents() {
+        return totalEvents;
+    }
+
+    public void setTotalEvents(long totalEvents) {
+        this.totalEvents = totalEvents;
+    }
+
+    public long getPresentCount() {
+        return presentCount;
+    }
+
+    public void setPresentCount(long presentCount) {
+        this.presentCount = presentCount;
+    }
+
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    public void setLateCount(long lateCount) {
+        this.lateCount = lateCount;
+    }
+
+    public String getGrade() {
+        return grade;
+    }
+
+    public void setGrade(String grade) {
+        this.grade = grade;
+    }
+
+    public Map<String, SubjectPerformanceDTO> getSubjectPerformance() {
+        return subjectPerformance;
+    }
+
+    public void setSubjectPerformance(Map<String, SubjectPerformanceDTO> subjectPerformance) {
+        this.subjectPerformance = subjectPerformance;
+    }
+}
@@ -0,0 +1,51 @@
+package com.pearldata.dto;
+
+public class SubjectPerformanceDTO {
+    private long totalEvents;
+    private long attended;
+    private double attendanceRate;
+    private Double averageMarks;
+
+    // Constructors
+    public SubjectPerformanceDTO() {}
+
+    public SubjectPerformanceDTO(long totalEvents, long attended, double attendanceRate, Double averageMarks) {
+        this.totalEvents = totalEvents;
+        this.attended = attended;
+        this.attendanceRate = attendanceRate;
+        this.averageMarks = averageMarks;
+    }
+
+    // Getters and Setters
+    public long getTotalEvents() {
+        return totalEvents;
+    }
+
+    public void setTotalEvents(long totalEvents) {
+        this.totalEvents = totalEvents;
+    }
+
+    public long getAttended() {
+        return attended;
+    }
+
+    public void setAttended(long attended) {
+        this.attended = attended;
+    }
+
+    public double getAttendanceRate() {
+        return attendanceRate;
+    }
+
+    public void setAttendanceRate(double attendanceRate) {
+        this.attendanceRate = attendanceRate;
+    }
+
+    public Double getAverageMarks() {
+        return averageMarks;
+    }
+
+    public void setAverageMarks(Double averageMarks) {
+        this.averageMarks = averageMarks;
+    }
+}
@@ -0,0 +1,130 @@
+package com.pearldata.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A threshold crossing raised by AtRiskDetector: rolling attendance fell below the limit,
+ * or a mark fell well below the student's running average.
+ */
+@Entity
+@Table(name = "at_risk_alerts", indexes = {
+        @Index(name = "idx_at_risk_alerts_raised_at", columnList = "raised_at"),
+        @Index(name = "idx_at_risk_alerts_student_type", columnList = "student_id, alert_type, resolved_at")
+})
+public class AtRiskAlert {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "student_id", nullable = false)
+    private Student student;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "alert_type", nullable = false, length = 30)
+    private AlertType alertType;
+
+    // Rolling attendance rate, or the marks percentage that triggered the alert
+    @Column(name = "observed_value", nullable = false)
+    private double observedValue;
+
+    // Attendance limit, or the student's marks average before the drop
+    @Column(name = "reference_value", nullable = false)
+    private double referenceValue;
+
+    // Event whose attendance triggered the alert
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Column(name = "raised_at", nullable = false)
+    private LocalDateTime raisedAt;
+
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+
+    // Constructors
+    public AtRiskAlert() {}
+
+    public AtRiskAlert(Student student, AlertType alertType, double observedValue, double referenceValue,
+                       Long eventId, LocalDateTime raisedAt) {
+        this.student = student;
+        this.alertType = alertType;
+        this.observedValue = observedValue;
+        this.referenceValue = referenceValue;
+        this.eventId = eventId;
+        this.raisedAt = raisedAt;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Student getStudent() {
+        return student;
+    }
+
+    public void setStudent(Student student) {
+        this.student = student;
+    }
+
+    public AlertType getAlertType() {
+        return alertType;
+    }
+
+    public void setAlertType(AlertType alertType) {
+        this.alertType = alertType;
+    }
+
+    public double getObservedValue() {
+        return observedValue;
+    }
+
+    public void setObservedValue(double observedValue) {
+        this.observedValue = observedValue;
+    }
+
+    public double getReferenceValue() {
+        return referenceValue;
+    }
+
+    public void setReferenceValue(double referenceValue) {
+        this.referenceValue = referenceValue;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public LocalDateTime getRaisedAt() {
+        return raisedAt;
+    }
+
+    public void setRaisedAt(LocalDateTime raisedAt) {
+        this.raisedAt = raisedAt;
+    }
+
+    public LocalDateTime getResolvedAt() {
+        return resolvedAt;
+    }
+
+    public void setResolvedAt(LocalDateTime resolvedAt) {
+        this.resolvedAt = resolvedAt;
+    }
+
+    // Enums
+    public enum AlertType {
+        LOW_ATTENDANCE, MARKS_DROP
+    }
+}
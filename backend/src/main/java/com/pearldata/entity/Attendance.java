@@ -7,8 +7,15 @@ import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
+// The (student_id, event_id) unique key is added at startup by AttendanceBulkRepository.ensureStudentEventKey,
+// which removes duplicates first and leaves a partitioned table (where the key cannot exist) alone
 @Entity
-@Table(name = "attendance")
+@Table(name = "attendance", indexes = {
+        @Index(name = "idx_attendance_event_marked", columnList = "event_id, is_marked"),
+        @Index(name = "idx_attendance_marked_at", columnList = "marked_at"),
+        @Index(name = "idx_attendance_marked_by_faculty", columnList = "marked_by_faculty_id"),
+        @Index(name = "idx_attendance_updated_at", columnList = "updated_at")
+})
 public class Attendance {
 
     @Id
@@ -44,6 +51,10 @@ public class Attendance {
     @JoinColumn(name = "marked_by_faculty_id", nullable = false)
     private User markedByFaculty;
 
+    // False for default-ABSENT rows pre-created when the event started and not yet marked by faculty
+    @Column(name = "is_marked", nullable = false)
+    private Boolean isMarked = true;
+
     @CreationTimestamp
     @Column(name = "marked_at", nullable = false, updatable = false)
     private LocalDateTime markedAt;
@@ -158,6 +169,14 @@ public class Attendance {
         this.markedAt = markedAt;
     }
 
+    public Boolean getIsMarked() {
+        return isMarked;
+    }
+
+    public void setIsMarked(Boolean isMarked) {
+        this.isMarked = isMarked;
+    }
+
     public LocalDateTime getUpdatedAt() {
         return updatedAt;
     }
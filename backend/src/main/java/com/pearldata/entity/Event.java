@@ -10,8 +10,13 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 import java.util.List;
 
+// Not in the second-level cache: status and times change in bulk and on other instances, and writes check them
 @Entity
-@Table(name = "events")
+@Table(name = "events", indexes = {
+        @Index(name = "idx_events_status_start_time", columnList = "status, start_time"),
+        @Index(name = "idx_events_status_end_time", columnList = "status, end_time"),
+        @Index(name = "idx_events_faculty", columnList = "faculty_id")
+})
 public class Event {
 
     @Id
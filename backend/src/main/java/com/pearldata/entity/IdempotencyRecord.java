@@ -0,0 +1,128 @@
+package com.pearldata.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at")
+})
+public class IdempotencyRecord {
+
+    // Response status of a key claimed by a request that has not finished yet
+    public static final int PENDING_STATUS = 0;
+
+    // SHA-256 of operation, owner and client-supplied key
+    @Id
+    @Column(name = "record_key", length = 64)
+    private String recordKey;
+
+    @Column(name = "operation", nullable = false, length = 100)
+    private String operation;
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "response_status", nullable = false)
+    private int responseStatus;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Constructors
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(String recordKey, String operation, String requestHash, int responseStatus,
+                             String responseBody, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        this.recordKey = recordKey;
+        this.operation = operation;
+        this.requestHash = requestHash;
+        this.responseStatus = responseStatus;
+        this.responseBody = responseBody;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public String getRecordKey() {
+        return recordKey;
+    }
+
+    public void setRecordKey(String recordKey) {
+        this.recordKey = recordKey;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public int getResponseStatus() {
+        return responseStatus;
+    }
+
+    public void setResponseStatus(int responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public void setResponseBody(String responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    // Helper methods
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt.isBefore(now);
+    }
+
+    public boolean isPending() {
+        return responseStatus == PENDING_STATUS;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyRecord{" +
+                "recordKey='" + recordKey + '\'' +
+                ", operation='" + operation + '\'' +
+                ", responseStatus=" + responseStatus +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -11,7 +13,12 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "students")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "students")
+@Table(name = "students", indexes = {
+        @Index(name = "idx_students_active_name", columnList = "is_active, name"),
+        @Index(name = "idx_students_department", columnList = "department")
+})
 public class Student {
 
     @Id
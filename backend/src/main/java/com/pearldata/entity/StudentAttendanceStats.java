@@ -0,0 +1,179 @@
+package com.pearldata.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running attendance totals of one student, including rows that were moved to the cold archive.
+ * Maintained by a trigger on attendance (see StudentAttendanceStatsBulkRepository), so it is never written through JPA.
+ */
+@Entity
+@Immutable
+@Table(name = "student_attendance_stats")
+public class StudentAttendanceStats {
+
+    @Id
+    @Column(name = "student_id")
+    private Long studentId;
+
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+
+    @Column(name = "present_count", nullable = false)
+    private long presentCount;
+
+    @Column(name = "absent_count", nullable = false)
+    private long absentCount;
+
+    @Column(name = "late_count", nullable = false)
+    private long lateCount;
+
+    @Column(name = "excused_count", nullable = false)
+    private long excusedCount;
+
+    @Column(name = "partial_count", nullable = false)
+    private long partialCount;
+
+    @Column(name = "marks_sum", nullable = false)
+    private double marksSum;
+
+    @Column(name = "marks_count", nullable = false)
+    private long marksCount;
+
+    @Column(name = "last_attendance_at")
+    private LocalDateTime lastAttendanceAt;
+
+    @Column(name = "last_event_id")
+    private Long lastEventId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_status")
+    private Attendance.AttendanceStatus lastStatus;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public StudentAttendanceStats() {}
+
+    // Empty totals for a student without any attendance
+    public StudentAttendanceStats(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    // Getters and Setters
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public long getPresentCount() {
+        return presentCount;
+    }
+
+    public void setPresentCount(long presentCount) {
+        this.presentCount = presentCount;
+    }
+
+    public long getAbsentCount() {
+        return absentCount;
+    }
+
+    public void setAbsentCount(long absentCount) {
+        this.absentCount = absentCount;
+    }
+
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    public void setLateCount(long lateCount) {
+        this.lateCount = lateCount;
+    }
+
+    public long getExcusedCount() {
+        return excusedCount;
+    }
+
+    public void setExcusedCount(long excusedCount) {
+        this.excusedCount = excusedCount;
+    }
+
+    public long getPartialCount() {
+        return partialCount;
+    }
+
+    public void setPartialCount(long partialCount) {
+        this.partialCount = partialCount;
+    }
+
+    public double getMarksSum() {
+        return marksSum;
+    }
+
+    public void setMarksSum(double marksSum) {
+        this.marksSum = marksSum;
+    }
+
+    public long getMarksCount() {
+        return marksCount;
+    }
+
+    public void setMarksCount(long marksCount) {
+        this.marksCount = marksCount;
+    }
+
+    public LocalDateTime getLastAttendanceAt() {
+        return lastAttendanceAt;
+    }
+
+    public void setLastAttendanceAt(LocalDateTime lastAttendanceAt) {
+        this.lastAttendanceAt = lastAttendanceAt;
+    }
+
+    public Long getLastEventId() {
+        return lastEventId;
+    }
+
+    public void setLastEventId(Long lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    public Attendance.AttendanceStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    public void setLastStatus(Attendance.AttendanceStatus lastStatus) {
+        this.lastStatus = lastStatus;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // Helper methods
+    public double getAttendancePercentage() {
+        return totalCount > 0 ? (double) (presentCount + lateCount) / totalCount * 100 : 0.0;
+    }
+
+    public double getAverageMarks() {
+        return marksCount > 0 ? marksSum / marksCount : 0.0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.pearldata.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Running attendance totals of one student for one event type, including archived rows.
+ * Maintained by the same attendance trigger as StudentAttendanceStats, so it is never written through JPA.
+ */
+@Entity
+@Immutable
+@IdClass(StudentEventTypeStats.Key.class)
+@Table(name = "student_event_type_stats")
+public class StudentEventTypeStats {
+
+    @Id
+    @Column(name = "student_id")
+    private Long studentId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", length = 30)
+    private Event.EventType eventType;
+
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+
+    // Present or late
+    @Column(name = "attended_count", nullable = false)
+    private long attendedCount;
+
+    @Column(name = "marks_sum", nullable = false)
+    private double marksSum;
+
+    @Column(name = "marks_count", nullable = false)
+    private long marksCount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public StudentEventTypeStats() {}
+
+    // Empty totals, e.g. to aggregate archived attendance into
+    public StudentEventTypeStats(Long studentId, Event.EventType eventType) {
+        this.studentId = studentId;
+        this.eventType = eventType;
+    }
+
+    // Getters and Setters
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public Event.EventType getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(Event.EventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public long getAttendedCount() {
+        return attendedCount;
+    }
+
+    public void setAttendedCount(long attendedCount) {
+        this.attendedCount = attendedCount;
+    }
+
+    public double getMarksSum() {
+        return marksSum;
+    }
+
+    public void setMarksSum(double marksSum) {
+        this.marksSum = marksSum;
+    }
+
+    public long getMarksCount() {
+        return marksCount;
+    }
+
+    public void setMarksCount(long marksCount) {
+        this.marksCount = marksCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // Helper methods
+    public double getAttendancePercentage() {
+        return totalCount > 0 ? (double) attendedCount / totalCount * 100 : 0.0;
+    }
+
+    public double getAverageMarks() {
+        return marksCount > 0 ? marksSum / marksCount : 0.0;
+    }
+
+    // Primary key: student and event type
+    public static class Key implements Serializable {
+        private Long studentId;
+        private Event.EventType eventType;
+
+        public Key() {}
+
+        public Key(Long studentId, Event.EventType eventType) {
+            this.studentId = studentId;
+            this.eventType = eventType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(studentId, key.studentId) && eventType == key.eventType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(studentId, eventType);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.pearldata.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Constant-size attendance risk state of one student, advanced by AtRiskDetector for every attendance change.
+ * Attendance is tracked as exponentially decayed counters over roughly the last window of events,
+ * marks as an exponentially weighted moving average of the marks percentage.
+ */
+@Entity
+@Table(name = "student_risk_state")
+public class StudentRiskState {
+
+    @Id
+    @Column(name = "student_id")
+    private Long studentId;
+
+    // Decayed number of events attended (present or late)
+    @Column(name = "attended_score", nullable = false)
+    private double attendedScore;
+
+    // Decayed number of events marked
+    @Column(name = "total_score", nullable = false)
+    private double totalScore;
+
+    @Column(name = "marks_ewma", nullable = false)
+    private double marksEwma;
+
+    @Column(name = "marks_count", nullable = false)
+    private long marksCount;
+
+    // Whether a low attendance alert is open
+    @Column(name = "low_attendance", nullable = false)
+    private boolean lowAttendance;
+
+    // Whether a marks drop alert is open
+    @Column(name = "marks_drop", nullable = false)
+    private boolean marksDrop;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public StudentRiskState() {}
+
+    public StudentRiskState(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    // Getters and Setters
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public double getAttendedScore() {
+        return attendedScore;
+    }
+
+    public void setAttendedScore(double attendedScore) {
+        this.attendedScore = attendedScore;
+    }
+
+    public double getTotalScore() {
+        return totalScore;
+    }
+
+    public void setTotalScore(double totalScore) {
+        this.totalScore = totalScore;
+    }
+
+    public double getMarksEwma() {
+        return marksEwma;
+    }
+
+    public void setMarksEwma(double marksEwma) {
+        this.marksEwma = marksEwma;
+    }
+
+    public long getMarksCount() {
+        return marksCount;
+    }
+
+    public void setMarksCount(long marksCount) {
+        this.marksCount = marksCount;
+    }
+
+    public boolean isLowAttendance() {
+        return lowAttendance;
+    }
+
+    public void setLowAttendance(boolean lowAttendance) {
+        this.lowAttendance = lowAttendance;
+    }
+
+    public boolean isMarksDrop() {
+        return marksDrop;
+    }
+
+    public void setMarksDrop(boolean marksDrop) {
+        this.marksDrop = marksDrop;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // Helper methods
+    public double getRollingAttendanceRate() {
+        return totalScore > 0 ? attendedScore / totalScore * 100 : 0.0;
+    }
+}
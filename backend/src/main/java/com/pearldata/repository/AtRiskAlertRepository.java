@@ -0,0 +1,39 @@
+package com.pearldata.repository;
+
+import com.pearldata.dto.AtRiskAlertDTO;
+import com.pearldata.entity.AtRiskAlert;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface AtRiskAlertRepository extends JpaRepository<AtRiskAlert, Long> {
+
+    // The student's unresolved alert of a type, if any
+    Optional<AtRiskAlert> findFirstByStudentIdAndAlertTypeAndResolvedAtIsNull(Long studentId, AtRiskAlert.AlertType alertType);
+
+    // One page of alerts with their students; filtering, sorting and paging run in the database
+    @Query(value = "SELECT new com.pearldata.dto.AtRiskAlertDTO(a.id, s.id, s.name, s.studentId, s.department, s.course, " +
+           "a.alertType, a.observedValue, a.referenceValue, a.eventId, e.title, a.raisedAt, a.resolvedAt) " +
+           "FROM AtRiskAlert a JOIN a.student s LEFT JOIN Event e ON e.id = a.eventId " +
+           "WHERE (:alertType IS NULL OR a.alertType = :alertType) " +
+           "AND (:activeOnly = false OR a.resolvedAt IS NULL) " +
+           "AND (:since IS NULL OR a.raisedAt >= :since) " +
+           "AND (:department IS NULL OR s.department = :department)",
+           countQuery = "SELECT COUNT(a) FROM AtRiskAlert a JOIN a.student s " +
+           "WHERE (:alertType IS NULL OR a.alertType = :alertType) " +
+           "AND (:activeOnly = false OR a.resolvedAt IS NULL) " +
+           "AND (:since IS NULL OR a.raisedAt >= :since) " +
+           "AND (:department IS NULL OR s.department = :department)")
+    Page<AtRiskAlertDTO> findAlerts(@Param("alertType") AtRiskAlert.AlertType alertType,
+                                    @Param("activeOnly") boolean activeOnly,
+                                    @Param("since") LocalDateTime since,
+                                    @Param("department") String department,
+                                    Pageable pageable);
+}
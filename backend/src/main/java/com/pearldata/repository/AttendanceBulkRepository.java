@@ -0,0 +1,443 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.Attendance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Set-based attendance writes that bypass the per-entity save path.
+ * Relies on the unique constraint on attendance(student_id, event_id). A table partitioned by marked_at
+ * cannot carry that constraint, so there the same writes take a per-event advisory lock and run as
+ * update-then-insert-missing statements instead of ON CONFLICT.
+ */
+@Repository
+public class AttendanceBulkRepository {
+
+    // Postgres caps a statement at 32767 bind parameters; at most 9 per row keeps us well below it
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final String UPSERT_PREFIX =
+            "INSERT INTO attendance (student_id, event_id, status, marks_obtained, max_marks, remarks, " +
+            "marked_by_faculty_id, is_marked, marked_at, updated_at) VALUES ";
+
+    private static final String UPSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, TRUE, ?, ?)";
+
+    private static final String UPSERT_SUFFIX =
+            " ON CONFLICT (student_id, event_id) DO UPDATE SET " +
+            "status = EXCLUDED.status, " +
+            "marks_obtained = EXCLUDED.marks_obtained, " +
+            "max_marks = EXCLUDED.max_marks, " +
+            "remarks = EXCLUDED.remarks, " +
+            "marked_by_faculty_id = EXCLUDED.marked_by_faculty_id, " +
+            "is_marked = TRUE, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private static final String UPDATE_PREFIX =
+            "UPDATE attendance a SET status = v.status, marks_obtained = v.marks_obtained, max_marks = v.max_marks, " +
+            "remarks = v.remarks, marked_by_faculty_id = v.marked_by_faculty_id, is_marked = TRUE, updated_at = ? FROM (VALUES ";
+
+    private static final String UPDATE_ROW = "(?::bigint, ?::varchar, ?::double precision, ?::double precision, ?::varchar, ?::bigint)";
+
+    private static final String UPDATE_SUFFIX =
+            ") AS v(id, status, marks_obtained, max_marks, remarks, marked_by_faculty_id) WHERE a.id = v.id";
+
+    // Default-ABSENT row for every active student, attributed to the event's faculty
+    private static final String MATERIALIZE_SHEETS_SQL =
+            "INSERT INTO attendance (student_id, event_id, status, marked_by_faculty_id, is_marked, marked_at, updated_at) " +
+            "SELECT s.id, e.id, ?, e.faculty_id, FALSE, ?, ? " +
+            "FROM events e CROSS JOIN students s " +
+            "WHERE e.id = ANY(?) AND s.is_active = TRUE " +
+            "ORDER BY s.id, e.id " +
+            "ON CONFLICT (student_id, event_id) DO NOTHING";
+
+    // Unmarked rows left on the sheet once the event is over; nobody took attendance for those students
+    private static final String DISCARD_UNMARKED_SQL =
+            "DELETE FROM attendance WHERE event_id = ANY(?) AND is_marked = FALSE";
+
+    // Rows written before the flag existed were all marked by faculty
+    private static final String BACKFILL_MARKED_SQL = "UPDATE attendance SET is_marked = TRUE WHERE is_marked IS NULL";
+
+    private static final String MARKED_DEFAULT_SQL =
+            "ALTER TABLE attendance ALTER COLUMN is_marked SET DEFAULT TRUE, ALTER COLUMN is_marked SET NOT NULL";
+
+    // Self check-ins fill in pre-created rows but never overwrite a mark the faculty has already made
+    private static final String CHECK_IN_SQL =
+            "INSERT INTO attendance (student_id, event_id, status, remarks, marked_by_faculty_id, is_marked, marked_at, updated_at) " +
+            "SELECT s.id, e.id, ?, ?, e.faculty_id, TRUE, ?, ? " +
+            "FROM events e CROSS JOIN unnest(?::bigint[]) AS c(student_id) " +
+            "JOIN students s ON s.id = c.student_id " +
+            "WHERE e.id = ? AND e.status <> 'CANCELLED' " +
+            "ON CONFLICT (student_id, event_id) DO UPDATE SET " +
+            "status = EXCLUDED.status, remarks = EXCLUDED.remarks, is_marked = TRUE, updated_at = EXCLUDED.updated_at " +
+            "WHERE attendance.is_marked = FALSE";
+
+    // Partitioned variants: one UPDATE of existing rows plus an INSERT of the rest, under the event lock
+    private static final String PARTITIONED_UPSERT_PREFIX =
+            "WITH v(student_id, event_id, status, marks_obtained, max_marks, remarks, marked_by_faculty_id) AS (VALUES ";
+
+    private static final String PARTITIONED_UPSERT_ROW =
+            "(?::bigint, ?::bigint, ?::varchar, ?::double precision, ?::double precision, ?::varchar, ?::bigint)";
+
+    private static final String PARTITIONED_UPSERT_SUFFIX =
+            "), upd AS (UPDATE attendance a SET status = v.status, marks_obtained = v.marks_obtained, " +
+            "max_marks = v.max_marks, remarks = v.remarks, marked_by_faculty_id = v.marked_by_faculty_id, " +
+            "is_marked = TRUE, updated_at = ? FROM v WHERE a.student_id = v.student_id AND a.event_id = v.event_id " +
+            "RETURNING a.student_id, a.event_id), " +
+            "ins AS (INSERT INTO attendance (student_id, event_id, status, marks_obtained, max_marks, remarks, " +
+            "marked_by_faculty_id, is_marked, marked_at, updated_at) " +
+            "SELECT v.student_id, v.event_id, v.status, v.marks_obtained, v.max_marks, v.remarks, " +
+            "v.marked_by_faculty_id, TRUE, ?, ? FROM v " +
+            "WHERE NOT EXISTS (SELECT 1 FROM upd WHERE upd.student_id = v.student_id AND upd.event_id = v.event_id) " +
+            "RETURNING 1) " +
+            "SELECT (SELECT count(*) FROM upd) + (SELECT count(*) FROM ins)";
+
+    private static final String PARTITIONED_MATERIALIZE_SHEETS_SQL =
+            "INSERT INTO attendance (student_id, event_id, status, marked_by_faculty_id, is_marked, marked_at, updated_at) " +
+            "SELECT s.id, e.id, ?, e.faculty_id, FALSE, ?, ? " +
+            "FROM events e CROSS JOIN students s " +
+            "WHERE e.id = ANY(?) AND s.is_active = TRUE " +
+            "AND NOT EXISTS (SELECT 1 FROM attendance a WHERE a.event_id = e.id AND a.student_id = s.id) " +
+            "ORDER BY s.id, e.id";
+
+    private static final String PARTITIONED_CHECK_IN_SQL =
+            "WITH c AS (SELECT s.id AS student_id, e.id AS event_id, e.faculty_id " +
+            "FROM events e CROSS JOIN unnest(?::bigint[]) AS x(student_id) " +
+            "JOIN students s ON s.id = x.student_id " +
+            "WHERE e.id = ? AND e.status <> 'CANCELLED'), " +
+            "upd AS (UPDATE attendance a SET status = ?, remarks = ?, is_marked = TRUE, updated_at = ? " +
+            "FROM c WHERE a.student_id = c.student_id AND a.event_id = c.event_id AND a.is_marked = FALSE RETURNING a.id) " +
+            "INSERT INTO attendance (student_id, event_id, status, remarks, marked_by_faculty_id, is_marked, marked_at, updated_at) " +
+            "SELECT c.student_id, c.event_id, ?, ?, c.faculty_id, TRUE, ?, ? FROM c " +
+            "WHERE NOT EXISTS (SELECT 1 FROM attendance a WHERE a.student_id = c.student_id AND a.event_id = c.event_id)";
+
+    // The unique key every ON CONFLICT (student_id, event_id) upsert relies on
+    private static final String HAS_STUDENT_EVENT_KEY_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_attendance_student_event' " +
+            "AND conrelid = 'attendance'::regclass)";
+
+    // Serializes instances starting at the same time; the lock is released when the transaction ends
+    private static final String LOCK_SCHEMA_SQL = "SELECT pg_advisory_xact_lock(?)";
+
+    // Keep one row per (student, event): a marked one before an unmarked one, then the most recently updated
+    private static final String DELETE_DUPLICATES_SQL =
+            "DELETE FROM attendance a USING (SELECT id, row_number() OVER (PARTITION BY student_id, event_id " +
+            "ORDER BY is_marked DESC, updated_at DESC NULLS LAST, id DESC) AS rn FROM attendance) d " +
+            "WHERE a.id = d.id AND d.rn > 1";
+
+    private static final String ADD_STUDENT_EVENT_KEY_SQL =
+            "ALTER TABLE attendance ADD CONSTRAINT uk_attendance_student_event UNIQUE (student_id, event_id)";
+
+    // Serializes attendance inserts per event when there is no unique constraint to do it
+    private static final String LOCK_EVENT_SQL = "SELECT pg_advisory_xact_lock(?, ?)";
+
+    private static final int EVENT_LOCK_SPACE = 0x41545444;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AttendancePartitionRepository attendancePartitionRepository;
+
+    // Insert or update all rows with one multi-row INSERT ... ON CONFLICT statement per chunk
+    public int upsertAll(List<AttendanceUpsert> unordered) {
+        if (unordered.isEmpty()) {
+            return 0;
+        }
+        List<AttendanceUpsert> rows = inStudentOrder(unordered, Function.identity());
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (attendancePartitionRepository.isPartitioned()) {
+            return transactionTemplate.execute(status -> {
+                lockEvents(rows.stream().map(AttendanceUpsert::getEventId).collect(Collectors.toList()));
+                int affected = 0;
+                for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+                    List<AttendanceUpsert> chunk = rows.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, rows.size()));
+                    // Updated plus inserted rows, the same count the ON CONFLICT statement below reports
+                    affected += jdbcTemplate.query(buildPartitionedUpsertSql(chunk.size()), ps -> bindPartitionedRows(ps, chunk, now),
+                            rs -> rs.next() ? rs.getInt(1) : 0);
+                }
+                return affected;
+            });
+        }
+
+        int affected = 0;
+
+        for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<AttendanceUpsert> chunk = rows.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, rows.size()));
+            affected += jdbcTemplate.update(buildUpsertSql(chunk.size()), ps -> bindRows(ps, chunk, now));
+        }
+
+        return affected;
+    }
+
+    // Update existing rows by attendance ID with one UPDATE ... FROM (VALUES ...) statement per chunk
+    public int updateAll(Map<Long, AttendanceUpsert> rowsByAttendanceId) {
+        if (rowsByAttendanceId.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<Long, AttendanceUpsert>> entries = inStudentOrder(rowsByAttendanceId.entrySet(), Map.Entry::getValue);
+        int affected = 0;
+
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Map.Entry<Long, AttendanceUpsert>> chunk = entries.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, entries.size()));
+            affected += jdbcTemplate.update(buildUpdateSql(chunk.size()), ps -> {
+                int index = 1;
+                ps.setTimestamp(index++, now);
+                for (Map.Entry<Long, AttendanceUpsert> entry : chunk) {
+                    AttendanceUpsert row = entry.getValue();
+                    ps.setLong(index++, entry.getKey());
+                    ps.setString(index++, row.getStatus().name());
+                    setNullableDouble(ps, index++, row.getMarksObtained());
+                    setNullableDouble(ps, index++, row.getMaxMarks());
+                    ps.setString(index++, row.getRemarks());
+                    ps.setLong(index++, row.getMarkedByFacultyId());
+                }
+            });
+        }
+
+        return affected;
+    }
+
+    // Pre-create the attendance sheet of each event with one default-ABSENT row per active student
+    public int materializeSheets(Collection<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (attendancePartitionRepository.isPartitioned()) {
+            return transactionTemplate.execute(status -> {
+                lockEvents(eventIds);
+                return materializeSheets(PARTITIONED_MATERIALIZE_SHEETS_SQL, eventIds, now);
+            });
+        }
+        return materializeSheets(MATERIALIZE_SHEETS_SQL, eventIds, now);
+    }
+
+    private int materializeSheets(String sql, Collection<Long> eventIds, Timestamp now) {
+        return jdbcTemplate.update(sql, ps -> {
+            ps.setString(1, Attendance.AttendanceStatus.ABSENT.name());
+            ps.setTimestamp(2, now);
+            ps.setTimestamp(3, now);
+            ps.setArray(4, ps.getConnection().createArrayOf("bigint", eventIds.toArray()));
+        });
+    }
+
+    // Remove the rows of the given events that the faculty never marked
+    public int discardUnmarked(Collection<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(DISCARD_UNMARKED_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", eventIds.toArray())));
+    }
+
+    /**
+     * Make sure the unique key on (student_id, event_id) exists. It is added here rather than by ddl-auto, which
+     * cannot add it while duplicate rows are left over from the old find-then-save path and would try to add it
+     * to a partitioned table too. Duplicates are removed first, keeping the marked, most recently updated row.
+     * Returns the number of rows removed. Must run inside a transaction. The partitioned table has no such key
+     * and serializes writers per event instead, so it is left alone.
+     */
+    public int ensureStudentEventKey() {
+        if (attendancePartitionRepository.isPartitioned()
+                || Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_STUDENT_EVENT_KEY_SQL, Boolean.class))) {
+            return 0;
+        }
+        jdbcTemplate.queryForList(LOCK_SCHEMA_SQL, EVENT_LOCK_SPACE);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_STUDENT_EVENT_KEY_SQL, Boolean.class))) {
+            return 0;
+        }
+        int removed = jdbcTemplate.update(DELETE_DUPLICATES_SQL);
+        jdbcTemplate.execute(ADD_STUDENT_EVENT_KEY_SQL);
+        return removed;
+    }
+
+    // Make is_marked a non-null flag so readers can filter on is_marked = TRUE; returns the rows backfilled
+    public int backfillMarkedFlag() {
+        int backfilled = jdbcTemplate.update(BACKFILL_MARKED_SQL);
+        jdbcTemplate.execute(MARKED_DEFAULT_SQL);
+        return backfilled;
+    }
+
+    // Record the students as present for one event in a single statement, attributed to the event's faculty
+    public int insertCheckIns(Long eventId, Collection<Long> studentIds, String remarks) {
+        if (studentIds.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (attendancePartitionRepository.isPartitioned()) {
+            return transactionTemplate.execute(status -> {
+                lockEvents(List.of(eventId));
+                return jdbcTemplate.update(PARTITIONED_CHECK_IN_SQL, ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", studentIds.stream().sorted().toArray()));
+                    ps.setLong(2, eventId);
+                    ps.setString(3, Attendance.AttendanceStatus.PRESENT.name());
+                    ps.setString(4, remarks);
+                    ps.setTimestamp(5, now);
+                    ps.setString(6, Attendance.AttendanceStatus.PRESENT.name());
+                    ps.setString(7, remarks);
+                    ps.setTimestamp(8, now);
+                    ps.setTimestamp(9, now);
+                });
+            });
+        }
+        return jdbcTemplate.update(CHECK_IN_SQL, ps -> {
+            ps.setString(1, Attendance.AttendanceStatus.PRESENT.name());
+            ps.setString(2, remarks);
+            ps.setTimestamp(3, now);
+            ps.setTimestamp(4, now);
+            ps.setArray(5, ps.getConnection().createArrayOf("bigint", studentIds.stream().sorted().toArray()));
+            ps.setLong(6, eventId);
+        });
+    }
+
+    /**
+     * Each written row also updates its student's row in student_attendance_stats (by trigger).
+     * Writing in student ID order keeps two sheets with overlapping students from deadlocking on those rows.
+     */
+    private static <T> List<T> inStudentOrder(Collection<T> rows, Function<T, AttendanceUpsert> upsertOf) {
+        List<T> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing(row -> upsertOf.apply(row).getStudentId()));
+        return sorted;
+    }
+
+    private String buildUpsertSql(int rowCount) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX.length() + rowCount * (UPSERT_ROW.length() + 2) + UPSERT_SUFFIX.length());
+        sql.append(UPSERT_PREFIX);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(UPSERT_ROW);
+        }
+        sql.append(UPSERT_SUFFIX);
+        return sql.toString();
+    }
+
+    // Take the per-event locks in ID order so concurrent writers cannot deadlock
+    private void lockEvents(Collection<Long> eventIds) {
+        eventIds.stream()
+                .distinct()
+                .sorted()
+                .forEach(eventId -> jdbcTemplate.queryForList(LOCK_EVENT_SQL, EVENT_LOCK_SPACE, (int) (eventId ^ (eventId >>> 32))));
+    }
+
+    private String buildPartitionedUpsertSql(int rowCount) {
+        StringBuilder sql = new StringBuilder(PARTITIONED_UPSERT_PREFIX.length() + rowCount * (PARTITIONED_UPSERT_ROW.length() + 2)
+                + PARTITIONED_UPSERT_SUFFIX.length());
+        sql.append(PARTITIONED_UPSERT_PREFIX);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(PARTITIONED_UPSERT_ROW);
+        }
+        sql.append(PARTITIONED_UPSERT_SUFFIX);
+        return sql.toString();
+    }
+
+    private void bindPartitionedRows(PreparedStatement ps, List<AttendanceUpsert> rows, Timestamp now) throws SQLException {
+        int index = 1;
+        for (AttendanceUpsert row : rows) {
+            ps.setLong(index++, row.getStudentId());
+            ps.setLong(index++, row.getEventId());
+            ps.setString(index++, row.getStatus().name());
+            setNullableDouble(ps, index++, row.getMarksObtained());
+            setNullableDouble(ps, index++, row.getMaxMarks());
+            ps.setString(index++, row.getRemarks());
+            ps.setLong(index++, row.getMarkedByFacultyId());
+        }
+        ps.setTimestamp(index++, now);
+        ps.setTimestamp(index++, now);
+        ps.setTimestamp(index, now);
+    }
+
+    private String buildUpdateSql(int rowCount) {
+        StringBuilder sql = new StringBuilder(UPDATE_PREFIX.length() + rowCount * (UPDATE_ROW.length() + 2) + UPDATE_SUFFIX.length());
+        sql.append(UPDATE_PREFIX);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(UPDATE_ROW);
+        }
+        sql.append(UPDATE_SUFFIX);
+        return sql.toString();
+    }
+
+    private void bindRows(PreparedStatement ps, List<AttendanceUpsert> rows, Timestamp now) throws SQLException {
+        int index = 1;
+        for (AttendanceUpsert row : rows) {
+            ps.setLong(index++, row.getStudentId());
+            ps.setLong(index++, row.getEventId());
+            ps.setString(index++, row.getStatus().name());
+            setNullableDouble(ps, index++, row.getMarksObtained());
+            setNullableDouble(ps, index++, row.getMaxMarks());
+            ps.setString(index++, row.getRemarks());
+            ps.setLong(index++, row.getMarkedByFacultyId());
+            ps.setTimestamp(index++, now);
+            ps.setTimestamp(index++, now);
+        }
+    }
+
+    private void setNullableDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    // One attendance row to be written by upsertAll
+    public static class AttendanceUpsert {
+        private final Long studentId;
+        private final Long eventId;
+        private final Attendance.AttendanceStatus status;
+        private final Double marksObtained;
+        private final Double maxMarks;
+        private final String remarks;
+        private final Long markedByFacultyId;
+
+        public AttendanceUpsert(Long studentId, Long eventId, Attendance.AttendanceStatus status,
+                                Double marksObtained, Double maxMarks, String remarks, Long markedByFacultyId) {
+            this.studentId = studentId;
+            this.eventId = eventId;
+            this.status = status;
+            this.marksObtained = marksObtained;
+            this.maxMarks = maxMarks;
+            this.remarks = remarks;
+            this.markedByFacultyId = markedByFacultyId;
+        }
+
+        // Getters
+        public Long getStudentId() { return studentId; }
+        public Long getEventId() { return eventId; }
+        public Attendance.AttendanceStatus getStatus() { return status; }
+        public Double getMarksObtained() { return marksObtained; }
+        public Double getMaxMarks() { return maxMarks; }
+        public String getRemarks() { return remarks; }
+        public Long getMarkedByFacultyId() { return markedByFacultyId; }
+    }
+}
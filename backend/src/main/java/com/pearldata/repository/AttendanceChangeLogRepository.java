@@ -0,0 +1,186 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.Attendance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Feed of attendance changes for streaming consumers such as AtRiskDetector.
+ * A row trigger on attendance appends one entry per insert, update and delete, with the old and new
+ * values, in the writer's own transaction; so every write path is covered, and an entry exists exactly
+ * when its write committed. Consumers take entries in order and delete them once processed.
+ * Unmarked sheet rows are not attendance yet: creating and discarding them is filtered out by the
+ * triggers' WHEN clauses, so whole-roster sheets cost no log entries and no function calls.
+ */
+@Repository
+public class AttendanceChangeLogRepository {
+
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS attendance_change_log (" +
+            "id BIGSERIAL PRIMARY KEY, student_id BIGINT NOT NULL, event_id BIGINT NOT NULL, " +
+            "old_status VARCHAR(20), new_status VARCHAR(20), old_marked BOOLEAN NOT NULL, new_marked BOOLEAN NOT NULL, " +
+            "old_marks DOUBLE PRECISION, new_marks DOUBLE PRECISION, max_marks DOUBLE PRECISION, " +
+            "changed_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP)";
+
+    // Only changes that touch marked attendance reach this (see the WHEN clauses); archiving skips the log like it skips the totals
+    private static final String CREATE_TRIGGER_FUNCTION_SQL =
+            "CREATE OR REPLACE FUNCTION attendance_change_log_on_change() RETURNS trigger LANGUAGE plpgsql AS $$ " +
+            "BEGIN " +
+            "IF current_setting('pearldata.skip_attendance_stats', true) = 'on' THEN RETURN NULL; END IF; " +
+            "IF TG_OP = 'INSERT' THEN " +
+            "INSERT INTO attendance_change_log (student_id, event_id, old_status, new_status, old_marked, new_marked, " +
+            "old_marks, new_marks, max_marks) VALUES (NEW.student_id, NEW.event_id, NULL, NEW.status, FALSE, " +
+            "COALESCE(NEW.is_marked, TRUE), NULL, NEW.marks_obtained, NEW.max_marks); " +
+            "ELSIF TG_OP = 'UPDATE' THEN " +
+            "INSERT INTO attendance_change_log (student_id, event_id, old_status, new_status, old_marked, new_marked, " +
+            "old_marks, new_marks, max_marks) VALUES (NEW.student_id, NEW.event_id, OLD.status, NEW.status, " +
+            "COALESCE(OLD.is_marked, TRUE), COALESCE(NEW.is_marked, TRUE), OLD.marks_obtained, NEW.marks_obtained, NEW.max_marks); " +
+            "ELSE " +
+            "INSERT INTO attendance_change_log (student_id, event_id, old_status, new_status, old_marked, new_marked, " +
+            "old_marks, new_marks, max_marks) VALUES (OLD.student_id, OLD.event_id, OLD.status, NULL, " +
+            "COALESCE(OLD.is_marked, TRUE), FALSE, OLD.marks_obtained, NULL, OLD.max_marks); " +
+            "END IF; " +
+            "RETURN NULL; " +
+            "END $$";
+
+    // The single trigger of earlier versions, replaced by the three below
+    private static final String DROP_LEGACY_TRIGGER_SQL = "DROP TRIGGER IF EXISTS trg_attendance_change_log ON attendance";
+
+    private static final String[] DROP_TRIGGER_SQL = {
+            "DROP TRIGGER IF EXISTS trg_attendance_change_log_insert ON attendance",
+            "DROP TRIGGER IF EXISTS trg_attendance_change_log_update ON attendance",
+            "DROP TRIGGER IF EXISTS trg_attendance_change_log_delete ON attendance"
+    };
+
+    private static final String[] CREATE_TRIGGER_SQL = {
+            "CREATE TRIGGER trg_attendance_change_log_insert AFTER INSERT ON attendance " +
+            "FOR EACH ROW WHEN (NEW.is_marked) EXECUTE FUNCTION attendance_change_log_on_change()",
+            "CREATE TRIGGER trg_attendance_change_log_update AFTER UPDATE ON attendance " +
+            "FOR EACH ROW WHEN ((OLD.is_marked OR NEW.is_marked) AND (OLD.status IS DISTINCT FROM NEW.status " +
+            "OR OLD.is_marked IS DISTINCT FROM NEW.is_marked OR OLD.marks_obtained IS DISTINCT FROM NEW.marks_obtained)) " +
+            "EXECUTE FUNCTION attendance_change_log_on_change()",
+            "CREATE TRIGGER trg_attendance_change_log_delete AFTER DELETE ON attendance " +
+            "FOR EACH ROW WHEN (OLD.is_marked) EXECUTE FUNCTION attendance_change_log_on_change()"
+    };
+
+    // Other instances skip entries another one is processing, so each entry is applied once
+    private static final String NEXT_BATCH_SQL =
+            "SELECT id, student_id, event_id, old_status, new_status, old_marked, new_marked, old_marks, new_marks, max_marks " +
+            "FROM attendance_change_log ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String DELETE_BY_IDS_SQL = "DELETE FROM attendance_change_log WHERE id = ANY(?)";
+
+    private static final String IS_STATE_EMPTY_SQL = "SELECT NOT EXISTS (SELECT 1 FROM student_risk_state)";
+
+    // Start every student's window from their totals so far, capped at the window size
+    private static final String SEED_STATE_SQL =
+            "INSERT INTO student_risk_state (student_id, attended_score, total_score, marks_ewma, marks_count, low_attendance, marks_drop, updated_at) " +
+            "SELECT s.student_id, " +
+            "(s.present_count + s.late_count) * LEAST(s.total_count, ?) * 1.0 / s.total_count, LEAST(s.total_count, ?), " +
+            "COALESCE(m.average, 0), COALESCE(m.count, 0), FALSE, FALSE, LOCALTIMESTAMP " +
+            "FROM student_attendance_stats s LEFT JOIN (" +
+            "SELECT student_id, AVG(CASE WHEN max_marks > 0 THEN marks_obtained * 100.0 / max_marks ELSE marks_obtained END) AS average, " +
+            "COUNT(*) AS count FROM attendance WHERE marks_obtained IS NOT NULL GROUP BY student_id) m " +
+            "ON m.student_id = s.student_id WHERE s.total_count > 0 " +
+            "ON CONFLICT (student_id) DO NOTHING";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // One logged change; statuses are null and marked is false on the side of an insert or delete
+    public static class Change {
+        private final long id;
+        private final long studentId;
+        private final long eventId;
+        private final Attendance.AttendanceStatus oldStatus;
+        private final Attendance.AttendanceStatus newStatus;
+        private final boolean oldMarked;
+        private final boolean newMarked;
+        private final Double oldMarks;
+        private final Double newMarks;
+        private final Double maxMarks;
+
+        public Change(long id, long studentId, long eventId, Attendance.AttendanceStatus oldStatus,
+                      Attendance.AttendanceStatus newStatus, boolean oldMarked, boolean newMarked,
+                      Double oldMarks, Double newMarks, Double maxMarks) {
+            this.id = id;
+            this.studentId = studentId;
+            this.eventId = eventId;
+            this.oldStatus = oldStatus;
+            this.newStatus = newStatus;
+            this.oldMarked = oldMarked;
+            this.newMarked = newMarked;
+            this.oldMarks = oldMarks;
+            this.newMarks = newMarks;
+            this.maxMarks = maxMarks;
+        }
+
+        // Getters
+        public long getId() { return id; }
+        public long getStudentId() { return studentId; }
+        public long getEventId() { return eventId; }
+        public Attendance.AttendanceStatus getOldStatus() { return oldStatus; }
+        public Attendance.AttendanceStatus getNewStatus() { return newStatus; }
+        public boolean isOldMarked() { return oldMarked; }
+        public boolean isNewMarked() { return newMarked; }
+        public Double getOldMarks() { return oldMarks; }
+        public Double getNewMarks() { return newMarks; }
+        public Double getMaxMarks() { return maxMarks; }
+    }
+
+    // (Re)create the log table and its trigger; must run inside a transaction
+    public void installTrigger() {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+        jdbcTemplate.execute(CREATE_TRIGGER_FUNCTION_SQL);
+        jdbcTemplate.execute(DROP_LEGACY_TRIGGER_SQL);
+        for (String sql : DROP_TRIGGER_SQL) {
+            jdbcTemplate.execute(sql);
+        }
+        for (String sql : CREATE_TRIGGER_SQL) {
+            jdbcTemplate.execute(sql);
+        }
+    }
+
+    // The oldest unprocessed changes, locked until the current transaction ends
+    public List<Change> lockNextBatch(int limit) {
+        return jdbcTemplate.query(NEXT_BATCH_SQL, (rs, rowNum) -> new Change(
+                rs.getLong("id"),
+                rs.getLong("student_id"),
+                rs.getLong("event_id"),
+                statusOf(rs.getString("old_status")),
+                statusOf(rs.getString("new_status")),
+                rs.getBoolean("old_marked"),
+                rs.getBoolean("new_marked"),
+                rs.getObject("old_marks", Double.class),
+                rs.getObject("new_marks", Double.class),
+                rs.getObject("max_marks", Double.class)), limit);
+    }
+
+    // Remove processed changes; must run in the transaction that locked them
+    public void deleteAll(List<Change> changes) {
+        Object[] ids = changes.stream().map(Change::getId).toArray();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(DELETE_BY_IDS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            return ps;
+        });
+    }
+
+    // True until risk state exists, e.g. right after the detector was introduced
+    public boolean isStateEmpty() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_STATE_EMPTY_SQL, Boolean.class));
+    }
+
+    // Seed the risk state of every student with attendance; returns the number of students
+    public int seedState(int window) {
+        return jdbcTemplate.update(SEED_STATE_SQL, window, window);
+    }
+
+    private static Attendance.AttendanceStatus statusOf(String status) {
+        return status != null ? Attendance.AttendanceStatus.valueOf(status) : null;
+    }
+}
@@ -0,0 +1,108 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.Attendance;
+import com.pearldata.entity.Event;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+
+/**
+ * Streams attendance facts and their dimensions as plain values, without entities, for in-memory
+ * read models. Full scans use a cursor so the table is never held in memory as a result set;
+ * they must run inside a transaction for the driver to honour the fetch size.
+ */
+@Repository
+public class AttendanceFactRepository {
+
+    private static final int FETCH_SIZE = 10000;
+
+    // Unmarked rows of a pre-created sheet are not facts yet
+    private static final String ALL_FACTS_SQL =
+            "SELECT student_id, event_id, status, marks_obtained, marked_at FROM attendance WHERE is_marked = TRUE";
+
+    private static final String FACTS_BY_EVENTS_SQL =
+            "SELECT student_id, event_id, status, marks_obtained, marked_at FROM attendance " +
+            "WHERE event_id = ANY(?) AND is_marked = TRUE";
+
+    private static final String ALL_STUDENTS_SQL = "SELECT id, department, course FROM students";
+
+    private static final String STUDENTS_BY_IDS_SQL = "SELECT id, department, course FROM students WHERE id = ANY(?)";
+
+    private static final String ALL_EVENTS_SQL = "SELECT id, faculty_id, event_type FROM events";
+
+    private static final String EVENTS_BY_IDS_SQL = "SELECT id, faculty_id, event_type FROM events WHERE id = ANY(?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // One attendance row; marks are NaN when not recorded
+    @FunctionalInterface
+    public interface FactConsumer {
+        void accept(long studentId, long eventId, Attendance.AttendanceStatus status, double marksObtained, Timestamp markedAt);
+    }
+
+    @FunctionalInterface
+    public interface StudentConsumer {
+        void accept(long id, String department, String course);
+    }
+
+    @FunctionalInterface
+    public interface EventConsumer {
+        void accept(long id, long facultyId, Event.EventType eventType);
+    }
+
+    public void forEachFact(FactConsumer consumer) {
+        queryFacts(ALL_FACTS_SQL, null, consumer);
+    }
+
+    public void forEachFactOfEvents(Collection<Long> eventIds, FactConsumer consumer) {
+        queryFacts(FACTS_BY_EVENTS_SQL, eventIds, consumer);
+    }
+
+    public void forEachStudent(StudentConsumer consumer) {
+        queryStudents(ALL_STUDENTS_SQL, null, consumer);
+    }
+
+    public void forEachStudent(Collection<Long> studentIds, StudentConsumer consumer) {
+        queryStudents(STUDENTS_BY_IDS_SQL, studentIds, consumer);
+    }
+
+    public void forEachEvent(EventConsumer consumer) {
+        queryEvents(ALL_EVENTS_SQL, null, consumer);
+    }
+
+    public void forEachEvent(Collection<Long> eventIds, EventConsumer consumer) {
+        queryEvents(EVENTS_BY_IDS_SQL, eventIds, consumer);
+    }
+
+    private void queryFacts(String sql, Collection<Long> ids, FactConsumer consumer) {
+        jdbcTemplate.query(con -> prepare(con.prepareStatement(sql), ids), rs -> {
+            double marks = rs.getDouble(4);
+            consumer.accept(rs.getLong(1), rs.getLong(2), Attendance.AttendanceStatus.valueOf(rs.getString(3)),
+                    rs.wasNull() ? Double.NaN : marks, rs.getTimestamp(5));
+        });
+    }
+
+    private void queryStudents(String sql, Collection<Long> ids, StudentConsumer consumer) {
+        jdbcTemplate.query(con -> prepare(con.prepareStatement(sql), ids),
+                rs -> consumer.accept(rs.getLong(1), rs.getString(2), rs.getString(3)));
+    }
+
+    private void queryEvents(String sql, Collection<Long> ids, EventConsumer consumer) {
+        jdbcTemplate.query(con -> prepare(con.prepareStatement(sql), ids),
+                rs -> consumer.accept(rs.getLong(1), rs.getLong(2), Event.EventType.valueOf(rs.getString(3))));
+    }
+
+    private PreparedStatement prepare(PreparedStatement ps, Collection<Long> ids) throws SQLException {
+        ps.setFetchSize(FETCH_SIZE);
+        if (ids != null) {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray()));
+        }
+        return ps;
+    }
+}
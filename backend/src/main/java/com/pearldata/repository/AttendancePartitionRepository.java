@@ -0,0 +1,92 @@
+package com.pearldata.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog queries and DDL for the monthly range partitions of attendance (by marked_at).
+ * Only meaningful once the table has been converted with db/attendance-partitioning.sql.
+ */
+@Repository
+public class AttendancePartitionRepository {
+
+    public static final String PARENT_TABLE = "attendance";
+
+    private static final String PARTITION_PREFIX = PARENT_TABLE + "_p";
+
+    private static final String IS_PARTITIONED_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid " +
+            "WHERE c.relname = ? AND pg_table_is_visible(c.oid))";
+
+    private static final String LIST_PARTITIONS_SQL =
+            "SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bounds, " +
+            "COALESCE(s.n_live_tup, 0) AS estimated_rows " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+            "LEFT JOIN pg_stat_user_tables s ON s.relid = c.oid " +
+            "WHERE p.relname = ? AND pg_table_is_visible(p.oid) ORDER BY c.relname";
+
+    private static final String LIST_MONTHLY_PARTITION_NAMES_SQL =
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = ? AND pg_table_is_visible(p.oid) AND c.relname LIKE ? ORDER BY c.relname";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean partitioned;
+
+    // Whether attendance is a partitioned table; checked once since conversion needs a restart
+    public boolean isPartitioned() {
+        Boolean result = partitioned;
+        if (result == null) {
+            result = Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Boolean.class, PARENT_TABLE));
+            partitioned = result;
+        }
+        return result;
+    }
+
+    // Name, bound expression and estimated row count of every attached partition
+    public List<Map<String, Object>> listPartitions() {
+        return jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, PARENT_TABLE);
+    }
+
+    // Names of the attached monthly partitions, oldest first
+    public List<String> listMonthlyPartitionNames() {
+        return jdbcTemplate.queryForList(LIST_MONTHLY_PARTITION_NAMES_SQL, String.class, PARENT_TABLE, PARTITION_PREFIX + "%");
+    }
+
+    // Create the partition for one month if it does not exist yet
+    public void createMonthlyPartition(YearMonth month) {
+        // DDL cannot take bind parameters; every value here is derived from YearMonth
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF " + PARENT_TABLE +
+                " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    // Whether a monthly partition still holds any attendance
+    public boolean hasRows(YearMonth month) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + partitionName(month) + ")", Boolean.class));
+    }
+
+    // Detach a monthly partition; the detached table keeps whatever rows it still has
+    public void detachMonthlyPartition(YearMonth month) {
+        jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partitionName(month));
+    }
+
+    public static String partitionName(YearMonth month) {
+        return String.format("%s%04d_%02d", PARTITION_PREFIX, month.getYear(), month.getMonthValue());
+    }
+
+    // Inverse of partitionName, or null for partitions that are not monthly (e.g. the default partition)
+    public static YearMonth monthOf(String partitionName) {
+        if (!partitionName.matches(PARTITION_PREFIX + "\\d{4}_\\d{2}")) {
+            return null;
+        }
+        String suffix = partitionName.substring(PARTITION_PREFIX.length());
+        return YearMonth.of(Integer.parseInt(suffix.substring(0, 4)), Integer.parseInt(suffix.substring(5)));
+    }
+}
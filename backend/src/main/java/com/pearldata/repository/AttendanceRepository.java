@@ -7,16 +7,18 @@ import com.pearldata.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
+public interface AttendanceRepository extends JpaRepository<Attendance, Long>, AttendanceRepositoryCustom {
 
     // Find attendance by student
     List<Attendance> findByStudent(Student student);
@@ -27,6 +29,14 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     // Find attendance by student and event
     Optional<Attendance> findByStudentAndEvent(Student student, Event event);
     
+    // Find current attendance values for an event without loading entities (student id, status, marks, max marks, remarks, faculty id, attendance id, marked flag)
+    @Query("SELECT a.student.id, a.status, a.marksObtained, a.maxMarks, a.remarks, a.markedByFaculty.id, a.id, a.isMarked FROM Attendance a WHERE a.event = :event")
+    List<Object[]> findAttendanceSnapshotByEvent(@Param("event") Event event);
+    
+    // Find pre-created rows the faculty has not marked yet
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.student WHERE a.event = :event AND a.isMarked = false ORDER BY a.student.name")
+    List<Attendance> findUnmarkedByEvent(@Param("event") Event event);
+    
     // Find attendance by marked by faculty
     List<Attendance> findByMarkedByFaculty(User faculty);
     
@@ -39,44 +49,38 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     // Find attendance by event and status
     List<Attendance> findByEventAndStatus(Event event, Attendance.AttendanceStatus status);
     
-    // Find attendance by student with pagination
-    Page<Attendance> findByStudent(Student student, Pageable pageable);
+    // Find marked attendance by student with pagination
+    Page<Attendance> findByStudentAndIsMarkedTrue(Student student, Pageable pageable);
     
-    // Find attendance by event with pagination
-    Page<Attendance> findByEvent(Event event, Pageable pageable);
+    // Find marked attendance by event with pagination
+    Page<Attendance> findByEventAndIsMarkedTrue(Event event, Pageable pageable);
     
-    // Find attendance by marked by faculty with pagination
-    Page<Attendance> findByMarkedByFaculty(User faculty, Pageable pageable);
+    // Find marked attendance by marked by faculty with pagination
+    Page<Attendance> findByMarkedByFacultyAndIsMarkedTrue(User faculty, Pageable pageable);
     
     // Find attendance between date range
-    @Query("SELECT a FROM Attendance a WHERE a.markedAt BETWEEN :startDate AND :endDate ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a WHERE a.isMarked = true AND a.markedAt BETWEEN :startDate AND :endDate ORDER BY a.markedAt DESC")
     List<Attendance> findAttendanceBetweenDates(@Param("startDate") LocalDateTime startDate, 
                                                 @Param("endDate") LocalDateTime endDate);
     
     // Find attendance by student between date range
-    @Query("SELECT a FROM Attendance a WHERE a.student = :student AND a.markedAt BETWEEN :startDate AND :endDate ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a WHERE a.student = :student AND a.isMarked = true AND a.markedAt BETWEEN :startDate AND :endDate ORDER BY a.markedAt DESC")
     List<Attendance> findAttendanceByStudentBetweenDates(@Param("student") Student student,
                                                          @Param("startDate") LocalDateTime startDate, 
                                                          @Param("endDate") LocalDateTime endDate);
     
     // Find attendance by faculty between date range
-    @Query("SELECT a FROM Attendance a WHERE a.markedByFaculty = :faculty AND a.markedAt BETWEEN :startDate AND :endDate ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a WHERE a.markedByFaculty = :faculty AND a.isMarked = true AND a.markedAt BETWEEN :startDate AND :endDate ORDER BY a.markedAt DESC")
     List<Attendance> findAttendanceByFacultyBetweenDates(@Param("faculty") User faculty,
                                                          @Param("startDate") LocalDateTime startDate, 
                                                          @Param("endDate") LocalDateTime endDate);
     
     // Find attendance by event between date range
-    @Query("SELECT a FROM Attendance a WHERE a.event = :event AND a.markedAt BETWEEN :startDate AND :endDate ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a WHERE a.event = :event AND a.isMarked = true AND a.markedAt BETWEEN :startDate AND :endDate ORDER BY a.markedAt DESC")
     List<Attendance> findAttendanceByEventBetweenDates(@Param("event") Event event,
                                                        @Param("startDate") LocalDateTime startDate, 
                                                        @Param("endDate") LocalDateTime endDate);
     
-    // Count attendance by student and status
-    long countByStudentAndStatus(Student student, Attendance.AttendanceStatus status);
-    
-    // Count attendance by event and status
-    long countByEventAndStatus(Event event, Attendance.AttendanceStatus status);
-    
     // Count total attendance by student
     long countByStudent(Student student);
     
@@ -92,7 +96,7 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
            "SUM(CASE WHEN a.status = 'ABSENT' THEN 1 ELSE 0 END) as absentCount, " +
            "SUM(CASE WHEN a.status = 'LATE' THEN 1 ELSE 0 END) as lateCount, " +
            "SUM(CASE WHEN a.status = 'EXCUSED' THEN 1 ELSE 0 END) as excusedCount " +
-           "FROM Student s LEFT JOIN s.attendanceRecords a " +
+           "FROM Student s LEFT JOIN s.attendanceRecords a ON a.isMarked = true " +
            "WHERE s.isActive = true " +
            "GROUP BY s.id " +
            "ORDER BY s.name")
@@ -104,7 +108,7 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
            "SUM(CASE WHEN a.status = 'ABSENT' THEN 1 ELSE 0 END) as absentCount, " +
            "SUM(CASE WHEN a.status = 'LATE' THEN 1 ELSE 0 END) as lateCount, " +
            "SUM(CASE WHEN a.status = 'EXCUSED' THEN 1 ELSE 0 END) as excusedCount " +
-           "FROM Student s LEFT JOIN s.attendanceRecords a ON a.event = :event " +
+           "FROM Student s LEFT JOIN s.attendanceRecords a ON a.event = :event AND a.isMarked = true " +
            "WHERE s.isActive = true " +
            "GROUP BY s.id " +
            "ORDER BY s.name")
@@ -115,21 +119,25 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     Optional<Attendance> findByIdWithDetails(@Param("id") Long id);
     
     // Find attendance by student with event details
-    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.event WHERE a.student = :student ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.event WHERE a.student = :student AND a.isMarked = true ORDER BY a.markedAt DESC")
     List<Attendance> findByStudentWithEventDetails(@Param("student") Student student);
     
     // Find attendance by event with student details
-    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student WHERE a.event = :event ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student WHERE a.event = :event AND a.isMarked = true ORDER BY a.markedAt DESC")
     List<Attendance> findByEventWithStudentDetails(@Param("event") Event event);
     
     // Find attendance by faculty with student and event details
-    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student LEFT JOIN FETCH a.event WHERE a.markedByFaculty = :faculty ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student LEFT JOIN FETCH a.event WHERE a.markedByFaculty = :faculty AND a.isMarked = true ORDER BY a.markedAt DESC")
     List<Attendance> findByFacultyWithDetails(@Param("faculty") User faculty);
     
     // Find recent attendance (last N records)
-    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student LEFT JOIN FETCH a.event LEFT JOIN FETCH a.markedByFaculty ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student LEFT JOIN FETCH a.event LEFT JOIN FETCH a.markedByFaculty WHERE a.isMarked = true ORDER BY a.markedAt DESC")
     List<Attendance> findRecentAttendance(Pageable pageable);
     
+    // Find recent attendance marked since a cutoff; the lower bound lets partitioned tables skip older months
+    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student LEFT JOIN FETCH a.event LEFT JOIN FETCH a.markedByFaculty WHERE a.isMarked = true AND a.markedAt >= :since ORDER BY a.markedAt DESC")
+    List<Attendance> findRecentAttendanceSince(@Param("since") LocalDateTime since, Pageable pageable);
+    
     // Find attendance with marks
     @Query("SELECT a FROM Attendance a WHERE a.marksObtained IS NOT NULL AND a.maxMarks IS NOT NULL ORDER BY a.markedAt DESC")
     List<Attendance> findAttendanceWithMarks();
@@ -151,7 +159,7 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     Double findAverageMarksByEvent(@Param("event") Event event);
     
     // Find attendance by status with details
-    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student LEFT JOIN FETCH a.event WHERE a.status = :status ORDER BY a.markedAt DESC")
+    @Query("SELECT a FROM Attendance a LEFT JOIN FETCH a.student LEFT JOIN FETCH a.event WHERE a.status = :status AND a.isMarked = true ORDER BY a.markedAt DESC")
     List<Attendance> findByStatusWithDetails(@Param("status") Attendance.AttendanceStatus status);
     
     // Check if attendance exists for student and event
@@ -168,4 +176,42 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     
     // Delete attendance by faculty
     void deleteByMarkedByFaculty(User faculty);
+    
+    // Find marked attendance rows of the given events as flat values for archiving; unmarked rows are not kept
+    // (id, student id, event id, status, marks, max marks, remarks, faculty id, marked flag, marked at, updated at)
+    @Query("SELECT a.id, a.student.id, a.event.id, a.status, a.marksObtained, a.maxMarks, a.remarks, a.markedByFaculty.id, " +
+           "a.isMarked, a.markedAt, a.updatedAt FROM Attendance a WHERE a.event.id IN :eventIds AND a.isMarked = true ORDER BY a.id")
+    List<Object[]> findArchiveRowsByEventIds(@Param("eventIds") Collection<Long> eventIds);
+    
+    // Delete attendance rows of the given events (after they have been archived)
+    @Modifying
+    @Query("DELETE FROM Attendance a WHERE a.event.id IN :eventIds")
+    int deleteByEventIds(@Param("eventIds") Collection<Long> eventIds);
+    
+    /**
+     * Event attendance rate of the events a faculty member owns: the PRESENT share of each event's
+     * marked attendance, averaged over events that have any; 0 when there are none.
+     */
+    @Query(value = "SELECT COALESCE(AVG(r.rate), 0) FROM (" +
+           "SELECT COUNT(*) FILTER (WHERE a.status = 'PRESENT') * 100.0 / COUNT(*) AS rate " +
+           "FROM attendance a JOIN events e ON e.id = a.event_id WHERE e.faculty_id = :facultyId AND a.is_marked = TRUE " +
+           "GROUP BY a.event_id) r",
+           nativeQuery = true)
+    double findEventAttendanceRateByFaculty(@Param("facultyId") Long facultyId);
+    
+    // Event attendance rate of many faculty members at once: rows of [facultyId, rate]
+    @Query(value = "SELECT r.faculty_id, AVG(r.rate) FROM (" +
+           "SELECT e.faculty_id, COUNT(*) FILTER (WHERE a.status = 'PRESENT') * 100.0 / COUNT(*) AS rate " +
+           "FROM attendance a JOIN events e ON e.id = a.event_id WHERE e.faculty_id IN (:facultyIds) AND a.is_marked = TRUE " +
+           "GROUP BY e.faculty_id, a.event_id) r GROUP BY r.faculty_id",
+           nativeQuery = true)
+    List<Object[]> findEventAttendanceRatesByFaculty(@Param("facultyIds") Collection<Long> facultyIds);
+    
+    // Event attendance rate of a department's students: each event's rate counts only their rows
+    @Query(value = "SELECT COALESCE(AVG(r.rate), 0) FROM (" +
+           "SELECT COUNT(*) FILTER (WHERE a.status = 'PRESENT') * 100.0 / COUNT(*) AS rate " +
+           "FROM attendance a JOIN students s ON s.id = a.student_id " +
+           "WHERE s.department = :department AND a.is_marked = TRUE GROUP BY a.event_id) r",
+           nativeQuery = true)
+    double findEventAttendanceRateByDepartment(@Param("department") String department);
 }
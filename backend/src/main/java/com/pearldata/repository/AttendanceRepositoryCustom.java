@@ -0,0 +1,20 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.Attendance;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Status histograms of attendance, each computed with a single GROUP BY status query.
+ * Every AttendanceStatus is present in the result, with zero for statuses that have no rows.
+ */
+public interface AttendanceRepositoryCustom {
+
+    // Counts per status of the rows in scope
+    Map<Attendance.AttendanceStatus, Long> countByStatus(AttendanceScope scope);
+
+    // Counts per status for many students, events or faculty members at once, keyed by their ID
+    Map<Long, Map<Attendance.AttendanceStatus, Long>> countByStatus(AttendanceScope.Dimension dimension,
+                                                                    Collection<Long> ids, AttendanceScope scope);
+}
@@ -0,0 +1,124 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.Attendance;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Criteria implementation of AttendanceRepositoryCustom: only the criteria that are set become
+ * predicates, so each scope gets a plan for its own index instead of a catch-all query.
+ */
+public class AttendanceRepositoryImpl implements AttendanceRepositoryCustom {
+
+    // Keeps the IN list of a batch histogram well below the bind parameter limit
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Map<Attendance.AttendanceStatus, Long> countByStatus(AttendanceScope scope) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Attendance> attendance = query.from(Attendance.class);
+
+        query.multiselect(attendance.get("status"), cb.count(attendance))
+                .where(toPredicates(cb, attendance, scope).toArray(new Predicate[0]))
+                .groupBy(attendance.get("status"));
+
+        Map<Attendance.AttendanceStatus, Long> histogram = emptyHistogram();
+        for (Object[] row : entityManager.createQuery(query).getResultList()) {
+            histogram.put((Attendance.AttendanceStatus) row[0], (Long) row[1]);
+        }
+        return histogram;
+    }
+
+    @Override
+    public Map<Long, Map<Attendance.AttendanceStatus, Long>> countByStatus(AttendanceScope.Dimension dimension,
+                                                                           Collection<Long> ids, AttendanceScope scope) {
+        Map<Long, Map<Attendance.AttendanceStatus, Long>> histograms = new HashMap<>();
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (Long id : distinctIds) {
+            histograms.put(id, emptyHistogram());
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        for (int from = 0; from < distinctIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, distinctIds.size()));
+
+            CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+            Root<Attendance> attendance = query.from(Attendance.class);
+            Path<Long> key = dimensionPath(attendance, dimension);
+
+            List<Predicate> predicates = toPredicates(cb, attendance, scope);
+            predicates.add(key.in(chunk));
+            query.multiselect(key, attendance.get("status"), cb.count(attendance))
+                    .where(predicates.toArray(new Predicate[0]))
+                    .groupBy(key, attendance.get("status"));
+
+            for (Object[] row : entityManager.createQuery(query).getResultList()) {
+                histograms.get((Long) row[0]).put((Attendance.AttendanceStatus) row[1], (Long) row[2]);
+            }
+        }
+        return histograms;
+    }
+
+    // Unmarked rows of a pre-created sheet are never counted
+    private List<Predicate> toPredicates(CriteriaBuilder cb, Root<Attendance> attendance, AttendanceScope scope) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isTrue(attendance.get("isMarked")));
+        if (scope.getStudentId() != null) {
+            predicates.add(cb.equal(attendance.get("student").get("id"), scope.getStudentId()));
+        }
+        if (scope.getEventId() != null) {
+            predicates.add(cb.equal(attendance.get("event").get("id"), scope.getEventId()));
+        }
+        if (scope.getFacultyId() != null) {
+            predicates.add(cb.equal(attendance.get("markedByFaculty").get("id"), scope.getFacultyId()));
+        }
+        if (scope.getDepartment() != null) {
+            predicates.add(cb.equal(attendance.join("student").get("department"), scope.getDepartment()));
+        }
+        if (scope.getFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(attendance.get("markedAt"), scope.getFrom()));
+        }
+        if (scope.getTo() != null) {
+            predicates.add(cb.lessThanOrEqualTo(attendance.get("markedAt"), scope.getTo()));
+        }
+        return predicates;
+    }
+
+    private Path<Long> dimensionPath(Root<Attendance> attendance, AttendanceScope.Dimension dimension) {
+        switch (dimension) {
+            case STUDENT:
+                return attendance.get("student").get("id");
+            case EVENT:
+                return attendance.get("event").get("id");
+            case FACULTY:
+                return attendance.get("markedByFaculty").get("id");
+            default:
+                throw new IllegalArgumentException("Unknown attendance scope dimension: " + dimension);
+        }
+    }
+
+    private static Map<Attendance.AttendanceStatus, Long> emptyHistogram() {
+        Map<Attendance.AttendanceStatus, Long> histogram = new EnumMap<>(Attendance.AttendanceStatus.class);
+        for (Attendance.AttendanceStatus status : Attendance.AttendanceStatus.values()) {
+            histogram.put(status, 0L);
+        }
+        return histogram;
+    }
+}
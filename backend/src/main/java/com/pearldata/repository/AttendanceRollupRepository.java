@@ -0,0 +1,330 @@
+package com.pearldata.repository;
+
+import com.pearldata.dto.AttendanceTrendPointDTO;
+import com.pearldata.entity.Attendance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Attendance rollups for trend charts. Each event's attendance is first reduced to one row per
+ * department and course (attendance_rollup_event); the daily and weekly tables sum those rows per
+ * period, department, course and event type. A refresh recomputes the changed events' rows and then
+ * only the periods they fall in, so chart reads and refreshes never scan the attendance table as a whole.
+ */
+@Repository
+public class AttendanceRollupRepository {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String COUNT_COLUMNS_DDL =
+            "total_count BIGINT NOT NULL, present_count BIGINT NOT NULL, absent_count BIGINT NOT NULL, " +
+            "late_count BIGINT NOT NULL, excused_count BIGINT NOT NULL, partial_count BIGINT NOT NULL, " +
+            "marks_sum DOUBLE PRECISION NOT NULL, marks_count BIGINT NOT NULL";
+
+    private static final String[] CREATE_TABLES_SQL = {
+            "CREATE TABLE IF NOT EXISTS attendance_rollup_event (event_id BIGINT NOT NULL, day DATE NOT NULL, " +
+            "department VARCHAR(100), course VARCHAR(100), event_type VARCHAR(30) NOT NULL, " + COUNT_COLUMNS_DDL + ")",
+            "CREATE INDEX IF NOT EXISTS idx_attendance_rollup_event_event ON attendance_rollup_event (event_id)",
+            "CREATE INDEX IF NOT EXISTS idx_attendance_rollup_event_day ON attendance_rollup_event (day)",
+            "CREATE TABLE IF NOT EXISTS attendance_rollup_daily (period_start DATE NOT NULL, " +
+            "department VARCHAR(100), course VARCHAR(100), event_type VARCHAR(30) NOT NULL, " + COUNT_COLUMNS_DDL + ")",
+            "CREATE INDEX IF NOT EXISTS idx_attendance_rollup_daily_period ON attendance_rollup_daily (period_start)",
+            "CREATE TABLE IF NOT EXISTS attendance_rollup_weekly (period_start DATE NOT NULL, " +
+            "department VARCHAR(100), course VARCHAR(100), event_type VARCHAR(30) NOT NULL, " + COUNT_COLUMNS_DDL + ")",
+            "CREATE INDEX IF NOT EXISTS idx_attendance_rollup_weekly_period ON attendance_rollup_weekly (period_start)",
+            "CREATE TABLE IF NOT EXISTS attendance_rollup_watermark (id INT PRIMARY KEY, last_updated_at TIMESTAMP NOT NULL)"
+    };
+
+    private static final String LOCK_WATERMARK_SQL =
+            "SELECT last_updated_at FROM attendance_rollup_watermark WHERE id = 1 FOR UPDATE";
+
+    private static final String SAVE_WATERMARK_SQL =
+            "INSERT INTO attendance_rollup_watermark (id, last_updated_at) VALUES (1, ?) " +
+            "ON CONFLICT (id) DO UPDATE SET last_updated_at = EXCLUDED.last_updated_at";
+
+    private static final String MAX_UPDATED_AT_SQL =
+            "SELECT COALESCE(MAX(updated_at), TIMESTAMP '1970-01-01 00:00:00') FROM attendance";
+
+    // Served by idx_attendance_updated_at
+    private static final String CHANGED_EVENTS_SQL =
+            "SELECT event_id, MAX(updated_at) FROM attendance WHERE updated_at > ? GROUP BY event_id";
+
+    // Days the events' rollup rows currently cover, plus the days the events are on now
+    private static final String DAYS_OF_EVENTS_SQL =
+            "SELECT day FROM attendance_rollup_event WHERE event_id = ANY(?) " +
+            "UNION SELECT CAST(start_time AS DATE) FROM events WHERE id = ANY(?)";
+
+    private static final String DELETE_EVENTS_SQL = "DELETE FROM attendance_rollup_event WHERE event_id = ANY(?)";
+
+    private static final String AGGREGATE_EVENTS_SQL =
+            "INSERT INTO attendance_rollup_event (event_id, day, department, course, event_type, total_count, " +
+            "present_count, absent_count, late_count, excused_count, partial_count, marks_sum, marks_count) " +
+            "SELECT a.event_id, CAST(e.start_time AS DATE), s.department, s.course, e.event_type, COUNT(*), " +
+            "COUNT(*) FILTER (WHERE a.status = 'PRESENT'), COUNT(*) FILTER (WHERE a.status = 'ABSENT'), " +
+            "COUNT(*) FILTER (WHERE a.status = 'LATE'), COUNT(*) FILTER (WHERE a.status = 'EXCUSED'), " +
+            "COUNT(*) FILTER (WHERE a.status = 'PARTIAL'), COALESCE(SUM(a.marks_obtained), 0), COUNT(a.marks_obtained) " +
+            "FROM attendance a JOIN events e ON e.id = a.event_id JOIN students s ON s.id = a.student_id " +
+            "WHERE a.is_marked = TRUE";
+
+    private static final String AGGREGATE_EVENTS_GROUP_BY =
+            " GROUP BY a.event_id, e.start_time, s.department, s.course, e.event_type";
+
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO attendance_rollup_event (event_id, day, department, course, event_type, total_count, " +
+            "present_count, absent_count, late_count, excused_count, partial_count, marks_sum, marks_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SUM_COLUMNS =
+            "SUM(total_count), SUM(present_count), SUM(absent_count), SUM(late_count), SUM(excused_count), " +
+            "SUM(partial_count), SUM(marks_sum), SUM(marks_count)";
+
+    private static final String PERIOD_COLUMNS =
+            "(period_start, department, course, event_type, total_count, present_count, absent_count, late_count, " +
+            "excused_count, partial_count, marks_sum, marks_count) ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Period tables and the truncation of a day to the start of its period
+    public enum Granularity {
+        DAY("attendance_rollup_daily", "day"),
+        WEEK("attendance_rollup_weekly", "CAST(date_trunc('week', day) AS DATE)");
+
+        private final String table;
+        private final String periodStart;
+
+        Granularity(String table, String periodStart) {
+            this.table = table;
+            this.periodStart = periodStart;
+        }
+    }
+
+    // Columns a trend can be broken down by
+    public enum Dimension {
+        DEPARTMENT("department"), COURSE("course"), EVENT_TYPE("event_type");
+
+        private final String column;
+
+        Dimension(String column) {
+            this.column = column;
+        }
+    }
+
+    // One event's attendance of students from one department and course, e.g. aggregated from the archive
+    public static class EventContribution {
+        private final long eventId;
+        private final LocalDate day;
+        private final String department;
+        private final String course;
+        private final String eventType;
+        private final long[] statusCounts;
+        private double marksSum;
+        private long marksCount;
+
+        public EventContribution(long eventId, LocalDate day, String department, String course, String eventType) {
+            this.eventId = eventId;
+            this.day = day;
+            this.department = department;
+            this.course = course;
+            this.eventType = eventType;
+            this.statusCounts = new long[Attendance.AttendanceStatus.values().length];
+        }
+
+        // Count one attendance row; marks are null when not recorded
+        public void add(Attendance.AttendanceStatus status, Double marksObtained) {
+            statusCounts[status.ordinal()]++;
+            if (marksObtained != null) {
+                marksSum += marksObtained;
+                marksCount++;
+            }
+        }
+
+        private long count(Attendance.AttendanceStatus status) {
+            return statusCounts[status.ordinal()];
+        }
+
+        private long total() {
+            long total = 0;
+            for (long count : statusCounts) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    // Create the rollup tables if needed; must run inside a transaction
+    public void createTables() {
+        for (String sql : CREATE_TABLES_SQL) {
+            jdbcTemplate.execute(sql);
+        }
+    }
+
+    // The updated_at up to which attendance is rolled up, locked until the transaction ends; null before the first build
+    public LocalDateTime lockWatermark() {
+        List<Timestamp> watermark = jdbcTemplate.queryForList(LOCK_WATERMARK_SQL, Timestamp.class);
+        return watermark.isEmpty() ? null : watermark.get(0).toLocalDateTime();
+    }
+
+    public void saveWatermark(LocalDateTime watermark) {
+        jdbcTemplate.update(SAVE_WATERMARK_SQL, Timestamp.valueOf(watermark));
+    }
+
+    public LocalDateTime findMaxUpdatedAt() {
+        return jdbcTemplate.queryForObject(MAX_UPDATED_AT_SQL, Timestamp.class).toLocalDateTime();
+    }
+
+    // Events with attendance rows written after the given time, with the latest write of each
+    public Map<Long, LocalDateTime> findChangedEvents(LocalDateTime since) {
+        Map<Long, LocalDateTime> changed = new HashMap<>();
+        jdbcTemplate.query(CHANGED_EVENTS_SQL,
+                rs -> { changed.put(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime()); },
+                Timestamp.valueOf(since));
+        return changed;
+    }
+
+    /**
+     * Recompute the event rows of the given events from their attendance.
+     * Returns the days whose period rows must be refreshed: the days the events were and are on.
+     */
+    public Set<LocalDate> refreshEvents(Collection<Long> eventIds) {
+        Object[] ids = eventIds.toArray();
+        Set<LocalDate> days = new HashSet<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(DAYS_OF_EVENTS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            ps.setArray(2, con.createArrayOf("bigint", ids));
+            return ps;
+        }, rs -> { days.add(rs.getDate(1).toLocalDate()); });
+
+        updateWithIds(DELETE_EVENTS_SQL, ids);
+        updateWithIds(AGGREGATE_EVENTS_SQL + " AND a.event_id = ANY(?)" + AGGREGATE_EVENTS_GROUP_BY, ids);
+        return days;
+    }
+
+    // Recompute the period rows of the given period starts from the event rows of the given days
+    public void refreshPeriods(Granularity granularity, Collection<LocalDate> periodStarts, Collection<LocalDate> days) {
+        if (periodStarts.isEmpty()) {
+            return;
+        }
+        Object[] starts = periodStarts.stream().map(Date::valueOf).toArray();
+        Object[] dayValues = days.stream().map(Date::valueOf).toArray();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("DELETE FROM " + granularity.table + " WHERE period_start = ANY(?)");
+            ps.setArray(1, con.createArrayOf("date", starts));
+            return ps;
+        });
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(aggregatePeriodsSql(granularity) + " WHERE day = ANY(?)" +
+                    periodGroupBy(granularity));
+            ps.setArray(1, con.createArrayOf("date", dayValues));
+            return ps;
+        });
+    }
+
+    // Drop every rollup row and recompute the event rows of all attendance
+    public void rebuildEventsFromAttendance() {
+        jdbcTemplate.update("DELETE FROM attendance_rollup_event");
+        jdbcTemplate.update(AGGREGATE_EVENTS_SQL + AGGREGATE_EVENTS_GROUP_BY);
+    }
+
+    // Add pre-aggregated event rows, e.g. of archived attendance
+    public void addEventContributions(Collection<EventContribution> contributions) {
+        if (contributions.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, new ArrayList<>(contributions), BATCH_SIZE, (ps, contribution) -> {
+            ps.setLong(1, contribution.eventId);
+            ps.setDate(2, Date.valueOf(contribution.day));
+            ps.setString(3, contribution.department);
+            ps.setString(4, contribution.course);
+            ps.setString(5, contribution.eventType);
+            ps.setLong(6, contribution.total());
+            ps.setLong(7, contribution.count(Attendance.AttendanceStatus.PRESENT));
+            ps.setLong(8, contribution.count(Attendance.AttendanceStatus.ABSENT));
+            ps.setLong(9, contribution.count(Attendance.AttendanceStatus.LATE));
+            ps.setLong(10, contribution.count(Attendance.AttendanceStatus.EXCUSED));
+            ps.setLong(11, contribution.count(Attendance.AttendanceStatus.PARTIAL));
+            ps.setDouble(12, contribution.marksSum);
+            ps.setLong(13, contribution.marksCount);
+        });
+    }
+
+    // Recompute every period row from the event rows
+    public void rebuildPeriods(Granularity granularity) {
+        jdbcTemplate.update("DELETE FROM " + granularity.table);
+        jdbcTemplate.update(aggregatePeriodsSql(granularity) + periodGroupBy(granularity));
+    }
+
+    /**
+     * Trend points between two period starts (inclusive), optionally limited to a department, course and
+     * event type, and broken down by the given dimensions. Columns not broken down by are null.
+     */
+    public List<AttendanceTrendPointDTO> findTrend(Granularity granularity, LocalDate from, LocalDate to,
+                                                   String department, String course, String eventType,
+                                                   Collection<Dimension> breakdown) {
+        StringBuilder columns = new StringBuilder("period_start");
+        StringBuilder groupBy = new StringBuilder("period_start");
+        for (Dimension dimension : Dimension.values()) {
+            if (breakdown.contains(dimension)) {
+                columns.append(", ").append(dimension.column);
+                groupBy.append(", ").append(dimension.column);
+            } else {
+                columns.append(", NULL");
+            }
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(", ").append(SUM_COLUMNS)
+                .append(" FROM ").append(granularity.table).append(" WHERE period_start BETWEEN ? AND ?");
+        List<Object> params = new ArrayList<>(List.of(Date.valueOf(from), Date.valueOf(to)));
+        if (department != null) {
+            sql.append(" AND department = ?");
+            params.add(department);
+        }
+        if (course != null) {
+            sql.append(" AND course = ?");
+            params.add(course);
+        }
+        if (eventType != null) {
+            sql.append(" AND event_type = ?");
+            params.add(eventType);
+        }
+        sql.append(" GROUP BY ").append(groupBy).append(" ORDER BY ").append(groupBy);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new AttendanceTrendPointDTO(
+                rs.getDate(1).toLocalDate(), rs.getString(2), rs.getString(3), rs.getString(4),
+                rs.getLong(5), rs.getLong(6), rs.getLong(7), rs.getLong(8), rs.getLong(9), rs.getLong(10),
+                rs.getDouble(11), rs.getLong(12)), params.toArray());
+    }
+
+    private void updateWithIds(String sql, Object[] ids) {
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            return ps;
+        });
+    }
+
+    private static String aggregatePeriodsSql(Granularity granularity) {
+        return "INSERT INTO " + granularity.table + " " + PERIOD_COLUMNS + "SELECT " + granularity.periodStart +
+                ", department, course, event_type, " + SUM_COLUMNS + " FROM attendance_rollup_event";
+    }
+
+    private static String periodGroupBy(Granularity granularity) {
+        return " GROUP BY " + granularity.periodStart + ", department, course, event_type";
+    }
+}
@@ -0,0 +1,77 @@
+package com.pearldata.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Which attendance rows a histogram counts. Every criterion is optional and they combine with AND,
+ * e.g. {@code AttendanceScope.forDepartment("CS").between(from, to)}.
+ */
+public class AttendanceScope {
+
+    // Scope IDs a batch histogram can be grouped by
+    public enum Dimension {
+        STUDENT,
+        EVENT,
+        FACULTY
+    }
+
+    private Long studentId;
+    private Long eventId;
+    private Long facultyId;
+    private String department;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    // Constructors
+    public AttendanceScope() {}
+
+    public static AttendanceScope all() {
+        return new AttendanceScope();
+    }
+
+    public static AttendanceScope forStudent(Long studentId) {
+        AttendanceScope scope = new AttendanceScope();
+        scope.studentId = studentId;
+        return scope;
+    }
+
+    public static AttendanceScope forEvent(Long eventId) {
+        AttendanceScope scope = new AttendanceScope();
+        scope.eventId = eventId;
+        return scope;
+    }
+
+    // Rows marked by the faculty member
+    public static AttendanceScope forFaculty(Long facultyId) {
+        AttendanceScope scope = new AttendanceScope();
+        scope.facultyId = facultyId;
+        return scope;
+    }
+
+    // Rows of students in the department
+    public static AttendanceScope forDepartment(String department) {
+        AttendanceScope scope = new AttendanceScope();
+        scope.department = department;
+        return scope;
+    }
+
+    // Narrow to rows marked between the dates (inclusive); either bound may be null
+    public AttendanceScope between(LocalDateTime from, LocalDateTime to) {
+        AttendanceScope scope = new AttendanceScope();
+        scope.studentId = studentId;
+        scope.eventId = eventId;
+        scope.facultyId = facultyId;
+        scope.department = department;
+        scope.from = from;
+        scope.to = to;
+        return scope;
+    }
+
+    // Getters
+    public Long getStudentId() { return studentId; }
+    public Long getEventId() { return eventId; }
+    public Long getFacultyId() { return facultyId; }
+    public String getDepartment() { return department; }
+    public LocalDateTime getFrom() { return from; }
+    public LocalDateTime getTo() { return to; }
+}
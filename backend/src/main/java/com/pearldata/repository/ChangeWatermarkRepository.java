@@ -0,0 +1,104 @@
+package com.pearldata.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Change watermarks shared by every instance: one row per scope (e.g. a student's attendance) holding the
+ * time of its last committed change in milliseconds. Rows are advanced in short transactions of their own
+ * after the change they stand for has committed.
+ */
+@Repository
+public class ChangeWatermarkRepository {
+
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS change_watermarks (" +
+            "scope VARCHAR(32) NOT NULL, scope_id BIGINT NOT NULL, changed_at BIGINT NOT NULL, " +
+            "PRIMARY KEY (scope, scope_id))";
+
+    private static final String CREATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_change_watermarks_scope_changed_at ON change_watermarks (scope, changed_at)";
+
+    private static final String SEED_SQL =
+            "INSERT INTO change_watermarks (scope, scope_id, changed_at) " +
+            "SELECT s.scope, 0, ? FROM unnest(?::varchar[]) AS s(scope) ON CONFLICT (scope, scope_id) DO NOTHING";
+
+    // Keys in ascending order, so writers advancing overlapping rows lock them in the same order
+    private static final String ADVANCE_SQL =
+            "INSERT INTO change_watermarks AS w (scope, scope_id, changed_at) " +
+            "SELECT ?, k.scope_id, ? FROM unnest(?::bigint[]) AS k(scope_id) ORDER BY k.scope_id " +
+            "ON CONFLICT (scope, scope_id) DO UPDATE SET changed_at = GREATEST(w.changed_at + 1, EXCLUDED.changed_at) " +
+            "RETURNING w.scope_id, w.changed_at";
+
+    private static final String FIND_SQL =
+            "SELECT w.scope, w.scope_id, w.changed_at FROM change_watermarks w " +
+            "JOIN unnest(?::varchar[], ?::bigint[]) AS k(scope, scope_id) ON w.scope = k.scope AND w.scope_id = k.scope_id";
+
+    private static final String FIND_CHANGED_SINCE_SQL =
+            "SELECT scope_id, changed_at FROM change_watermarks WHERE scope = ? AND changed_at > ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Create the table and start the given scopes (with scope ID 0) at the given time, unless they exist already
+    public void install(Collection<String> globalScopes, long now) {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+        jdbcTemplate.execute(CREATE_INDEX_SQL);
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(SEED_SQL);
+            ps.setLong(1, now);
+            ps.setArray(2, con.createArrayOf("varchar", globalScopes.toArray()));
+            return ps;
+        });
+    }
+
+    // Move the watermarks of the given scope IDs to at least now, strictly forward; returns the new values by scope ID
+    public Map<Long, Long> advance(String scope, Collection<Long> scopeIds, long now) {
+        Object[] ids = scopeIds.stream().sorted().toArray();
+        Map<Long, Long> advanced = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(ADVANCE_SQL);
+            ps.setString(1, scope);
+            ps.setLong(2, now);
+            ps.setArray(3, con.createArrayOf("bigint", ids));
+            return ps;
+        }, rs -> {
+            advanced.put(rs.getLong(1), rs.getLong(2));
+        });
+        return advanced;
+    }
+
+    // Current watermarks of the (scope, scope ID) pairs at the same positions; pairs without a row are left out
+    public Map<String, Long> find(List<String> scopes, List<Long> scopeIds) {
+        Map<String, Long> found = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_SQL);
+            ps.setArray(1, con.createArrayOf("varchar", scopes.toArray()));
+            ps.setArray(2, con.createArrayOf("bigint", scopeIds.toArray()));
+            return ps;
+        }, rs -> {
+            found.put(key(rs.getString(1), rs.getLong(2)), rs.getLong(3));
+        });
+        return found;
+    }
+
+    // Scope IDs of the scope whose watermark moved past the given time, with their watermarks
+    public Map<Long, Long> findChangedSince(String scope, long since) {
+        Map<Long, Long> changed = new HashMap<>();
+        jdbcTemplate.query(FIND_CHANGED_SINCE_SQL, rs -> {
+            changed.put(rs.getLong(1), rs.getLong(2));
+        }, scope, since);
+        return changed;
+    }
+
+    public static String key(String scope, long scopeId) {
+        return scope + ":" + scopeId;
+    }
+}
@@ -0,0 +1,42 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.Event;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Set-based event status transitions driven by start and end times.
+ * Each method is a single UPDATE ... RETURNING statement served by the (status, time) indexes on events.
+ */
+@Repository
+public class EventLifecycleRepository {
+
+    private static final String TRANSITION_ON_START_SQL =
+            "UPDATE events SET status = ?, updated_at = ? WHERE status = ? AND start_time <= ? RETURNING id";
+
+    private static final String TRANSITION_ON_END_SQL =
+            "UPDATE events SET status = ?, updated_at = ? WHERE status = ? AND end_time <= ? RETURNING id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Move every event in status 'from' whose start time has passed to status 'to'
+    public List<Long> transitionStarted(Event.EventStatus from, Event.EventStatus to, LocalDateTime now) {
+        return transition(TRANSITION_ON_START_SQL, from, to, now);
+    }
+
+    // Move every event in status 'from' whose end time has passed to status 'to'
+    public List<Long> transitionEnded(Event.EventStatus from, Event.EventStatus to, LocalDateTime now) {
+        return transition(TRANSITION_ON_END_SQL, from, to, now);
+    }
+
+    private List<Long> transition(String sql, Event.EventStatus from, Event.EventStatus to, LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        return jdbcTemplate.queryForList(sql, Long.class, to.name(), timestamp, from.name(), timestamp);
+    }
+}
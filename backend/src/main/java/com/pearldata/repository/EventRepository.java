@@ -5,11 +5,13 @@ import com.pearldata.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,29 +50,29 @@ public interface EventRepository extends JpaRepository<Event, Long> {
                                                 @Param("startDate") LocalDateTime startDate, 
                                                 @Param("endDate") LocalDateTime endDate);
     
-    // Find upcoming events (start time > now)
-    @Query("SELECT e FROM Event e WHERE e.startTime > :now AND e.status = 'SCHEDULED' ORDER BY e.startTime")
-    List<Event> findUpcomingEvents(@Param("now") LocalDateTime now);
+    // Find upcoming events (statuses are kept current by EventLifecycleService)
+    @Query("SELECT e FROM Event e WHERE e.status = 'SCHEDULED' ORDER BY e.startTime")
+    List<Event> findUpcomingEvents();
     
     // Find upcoming events by faculty
-    @Query("SELECT e FROM Event e WHERE e.faculty = :faculty AND e.startTime > :now AND e.status = 'SCHEDULED' ORDER BY e.startTime")
-    List<Event> findUpcomingEventsByFaculty(@Param("faculty") User faculty, @Param("now") LocalDateTime now);
+    @Query("SELECT e FROM Event e WHERE e.faculty = :faculty AND e.status = 'SCHEDULED' ORDER BY e.startTime")
+    List<Event> findUpcomingEventsByFaculty(@Param("faculty") User faculty);
     
-    // Find events happening now (start time <= now <= end time)
-    @Query("SELECT e FROM Event e WHERE e.startTime <= :now AND e.endTime >= :now AND e.status = 'SCHEDULED' ORDER BY e.startTime")
-    List<Event> findCurrentEvents(@Param("now") LocalDateTime now);
+    // Find events happening now
+    @Query("SELECT e FROM Event e WHERE e.status = 'ONGOING' ORDER BY e.startTime")
+    List<Event> findCurrentEvents();
     
     // Find events by faculty happening now
-    @Query("SELECT e FROM Event e WHERE e.faculty = :faculty AND e.startTime <= :now AND e.endTime >= :now AND e.status = 'SCHEDULED' ORDER BY e.startTime")
-    List<Event> findCurrentEventsByFaculty(@Param("faculty") User faculty, @Param("now") LocalDateTime now);
+    @Query("SELECT e FROM Event e WHERE e.faculty = :faculty AND e.status = 'ONGOING' ORDER BY e.startTime")
+    List<Event> findCurrentEventsByFaculty(@Param("faculty") User faculty);
     
-    // Find completed events (end time < now)
-    @Query("SELECT e FROM Event e WHERE e.endTime < :now AND e.status = 'COMPLETED' ORDER BY e.endTime DESC")
-    List<Event> findCompletedEvents(@Param("now") LocalDateTime now);
+    // Find completed events
+    @Query("SELECT e FROM Event e WHERE e.status = 'COMPLETED' ORDER BY e.endTime DESC")
+    List<Event> findCompletedEvents();
     
     // Find completed events by faculty
-    @Query("SELECT e FROM Event e WHERE e.faculty = :faculty AND e.endTime < :now AND e.status = 'COMPLETED' ORDER BY e.endTime DESC")
-    List<Event> findCompletedEventsByFaculty(@Param("faculty") User faculty, @Param("now") LocalDateTime now);
+    @Query("SELECT e FROM Event e WHERE e.faculty = :faculty AND e.status = 'COMPLETED' ORDER BY e.endTime DESC")
+    List<Event> findCompletedEventsByFaculty(@Param("faculty") User faculty);
     
     // Search events by title or description
     @Query("SELECT e FROM Event e WHERE e.faculty = :faculty AND (LOWER(e.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR LOWER(e.description) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) ORDER BY e.startTime")
@@ -104,4 +106,28 @@ public interface EventRepository extends JpaRepository<Event, Long> {
     
     // Check if event exists by faculty and title and start time
     boolean existsByFacultyAndTitleAndStartTime(User faculty, String title, LocalDateTime startTime);
+    
+    // IDs of the most recent completed events, newest first, optionally of one type and faculty member
+    @Query("SELECT e.id FROM Event e WHERE e.status = 'COMPLETED' " +
+           "AND (:eventType IS NULL OR e.eventType = :eventType) AND (:facultyId IS NULL OR e.faculty.id = :facultyId) " +
+           "ORDER BY e.startTime DESC, e.id DESC")
+    List<Long> findRecentCompletedEventIds(@Param("eventType") Event.EventType eventType, @Param("facultyId") Long facultyId,
+                                           Pageable pageable);
+    
+    // Find finished events that ended before the cutoff, oldest first, for archiving
+    @Query("SELECT e FROM Event e JOIN FETCH e.faculty WHERE e.endTime < :cutoff AND e.status IN ('COMPLETED', 'CANCELLED') ORDER BY e.endTime")
+    List<Event> findArchivableEvents(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+    
+    // Events of the given statuses with their faculty member, in start order, for the student event catalog
+    @Query("SELECT e FROM Event e LEFT JOIN FETCH e.faculty WHERE e.status IN :statuses ORDER BY e.startTime, e.id")
+    List<Event> findCatalogEvents(@Param("statuses") Collection<Event.EventStatus> statuses);
+    
+    // Event ID and faculty member ID pairs of the given events
+    @Query("SELECT e.id, e.faculty.id FROM Event e WHERE e.id IN :eventIds")
+    List<Object[]> findFacultyIdsByEventIds(@Param("eventIds") Collection<Long> eventIds);
+    
+    // Delete events by ID (after they have been archived)
+    @Modifying
+    @Query("DELETE FROM Event e WHERE e.id IN :eventIds")
+    int deleteByIds(@Param("eventIds") Collection<Long> eventIds);
 }
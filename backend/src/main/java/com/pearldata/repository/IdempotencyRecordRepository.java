@@ -0,0 +1,51 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Delete records past their expiry
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    // Claim a key for one request across all instances; 0 when a live record or claim already holds it
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (record_key, operation, request_hash, response_status, created_at, expires_at) " +
+                   "VALUES (:recordKey, :operation, :requestHash, " + IdempotencyRecord.PENDING_STATUS + ", :now, :expiresAt) " +
+                   "ON CONFLICT (record_key) DO NOTHING", nativeQuery = true)
+    int claim(@Param("recordKey") String recordKey, @Param("operation") String operation,
+              @Param("requestHash") String requestHash, @Param("now") LocalDateTime now,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Store the response of a claimed key
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.responseStatus = :responseStatus, r.responseBody = :responseBody, " +
+           "r.expiresAt = :expiresAt WHERE r.recordKey = :recordKey AND r.responseStatus = " + IdempotencyRecord.PENDING_STATUS)
+    int complete(@Param("recordKey") String recordKey, @Param("responseStatus") int responseStatus,
+                 @Param("responseBody") String responseBody, @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Give up a claim, so the request can be retried with the same key
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.recordKey = :recordKey AND r.responseStatus = " + IdempotencyRecord.PENDING_STATUS)
+    int release(@Param("recordKey") String recordKey);
+
+    // Drop a record or claim that has expired but was not purged yet, so the key can be claimed again
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.recordKey = :recordKey AND r.expiresAt < :now")
+    int deleteIfExpired(@Param("recordKey") String recordKey, @Param("now") LocalDateTime now);
+}
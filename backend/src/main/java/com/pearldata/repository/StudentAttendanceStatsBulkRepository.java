@@ -0,0 +1,309 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.StudentAttendanceStats;
+import com.pearldata.entity.StudentEventTypeStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Maintenance of student_attendance_stats and student_event_type_stats.
+ * Attendance is written through JPA, several bulk statements and their partitioned variants, so the
+ * totals are kept by statement triggers on attendance: every insert, update and delete adjusts the
+ * students' rows in the writer's own transaction, with the exact old and new values. Only marked rows count. A trigger on events moves
+ * an event's attendance between event types when its type is edited.
+ */
+@Repository
+public class StudentAttendanceStatsBulkRepository {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Adds a delta row to a student's totals; the last attendance only moves forward
+    private static final String TOTALS_ON_CONFLICT =
+            "ON CONFLICT (student_id) DO UPDATE SET " +
+            "total_count = s.total_count + EXCLUDED.total_count, " +
+            "present_count = s.present_count + EXCLUDED.present_count, " +
+            "absent_count = s.absent_count + EXCLUDED.absent_count, " +
+            "late_count = s.late_count + EXCLUDED.late_count, " +
+            "excused_count = s.excused_count + EXCLUDED.excused_count, " +
+            "partial_count = s.partial_count + EXCLUDED.partial_count, " +
+            "marks_sum = s.marks_sum + EXCLUDED.marks_sum, " +
+            "marks_count = s.marks_count + EXCLUDED.marks_count, " +
+            "last_event_id = CASE WHEN EXCLUDED.last_attendance_at >= COALESCE(s.last_attendance_at, EXCLUDED.last_attendance_at) " +
+            "THEN EXCLUDED.last_event_id ELSE s.last_event_id END, " +
+            "last_status = CASE WHEN EXCLUDED.last_attendance_at >= COALESCE(s.last_attendance_at, EXCLUDED.last_attendance_at) " +
+            "THEN EXCLUDED.last_status ELSE s.last_status END, " +
+            "last_attendance_at = GREATEST(s.last_attendance_at, EXCLUDED.last_attendance_at), " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private static final String EVENT_TYPE_ON_CONFLICT =
+            "ON CONFLICT (student_id, event_type) DO UPDATE SET " +
+            "total_count = s.total_count + EXCLUDED.total_count, " +
+            "attended_count = s.attended_count + EXCLUDED.attended_count, " +
+            "marks_sum = s.marks_sum + EXCLUDED.marks_sum, " +
+            "marks_count = s.marks_count + EXCLUDED.marks_count, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    // Add one delta to a student's totals
+    private static final String CREATE_ADD_PROCEDURE_SQL =
+            "CREATE OR REPLACE PROCEDURE student_attendance_stats_add(p_student_id BIGINT, p_total BIGINT, " +
+            "p_present BIGINT, p_absent BIGINT, p_late BIGINT, p_excused BIGINT, p_partial BIGINT, " +
+            "p_marks_sum DOUBLE PRECISION, p_marks_count BIGINT, " +
+            "p_last_at TIMESTAMP, p_last_event_id BIGINT, p_last_status VARCHAR) LANGUAGE sql AS $$ " +
+            "INSERT INTO student_attendance_stats AS s (student_id, total_count, present_count, absent_count, late_count, " +
+            "excused_count, partial_count, marks_sum, marks_count, last_attendance_at, last_event_id, last_status, updated_at) " +
+            "VALUES (p_student_id, p_total, p_present, p_absent, p_late, p_excused, p_partial, p_marks_sum, p_marks_count, " +
+            "p_last_at, p_last_event_id, p_last_status, LOCALTIMESTAMP) " +
+            TOTALS_ON_CONFLICT + " $$";
+
+    // Add one delta to a student's totals for one event type
+    private static final String CREATE_EVENT_TYPE_ADD_PROCEDURE_SQL =
+            "CREATE OR REPLACE PROCEDURE student_event_type_stats_add(p_student_id BIGINT, p_event_type VARCHAR, " +
+            "p_total BIGINT, p_attended BIGINT, p_marks_sum DOUBLE PRECISION, p_marks_count BIGINT) LANGUAGE sql AS $$ " +
+            "INSERT INTO student_event_type_stats AS s (student_id, event_type, total_count, attended_count, " +
+            "marks_sum, marks_count, updated_at) " +
+            "VALUES (p_student_id, p_event_type, p_total, p_attended, p_marks_sum, p_marks_count, LOCALTIMESTAMP) " +
+            EVENT_TYPE_ON_CONFLICT + " $$";
+
+    // Marked rows a statement inserted, as +1 deltas
+    private static final String INSERTED_DELTA_SQL =
+            "SELECT student_id, event_id, status, marks_obtained, marked_at, 1 AS sign FROM new_rows WHERE is_marked";
+
+    // Marked rows a statement deleted, as -1 deltas
+    private static final String DELETED_DELTA_SQL =
+            "SELECT student_id, event_id, status, marks_obtained, NULL::timestamp AS marked_at, -1 AS sign FROM old_rows WHERE is_marked";
+
+    // Rows an update actually changed: the old version out if it was counted, the new one in if it is
+    private static final String CHANGED_ROWS_SQL =
+            "FROM old_rows o JOIN new_rows n ON n.id = o.id WHERE (o.status IS DISTINCT FROM n.status " +
+            "OR o.marks_obtained IS DISTINCT FROM n.marks_obtained OR o.is_marked IS DISTINCT FROM n.is_marked)";
+
+    private static final String UPDATED_DELTA_SQL =
+            "SELECT o.student_id, o.event_id, o.status, o.marks_obtained, NULL::timestamp AS marked_at, -1 AS sign " +
+            CHANGED_ROWS_SQL + " AND o.is_marked " +
+            "UNION ALL " +
+            "SELECT n.student_id, n.event_id, n.status, n.marks_obtained, n.marked_at, 1 AS sign " +
+            CHANGED_ROWS_SQL + " AND n.is_marked";
+
+    // Adds a statement's deltas (d) grouped per student and per event type, in student order
+    private static final String APPLY_DELTA_SQL =
+            "totals AS (" +
+            "INSERT INTO student_attendance_stats AS s (student_id, total_count, present_count, absent_count, late_count, " +
+            "excused_count, partial_count, marks_sum, marks_count, last_attendance_at, last_event_id, last_status, updated_at) " +
+            "SELECT d.student_id, SUM(d.sign), " +
+            "SUM(CASE WHEN d.status = 'PRESENT' THEN d.sign ELSE 0 END), SUM(CASE WHEN d.status = 'ABSENT' THEN d.sign ELSE 0 END), " +
+            "SUM(CASE WHEN d.status = 'LATE' THEN d.sign ELSE 0 END), SUM(CASE WHEN d.status = 'EXCUSED' THEN d.sign ELSE 0 END), " +
+            "SUM(CASE WHEN d.status = 'PARTIAL' THEN d.sign ELSE 0 END), " +
+            "SUM(d.sign * COALESCE(d.marks_obtained, 0)), SUM(CASE WHEN d.marks_obtained IS NOT NULL THEN d.sign ELSE 0 END), " +
+            "MAX(d.marked_at), " +
+            "(array_agg(d.event_id ORDER BY d.marked_at DESC, d.event_id DESC) FILTER (WHERE d.sign > 0))[1], " +
+            "(array_agg(d.status ORDER BY d.marked_at DESC, d.event_id DESC) FILTER (WHERE d.sign > 0))[1], " +
+            "LOCALTIMESTAMP " +
+            "FROM d GROUP BY d.student_id ORDER BY d.student_id " +
+            TOTALS_ON_CONFLICT + ") " +
+            "INSERT INTO student_event_type_stats AS s (student_id, event_type, total_count, attended_count, " +
+            "marks_sum, marks_count, updated_at) " +
+            "SELECT d.student_id, e.event_type, SUM(d.sign), " +
+            "SUM(CASE WHEN d.status IN ('PRESENT', 'LATE') THEN d.sign ELSE 0 END), " +
+            "SUM(d.sign * COALESCE(d.marks_obtained, 0)), SUM(CASE WHEN d.marks_obtained IS NOT NULL THEN d.sign ELSE 0 END), " +
+            "LOCALTIMESTAMP " +
+            "FROM d JOIN events e ON e.id = d.event_id GROUP BY d.student_id, e.event_type ORDER BY d.student_id, e.event_type " +
+            EVENT_TYPE_ON_CONFLICT + "; ";
+
+    /**
+     * One grouped delta per statement, read from its transition tables: a sheet of a thousand rows is two
+     * upserts rather than thousands of procedure calls. Unmarked (pre-created) rows are not counted until
+     * the faculty marks them. After a delete, the latest remaining marked row is looked up again.
+     */
+    private static final String CREATE_TRIGGER_FUNCTION_SQL =
+            "CREATE OR REPLACE FUNCTION student_attendance_stats_on_change() RETURNS trigger LANGUAGE plpgsql AS $$ " +
+            "BEGIN " +
+            "IF current_setting('pearldata.skip_attendance_stats', true) = 'on' THEN RETURN NULL; END IF; " +
+            "IF TG_OP = 'INSERT' THEN " +
+            "WITH d AS (" + INSERTED_DELTA_SQL + "), " + APPLY_DELTA_SQL +
+            "ELSIF TG_OP = 'UPDATE' THEN " +
+            "WITH d AS (" + UPDATED_DELTA_SQL + "), " + APPLY_DELTA_SQL +
+            "ELSE " +
+            "WITH d AS (" + DELETED_DELTA_SQL + "), " + APPLY_DELTA_SQL +
+            "UPDATE student_attendance_stats s SET (last_attendance_at, last_event_id, last_status) = " +
+            "(SELECT a.marked_at, a.event_id, a.status FROM attendance a WHERE a.student_id = s.student_id AND a.is_marked " +
+            "ORDER BY a.marked_at DESC, a.id DESC LIMIT 1) " +
+            "FROM (SELECT DISTINCT student_id, event_id FROM old_rows WHERE is_marked) o " +
+            "WHERE s.student_id = o.student_id AND s.last_event_id = o.event_id; " +
+            "END IF; " +
+            "RETURN NULL; " +
+            "END $$";
+
+    // The row trigger these statement triggers replace; it also counted unmarked rows
+    private static final String HAS_ROW_TRIGGER_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_trigger WHERE tgrelid = 'attendance'::regclass AND tgname = 'trg_student_attendance_stats')";
+
+    private static final String DROP_ROW_TRIGGER_SQL = "DROP TRIGGER IF EXISTS trg_student_attendance_stats ON attendance";
+
+    // Transition tables allow a single event per trigger, so there is one trigger per operation
+    private static final String[] DROP_TRIGGER_SQL = {
+            "DROP TRIGGER IF EXISTS trg_student_attendance_stats_insert ON attendance",
+            "DROP TRIGGER IF EXISTS trg_student_attendance_stats_update ON attendance",
+            "DROP TRIGGER IF EXISTS trg_student_attendance_stats_delete ON attendance"
+    };
+
+    private static final String[] CREATE_TRIGGER_SQL = {
+            "CREATE TRIGGER trg_student_attendance_stats_insert AFTER INSERT ON attendance " +
+            "REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION student_attendance_stats_on_change()",
+            "CREATE TRIGGER trg_student_attendance_stats_update AFTER UPDATE ON attendance " +
+            "REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION student_attendance_stats_on_change()",
+            "CREATE TRIGGER trg_student_attendance_stats_delete AFTER DELETE ON attendance " +
+            "REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION student_attendance_stats_on_change()"
+    };
+
+    // Move every student's totals of the event from its old type to its new one
+    private static final String CREATE_EVENT_TYPE_TRIGGER_FUNCTION_SQL =
+            "CREATE OR REPLACE FUNCTION student_event_type_stats_on_event_change() RETURNS trigger LANGUAGE plpgsql AS $$ " +
+            "DECLARE r RECORD; " +
+            "BEGIN " +
+            "FOR r IN SELECT student_id, COUNT(*) AS total, COUNT(*) FILTER (WHERE status IN ('PRESENT', 'LATE')) AS attended, " +
+            "COALESCE(SUM(marks_obtained), 0) AS marks_sum, COUNT(marks_obtained) AS marks_count " +
+            "FROM attendance WHERE event_id = NEW.id AND is_marked GROUP BY student_id LOOP " +
+            "CALL student_event_type_stats_add(r.student_id, OLD.event_type, -r.total, -r.attended, -r.marks_sum, -r.marks_count); " +
+            "CALL student_event_type_stats_add(r.student_id, NEW.event_type, r.total, r.attended, r.marks_sum, r.marks_count); " +
+            "END LOOP; " +
+            "RETURN NULL; " +
+            "END $$";
+
+    private static final String DROP_EVENT_TYPE_TRIGGER_SQL = "DROP TRIGGER IF EXISTS trg_student_event_type_stats ON events";
+
+    private static final String CREATE_EVENT_TYPE_TRIGGER_SQL =
+            "CREATE TRIGGER trg_student_event_type_stats AFTER UPDATE OF event_type ON events " +
+            "FOR EACH ROW WHEN (OLD.event_type IS DISTINCT FROM NEW.event_type) " +
+            "EXECUTE FUNCTION student_event_type_stats_on_event_change()";
+
+    private static final String IS_EMPTY_SQL =
+            "SELECT NOT EXISTS (SELECT 1 FROM student_attendance_stats) OR NOT EXISTS (SELECT 1 FROM student_event_type_stats)";
+
+    // Writers wait for the rebuild; readers keep seeing the previous totals until it commits
+    private static final String LOCK_ATTENDANCE_SQL = "LOCK TABLE attendance IN SHARE MODE";
+
+    private static final String DELETE_ALL_SQL = "DELETE FROM student_attendance_stats";
+
+    private static final String DELETE_ALL_EVENT_TYPE_SQL = "DELETE FROM student_event_type_stats";
+
+    private static final String REBUILD_SQL =
+            "INSERT INTO student_attendance_stats (student_id, total_count, present_count, absent_count, late_count, " +
+            "excused_count, partial_count, marks_sum, marks_count, last_attendance_at, last_event_id, last_status, updated_at) " +
+            "SELECT a.student_id, COUNT(*), " +
+            "COUNT(*) FILTER (WHERE a.status = 'PRESENT'), COUNT(*) FILTER (WHERE a.status = 'ABSENT'), " +
+            "COUNT(*) FILTER (WHERE a.status = 'LATE'), COUNT(*) FILTER (WHERE a.status = 'EXCUSED'), " +
+            "COUNT(*) FILTER (WHERE a.status = 'PARTIAL'), " +
+            "COALESCE(SUM(a.marks_obtained), 0), COUNT(a.marks_obtained), " +
+            "l.marked_at, l.event_id, l.status, LOCALTIMESTAMP " +
+            "FROM attendance a JOIN (SELECT DISTINCT ON (student_id) student_id, marked_at, event_id, status " +
+            "FROM attendance WHERE is_marked ORDER BY student_id, marked_at DESC, id DESC) l ON l.student_id = a.student_id " +
+            "WHERE a.is_marked GROUP BY a.student_id, l.marked_at, l.event_id, l.status";
+
+    private static final String REBUILD_EVENT_TYPE_SQL =
+            "INSERT INTO student_event_type_stats (student_id, event_type, total_count, attended_count, marks_sum, " +
+            "marks_count, updated_at) " +
+            "SELECT a.student_id, e.event_type, COUNT(*), COUNT(*) FILTER (WHERE a.status IN ('PRESENT', 'LATE')), " +
+            "COALESCE(SUM(a.marks_obtained), 0), COUNT(a.marks_obtained), LOCALTIMESTAMP " +
+            "FROM attendance a JOIN events e ON e.id = a.event_id WHERE a.is_marked GROUP BY a.student_id, e.event_type";
+
+    private static final String ADD_SQL = "CALL student_attendance_stats_add(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ADD_EVENT_TYPE_SQL = "CALL student_event_type_stats_add(?, ?, ?, ?, ?, ?)";
+
+    private static final String SKIP_FOR_TRANSACTION_SQL = "SELECT set_config('pearldata.skip_attendance_stats', 'on', true)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // (Re)create the maintenance procedures and the triggers; must run inside a transaction.
+    // Returns true when the former row trigger was replaced, in which case the totals need a rebuild
+    public boolean installTrigger() {
+        boolean replacedRowTrigger = Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_ROW_TRIGGER_SQL, Boolean.class));
+        jdbcTemplate.execute(CREATE_ADD_PROCEDURE_SQL);
+        jdbcTemplate.execute(CREATE_EVENT_TYPE_ADD_PROCEDURE_SQL);
+        jdbcTemplate.execute(CREATE_TRIGGER_FUNCTION_SQL);
+        jdbcTemplate.execute(DROP_ROW_TRIGGER_SQL);
+        for (String sql : DROP_TRIGGER_SQL) {
+            jdbcTemplate.execute(sql);
+        }
+        for (String sql : CREATE_TRIGGER_SQL) {
+            jdbcTemplate.execute(sql);
+        }
+        jdbcTemplate.execute(CREATE_EVENT_TYPE_TRIGGER_FUNCTION_SQL);
+        jdbcTemplate.execute(DROP_EVENT_TYPE_TRIGGER_SQL);
+        jdbcTemplate.execute(CREATE_EVENT_TYPE_TRIGGER_SQL);
+        return replacedRowTrigger;
+    }
+
+    // True until the totals are built for the first time, e.g. right after a totals table was created
+    public boolean isEmpty() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_EMPTY_SQL, Boolean.class));
+    }
+
+    // Replace all totals with a fresh aggregate of the attendance table; returns the number of students
+    public int rebuildFromAttendance() {
+        jdbcTemplate.execute(LOCK_ATTENDANCE_SQL);
+        jdbcTemplate.update(DELETE_ALL_SQL);
+        jdbcTemplate.update(DELETE_ALL_EVENT_TYPE_SQL);
+        jdbcTemplate.update(REBUILD_EVENT_TYPE_SQL);
+        return jdbcTemplate.update(REBUILD_SQL);
+    }
+
+    // Add pre-aggregated totals, e.g. of archived attendance, on top of the current ones
+    public void addAll(Collection<StudentAttendanceStats> totals) {
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(ADD_SQL, new ArrayList<>(totals), BATCH_SIZE, (ps, stats) -> {
+            ps.setLong(1, stats.getStudentId());
+            ps.setLong(2, stats.getTotalCount());
+            ps.setLong(3, stats.getPresentCount());
+            ps.setLong(4, stats.getAbsentCount());
+            ps.setLong(5, stats.getLateCount());
+            ps.setLong(6, stats.getExcusedCount());
+            ps.setLong(7, stats.getPartialCount());
+            ps.setDouble(8, stats.getMarksSum());
+            ps.setLong(9, stats.getMarksCount());
+            if (stats.getLastAttendanceAt() == null) {
+                ps.setNull(10, Types.TIMESTAMP);
+                ps.setNull(11, Types.BIGINT);
+                ps.setNull(12, Types.VARCHAR);
+            } else {
+                ps.setTimestamp(10, Timestamp.valueOf(stats.getLastAttendanceAt()));
+                ps.setLong(11, stats.getLastEventId());
+                ps.setString(12, stats.getLastStatus().name());
+            }
+        });
+    }
+
+    // Add pre-aggregated per-event-type totals, e.g. of archived attendance, on top of the current ones
+    public void addAllEventTypeStats(Collection<StudentEventTypeStats> totals) {
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(ADD_EVENT_TYPE_SQL, new ArrayList<>(totals), BATCH_SIZE, (ps, stats) -> {
+            ps.setLong(1, stats.getStudentId());
+            ps.setString(2, stats.getEventType().name());
+            ps.setLong(3, stats.getTotalCount());
+            ps.setLong(4, stats.getAttendedCount());
+            ps.setDouble(5, stats.getMarksSum());
+            ps.setLong(6, stats.getMarksCount());
+        });
+    }
+
+    /**
+     * Leave the totals alone for the rest of the current transaction.
+     * Used when rows move to the cold archive: they still count towards the student's history.
+     */
+    public void skipForCurrentTransaction() {
+        jdbcTemplate.queryForObject(SKIP_FOR_TRANSACTION_SQL, String.class);
+    }
+}
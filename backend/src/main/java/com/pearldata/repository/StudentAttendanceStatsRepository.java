@@ -0,0 +1,54 @@
+package com.pearldata.repository;
+
+import com.pearldata.dto.StudentAttendanceAnalyticsDTO;
+import com.pearldata.entity.StudentAttendanceStats;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StudentAttendanceStatsRepository extends JpaRepository<StudentAttendanceStats, Long> {
+
+    // Ordering expression for the attendance percentage of the analytics query (present or late over total)
+    String ATTENDANCE_RATE_ORDER = "COALESCE((st.presentCount + st.lateCount) * 1.0 / NULLIF(st.totalCount, 0), 0)";
+
+    // One page of active students with their attendance totals; filtering, sorting and paging run in the database
+    @Query(value = "SELECT new com.pearldata.dto.StudentAttendanceAnalyticsDTO(s.id, s.name, s.email, s.studentId, " +
+           "s.department, s.course, s.academicYear, s.semester, " +
+           "COALESCE(st.totalCount, 0L), COALESCE(st.presentCount, 0L), COALESCE(st.absentCount, 0L), " +
+           "COALESCE(st.lateCount, 0L), COALESCE(st.excusedCount, 0L), COALESCE(st.marksSum, 0.0D), " +
+           "COALESCE(st.marksCount, 0L), st.lastAttendanceAt, st.lastStatus, e.title) " +
+           "FROM Student s LEFT JOIN StudentAttendanceStats st ON st.studentId = s.id " +
+           "LEFT JOIN Event e ON e.id = st.lastEventId " +
+           "WHERE s.isActive = true AND (:searchTerm IS NULL " +
+           "OR LOWER(s.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
+           "OR LOWER(s.email) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
+           "OR LOWER(s.studentId) LIKE LOWER(CONCAT('%', :searchTerm, '%')))",
+           countQuery = "SELECT COUNT(s) FROM Student s WHERE s.isActive = true AND (:searchTerm IS NULL " +
+           "OR LOWER(s.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
+           "OR LOWER(s.email) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
+           "OR LOWER(s.studentId) LIKE LOWER(CONCAT('%', :searchTerm, '%')))")
+    Page<StudentAttendanceAnalyticsDTO> findStudentAnalytics(@Param("searchTerm") String searchTerm, Pageable pageable);
+
+    /**
+     * Institution-wide summary in one row: [totalStudents, studentsWithAttendance, overallAttendanceRate,
+     * overallAverageMarks, excellent, good, average, poor]. Rates are averaged over students with attendance.
+     */
+    @Query(value = "SELECT COUNT(*), COUNT(r.rate), COALESCE(AVG(r.rate), 0), COALESCE(AVG(r.average_marks), 0), " +
+           "COUNT(*) FILTER (WHERE r.bucket = 'Excellent'), COUNT(*) FILTER (WHERE r.bucket = 'Good'), " +
+           "COUNT(*) FILTER (WHERE r.bucket = 'Average'), COUNT(*) FILTER (WHERE r.bucket = 'Poor') " +
+           "FROM (SELECT t.rate, t.average_marks, " +
+           "CASE WHEN t.rate IS NULL THEN NULL WHEN t.rate >= 90 THEN 'Excellent' WHEN t.rate >= 80 THEN 'Good' " +
+           "WHEN t.rate >= 70 THEN 'Average' ELSE 'Poor' END AS bucket " +
+           "FROM (SELECT CASE WHEN st.total_count > 0 THEN (st.present_count + st.late_count) * 100.0 / st.total_count END AS rate, " +
+           "CASE WHEN st.total_count > 0 THEN COALESCE(st.marks_sum / NULLIF(st.marks_count, 0), 0) END AS average_marks " +
+           "FROM students s LEFT JOIN student_attendance_stats st ON st.student_id = s.id " +
+           "WHERE s.is_active = TRUE) t) r",
+           nativeQuery = true)
+    List<Object[]> summarizeActiveStudents();
+}
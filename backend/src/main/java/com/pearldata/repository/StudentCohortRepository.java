@@ -0,0 +1,73 @@
+package com.pearldata.repository;
+
+import com.pearldata.dto.CohortStatsDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Side-by-side attendance of student cohorts (departments, courses, academic years and semesters).
+ * All requested cohorts are aggregated by one GROUPING SETS query over the per-student totals, so comparing
+ * thirty cohorts costs one pass over the matching students instead of one query per cohort.
+ */
+@Repository
+public class StudentCohortRepository {
+
+    // grouping_id is the GROUPING() bit mask: 7 per department, 11 per course, 13 per academic year, 14 per semester, 15 overall
+    private static final String COMPARE_COHORTS_SQL =
+            "SELECT GROUPING(s.department, s.course, s.academic_year, s.semester) AS grouping_id, " +
+            "s.department, s.course, s.academic_year, s.semester, COUNT(*), COUNT(st.student_id), " +
+            "COALESCE(SUM(st.total_count), 0), COALESCE(SUM(st.present_count), 0), COALESCE(SUM(st.absent_count), 0), " +
+            "COALESCE(SUM(st.late_count), 0), COALESCE(SUM(st.excused_count), 0), COALESCE(SUM(st.partial_count), 0), " +
+            "COALESCE(SUM(st.marks_sum), 0), COALESCE(SUM(st.marks_count), 0), " +
+            "COUNT(*) FILTER (WHERE st.total_count > 0 AND (st.present_count + st.late_count) * 100.0 / st.total_count < ?) " +
+            "FROM students s LEFT JOIN student_attendance_stats st ON st.student_id = s.id " +
+            "WHERE s.is_active = TRUE AND (s.department = ANY(?) OR s.course = ANY(?) " +
+            "OR s.academic_year = ANY(?) OR s.semester = ANY(?)) " +
+            "GROUP BY GROUPING SETS ((s.department), (s.course), (s.academic_year), (s.semester), ()) " +
+            "HAVING GROUPING(s.department, s.course, s.academic_year, s.semester) = 15 " +
+            "OR (GROUPING(s.department) = 0 AND s.department = ANY(?)) " +
+            "OR (GROUPING(s.course) = 0 AND s.course = ANY(?)) " +
+            "OR (GROUPING(s.academic_year) = 0 AND s.academic_year = ANY(?)) " +
+            "OR (GROUPING(s.semester) = 0 AND s.semester = ANY(?))";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * One row per requested cohort that has active students, plus an "ALL" row over every matched student.
+     * {@code threshold} is the attendance percentage under which a student counts as below threshold.
+     */
+    public List<CohortStatsDTO> compareCohorts(Collection<String> departments, Collection<String> courses,
+                                               Collection<String> academicYears, Collection<String> semesters,
+                                               double threshold) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(COMPARE_COHORTS_SQL);
+            ps.setDouble(1, threshold);
+            Object[][] filters = {departments.toArray(), courses.toArray(), academicYears.toArray(), semesters.toArray()};
+            for (int i = 0; i < filters.length; i++) {
+                ps.setArray(2 + i, con.createArrayOf("varchar", filters[i]));
+                ps.setArray(6 + i, con.createArrayOf("varchar", filters[i]));
+            }
+            return ps;
+        }, (rs, rowNum) -> {
+            int groupingId = rs.getInt(1);
+            String dimension;
+            String cohort;
+            switch (groupingId) {
+                case 0b0111 -> { dimension = "DEPARTMENT"; cohort = rs.getString(2); }
+                case 0b1011 -> { dimension = "COURSE"; cohort = rs.getString(3); }
+                case 0b1101 -> { dimension = "ACADEMIC_YEAR"; cohort = rs.getString(4); }
+                case 0b1110 -> { dimension = "SEMESTER"; cohort = rs.getString(5); }
+                default -> { dimension = "ALL"; cohort = null; }
+            }
+            return new CohortStatsDTO(dimension, cohort, rs.getLong(6), rs.getLong(7), rs.getLong(8), rs.getLong(9),
+                    rs.getLong(10), rs.getLong(11), rs.getLong(12), rs.getLong(13), rs.getDouble(14), rs.getLong(15),
+                    rs.getLong(16));
+        });
+    }
+}
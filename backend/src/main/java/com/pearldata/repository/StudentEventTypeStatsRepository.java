@@ -0,0 +1,14 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.StudentEventTypeStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StudentEventTypeStatsRepository extends JpaRepository<StudentEventTypeStats, StudentEventTypeStats.Key> {
+
+    // One row per event type the student has attendance for
+    List<StudentEventTypeStats> findByStudentId(Long studentId);
+}
@@ -1,10 +1,13 @@
 package com.pearldata.repository;
 
 import com.pearldata.entity.Student;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -14,7 +17,8 @@ import java.util.Optional;
 @Repository
 public interface StudentRepository extends JpaRepository<Student, Long> {
 
-    // Find by email
+    // Find by email, from the query cache when the students table has not changed since
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Student> findByEmail(String email);
     
     // Find by student ID
@@ -62,6 +66,10 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
     @Query("SELECT s FROM Student s WHERE LOWER(s.studentId) LIKE LOWER(CONCAT('%', :searchTerm, '%')) ORDER BY s.studentId")
     List<Student> findByStudentIdContainingIgnoreCase(@Param("searchTerm") String searchTerm);
     
+    // Find student ID numbers with their primary keys (for attendance imports)
+    @Query("SELECT s.studentId, s.id FROM Student s WHERE s.studentId IS NOT NULL")
+    List<Object[]> findStudentIdLookup();
+    
     // Find students with attendance records
     @Query("SELECT s FROM Student s LEFT JOIN FETCH s.attendanceRecords WHERE s.id = :studentId")
     Optional<Student> findByIdWithAttendance(@Param("studentId") Long studentId);
@@ -108,7 +116,7 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
     @Query("SELECT s, COUNT(a.id) as attendanceCount, " +
            "SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END) as presentCount, " +
            "SUM(CASE WHEN a.status = 'ABSENT' THEN 1 ELSE 0 END) as absentCount " +
-           "FROM Student s LEFT JOIN s.attendanceRecords a " +
+           "FROM Student s LEFT JOIN s.attendanceRecords a ON a.isMarked = true " +
            "WHERE s.isActive = true " +
            "GROUP BY s.id " +
            "ORDER BY s.name")
@@ -118,7 +126,7 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
     @Query("SELECT s, COUNT(a.id) as attendanceCount, " +
            "SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END) as presentCount, " +
            "SUM(CASE WHEN a.status = 'ABSENT' THEN 1 ELSE 0 END) as absentCount " +
-           "FROM Student s LEFT JOIN s.attendanceRecords a " +
+           "FROM Student s LEFT JOIN s.attendanceRecords a ON a.isMarked = true " +
            "WHERE s.isActive = true AND s.department = :department " +
            "GROUP BY s.id " +
            "ORDER BY s.name")
@@ -128,7 +136,7 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
     @Query("SELECT s, COUNT(a.id) as attendanceCount, " +
            "SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END) as presentCount, " +
            "SUM(CASE WHEN a.status = 'ABSENT' THEN 1 ELSE 0 END) as absentCount " +
-           "FROM Student s LEFT JOIN s.attendanceRecords a " +
+           "FROM Student s LEFT JOIN s.attendanceRecords a ON a.isMarked = true " +
            "WHERE s.isActive = true AND s.course = :course " +
            "GROUP BY s.id " +
            "ORDER BY s.name")
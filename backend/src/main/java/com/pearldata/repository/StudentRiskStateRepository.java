@@ -0,0 +1,21 @@
+package com.pearldata.repository;
+
+import com.pearldata.entity.StudentRiskState;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StudentRiskStateRepository extends JpaRepository<StudentRiskState, Long> {
+
+    // States of the students, locked until the current transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StudentRiskState r WHERE r.studentId IN :studentIds")
+    List<StudentRiskState> findAllForUpdate(@Param("studentIds") Collection<Long> studentIds);
+}
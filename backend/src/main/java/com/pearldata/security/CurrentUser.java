@@ -0,0 +1,31 @@
+package com.pearldata.security;
+
+import com.pearldata.entity.User;
+
+/**
+ * The authenticated user of the current request, resolved from the token's email by IdentityResolver.
+ * Injected into controllers as a request-scoped bean; studentId is set for users with a student record.
+ */
+public class CurrentUser {
+
+    private final Long id;
+    private final String email;
+    private final String name;
+    private final User.Role role;
+    private final Long studentId;
+
+    public CurrentUser(Long id, String email, String name, User.Role role, Long studentId) {
+        this.id = id;
+        this.email = email;
+        this.name = name;
+        this.role = role;
+        this.studentId = studentId;
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public String getEmail() { return email; }
+    public String getName() { return name; }
+    public User.Role getRole() { return role; }
+    public Long getStudentId() { return studentId; }
+}
@@ -0,0 +1,105 @@
+package com.pearldata.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pearldata.entity.Student;
+import com.pearldata.entity.User;
+import com.pearldata.repository.StudentRepository;
+import com.pearldata.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * Maps an authenticated email to the user's ID, name, role and student ID, so that controllers do not
+ * look the user up on every request. Resolved identities are kept in a bounded cache for a short time
+ * and evicted when the user or student record changes; emails that resolve to no user are not cached.
+ */
+@Component
+public class IdentityResolver {
+
+    @Value("${identity.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${identity.cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    // Read without locking; only filling and evicting take the lock below
+    private Cache<String, CurrentUser> cache;
+
+    // Bumped by every eviction under the lock; a lookup that raced with one is not cached
+    private volatile long generation;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    // Identity of the user with this email, or null if there is none
+    public CurrentUser resolve(String email) {
+        CurrentUser cached = cache.getIfPresent(email);
+        if (cached != null) {
+            return cached;
+        }
+        long started = generation;
+
+        User user = userRepository.findByEmail(email).orElse(null);
+        if (user == null) {
+            return null;
+        }
+        Student student = user.getRole() == User.Role.STUDENT ? studentRepository.findByEmail(email).orElse(null) : null;
+        CurrentUser identity = new CurrentUser(user.getId(), user.getEmail(),
+                student != null ? student.getName() : user.getName(), user.getRole(),
+                student != null ? student.getId() : null);
+
+        synchronized (this) {
+            if (generation == started) {
+                cache.put(email, identity);
+            }
+        }
+        return identity;
+    }
+
+    // Forget the user's identity once the surrounding transaction commits, e.g. after an email or role change
+    public void evictUser(Long userId) {
+        evictAfterCommit(identity -> identity.getId().equals(userId));
+    }
+
+    // Forget the identity holding this student record once the surrounding transaction commits
+    public void evictStudent(Long studentId) {
+        evictAfterCommit(identity -> studentId.equals(identity.getStudentId()));
+    }
+
+    private void evictAfterCommit(Predicate<CurrentUser> matches) {
+        evict(matches);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Evict again after commit, in case a lookup cached the old record meanwhile
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(matches);
+                }
+            });
+        }
+    }
+
+    private synchronized void evict(Predicate<CurrentUser> matches) {
+        generation++;
+        cache.asMap().values().removeIf(matches);
+    }
+}
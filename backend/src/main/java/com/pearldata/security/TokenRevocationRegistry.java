@@ -0,0 +1,137 @@
+package com.pearldata.security;
+
+import com.pearldata.entity.TokenRevocation;
+import com.pearldata.repository.TokenRevocationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory copy of token_revocations, so that authenticating a request needs no database round trip.
+ * Revocations made by this instance apply as soon as they commit; those of other instances are picked
+ * up by the periodic reload. The table holds one small row per user ever revoked.
+ */
+@Component
+public class TokenRevocationRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationRegistry.class);
+
+    @Autowired
+    private TokenRevocationRepository tokenRevocationRepository;
+
+    // Copy-on-write snapshot: user ID -> {token version, disabled (1) or not (0)}
+    private volatile Map<Long, int[]> revocations;
+
+    // True when a token with this version must no longer authenticate the user
+    public boolean isRevoked(Long userId, int tokenVersion) {
+        int[] revocation = snapshot().get(userId);
+        return revocation != null && (revocation[1] == 1 || tokenVersion < revocation[0]);
+    }
+
+    // Version to put into a newly issued token; read from the database so it never lags behind a revocation
+    @Transactional(readOnly = true)
+    public int getTokenVersion(Long userId) {
+        return tokenRevocationRepository.findById(userId).map(TokenRevocation::getTokenVersion).orElse(0);
+    }
+
+    // Invalidate every token issued to the user so far, e.g. after a role, email or password change
+    @Transactional
+    public void revokeTokens(Long userId) {
+        update(userId, false);
+    }
+
+    // Reject the user's tokens until enabled again, e.g. while deactivated or after deletion
+    @Transactional
+    public void disable(Long userId) {
+        update(userId, true);
+    }
+
+    // Accept new tokens of a disabled user again; tokens issued before the user was disabled stay revoked
+    @Transactional
+    public void enable(Long userId) {
+        tokenRevocationRepository.findById(userId)
+                .filter(TokenRevocation::isDisabled)
+                .ifPresent(revocation -> {
+                    revocation.setDisabled(false);
+                    revocation.setUpdatedAt(LocalDateTime.now());
+                    tokenRevocationRepository.save(revocation);
+                    applyAfterCommit(revocation);
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval-ms:30000}",
+               initialDelayString = "${jwt.revocation.refresh-interval-ms:30000}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Reloading token revocations failed: {}", e.getMessage());
+        }
+    }
+
+    public synchronized void reload() {
+        Map<Long, int[]> loaded = new HashMap<>();
+        for (TokenRevocation revocation : tokenRevocationRepository.findAll()) {
+            loaded.put(revocation.getUserId(), entryOf(revocation));
+        }
+        revocations = loaded;
+    }
+
+    private Map<Long, int[]> snapshot() {
+        Map<Long, int[]> current = revocations;
+        if (current == null) {
+            synchronized (this) {
+                if (revocations == null) {
+                    reload();
+                }
+                current = revocations;
+            }
+        }
+        return current;
+    }
+
+    private void update(Long userId, boolean disabled) {
+        TokenRevocation revocation = tokenRevocationRepository.findById(userId)
+                .orElseGet(() -> new TokenRevocation(userId));
+        revocation.setTokenVersion(revocation.getTokenVersion() + 1);
+        revocation.setDisabled(disabled);
+        revocation.setUpdatedAt(LocalDateTime.now());
+        tokenRevocationRepository.save(revocation);
+        applyAfterCommit(revocation);
+    }
+
+    private void applyAfterCommit(TokenRevocation revocation) {
+        Long userId = revocation.getUserId();
+        int[] entry = entryOf(revocation);
+        Runnable apply = () -> {
+            synchronized (this) {
+                Map<Long, int[]> updated = new HashMap<>(snapshot());
+                updated.put(userId, entry);
+                revocations = updated;
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private static int[] entryOf(TokenRevocation revocation) {
+        return new int[] {revocation.getTokenVersion(), revocation.isDisabled() ? 1 : 0};
+    }
+}
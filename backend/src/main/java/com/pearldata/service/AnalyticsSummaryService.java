@@ -0,0 +1,78 @@
+package com.pearldata.service;
+
+import com.pearldata.repository.StudentAttendanceStatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Institution-wide attendance summary for the faculty analytics dashboard.
+ * Computed by one grouped query over the per-student totals and cached for a short time;
+ * any attendance write discards the cached summary.
+ */
+@Service
+public class AnalyticsSummaryService {
+
+    @Value("${analytics.summary.cache-ttl-ms:30000}")
+    private long cacheTtlMs;
+
+    @Autowired
+    private StudentAttendanceStatsRepository studentAttendanceStatsRepository;
+
+    @Autowired
+    private AttendanceChangeTracker attendanceChangeTracker;
+
+    private volatile CachedSummary cached;
+
+    // Get the summary, recomputing it when the cached one has expired or attendance changed since
+    @Transactional(readOnly = true)
+    public Map<String, Object> getSummary() {
+        long version = attendanceChangeTracker.getVersion();
+        long now = System.currentTimeMillis();
+
+        CachedSummary current = cached;
+        if (current != null && current.version == version && now < current.expiresAt) {
+            return current.summary;
+        }
+
+        Map<String, Object> summary = computeSummary();
+        cached = new CachedSummary(summary, version, now + cacheTtlMs);
+        return summary;
+    }
+
+    private Map<String, Object> computeSummary() {
+        Object[] row = studentAttendanceStatsRepository.summarizeActiveStudents().get(0);
+
+        Map<String, Long> attendanceStatusCount = new LinkedHashMap<>();
+        attendanceStatusCount.put("Excellent", ((Number) row[4]).longValue());
+        attendanceStatusCount.put("Good", ((Number) row[5]).longValue());
+        attendanceStatusCount.put("Average", ((Number) row[6]).longValue());
+        attendanceStatusCount.put("Poor", ((Number) row[7]).longValue());
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("totalStudents", ((Number) row[0]).longValue());
+        summary.put("studentsWithAttendance", ((Number) row[1]).longValue());
+        summary.put("overallAttendanceRate", String.format("%.2f", ((Number) row[2]).doubleValue()));
+        summary.put("overallAverageMarks", String.format("%.2f", ((Number) row[3]).doubleValue()));
+        summary.put("attendanceStatusDistribution", Collections.unmodifiableMap(attendanceStatusCount));
+        return Collections.unmodifiableMap(summary);
+    }
+
+    private static final class CachedSummary {
+        private final Map<String, Object> summary;
+        private final long version;
+        private final long expiresAt;
+
+        private CachedSummary(Map<String, Object> summary, long version, long expiresAt) {
+            this.summary = summary;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.pearldata.service;
+
+import com.pearldata.entity.AtRiskAlert;
+
+/**
+ * Published after AtRiskDetector commits a new alert, so that notification channels can push it
+ * without polling the alerts table.
+ */
+public class AtRiskAlertRaisedEvent {
+
+    private final Long alertId;
+    private final Long studentId;
+    private final AtRiskAlert.AlertType alertType;
+    private final double observedValue;
+    private final double referenceValue;
+    private final Long eventId;
+
+    public AtRiskAlertRaisedEvent(AtRiskAlert alert) {
+        this.alertId = alert.getId();
+        this.studentId = alert.getStudent().getId();
+        this.alertType = alert.getAlertType();
+        this.observedValue = alert.getObservedValue();
+        this.referenceValue = alert.getReferenceValue();
+        this.eventId = alert.getEventId();
+    }
+
+    // Getters
+    public Long getAlertId() { return alertId; }
+    public Long getStudentId() { return studentId; }
+    public AtRiskAlert.AlertType getAlertType() { return alertType; }
+    public double getObservedValue() { return observedValue; }
+    public double getReferenceValue() { return referenceValue; }
+    public Long getEventId() { return eventId; }
+}
@@ -0,0 +1,229 @@
+package com.pearldata.service;
+
+import com.pearldata.dto.AtRiskAlertDTO;
+import com.pearldata.entity.Attendance;
+import com.pearldata.entity.AtRiskAlert;
+import com.pearldata.entity.StudentRiskState;
+import com.pearldata.repository.AtRiskAlertRepository;
+import com.pearldata.repository.AttendanceChangeLogRepository;
+import com.pearldata.repository.StudentRepository;
+import com.pearldata.repository.StudentRiskStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Streaming detector of at-risk students. Every attendance insert, update and delete reaches it through
+ * the attendance change log and advances the student's constant-size StudentRiskState:
+ * <ul>
+ *   <li>attendance as decayed attended/total counters, so the rate covers roughly the last {@code window} events;</li>
+ *   <li>marks as an exponentially weighted moving average of the marks percentage.</li>
+ * </ul>
+ * An alert is raised when the rolling rate crosses below the threshold or a mark falls well below the
+ * student's average, and resolved when the student recovers. Reads only page through the alerts table.
+ */
+@Service
+public class AtRiskDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(AtRiskDetector.class);
+
+    @Value("${analytics.at-risk.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${analytics.at-risk.window:20}")
+    private int window;
+
+    @Value("${analytics.at-risk.attendance-threshold:75}")
+    private double attendanceThreshold;
+
+    @Value("${analytics.at-risk.min-events:5}")
+    private int minEvents;
+
+    @Value("${analytics.at-risk.marks-drop:20}")
+    private double marksDrop;
+
+    @Value("${analytics.at-risk.marks-min-count:3}")
+    private long marksMinCount;
+
+    @Value("${analytics.at-risk.marks-alpha:0.3}")
+    private double marksAlpha;
+
+    @Autowired
+    private AttendanceChangeLogRepository attendanceChangeLogRepository;
+
+    @Autowired
+    private StudentRiskStateRepository studentRiskStateRepository;
+
+    @Autowired
+    private AtRiskAlertRepository atRiskAlertRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Install the change log trigger and seed the risk state the first time it is empty
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        transactionTemplate.executeWithoutResult(status -> {
+            attendanceChangeLogRepository.installTrigger();
+            if (attendanceChangeLogRepository.isStateEmpty()) {
+                int seeded = attendanceChangeLogRepository.seedState(window);
+                logger.info("Seeded at-risk state of {} students", seeded);
+            }
+        });
+    }
+
+    // Apply logged attendance changes until the log is drained
+    @Scheduled(fixedDelayString = "${analytics.at-risk.poll-interval-ms:5000}")
+    public void poll() {
+        try {
+            while (processBatch() == batchSize) {
+                // Keep going while full batches come back
+            }
+        } catch (Exception e) {
+            logger.error("Processing attendance changes for the at-risk detector failed: {}", e.getMessage());
+        }
+    }
+
+    // Apply one batch of logged changes in one transaction; returns the number of changes applied
+    public int processBatch() {
+        List<AtRiskAlert> raised = new ArrayList<>();
+        Integer applied = transactionTemplate.execute(status -> {
+            List<AttendanceChangeLogRepository.Change> changes = attendanceChangeLogRepository.lockNextBatch(batchSize);
+            if (changes.isEmpty()) {
+                return 0;
+            }
+
+            Set<Long> studentIds = new LinkedHashSet<>();
+            changes.forEach(change -> studentIds.add(change.getStudentId()));
+            Map<Long, StudentRiskState> states = new HashMap<>();
+            studentRiskStateRepository.findAllForUpdate(studentIds).forEach(state -> states.put(state.getStudentId(), state));
+
+            LocalDateTime now = LocalDateTime.now();
+            for (AttendanceChangeLogRepository.Change change : changes) {
+                StudentRiskState state = states.computeIfAbsent(change.getStudentId(), StudentRiskState::new);
+                apply(state, change, now, raised);
+                state.setUpdatedAt(now);
+            }
+            studentRiskStateRepository.saveAll(states.values());
+            attendanceChangeLogRepository.deleteAll(changes);
+            return changes.size();
+        });
+
+        raised.forEach(alert -> applicationEventPublisher.publishEvent(new AtRiskAlertRaisedEvent(alert)));
+        return applied != null ? applied : 0;
+    }
+
+    /**
+     * One page of alerts, newest first.
+     * Clients poll for new alerts by passing the time of their last poll as {@code since}.
+     */
+    @Transactional(readOnly = true)
+    public Page<AtRiskAlertDTO> getAlerts(AtRiskAlert.AlertType alertType, boolean activeOnly, LocalDateTime since,
+                                          String department, int page, int size) {
+        return atRiskAlertRepository.findAlerts(alertType, activeOnly, since, department,
+                PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "raisedAt", "id")));
+    }
+
+    private void apply(StudentRiskState state, AttendanceChangeLogRepository.Change change, LocalDateTime now,
+                       List<AtRiskAlert> raised) {
+        boolean oldCounted = change.isOldMarked() && change.getOldStatus() != null;
+        boolean newCounted = change.isNewMarked() && change.getNewStatus() != null;
+        if (!oldCounted && !newCounted) {
+            return;
+        }
+
+        // Attendance: a newly counted row slides the window, a re-mark corrects in place, a removal takes it out
+        double attended = state.getAttendedScore();
+        double total = state.getTotalScore();
+        if (oldCounted && newCounted) {
+            attended += attendedValue(change.getNewStatus()) - attendedValue(change.getOldStatus());
+        } else if (newCounted) {
+            double decay = 1.0 - 1.0 / window;
+            attended = attended * decay + attendedValue(change.getNewStatus());
+            total = total * decay + 1;
+        } else {
+            attended -= attendedValue(change.getOldStatus());
+            total = Math.max(0.0, total - 1);
+        }
+        state.setTotalScore(total);
+        state.setAttendedScore(Math.max(0.0, Math.min(attended, total)));
+
+        if (state.getTotalScore() >= minEvents) {
+            double rate = state.getRollingAttendanceRate();
+            if (rate < attendanceThreshold && !state.isLowAttendance()) {
+                raised.add(raise(state, AtRiskAlert.AlertType.LOW_ATTENDANCE, rate, attendanceThreshold, change, now));
+                state.setLowAttendance(true);
+            } else if (rate >= attendanceThreshold && state.isLowAttendance()) {
+                resolve(state, AtRiskAlert.AlertType.LOW_ATTENDANCE, now);
+                state.setLowAttendance(false);
+            }
+        }
+
+        // Marks: compare each new mark with the average before folding it in
+        if (!newCounted || change.getNewMarks() == null || Objects.equals(change.getOldMarks(), change.getNewMarks())) {
+            return;
+        }
+        double percentage = percentageOf(change.getNewMarks(), change.getMaxMarks());
+        if (state.getMarksCount() >= marksMinCount) {
+            boolean dropped = state.getMarksEwma() - percentage >= marksDrop;
+            if (dropped && !state.isMarksDrop()) {
+                raised.add(raise(state, AtRiskAlert.AlertType.MARKS_DROP, percentage, state.getMarksEwma(), change, now));
+                state.setMarksDrop(true);
+            } else if (!dropped && state.isMarksDrop()) {
+                resolve(state, AtRiskAlert.AlertType.MARKS_DROP, now);
+                state.setMarksDrop(false);
+            }
+        }
+        state.setMarksEwma(state.getMarksCount() == 0
+                ? percentage
+                : marksAlpha * percentage + (1 - marksAlpha) * state.getMarksEwma());
+        state.setMarksCount(state.getMarksCount() + 1);
+    }
+
+    private AtRiskAlert raise(StudentRiskState state, AtRiskAlert.AlertType alertType, double observedValue,
+                              double referenceValue, AttendanceChangeLogRepository.Change change, LocalDateTime now) {
+        AtRiskAlert alert = new AtRiskAlert(studentRepository.getReferenceById(state.getStudentId()), alertType,
+                observedValue, referenceValue, change.getEventId(), now);
+        return atRiskAlertRepository.save(alert);
+    }
+
+    private void resolve(StudentRiskState state, AtRiskAlert.AlertType alertType, LocalDateTime now) {
+        atRiskAlertRepository.findFirstByStudentIdAndAlertTypeAndResolvedAtIsNull(state.getStudentId(), alertType)
+                .ifPresent(alert -> alert.setResolvedAt(now));
+    }
+
+    private static double attendedValue(Attendance.AttendanceStatus status) {
+        return status == Attendance.AttendanceStatus.PRESENT || status == Attendance.AttendanceStatus.LATE ? 1.0 : 0.0;
+    }
+
+    // Marks as a percentage of the maximum; raw marks when the event has no maximum
+    private static double percentageOf(double marks, Double maxMarks) {
+        return maxMarks != null && maxMarks > 0 ? marks * 100.0 / maxMarks : marks;
+    }
+}
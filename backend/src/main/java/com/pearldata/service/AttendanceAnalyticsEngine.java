@@ -0,0 +1,827 @@
+package com.pearldata.service;
+
+import com.pearldata.entity.Attendance;
+import com.pearldata.entity.Event;
+import com.pearldata.repository.AttendanceFactRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Resident columnar copy of the attendance fact table for interactive analytics.
+ * Every row is a student index, an event index, a status ordinal, the marks and markedAt in epoch seconds,
+ * kept in parallel primitive arrays; faculty and event type are looked up through the event index, department
+ * and course through the student index. Rate, histogram and average queries are plain loops over these arrays,
+ * split across the common fork/join pool once a scan is large enough.
+ * <p>
+ * The engine is loaded in full at startup (live rows and the cold archive) and reloaded periodically to pick
+ * up student and event edits. In between, changed events are queued and their rows reloaded from the database
+ * just before the next query: events written on this instance as soon as the write commits (through
+ * AttendanceChangedEvent), events written on other instances once the shared per-event change watermarks
+ * are polled, every poll interval.
+ */
+@Service
+public class AttendanceAnalyticsEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceAnalyticsEngine.class);
+
+    private static final Attendance.AttendanceStatus[] STATUSES = Attendance.AttendanceStatus.values();
+
+    private static final Event.EventType[] EVENT_TYPES = Event.EventType.values();
+
+    // Status of a row whose attendance was deleted; the slot is reclaimed by the next compaction
+    private static final byte DELETED = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    @Value("${analytics.engine.parallel-threshold:200000}")
+    private int parallelThreshold;
+
+    @Autowired
+    private AttendanceFactRepository attendanceFactRepository;
+
+    @Autowired
+    private AttendanceArchiveService attendanceArchiveService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ChangeWatermarks changeWatermarks;
+
+    private ChangeWatermarks.EventChangeCursor sharedChanges;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Set<Long> pendingEventIds = ConcurrentHashMap.newKeySet();
+
+    private volatile Store store;
+
+    private LocalDateTime loadedAt;
+
+    // Events reloaded into the current copy while a full reload is building the next one
+    private Set<Long> reloadedDuringFullReload;
+
+    @PostConstruct
+    public void init() {
+        sharedChanges = changeWatermarks.newEventAttendanceCursor();
+    }
+
+    // Load the fact table once the application is up
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reload();
+    }
+
+    // Queue the changed events; their rows are reloaded before the next query
+    @EventListener
+    public void onAttendanceChanged(AttendanceChangedEvent change) {
+        pendingEventIds.addAll(change.getEventIds());
+    }
+
+    // Queue the events whose attendance changed on any instance, including this one
+    @Scheduled(fixedDelayString = "${analytics.engine.poll-interval-ms:1000}")
+    public void pollSharedChanges() {
+        try {
+            pendingEventIds.addAll(sharedChanges.poll());
+        } catch (DataAccessException e) {
+            logger.error("Polling attendance changes for the analytics engine failed: {}", e.getMessage());
+        }
+    }
+
+    // Periodic full reload, so edits to students (department, course) and events (faculty, type) show up
+    @Scheduled(fixedDelayString = "${analytics.engine.reload-interval-ms:21600000}",
+               initialDelayString = "${analytics.engine.reload-interval-ms:21600000}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Scheduled reload of the attendance analytics engine failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the engine from the attendance table and the cold archive.
+     * Queries keep using the previous copy until the new one is complete.
+     */
+    public synchronized Map<String, Object> reload() {
+        long started = System.currentTimeMillis();
+        Set<Long> queued;
+        lock.writeLock().lock();
+        try {
+            // Changes queued so far are committed, so the fresh copy below includes them
+            queued = new HashSet<>(pendingEventIds);
+            pendingEventIds.removeAll(queued);
+            reloadedDuringFullReload = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Store fresh = new Store();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                attendanceFactRepository.forEachStudent(fresh::putStudent);
+                attendanceFactRepository.forEachEvent(fresh::putEvent);
+                attendanceArchiveService.forEachArchive(contents -> {
+                    contents.getEvents().forEach(e -> fresh.putEvent(e.getId(), e.getFacultyId(), e.getEventType()));
+                    contents.getRows().stream()
+                            .filter(AttendanceArchiveFile.AttendanceRow::isMarked)
+                            .forEach(row -> fresh.append(fresh.studentSlot(row.getStudentId()),
+                                    fresh.eventSlot(row.getEventId()), row.getStatus(),
+                                    row.getMarksObtained() != null ? row.getMarksObtained() : Double.NaN, toEpochSecond(row.getMarkedAt())));
+                });
+                attendanceFactRepository.forEachFact((studentId, eventId, attendanceStatus, marks, markedAt) ->
+                        fresh.append(fresh.studentSlot(studentId), fresh.eventSlot(eventId), attendanceStatus, marks, toEpochSecond(markedAt)));
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                // The current copy still has to catch up with the changes this reload would have covered
+                pendingEventIds.addAll(queued);
+                reloadedDuringFullReload = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Events reloaded into the old copy meanwhile may have changed after the fresh copy read them
+            pendingEventIds.addAll(reloadedDuringFullReload);
+            reloadedDuringFullReload = null;
+            store = fresh;
+            loadedAt = LocalDateTime.now();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info("Loaded attendance analytics engine: {} rows, {} students, {} events in {} ms",
+                fresh.size, fresh.studentCount, fresh.eventCount, System.currentTimeMillis() - started);
+        return getStatus();
+    }
+
+    // Size and freshness of the engine
+    public Map<String, Object> getStatus() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> status = new HashMap<>();
+            status.put("loaded", store != null);
+            status.put("rows", store != null ? store.size - store.deleted : 0);
+            status.put("students", store != null ? store.studentCount : 0);
+            status.put("events", store != null ? store.eventCount : 0);
+            status.put("pendingEvents", pendingEventIds.size());
+            status.put("loadedAt", loadedAt);
+            return status;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Totals of all rows that match the filter
+    public Aggregate aggregate(Filter filter) {
+        return aggregateBy(null, filter).getOrDefault(null, new Aggregate());
+    }
+
+    // Totals per student, event, faculty member, department, course or event type of the rows that match the filter
+    @SuppressWarnings("unchecked")
+    public <K> Map<K, Aggregate> aggregateBy(GroupBy<K> groupBy, Filter filter) {
+        applyPendingChanges();
+
+        lock.readLock().lock();
+        try {
+            Store current = store;
+            Plan plan = current.plan(filter);
+            Map<K, Aggregate> result = new LinkedHashMap<>();
+            if (plan == null) {
+                return result;
+            }
+
+            int groups = groupBy == null ? 1 : current.groupCount(groupBy);
+            Accumulator totals = scan(current, plan, groupBy, groups);
+            for (int group = 0; group < groups; group++) {
+                Aggregate aggregate = totals.get(group);
+                if (aggregate.getTotal() > 0) {
+                    result.put(groupBy == null ? null : (K) current.groupKey(groupBy, group), aggregate);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Accumulator scan(Store current, Plan plan, GroupBy<?> groupBy, int groups) {
+        int rows = plan.slots != null ? plan.slots.size : current.size;
+        if (rows < parallelThreshold) {
+            Accumulator accumulator = new Accumulator(groups);
+            current.scan(plan, groupBy, 0, rows, accumulator);
+            return accumulator;
+        }
+
+        int chunks = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+        int chunkSize = (rows + chunks - 1) / chunks;
+        return IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> {
+                    Accumulator accumulator = new Accumulator(groups);
+                    current.scan(plan, groupBy, chunk * chunkSize, Math.min(rows, (chunk + 1) * chunkSize), accumulator);
+                    return accumulator;
+                })
+                .reduce(Accumulator::merge)
+                .orElseGet(() -> new Accumulator(groups));
+    }
+
+    // Reload the rows of events written since the last query, or load everything if nothing is loaded yet
+    private void applyPendingChanges() {
+        if (store == null) {
+            synchronized (this) {
+                if (store == null) {
+                    reload();
+                }
+            }
+            return;
+        }
+        if (pendingEventIds.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            List<Long> eventIds = new ArrayList<>(pendingEventIds);
+            if (eventIds.isEmpty()) {
+                return;
+            }
+            pendingEventIds.removeAll(eventIds);
+            if (reloadedDuringFullReload != null) {
+                reloadedDuringFullReload.addAll(eventIds);
+            }
+
+            Store current = store;
+            Map<Long, List<long[]>> rowsByEvent = new HashMap<>();
+            Map<Long, List<double[]>> marksByEvent = new HashMap<>();
+            Set<Long> unknownStudents = new HashSet<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                attendanceFactRepository.forEachEvent(eventIds, current::putEvent);
+                attendanceFactRepository.forEachFactOfEvents(eventIds, (studentId, eventId, attendanceStatus, marks, markedAt) -> {
+                    rowsByEvent.computeIfAbsent(eventId, id -> new ArrayList<>())
+                            .add(new long[] {studentId, attendanceStatus.ordinal(), toEpochSecond(markedAt)});
+                    marksByEvent.computeIfAbsent(eventId, id -> new ArrayList<>()).add(new double[] {marks});
+                    if (!current.hasStudent(studentId)) {
+                        unknownStudents.add(studentId);
+                    }
+                });
+                if (!unknownStudents.isEmpty()) {
+                    attendanceFactRepository.forEachStudent(unknownStudents, current::putStudent);
+                }
+            });
+
+            for (Long eventId : eventIds) {
+                current.replaceEventRows(eventId, rowsByEvent.getOrDefault(eventId, List.of()),
+                        marksByEvent.getOrDefault(eventId, List.of()));
+            }
+            current.compactIfNeeded();
+            logger.debug("Reloaded attendance of {} events into the analytics engine", eventIds.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE;
+    }
+
+    private static long toEpochSecond(Timestamp timestamp) {
+        return timestamp != null ? toEpochSecond(timestamp.toLocalDateTime()) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Which rows a query covers. Every criterion is optional and they combine with AND,
+     * e.g. {@code Filter.all().department("CS").eventType(Event.EventType.LECTURE)}.
+     */
+    public static class Filter {
+        private Long studentId;
+        private Long eventId;
+        private Long facultyId;
+        private String department;
+        private String course;
+        private Event.EventType eventType;
+        private LocalDateTime from;
+        private LocalDateTime to;
+
+        public static Filter all() {
+            return new Filter();
+        }
+
+        public static Filter forStudent(Long studentId) {
+            return new Filter().student(studentId);
+        }
+
+        public Filter student(Long studentId) {
+            this.studentId = studentId;
+            return this;
+        }
+
+        public Filter event(Long eventId) {
+            this.eventId = eventId;
+            return this;
+        }
+
+        // Rows of events owned by the faculty member
+        public Filter faculty(Long facultyId) {
+            this.facultyId = facultyId;
+            return this;
+        }
+
+        public Filter department(String department) {
+            this.department = department;
+            return this;
+        }
+
+        public Filter course(String course) {
+            this.course = course;
+            return this;
+        }
+
+        public Filter eventType(Event.EventType eventType) {
+            this.eventType = eventType;
+            return this;
+        }
+
+        // Rows marked between the dates (inclusive); either bound may be null
+        public Filter between(LocalDateTime from, LocalDateTime to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+    }
+
+    /**
+     * What aggregateBy groups rows by, with the type of the resulting keys:
+     * student, event and faculty IDs, department and course names, or event types.
+     */
+    public static final class GroupBy<K> {
+        public static final GroupBy<Long> STUDENT = new GroupBy<>(0);
+        public static final GroupBy<Long> EVENT = new GroupBy<>(1);
+        public static final GroupBy<Long> FACULTY = new GroupBy<>(2);
+        public static final GroupBy<String> DEPARTMENT = new GroupBy<>(3);
+        public static final GroupBy<String> COURSE = new GroupBy<>(4);
+        public static final GroupBy<Event.EventType> EVENT_TYPE = new GroupBy<>(5);
+
+        private final int kind;
+
+        private GroupBy(int kind) {
+            this.kind = kind;
+        }
+    }
+
+    // Status counts and marks of a set of rows
+    public static class Aggregate {
+        private final long[] counts = new long[STATUSES.length];
+        private double marksSum;
+        private long marksCount;
+
+        public long getTotal() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long getCount(Attendance.AttendanceStatus status) {
+            return counts[status.ordinal()];
+        }
+
+        // Present or late
+        public long getAttendedCount() {
+            return getCount(Attendance.AttendanceStatus.PRESENT) + getCount(Attendance.AttendanceStatus.LATE);
+        }
+
+        public double getAttendanceRate() {
+            long total = getTotal();
+            return total > 0 ? (double) getAttendedCount() / total * 100 : 0.0;
+        }
+
+        public double getAverageMarks() {
+            return marksCount > 0 ? marksSum / marksCount : 0.0;
+        }
+
+        public long getMarksCount() {
+            return marksCount;
+        }
+
+        // Counts of every status, zero included
+        public Map<Attendance.AttendanceStatus, Long> getHistogram() {
+            Map<Attendance.AttendanceStatus, Long> histogram = new EnumMap<>(Attendance.AttendanceStatus.class);
+            for (Attendance.AttendanceStatus status : STATUSES) {
+                histogram.put(status, counts[status.ordinal()]);
+            }
+            return histogram;
+        }
+    }
+
+    // Per-group running totals of one scan, flat so that a scan allocates three arrays whatever the group count
+    private static final class Accumulator {
+        private final long[] counts;
+        private final double[] marksSum;
+        private final long[] marksCount;
+
+        private Accumulator(int groups) {
+            counts = new long[groups * STATUSES.length];
+            marksSum = new double[groups];
+            marksCount = new long[groups];
+        }
+
+        private Accumulator merge(Accumulator other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            for (int i = 0; i < marksSum.length; i++) {
+                marksSum[i] += other.marksSum[i];
+                marksCount[i] += other.marksCount[i];
+            }
+            return this;
+        }
+
+        private Aggregate get(int group) {
+            Aggregate aggregate = new Aggregate();
+            System.arraycopy(counts, group * STATUSES.length, aggregate.counts, 0, STATUSES.length);
+            aggregate.marksSum = marksSum[group];
+            aggregate.marksCount = marksCount[group];
+            return aggregate;
+        }
+    }
+
+    // A filter resolved against the dimension indexes; slots is null for a full scan
+    private static final class Plan {
+        private IntList slots;
+        private int student = -1;
+        private int event = -1;
+        private boolean[] eventMask;
+        private boolean[] studentMask;
+        private long from = Long.MIN_VALUE;
+        private long to = Long.MAX_VALUE;
+    }
+
+    private static final class Store {
+        // Students
+        private final Map<Long, Integer> studentIndex = new HashMap<>();
+        private long[] studentIds = new long[INITIAL_CAPACITY];
+        private int[] studentDepartment = new int[INITIAL_CAPACITY];
+        private int[] studentCourse = new int[INITIAL_CAPACITY];
+        private IntList[] rowsByStudent = new IntList[INITIAL_CAPACITY];
+        private int studentCount;
+
+        // Events
+        private final Map<Long, Integer> eventIndex = new HashMap<>();
+        private long[] eventIds = new long[INITIAL_CAPACITY];
+        private int[] eventFaculty = new int[INITIAL_CAPACITY];
+        private byte[] eventType = new byte[INITIAL_CAPACITY];
+        private IntList[] rowsByEvent = new IntList[INITIAL_CAPACITY];
+        private int eventCount;
+
+        // Dictionaries
+        private final Dictionary<Long> faculties = new Dictionary<>();
+        private final Dictionary<String> departments = new Dictionary<>();
+        private final Dictionary<String> courses = new Dictionary<>();
+
+        // Facts
+        private int[] studentCol = new int[INITIAL_CAPACITY];
+        private int[] eventCol = new int[INITIAL_CAPACITY];
+        private byte[] statusCol = new byte[INITIAL_CAPACITY];
+        private float[] marksCol = new float[INITIAL_CAPACITY];
+        private long[] markedAtCol = new long[INITIAL_CAPACITY];
+        private int size;
+        private int deleted;
+
+        private boolean hasStudent(long id) {
+            return studentIndex.containsKey(id);
+        }
+
+        private void putStudent(long id, String department, String course) {
+            int slot = studentSlot(id);
+            studentDepartment[slot] = departments.code(department);
+            studentCourse[slot] = courses.code(course);
+        }
+
+        private void putEvent(long id, long facultyId, Event.EventType type) {
+            int slot = eventSlot(id);
+            eventFaculty[slot] = faculties.code(facultyId);
+            eventType[slot] = (byte) type.ordinal();
+        }
+
+        // Index of the student, added without department or course if unknown
+        private int studentSlot(long id) {
+            Integer slot = studentIndex.get(id);
+            if (slot != null) {
+                return slot;
+            }
+            if (studentCount == studentIds.length) {
+                int capacity = studentCount * 2;
+                studentIds = Arrays.copyOf(studentIds, capacity);
+                studentDepartment = Arrays.copyOf(studentDepartment, capacity);
+                studentCourse = Arrays.copyOf(studentCourse, capacity);
+                rowsByStudent = Arrays.copyOf(rowsByStudent, capacity);
+            }
+            studentIds[studentCount] = id;
+            studentDepartment[studentCount] = departments.code(null);
+            studentCourse[studentCount] = courses.code(null);
+            rowsByStudent[studentCount] = new IntList();
+            studentIndex.put(id, studentCount);
+            return studentCount++;
+        }
+
+        // Index of the event; an event seen only through its rows has no faculty until its dimensions are loaded
+        private int eventSlot(long id) {
+            Integer slot = eventIndex.get(id);
+            if (slot != null) {
+                return slot;
+            }
+            if (eventCount == eventIds.length) {
+                int capacity = eventCount * 2;
+                eventIds = Arrays.copyOf(eventIds, capacity);
+                eventFaculty = Arrays.copyOf(eventFaculty, capacity);
+                eventType = Arrays.copyOf(eventType, capacity);
+                rowsByEvent = Arrays.copyOf(rowsByEvent, capacity);
+            }
+            eventIds[eventCount] = id;
+            eventFaculty[eventCount] = -1;
+            eventType[eventCount] = -1;
+            rowsByEvent[eventCount] = new IntList();
+            eventIndex.put(id, eventCount);
+            return eventCount++;
+        }
+
+        private void append(int student, int event, Attendance.AttendanceStatus status, double marks, long markedAt) {
+            if (size == studentCol.length) {
+                int capacity = size * 2;
+                studentCol = Arrays.copyOf(studentCol, capacity);
+                eventCol = Arrays.copyOf(eventCol, capacity);
+                statusCol = Arrays.copyOf(statusCol, capacity);
+                marksCol = Arrays.copyOf(marksCol, capacity);
+                markedAtCol = Arrays.copyOf(markedAtCol, capacity);
+            }
+            write(size, student, event, (byte) status.ordinal(), marks, markedAt);
+            rowsByStudent[student].add(size);
+            rowsByEvent[event].add(size);
+            size++;
+        }
+
+        private void write(int row, int student, int event, byte status, double marks, long markedAt) {
+            studentCol[row] = student;
+            eventCol[row] = event;
+            statusCol[row] = status;
+            marksCol[row] = (float) marks;
+            markedAtCol[row] = markedAt;
+        }
+
+        /**
+         * Make the event's rows match the database: rows of students still present are overwritten in place,
+         * new students are appended and rows that disappeared are marked deleted.
+         * Each rows entry is {studentId, status ordinal, markedAt}, with the matching marks entry alongside.
+         */
+        private void replaceEventRows(long eventId, List<long[]> rows, List<double[]> marks) {
+            if (rows.isEmpty() && !eventIndex.containsKey(eventId)) {
+                return;
+            }
+            int event = eventSlot(eventId);
+
+            Map<Integer, Integer> existing = new HashMap<>();
+            IntList slots = rowsByEvent[event];
+            for (int i = 0; i < slots.size; i++) {
+                int row = slots.values[i];
+                if (statusCol[row] != DELETED) {
+                    existing.put(studentCol[row], row);
+                }
+            }
+
+            for (int i = 0; i < rows.size(); i++) {
+                long[] values = rows.get(i);
+                int student = studentSlot(values[0]);
+                Integer row = existing.remove(student);
+                if (row != null) {
+                    write(row, student, event, (byte) values[1], marks.get(i)[0], values[2]);
+                } else {
+                    append(student, event, STATUSES[(int) values[1]], marks.get(i)[0], values[2]);
+                }
+            }
+            for (int row : existing.values()) {
+                statusCol[row] = DELETED;
+                deleted++;
+            }
+        }
+
+        // Drop deleted rows once they make up a quarter of the table
+        private void compactIfNeeded() {
+            if (deleted < INITIAL_CAPACITY || deleted * 4 < size) {
+                return;
+            }
+            for (int i = 0; i < studentCount; i++) {
+                rowsByStudent[i].clear();
+            }
+            for (int i = 0; i < eventCount; i++) {
+                rowsByEvent[i].clear();
+            }
+            int live = 0;
+            for (int row = 0; row < size; row++) {
+                if (statusCol[row] == DELETED) {
+                    continue;
+                }
+                write(live, studentCol[row], eventCol[row], statusCol[row], marksCol[row], markedAtCol[row]);
+                rowsByStudent[studentCol[live]].add(live);
+                rowsByEvent[eventCol[live]].add(live);
+                live++;
+            }
+            size = live;
+            deleted = 0;
+        }
+
+        // Resolve a filter against the indexes; null when nothing can match
+        private Plan plan(Filter filter) {
+            Plan plan = new Plan();
+            if (filter.studentId != null) {
+                Integer student = studentIndex.get(filter.studentId);
+                if (student == null) {
+                    return null;
+                }
+                plan.student = student;
+                plan.slots = rowsByStudent[student];
+            }
+            if (filter.eventId != null) {
+                Integer event = eventIndex.get(filter.eventId);
+                if (event == null) {
+                    return null;
+                }
+                plan.event = event;
+                if (plan.slots == null) {
+                    plan.slots = rowsByEvent[event];
+                }
+            }
+            if (filter.facultyId != null || filter.eventType != null) {
+                int faculty = filter.facultyId != null ? faculties.find(filter.facultyId) : -1;
+                if (filter.facultyId != null && faculty < 0) {
+                    return null;
+                }
+                plan.eventMask = new boolean[eventCount];
+                for (int event = 0; event < eventCount; event++) {
+                    plan.eventMask[event] = (filter.facultyId == null || eventFaculty[event] == faculty)
+                            && (filter.eventType == null || eventType[event] == filter.eventType.ordinal());
+                }
+            }
+            if (filter.department != null || filter.course != null) {
+                int department = filter.department != null ? departments.find(filter.department) : -1;
+                int course = filter.course != null ? courses.find(filter.course) : -1;
+                if ((filter.department != null && department < 0) || (filter.course != null && course < 0)) {
+                    return null;
+                }
+                plan.studentMask = new boolean[studentCount];
+                for (int student = 0; student < studentCount; student++) {
+                    plan.studentMask[student] = (filter.department == null || studentDepartment[student] == department)
+                            && (filter.course == null || studentCourse[student] == course);
+                }
+            }
+            if (filter.from != null) {
+                plan.from = toEpochSecond(filter.from);
+            }
+            if (filter.to != null) {
+                plan.to = toEpochSecond(filter.to);
+            }
+            return plan;
+        }
+
+        // Add the matching rows among positions [from, to) of the plan's slots (or of the whole table) to the accumulator
+        private void scan(Plan plan, GroupBy<?> groupBy, int from, int to, Accumulator accumulator) {
+            int statuses = STATUSES.length;
+            for (int i = from; i < to; i++) {
+                int row = plan.slots != null ? plan.slots.values[i] : i;
+                byte status = statusCol[row];
+                if (status == DELETED) {
+                    continue;
+                }
+                int student = studentCol[row];
+                int event = eventCol[row];
+                if ((plan.student >= 0 && student != plan.student)
+                        || (plan.event >= 0 && event != plan.event)
+                        || (plan.eventMask != null && !plan.eventMask[event])
+                        || (plan.studentMask != null && !plan.studentMask[student])) {
+                    continue;
+                }
+                long markedAt = markedAtCol[row];
+                if (markedAt < plan.from || markedAt > plan.to) {
+                    continue;
+                }
+
+                int group = groupBy == null ? 0 : groupOf(groupBy, student, event);
+                if (group < 0) {
+                    continue;
+                }
+                accumulator.counts[group * statuses + status]++;
+                float marks = marksCol[row];
+                if (!Float.isNaN(marks)) {
+                    accumulator.marksSum[group] += marks;
+                    accumulator.marksCount[group]++;
+                }
+            }
+        }
+
+        private int groupOf(GroupBy<?> groupBy, int student, int event) {
+            switch (groupBy.kind) {
+                case 0: return student;
+                case 1: return event;
+                case 2: return eventFaculty[event];
+                case 3: return studentDepartment[student];
+                case 4: return studentCourse[student];
+                default: return eventType[event];
+            }
+        }
+
+        private int groupCount(GroupBy<?> groupBy) {
+            switch (groupBy.kind) {
+                case 0: return studentCount;
+                case 1: return eventCount;
+                case 2: return faculties.size();
+                case 3: return departments.size();
+                case 4: return courses.size();
+                default: return EVENT_TYPES.length;
+            }
+        }
+
+        private Object groupKey(GroupBy<?> groupBy, int group) {
+            switch (groupBy.kind) {
+                case 0: return studentIds[group];
+                case 1: return eventIds[group];
+                case 2: return faculties.value(group);
+                case 3: return departments.value(group);
+                case 4: return courses.value(group);
+                default: return EVENT_TYPES[group];
+            }
+        }
+    }
+
+    // Dense codes for the distinct values of a dimension attribute
+    private static final class Dictionary<T> {
+        private final Map<T, Integer> codes = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        private int code(T value) {
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        private int find(T value) {
+            return codes.getOrDefault(value, -1);
+        }
+
+        private T value(int code) {
+            return values.get(code);
+        }
+
+        private int size() {
+            return values.size();
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,580 @@
+package com.pearldata.service;
+
+import com.pearldata.entity.Attendance;
+import com.pearldata.entity.Event;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk format of one attendance archive. Version 2 files start with a plain prefix (magic, version,
+ * head length) followed by a gzip'd head and a sequence of separately gzip'd attendance blocks.
+ * The head holds a small header (marked_at range, sorted student and faculty IDs, and the student ID
+ * range of every block) and the event block. Rows are sorted by student, so one student's history
+ * decompresses only the blocks that cover that student. Columns are stored one after another, and
+ * timestamps keep microsecond precision like the database.
+ * Version 1 files (one gzip stream, millisecond timestamps, no block index) are still readable.
+ */
+public final class AttendanceArchiveFile {
+
+    private static final int MAGIC = 0x41544152;
+
+    private static final int VERSION = 2;
+
+    private static final int PREFIX_BYTES = 12;
+
+    // Small enough that a student's slice is cheap to decode, large enough to compress well
+    private static final int ROWS_PER_BLOCK = 4096;
+
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    private AttendanceArchiveFile() {}
+
+    // Write events and their attendance rows to path
+    public static void write(Path path, List<EventRow> events, List<AttendanceRow> rows) throws IOException {
+        List<AttendanceRow> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparingLong((AttendanceRow r) -> r.studentId).thenComparingLong(r -> r.id));
+
+        int blockCount = (sorted.size() + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        List<byte[]> blocks = new ArrayList<>(blockCount);
+        long[] firstStudentIds = new long[blockCount];
+        long[] lastStudentIds = new long[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            List<AttendanceRow> block = sorted.subList(b * ROWS_PER_BLOCK, Math.min((b + 1) * ROWS_PER_BLOCK, sorted.size()));
+            firstStudentIds[b] = block.get(0).studentId;
+            lastStudentIds[b] = block.get(block.size() - 1).studentId;
+            blocks.add(gzip(out -> writeAttendance(out, block)));
+        }
+
+        Header header = Header.of(rows);
+        byte[] head = gzip(out -> {
+            out.writeLong(toEpochMicros(header.minMarkedAt));
+            out.writeLong(toEpochMicros(header.maxMarkedAt));
+            writeLongs(out, header.studentIds);
+            writeLongs(out, header.facultyIds);
+            out.writeInt(blockCount);
+            for (int b = 0; b < blockCount; b++) {
+                out.writeLong(firstStudentIds[b]);
+                out.writeLong(lastStudentIds[b]);
+                out.writeInt(blocks.get(b).length);
+            }
+            writeEvents(out, events);
+        });
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(head.length);
+            out.write(head);
+            for (byte[] block : blocks) {
+                out.write(block);
+            }
+        }
+    }
+
+    // Read only the header
+    public static Header readHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int headLength = readPrefix(channel);
+            if (headLength < 0) {
+                try (DataInputStream in = openVersion1(path)) {
+                    return readVersion1Header(in, path);
+                }
+            }
+            try (DataInputStream in = gunzip(readFully(channel, PREFIX_BYTES, headLength))) {
+                return readHead(in, PREFIX_BYTES + headLength);
+            }
+        }
+    }
+
+    // Read the whole archive
+    public static Contents read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int headLength = readPrefix(channel);
+            if (headLength < 0) {
+                return readVersion1(path);
+            }
+            Header header;
+            List<EventRow> events;
+            try (DataInputStream in = gunzip(readFully(channel, PREFIX_BYTES, headLength))) {
+                header = readHead(in, PREFIX_BYTES + headLength);
+                events = readEvents(in, VERSION);
+            }
+            List<AttendanceRow> rows = new ArrayList<>();
+            for (int b = 0; b < header.blockOffsets.length; b++) {
+                rows.addAll(readBlock(channel, header, b));
+            }
+            return new Contents(header, events, rows);
+        }
+    }
+
+    // Read the events and only the attendance rows of one student, decompressing just the blocks that cover them
+    public static Contents readStudent(Path path, Header header, long studentId) throws IOException {
+        if (header.blockOffsets == null) {
+            Contents contents = readVersion1(path);
+            List<AttendanceRow> rows = new ArrayList<>();
+            for (AttendanceRow row : contents.rows) {
+                if (row.studentId == studentId) {
+                    rows.add(row);
+                }
+            }
+            return new Contents(contents.header, contents.events, rows);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int headLength = readPrefix(channel);
+            List<EventRow> events;
+            try (DataInputStream in = gunzip(readFully(channel, PREFIX_BYTES, headLength))) {
+                readHead(in, PREFIX_BYTES + headLength);
+                events = readEvents(in, VERSION);
+            }
+            List<AttendanceRow> rows = new ArrayList<>();
+            for (int b = 0; b < header.blockOffsets.length; b++) {
+                if (header.blockFirstStudentIds[b] > studentId || header.blockLastStudentIds[b] < studentId) {
+                    continue;
+                }
+                for (AttendanceRow row : readBlock(channel, header, b)) {
+                    if (row.studentId == studentId) {
+                        rows.add(row);
+                    }
+                }
+            }
+            return new Contents(header, events, rows);
+        }
+    }
+
+    private interface BlockWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] gzip(BlockWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(bytes, 1 << 16)))) {
+            writer.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream gunzip(byte[] bytes) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes), 1 << 16)));
+    }
+
+    // Returns the head length of a version 2 file, or -1 for a version 1 file (which starts with the gzip magic)
+    private static int readPrefix(FileChannel channel) throws IOException {
+        if (channel.size() < PREFIX_BYTES) {
+            return -1;
+        }
+        ByteBuffer prefix = ByteBuffer.wrap(readFully(channel, 0, PREFIX_BYTES));
+        if (prefix.getInt() != MAGIC) {
+            return -1;
+        }
+        int version = prefix.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported attendance archive version " + version);
+        }
+        return prefix.getInt();
+    }
+
+    private static byte[] readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Attendance archive is truncated");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static Header readHead(DataInputStream in, long blocksStart) throws IOException {
+        LocalDateTime minMarkedAt = fromEpochMicros(in.readLong());
+        LocalDateTime maxMarkedAt = fromEpochMicros(in.readLong());
+        long[] studentIds = readLongs(in);
+        long[] facultyIds = readLongs(in);
+
+        int blockCount = in.readInt();
+        long[] firstStudentIds = new long[blockCount];
+        long[] lastStudentIds = new long[blockCount];
+        long[] offsets = new long[blockCount];
+        int[] lengths = new int[blockCount];
+        long offset = blocksStart;
+        for (int b = 0; b < blockCount; b++) {
+            firstStudentIds[b] = in.readLong();
+            lastStudentIds[b] = in.readLong();
+            lengths[b] = in.readInt();
+            offsets[b] = offset;
+            offset += lengths[b];
+        }
+        return new Header(minMarkedAt, maxMarkedAt, studentIds, facultyIds, firstStudentIds, lastStudentIds, offsets, lengths);
+    }
+
+    private static List<AttendanceRow> readBlock(FileChannel channel, Header header, int block) throws IOException {
+        try (DataInputStream in = gunzip(readFully(channel, header.blockOffsets[block], header.blockLengths[block]))) {
+            return readAttendance(in, VERSION);
+        }
+    }
+
+    private static DataInputStream openVersion1(Path path) throws IOException {
+        InputStream file = Files.newInputStream(path);
+        try {
+            return new DataInputStream(new BufferedInputStream(new GZIPInputStream(file, 1 << 16)));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static Contents readVersion1(Path path) throws IOException {
+        try (DataInputStream in = openVersion1(path)) {
+            Header header = readVersion1Header(in, path);
+            List<EventRow> events = readEvents(in, 1);
+            List<AttendanceRow> rows = readAttendance(in, 1);
+            return new Contents(header, events, rows);
+        }
+    }
+
+    private static Header readVersion1Header(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an attendance archive: " + path);
+        }
+        int version = in.readInt();
+        if (version != 1) {
+            throw new IOException("Unsupported attendance archive version " + version + ": " + path);
+        }
+        LocalDateTime minMarkedAt = fromEpochMillis(in.readLong());
+        LocalDateTime maxMarkedAt = fromEpochMillis(in.readLong());
+        return new Header(minMarkedAt, maxMarkedAt, readLongs(in), readLongs(in), null, null, null, null);
+    }
+
+    private static void writeEvents(DataOutputStream out, List<EventRow> events) throws IOException {
+        out.writeInt(events.size());
+        for (EventRow e : events) out.writeLong(e.id);
+        for (EventRow e : events) writeNullableString(out, e.title);
+        for (EventRow e : events) writeNullableString(out, e.description);
+        writeEnumColumn(out, Event.EventType.values(), events.stream().map(e -> e.eventType).toArray(Enum[]::new));
+        for (EventRow e : events) out.writeLong(toEpochMicros(e.startTime));
+        for (EventRow e : events) out.writeLong(toEpochMicros(e.endTime));
+        for (EventRow e : events) writeNullableString(out, e.location);
+        for (EventRow e : events) out.writeLong(e.facultyId);
+        writeEnumColumn(out, Event.EventStatus.values(), events.stream().map(e -> e.status).toArray(Enum[]::new));
+        for (EventRow e : events) out.writeLong(toEpochMicros(e.createdAt));
+    }
+
+    private static List<EventRow> readEvents(DataInputStream in, int version) throws IOException {
+        int count = in.readInt();
+        long[] ids = new long[count];
+        String[] titles = new String[count];
+        String[] descriptions = new String[count];
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        String[] locations = new String[count];
+        long[] facultyIds = new long[count];
+        long[] createdAts = new long[count];
+
+        for (int i = 0; i < count; i++) ids[i] = in.readLong();
+        for (int i = 0; i < count; i++) titles[i] = readNullableString(in);
+        for (int i = 0; i < count; i++) descriptions[i] = readNullableString(in);
+        Event.EventType[] types = readEnumColumn(in, count, Event.EventType.class);
+        for (int i = 0; i < count; i++) starts[i] = in.readLong();
+        for (int i = 0; i < count; i++) ends[i] = in.readLong();
+        for (int i = 0; i < count; i++) locations[i] = readNullableString(in);
+        for (int i = 0; i < count; i++) facultyIds[i] = in.readLong();
+        Event.EventStatus[] statuses = readEnumColumn(in, count, Event.EventStatus.class);
+        for (int i = 0; i < count; i++) createdAts[i] = in.readLong();
+
+        List<EventRow> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(new EventRow(ids[i], titles[i], descriptions[i], types[i], fromEpoch(starts[i], version),
+                    fromEpoch(ends[i], version), locations[i], facultyIds[i], statuses[i], fromEpoch(createdAts[i], version)));
+        }
+        return events;
+    }
+
+    private static void writeAttendance(DataOutputStream out, List<AttendanceRow> rows) throws IOException {
+        out.writeInt(rows.size());
+        for (AttendanceRow r : rows) out.writeLong(r.id);
+        for (AttendanceRow r : rows) out.writeLong(r.studentId);
+        for (AttendanceRow r : rows) out.writeLong(r.eventId);
+        writeEnumColumn(out, Attendance.AttendanceStatus.values(), rows.stream().map(r -> r.status).toArray(Enum[]::new));
+        for (AttendanceRow r : rows) out.writeDouble(r.marksObtained == null ? Double.NaN : r.marksObtained);
+        for (AttendanceRow r : rows) out.writeDouble(r.maxMarks == null ? Double.NaN : r.maxMarks);
+        for (AttendanceRow r : rows) writeNullableString(out, r.remarks);
+        for (AttendanceRow r : rows) out.writeLong(r.markedByFacultyId);
+        for (AttendanceRow r : rows) out.writeBoolean(r.isMarked);
+        for (AttendanceRow r : rows) out.writeLong(toEpochMicros(r.markedAt));
+        for (AttendanceRow r : rows) out.writeLong(toEpochMicros(r.updatedAt));
+    }
+
+    private static List<AttendanceRow> readAttendance(DataInputStream in, int version) throws IOException {
+        int count = in.readInt();
+        long[] ids = new long[count];
+        long[] studentIds = new long[count];
+        long[] eventIds = new long[count];
+        double[] marks = new double[count];
+        double[] maxMarks = new double[count];
+        String[] remarks = new String[count];
+        long[] facultyIds = new long[count];
+        boolean[] marked = new boolean[count];
+        long[] markedAts = new long[count];
+        long[] updatedAts = new long[count];
+
+        for (int i = 0; i < count; i++) ids[i] = in.readLong();
+        for (int i = 0; i < count; i++) studentIds[i] = in.readLong();
+        for (int i = 0; i < count; i++) eventIds[i] = in.readLong();
+        Attendance.AttendanceStatus[] statuses = readEnumColumn(in, count, Attendance.AttendanceStatus.class);
+        for (int i = 0; i < count; i++) marks[i] = in.readDouble();
+        for (int i = 0; i < count; i++) maxMarks[i] = in.readDouble();
+        for (int i = 0; i < count; i++) remarks[i] = readNullableString(in);
+        for (int i = 0; i < count; i++) facultyIds[i] = in.readLong();
+        for (int i = 0; i < count; i++) marked[i] = in.readBoolean();
+        for (int i = 0; i < count; i++) markedAts[i] = in.readLong();
+        for (int i = 0; i < count; i++) updatedAts[i] = in.readLong();
+
+        List<AttendanceRow> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new AttendanceRow(ids[i], studentIds[i], eventIds[i], statuses[i],
+                    Double.isNaN(marks[i]) ? null : marks[i], Double.isNaN(maxMarks[i]) ? null : maxMarks[i],
+                    remarks[i], facultyIds[i], marked[i], fromEpoch(markedAts[i], version), fromEpoch(updatedAts[i], version)));
+        }
+        return rows;
+    }
+
+    // Enum columns store a name dictionary followed by one byte per row, so reordering the enum is safe
+    private static void writeEnumColumn(DataOutputStream out, Enum<?>[] dictionary, Enum<?>[] values) throws IOException {
+        out.writeInt(dictionary.length);
+        for (Enum<?> value : dictionary) {
+            out.writeUTF(value.name());
+        }
+        for (Enum<?> value : values) {
+            out.writeByte(value == null ? -1 : value.ordinal());
+        }
+    }
+
+    private static <E extends Enum<E>> E[] readEnumColumn(DataInputStream in, int count, Class<E> type) throws IOException {
+        int dictionarySize = in.readInt();
+        List<E> dictionary = new ArrayList<>(dictionarySize);
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary.add(Enum.valueOf(type, in.readUTF()));
+        }
+        @SuppressWarnings("unchecked")
+        E[] values = (E[]) java.lang.reflect.Array.newInstance(type, count);
+        for (int i = 0; i < count; i++) {
+            byte index = in.readByte();
+            values[i] = index < 0 ? null : dictionary.get(index);
+        }
+        return values;
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static long toEpochMicros(LocalDateTime value) {
+        return value == null ? NULL_TIMESTAMP
+                : Math.addExact(Math.multiplyExact(value.toEpochSecond(ZoneOffset.UTC), 1_000_000L), value.getNano() / 1000);
+    }
+
+    private static LocalDateTime fromEpoch(long value, int version) {
+        return version == 1 ? fromEpochMillis(value) : fromEpochMicros(value);
+    }
+
+    private static LocalDateTime fromEpochMicros(long value) {
+        return value == NULL_TIMESTAMP ? null
+                : LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1_000_000L), (int) Math.floorMod(value, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime fromEpochMillis(long value) {
+        return value == NULL_TIMESTAMP ? null
+                : LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1000), (int) Math.floorMod(value, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    // Summary stored at the start of each archive, with the block index of version 2 files (null for version 1)
+    public static class Header {
+        private final LocalDateTime minMarkedAt;
+        private final LocalDateTime maxMarkedAt;
+        private final long[] studentIds;
+        private final long[] facultyIds;
+        private final long[] blockFirstStudentIds;
+        private final long[] blockLastStudentIds;
+        private final long[] blockOffsets;
+        private final int[] blockLengths;
+
+        Header(LocalDateTime minMarkedAt, LocalDateTime maxMarkedAt, long[] studentIds, long[] facultyIds,
+               long[] blockFirstStudentIds, long[] blockLastStudentIds, long[] blockOffsets, int[] blockLengths) {
+            this.minMarkedAt = minMarkedAt;
+            this.maxMarkedAt = maxMarkedAt;
+            this.studentIds = studentIds;
+            this.facultyIds = facultyIds;
+            this.blockFirstStudentIds = blockFirstStudentIds;
+            this.blockLastStudentIds = blockLastStudentIds;
+            this.blockOffsets = blockOffsets;
+            this.blockLengths = blockLengths;
+        }
+
+        static Header of(List<AttendanceRow> rows) {
+            LocalDateTime min = rows.stream().map(r -> r.markedAt).min(Comparator.naturalOrder()).orElse(null);
+            LocalDateTime max = rows.stream().map(r -> r.markedAt).max(Comparator.naturalOrder()).orElse(null);
+            long[] students = rows.stream().mapToLong(r -> r.studentId).distinct().sorted().toArray();
+            long[] faculty = rows.stream().mapToLong(r -> r.markedByFacultyId).distinct().sorted().toArray();
+            return new Header(min, max, students, faculty, null, null, null, null);
+        }
+
+        public boolean containsStudent(long studentId) {
+            return Arrays.binarySearch(studentIds, studentId) >= 0;
+        }
+
+        public boolean containsFaculty(long facultyId) {
+            return Arrays.binarySearch(facultyIds, facultyId) >= 0;
+        }
+
+        public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+            return minMarkedAt != null && !minMarkedAt.isAfter(to) && !maxMarkedAt.isBefore(from);
+        }
+
+        public LocalDateTime getMaxMarkedAt() { return maxMarkedAt; }
+        public int getStudentCount() { return studentIds.length; }
+    }
+
+    // Decoded archive
+    public static class Contents {
+        private final Header header;
+        private final List<EventRow> events;
+        private final List<AttendanceRow> rows;
+
+        Contents(Header header, List<EventRow> events, List<AttendanceRow> rows) {
+            this.header = header;
+            this.events = events;
+            this.rows = rows;
+        }
+
+        // Getters
+        public Header getHeader() { return header; }
+        public List<EventRow> getEvents() { return events; }
+        public List<AttendanceRow> getRows() { return rows; }
+    }
+
+    // One archived event
+    public static class EventRow {
+        private final long id;
+        private final String title;
+        private final String description;
+        private final Event.EventType eventType;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final String location;
+        private final long facultyId;
+        private final Event.EventStatus status;
+        private final LocalDateTime createdAt;
+
+        public EventRow(long id, String title, String description, Event.EventType eventType, LocalDateTime startTime,
+                        LocalDateTime endTime, String location, long facultyId, Event.EventStatus status, LocalDateTime createdAt) {
+            this.id = id;
+            this.title = title;
+            this.description = description;
+            this.eventType = eventType;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.location = location;
+            this.facultyId = facultyId;
+            this.status = status;
+            this.createdAt = createdAt;
+        }
+
+        // Getters
+        public long getId() { return id; }
+        public String getTitle() { return title; }
+        public String getDescription() { return description; }
+        public Event.EventType getEventType() { return eventType; }
+        public LocalDateTime getStartTime() { return startTime; }
+        public LocalDateTime getEndTime() { return endTime; }
+        public String getLocation() { return location; }
+        public long getFacultyId() { return facultyId; }
+        public Event.EventStatus getStatus() { return status; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+    }
+
+    // One archived attendance row
+    public static class AttendanceRow {
+        private final long id;
+        private final long studentId;
+        private final long eventId;
+        private final Attendance.AttendanceStatus status;
+        private final Double marksObtained;
+        private final Double maxMarks;
+        private final String remarks;
+        private final long markedByFacultyId;
+        private final boolean isMarked;
+        private final LocalDateTime markedAt;
+        private final LocalDateTime updatedAt;
+
+        public AttendanceRow(long id, long studentId, long eventId, Attendance.AttendanceStatus status,
+                             Double marksObtained, Double maxMarks, String remarks, long markedByFacultyId,
+                             boolean isMarked, LocalDateTime markedAt, LocalDateTime updatedAt) {
+            this.id = id;
+            this.studentId = studentId;
+            this.eventId = eventId;
+            this.status = status;
+            this.marksObtained = marksObtained;
+            this.maxMarks = maxMarks;
+            this.remarks = remarks;
+            this.markedByFacultyId = markedByFacultyId;
+            this.isMarked = isMarked;
+            this.markedAt = markedAt;
+            this.updatedAt = updatedAt;
+        }
+
+        // Getters
+        public long getId() { return id; }
+        public long getStudentId() { return studentId; }
+        public long getEventId() { return eventId; }
+        public Attendance.AttendanceStatus getStatus() { return status; }
+        public Double getMarksObtained() { return marksObtained; }
+        public Double getMaxMarks() { return maxMarks; }
+        public String getRemarks() { return remarks; }
+        public long getMarkedByFacultyId() { return markedByFacultyId; }
+        public boolean isMarked() { return isMarked; }
+        public LocalDateTime getMarkedAt() { return markedAt; }
+        public LocalDateTime getUpdatedAt() { return updatedAt; }
+    }
+}
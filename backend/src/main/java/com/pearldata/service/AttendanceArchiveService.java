@@ -0,0 +1,351 @@
+package com.pearldata.service;
+
+import com.pearldata.entity.Attendance;
+import com.pearldata.entity.Event;
+import com.pearldata.entity.Student;
+import com.pearldata.entity.User;
+import com.pearldata.repository.AttendanceRepository;
+import com.pearldata.repository.EventRepository;
+import com.pearldata.repository.StudentAttendanceStatsBulkRepository;
+import com.pearldata.repository.StudentRepository;
+import com.pearldata.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Moves finished events and their attendance out of the hot tables into compressed columnar
+ * archive files (see AttendanceArchiveFile), and reads them back for full student histories and
+ * old date ranges. Archive headers are kept in memory so files that cannot match are never opened.
+ */
+@Service
+public class AttendanceArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceArchiveService.class);
+
+    private static final String FILE_PREFIX = "attendance-archive-";
+
+    private static final String FILE_SUFFIX = ".col.gz";
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    @Value("${attendance.archive.dir:./data/attendance-archive}")
+    private String archiveDir;
+
+    @Value("${attendance.archive.events-per-file:500}")
+    private int eventsPerFile;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StudentAttendanceStatsBulkRepository studentAttendanceStatsBulkRepository;
+
+    @Autowired
+    private AttendanceChangeTracker attendanceChangeTracker;
+
+    @Autowired
+    private EventCatalogService eventCatalogService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Path archivePath;
+
+    private final Map<Path, AttendanceArchiveFile.Header> headers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        archivePath = Paths.get(archiveDir);
+        if (!Files.isDirectory(archivePath)) {
+            return;
+        }
+        for (Path file : listArchiveFiles()) {
+            try {
+                headers.put(file, AttendanceArchiveFile.readHeader(file));
+            } catch (IOException e) {
+                logger.error("Skipping unreadable attendance archive {}: {}", file.getFileName(), e.getMessage());
+            }
+        }
+        logger.info("Loaded {} attendance archive files from {}", headers.size(), archivePath.toAbsolutePath());
+    }
+
+    /**
+     * Archive all completed or cancelled events that ended before the cutoff, one file per batch of events.
+     * Each batch is written and fsync'd before its rows are deleted in the same transaction.
+     */
+    public Map<String, Object> archiveBefore(LocalDate cutoff) {
+        if (!cutoff.isBefore(LocalDate.now())) {
+            throw new RuntimeException("Archive cutoff must be in the past");
+        }
+
+        try {
+            Files.createDirectories(archivePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create attendance archive directory", e);
+        }
+
+        int files = 0;
+        long events = 0;
+        long rows = 0;
+        while (true) {
+            Path file = archivePath.resolve(FILE_PREFIX + LocalDateTime.now().format(FILE_TIMESTAMP) + "-" + files + FILE_SUFFIX);
+            long[] archived;
+            try {
+                archived = transactionTemplate.execute(status -> archiveBatch(cutoff.atStartOfDay(), file));
+            } catch (RuntimeException e) {
+                deleteQuietly(file);
+                throw e;
+            }
+            if (archived == null) {
+                break;
+            }
+            files++;
+            events += archived[0];
+            rows += archived[1];
+        }
+
+        logger.info("Archived {} events and {} attendance rows ended before {} into {} files", events, rows, cutoff, files);
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("cutoff", cutoff);
+        summary.put("filesWritten", files);
+        summary.put("eventsArchived", events);
+        summary.put("attendanceArchived", rows);
+        return summary;
+    }
+
+    // List archive files with their coverage
+    public List<Map<String, Object>> getArchiveFiles() {
+        return headers.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> {
+                    Map<String, Object> info = new HashMap<>();
+                    info.put("file", entry.getKey().getFileName().toString());
+                    info.put("students", entry.getValue().getStudentCount());
+                    info.put("lastMarkedAt", entry.getValue().getMaxMarkedAt());
+                    try {
+                        info.put("sizeBytes", Files.size(entry.getKey()));
+                    } catch (IOException e) {
+                        info.put("sizeBytes", null);
+                    }
+                    return info;
+                })
+                .collect(Collectors.toList());
+    }
+
+    public boolean hasArchives() {
+        return !headers.isEmpty();
+    }
+
+    // Archived attendance of one student; only the blocks of each file that cover the student are decompressed
+    public List<Attendance> findByStudent(Long studentId) {
+        return read(header -> header.containsStudent(studentId),
+                (file, header) -> AttendanceArchiveFile.readStudent(file, header, studentId),
+                row -> row.getStudentId() == studentId);
+    }
+
+    // Archived attendance marked between the dates, optionally limited to one student or one faculty member
+    public List<Attendance> findBetweenDates(LocalDateTime startDate, LocalDateTime endDate, Long studentId, Long facultyId) {
+        return read(header -> header.overlaps(startDate, endDate)
+                        && (studentId == null || header.containsStudent(studentId))
+                        && (facultyId == null || header.containsFaculty(facultyId)),
+                (file, header) -> studentId != null
+                        ? AttendanceArchiveFile.readStudent(file, header, studentId)
+                        : AttendanceArchiveFile.read(file),
+                row -> !row.getMarkedAt().isBefore(startDate) && !row.getMarkedAt().isAfter(endDate)
+                        && (studentId == null || row.getStudentId() == studentId)
+                        && (facultyId == null || row.getMarkedByFacultyId() == facultyId));
+    }
+
+    // Visit every archived attendance row, one file at a time
+    public void forEachArchivedRow(Consumer<AttendanceArchiveFile.AttendanceRow> consumer) {
+        forEachArchive(contents -> contents.getRows().forEach(consumer));
+    }
+
+    // Visit the contents (events and attendance rows) of every archive file, one file at a time
+    public void forEachArchive(Consumer<AttendanceArchiveFile.Contents> consumer) {
+        for (Path file : new ArrayList<>(headers.keySet())) {
+            try {
+                consumer.accept(AttendanceArchiveFile.read(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read attendance archive " + file.getFileName(), e);
+            }
+        }
+    }
+
+    // Returns {events, rows} archived, or null when nothing is left to archive
+    private long[] archiveBatch(LocalDateTime cutoff, Path file) {
+        List<Event> events = eventRepository.findArchivableEvents(cutoff, PageRequest.of(0, eventsPerFile));
+        if (events.isEmpty()) {
+            return null;
+        }
+
+        List<Long> eventIds = events.stream().map(Event::getId).collect(Collectors.toList());
+        List<AttendanceArchiveFile.EventRow> eventRows = events.stream()
+                .map(e -> new AttendanceArchiveFile.EventRow(e.getId(), e.getTitle(), e.getDescription(), e.getEventType(),
+                        e.getStartTime(), e.getEndTime(), e.getLocation(), e.getFaculty().getId(), e.getStatus(), e.getCreatedAt()))
+                .collect(Collectors.toList());
+        List<AttendanceArchiveFile.AttendanceRow> attendanceRows = attendanceRepository.findArchiveRowsByEventIds(eventIds)
+                .stream()
+                .map(r -> new AttendanceArchiveFile.AttendanceRow((Long) r[0], (Long) r[1], (Long) r[2],
+                        (Attendance.AttendanceStatus) r[3], (Double) r[4], (Double) r[5], (String) r[6], (Long) r[7],
+                        !Boolean.FALSE.equals(r[8]), (LocalDateTime) r[9], (LocalDateTime) r[10]))
+                .collect(Collectors.toList());
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            AttendanceArchiveFile.write(tempFile, eventRows, attendanceRows);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            headers.put(file, AttendanceArchiveFile.readHeader(file));
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw new UncheckedIOException("Could not write attendance archive " + file.getFileName(), e);
+        }
+
+        // Archived rows keep counting towards the students' attendance totals
+        studentAttendanceStatsBulkRepository.skipForCurrentTransaction();
+        attendanceRepository.deleteByEventIds(eventIds);
+        eventRepository.deleteByIds(eventIds);
+        attendanceChangeTracker.markChanged();
+        eventCatalogService.markChanged();
+        return new long[] {events.size(), attendanceRows.size()};
+    }
+
+    private interface ArchiveReader {
+        AttendanceArchiveFile.Contents read(Path file, AttendanceArchiveFile.Header header) throws IOException;
+    }
+
+    private List<Attendance> read(Predicate<AttendanceArchiveFile.Header> fileFilter, ArchiveReader reader,
+                                  Predicate<AttendanceArchiveFile.AttendanceRow> rowFilter) {
+        List<AttendanceArchiveFile.AttendanceRow> matches = new ArrayList<>();
+        Map<Long, AttendanceArchiveFile.EventRow> events = new HashMap<>();
+
+        for (Map.Entry<Path, AttendanceArchiveFile.Header> entry : headers.entrySet()) {
+            if (!fileFilter.test(entry.getValue())) {
+                continue;
+            }
+            AttendanceArchiveFile.Contents contents;
+            try {
+                contents = reader.read(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read attendance archive " + entry.getKey().getFileName(), e);
+            }
+            for (AttendanceArchiveFile.AttendanceRow row : contents.getRows()) {
+                if (rowFilter.test(row)) {
+                    matches.add(row);
+                }
+            }
+            for (AttendanceArchiveFile.EventRow event : contents.getEvents()) {
+                events.put(event.getId(), event);
+            }
+        }
+
+        return toAttendance(matches, events);
+    }
+
+    // Rebuild detached Attendance objects; students and faculty are still in the hot tables
+    private List<Attendance> toAttendance(List<AttendanceArchiveFile.AttendanceRow> rows,
+                                          Map<Long, AttendanceArchiveFile.EventRow> eventRows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> studentIds = rows.stream().map(AttendanceArchiveFile.AttendanceRow::getStudentId).collect(Collectors.toSet());
+        Set<Long> userIds = new HashSet<>();
+        rows.forEach(row -> userIds.add(row.getMarkedByFacultyId()));
+        eventRows.values().forEach(event -> userIds.add(event.getFacultyId()));
+
+        Map<Long, Student> students = studentRepository.findAllById(studentIds).stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        Map<Long, Event> events = new HashMap<>();
+        List<Attendance> result = new ArrayList<>(rows.size());
+        for (AttendanceArchiveFile.AttendanceRow row : rows) {
+            Event event = events.computeIfAbsent(row.getEventId(), id -> toEvent(eventRows.get(id), users));
+            Attendance attendance = new Attendance(students.get(row.getStudentId()), event, row.getStatus(),
+                    row.getMarksObtained(), row.getMaxMarks(), row.getRemarks(), users.get(row.getMarkedByFacultyId()));
+            attendance.setId(row.getId());
+            attendance.setIsMarked(row.isMarked());
+            attendance.setMarkedAt(row.getMarkedAt());
+            attendance.setUpdatedAt(row.getUpdatedAt());
+            result.add(attendance);
+        }
+        return result;
+    }
+
+    private Event toEvent(AttendanceArchiveFile.EventRow row, Map<Long, User> users) {
+        if (row == null) {
+            return null;
+        }
+        Event event = new Event(row.getTitle(), row.getDescription(), row.getEventType(), row.getStartTime(),
+                row.getEndTime(), row.getLocation(), users.get(row.getFacultyId()));
+        event.setId(row.getId());
+        event.setStatus(row.getStatus());
+        event.setCreatedAt(row.getCreatedAt());
+        return event;
+    }
+
+    private List<Path> listArchiveFiles() throws IOException {
+        try (Stream<Path> files = Files.list(archivePath)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        headers.remove(file);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete attendance archive {}: {}", file.getFileName(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.pearldata.service;
+
+import com.pearldata.entity.Attendance;
+import com.pearldata.repository.AttendanceFactRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmap index of attendance for cohort questions such as "students absent from at least 3 of the last
+ * 5 lectures in course X". Students get dense indexes, and every event keeps one StudentBitmap per status;
+ * departments and courses keep a bitmap of their students. Cohorts are built by combining bitmaps with
+ * and/or/andNot/atLeast, without reading any attendance rows.
+ * <p>
+ * Built from the attendance table at startup and rebuilt periodically. Changed events have their bitmaps
+ * rebuilt from their rows just before the next query: events written on this instance as soon as the write
+ * commits (through AttendanceChangedEvent), events written on other instances once the shared per-event
+ * change watermarks are polled.
+ */
+@Service
+public class AttendanceBitmapIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceBitmapIndex.class);
+
+    private static final Attendance.AttendanceStatus[] STATUSES = Attendance.AttendanceStatus.values();
+
+    @Autowired
+    private AttendanceFactRepository attendanceFactRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ChangeWatermarks changeWatermarks;
+
+    private ChangeWatermarks.EventChangeCursor sharedChanges;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Set<Long> pendingEventIds = ConcurrentHashMap.newKeySet();
+
+    // Dense student indexes
+    private final Map<Long, Integer> studentIndex = new HashMap<>();
+    private long[] studentIds = new long[1024];
+    private int studentCount;
+
+    private final Map<Long, StudentBitmap[]> eventBitmaps = new HashMap<>();
+    private final Map<String, StudentBitmap> departmentBitmaps = new HashMap<>();
+    private final Map<String, StudentBitmap> courseBitmaps = new HashMap<>();
+
+    private volatile boolean built;
+
+    private LocalDateTime builtAt;
+
+    @PostConstruct
+    public void init() {
+        sharedChanges = changeWatermarks.newEventAttendanceCursor();
+    }
+
+    // Build the index once the application is up
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    // Queue the changed events; their bitmaps are rebuilt before the next query
+    @EventListener
+    public void onAttendanceChanged(AttendanceChangedEvent change) {
+        pendingEventIds.addAll(change.getEventIds());
+    }
+
+    // Queue the events whose attendance changed on any instance, including this one
+    @Scheduled(fixedDelayString = "${analytics.bitmaps.poll-interval-ms:1000}")
+    public void pollSharedChanges() {
+        try {
+            pendingEventIds.addAll(sharedChanges.poll());
+        } catch (DataAccessException e) {
+            logger.error("Polling attendance changes for the bitmap index failed: {}", e.getMessage());
+        }
+    }
+
+    // Periodic rebuild, so department and course changes of students show up
+    @Scheduled(fixedDelayString = "${analytics.bitmaps.rebuild-interval-ms:21600000}",
+               initialDelayString = "${analytics.bitmaps.rebuild-interval-ms:21600000}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Scheduled rebuild of the attendance bitmap index failed: {}", e.getMessage());
+        }
+    }
+
+    // Rebuild every bitmap from the students and attendance tables; cohort queries wait meanwhile
+    public Map<String, Object> rebuild() {
+        long started = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            // Changes queued so far are committed, so the rebuild below includes them
+            pendingEventIds.clear();
+            studentIndex.clear();
+            studentCount = 0;
+            eventBitmaps.clear();
+            departmentBitmaps.clear();
+            courseBitmaps.clear();
+
+            transactionTemplate.executeWithoutResult(status -> {
+                attendanceFactRepository.forEachStudent(this::putStudent);
+                attendanceFactRepository.forEachFact((studentId, eventId, attendanceStatus, marks, markedAt) ->
+                        bitmapsOf(eventBitmaps, eventId)[attendanceStatus.ordinal()].add(studentSlot(studentId)));
+            });
+            built = true;
+            builtAt = LocalDateTime.now();
+
+            logger.info("Built attendance bitmap index: {} students, {} events in {} ms",
+                    studentCount, eventBitmaps.size(), System.currentTimeMillis() - started);
+            return status();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Size and freshness of the index
+    public Map<String, Object> getStatus() {
+        lock.readLock().lock();
+        try {
+            return status();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Students with any of the statuses at the event
+    public StudentBitmap event(Long eventId, Collection<Attendance.AttendanceStatus> statuses) {
+        applyPendingChanges();
+        lock.readLock().lock();
+        try {
+            return eventBitmap(eventId, statuses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public StudentBitmap department(String department) {
+        applyPendingChanges();
+        lock.readLock().lock();
+        try {
+            return copyOf(departmentBitmaps, department);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public StudentBitmap course(String course) {
+        applyPendingChanges();
+        lock.readLock().lock();
+        try {
+            return copyOf(courseBitmaps, course);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Students with one of the statuses at no fewer than {@code minEvents} of the events,
+     * optionally limited to a department and/or course. Returns student IDs in index order.
+     */
+    public List<Long> findStudents(List<Long> eventIds, Collection<Attendance.AttendanceStatus> statuses,
+                                   int minEvents, String department, String course) {
+        applyPendingChanges();
+        lock.readLock().lock();
+        try {
+            List<StudentBitmap> perEvent = new ArrayList<>();
+            for (Long eventId : eventIds) {
+                perEvent.add(eventBitmap(eventId, statuses));
+            }
+            StudentBitmap cohort = StudentBitmap.atLeast(minEvents, perEvent);
+            if (department != null) {
+                cohort = cohort.and(copyOf(departmentBitmaps, department));
+            }
+            if (course != null) {
+                cohort = cohort.and(copyOf(courseBitmaps, course));
+            }
+            return studentIdsOf(cohort);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Student IDs of a bitmap returned by this index; indexes are reassigned by rebuild()
+    public List<Long> toStudentIds(StudentBitmap bitmap) {
+        lock.readLock().lock();
+        try {
+            return studentIdsOf(bitmap);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private StudentBitmap eventBitmap(Long eventId, Collection<Attendance.AttendanceStatus> statuses) {
+        StudentBitmap[] bitmaps = eventBitmaps.get(eventId);
+        List<StudentBitmap> selected = new ArrayList<>();
+        if (bitmaps != null) {
+            statuses.forEach(status -> selected.add(bitmaps[status.ordinal()]));
+        }
+        return StudentBitmap.or(selected);
+    }
+
+    private StudentBitmap copyOf(Map<String, StudentBitmap> bitmaps, String key) {
+        StudentBitmap bitmap = bitmaps.get(key);
+        return bitmap != null ? bitmap.or(new StudentBitmap()) : new StudentBitmap();
+    }
+
+    private List<Long> studentIdsOf(StudentBitmap bitmap) {
+        List<Long> ids = new ArrayList<>(bitmap.cardinality());
+        bitmap.forEach(index -> ids.add(studentIds[index]));
+        return ids;
+    }
+
+    // Rebuild the bitmaps of events written since the last query, or build everything if nothing is built yet
+    private void applyPendingChanges() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    rebuild();
+                }
+            }
+            return;
+        }
+        if (pendingEventIds.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            List<Long> eventIds = new ArrayList<>(pendingEventIds);
+            if (eventIds.isEmpty()) {
+                return;
+            }
+            pendingEventIds.removeAll(eventIds);
+
+            Map<Long, StudentBitmap[]> rebuilt = new HashMap<>();
+            Set<Long> unknownStudents = new HashSet<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                List<long[]> rows = new ArrayList<>();
+                attendanceFactRepository.forEachFactOfEvents(eventIds, (studentId, eventId, attendanceStatus, marks, markedAt) -> {
+                    rows.add(new long[] {studentId, eventId, attendanceStatus.ordinal()});
+                    if (!studentIndex.containsKey(studentId)) {
+                        unknownStudents.add(studentId);
+                    }
+                });
+                if (!unknownStudents.isEmpty()) {
+                    attendanceFactRepository.forEachStudent(unknownStudents, this::putStudent);
+                }
+                for (long[] row : rows) {
+                    bitmapsOf(rebuilt, row[1])[(int) row[2]].add(studentSlot(row[0]));
+                }
+            });
+
+            for (Long eventId : eventIds) {
+                StudentBitmap[] bitmaps = rebuilt.get(eventId);
+                if (bitmaps != null) {
+                    eventBitmaps.put(eventId, bitmaps);
+                } else {
+                    eventBitmaps.remove(eventId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("built", built);
+        status.put("students", studentCount);
+        status.put("events", eventBitmaps.size());
+        status.put("pendingEvents", pendingEventIds.size());
+        status.put("builtAt", builtAt);
+        return status;
+    }
+
+    private void putStudent(long id, String department, String course) {
+        int slot = studentSlot(id);
+        departmentBitmaps.computeIfAbsent(department, d -> new StudentBitmap()).add(slot);
+        courseBitmaps.computeIfAbsent(course, c -> new StudentBitmap()).add(slot);
+    }
+
+    private int studentSlot(long id) {
+        Integer slot = studentIndex.get(id);
+        if (slot != null) {
+            return slot;
+        }
+        if (studentCount == studentIds.length) {
+            studentIds = Arrays.copyOf(studentIds, studentCount * 2);
+        }
+        studentIds[studentCount] = id;
+        studentIndex.put(id, studentCount);
+        return studentCount++;
+    }
+
+    // The event's bitmaps, one per status
+    private static StudentBitmap[] bitmapsOf(Map<Long, StudentBitmap[]> bitmaps, long eventId) {
+        return bitmaps.computeIfAbsent(eventId, id -> {
+            StudentBitmap[] byStatus = new StudentBitmap[STATUSES.length];
+            for (int i = 0; i < byStatus.length; i++) {
+                byStatus[i] = new StudentBitmap();
+            }
+            return byStatus;
+        });
+    }
+}
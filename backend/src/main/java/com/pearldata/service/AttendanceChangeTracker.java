@@ -0,0 +1,77 @@
+package com.pearldata.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counter of the attendance data in this instance, moved after every committed attendance write.
+ * Read-side caches remember the version they were built at and treat themselves as stale once it moves;
+ * read models that need to know which events changed listen for AttendanceChangedEvent. The shared
+ * change watermarks are recorded here as well and advanced once the writer's transaction commits.
+ */
+@Component
+public class AttendanceChangeTracker {
+
+    private final AtomicLong version = new AtomicLong();
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private ChangeWatermarks changeWatermarks;
+
+    // Record a change that does not alter any event's attendance rows, e.g. rebuilt totals or archived rows
+    public void markChanged() {
+        markChanged(Collections.emptySet());
+    }
+
+    // Record an attendance write; takes effect when the surrounding transaction commits
+    public void markChanged(Long eventId) {
+        markChanged(Collections.singleton(eventId));
+    }
+
+    // Record an attendance write to the given students' rows of the event
+    public void markChanged(Long eventId, Collection<Long> studentIds) {
+        markChanged(Collections.singleton(eventId), studentIds);
+    }
+
+    // Record an attendance write to the rows of the given events; takes effect when the surrounding transaction commits
+    public void markChanged(Collection<Long> eventIds) {
+        markChanged(eventIds, null);
+    }
+
+    // Record an attendance write to the given students' rows of the events; null students means any of them
+    public void markChanged(Collection<Long> eventIds, Collection<Long> studentIds) {
+        Set<Long> changed = new LinkedHashSet<>(eventIds);
+        Set<Long> students = studentIds != null ? new LinkedHashSet<>(studentIds) : null;
+        changeWatermarks.markAttendanceChanged(changed, students);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(changed, students);
+                }
+            });
+        } else {
+            publish(changed, students);
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    private void publish(Set<Long> eventIds, Set<Long> studentIds) {
+        long current = version.incrementAndGet();
+        applicationEventPublisher.publishEvent(new AttendanceChangedEvent(eventIds, studentIds, current));
+    }
+}
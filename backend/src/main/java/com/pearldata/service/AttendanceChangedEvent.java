@@ -0,0 +1,27 @@
+package com.pearldata.service;
+
+import java.util.Set;
+
+/**
+ * Published after a transaction that wrote attendance commits, with the events whose rows changed.
+ * In-memory read models reload those events' rows instead of the whole table.
+ * The event IDs are empty for changes not tied to events, e.g. rebuilt totals or archived rows, and the
+ * student IDs are null when the writer does not know which students it touched.
+ */
+public class AttendanceChangedEvent {
+
+    private final Set<Long> eventIds;
+    private final Set<Long> studentIds;
+    private final long version;
+
+    public AttendanceChangedEvent(Set<Long> eventIds, Set<Long> studentIds, long version) {
+        this.eventIds = Set.copyOf(eventIds);
+        this.studentIds = studentIds != null ? Set.copyOf(studentIds) : null;
+        this.version = version;
+    }
+
+    // Getters
+    public Set<Long> getEventIds() { return eventIds; }
+    public Set<Long> getStudentIds() { return studentIds; }
+    public long getVersion() { return version; }
+}
@@ -0,0 +1,426 @@
+package com.pearldata.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pearldata.dto.AttendanceImportReportDTO;
+import com.pearldata.entity.Attendance;
+import com.pearldata.entity.Event;
+import com.pearldata.entity.User;
+import com.pearldata.repository.AttendanceBulkRepository;
+import com.pearldata.repository.EventRepository;
+import com.pearldata.repository.StudentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams CSV or NDJSON attendance files row by row and writes them in fixed-size batches.
+ * Only the current batch and the student ID lookup are held in memory, so file size does not matter.
+ * Quoted CSV fields may span lines, up to a bounded record length.
+ * Imports do not send SMS/WhatsApp notifications.
+ */
+@Service
+public class AttendanceImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceImportService.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final int MAX_REMARKS_LENGTH = 500;
+
+    // Bound on one CSV record, so an unbalanced quote cannot pull the rest of the file into memory
+    private static final int MAX_CSV_RECORD_LENGTH = 64 * 1024;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AttendanceBulkRepository attendanceBulkRepository;
+
+    @Autowired
+    private AttendanceChangeTracker attendanceChangeTracker;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public enum ImportFormat {
+        CSV, NDJSON;
+
+        // Resolve the format from an explicit value or the uploaded file name
+        public static ImportFormat resolve(String format, String fileName) {
+            if (format != null && !format.trim().isEmpty()) {
+                try {
+                    return ImportFormat.valueOf(format.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new RuntimeException("Unsupported import format: " + format);
+                }
+            }
+            if (fileName != null) {
+                String lowerName = fileName.toLowerCase(Locale.ROOT);
+                if (lowerName.endsWith(".ndjson") || lowerName.endsWith(".jsonl")) {
+                    return NDJSON;
+                }
+            }
+            return CSV;
+        }
+    }
+
+    // Import attendance rows for one event
+    public AttendanceImportReportDTO importAttendance(Long eventId, InputStream input, ImportFormat format, Long facultyId) throws IOException {
+        // Validate faculty
+        User faculty = userService.getUserById(facultyId)
+                .orElseThrow(() -> new RuntimeException("Faculty not found"));
+
+        if (faculty.getRole() != User.Role.FACULTY) {
+            throw new RuntimeException("User is not a faculty member");
+        }
+
+        // Get event
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new RuntimeException("Event not found"));
+
+        // Check if faculty owns this event
+        if (!event.getFaculty().getId().equals(facultyId)) {
+            throw new RuntimeException("You don't have permission to mark attendance for this event");
+        }
+
+        if (event.getStatus() == Event.EventStatus.CANCELLED) {
+            throw new RuntimeException("Cannot mark attendance for cancelled events");
+        }
+
+        // Same rule as AttendanceService#markAttendance
+        if (event.getEndTime().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("Cannot mark attendance for past events");
+        }
+
+        ImportBatch batch = new ImportBatch(event.getId(), faculty.getId(), loadStudentIdLookup(),
+                new AttendanceImportReportDTO(event.getId()));
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            if (format == ImportFormat.NDJSON) {
+                readNdjson(reader, batch);
+            } else {
+                readCsv(reader, batch);
+            }
+        }
+        flush(batch);
+
+        AttendanceImportReportDTO report = batch.report;
+        logger.info("Attendance import for event {} finished: {} rows, {} imported, {} failed, {} batches",
+                eventId, report.getTotalRows(), report.getImportedRows(), report.getFailedRows(), report.getBatchesWritten());
+        return report;
+    }
+
+    private Map<String, Long> loadStudentIdLookup() {
+        Map<String, Long> lookup = new HashMap<>();
+        for (Object[] row : studentRepository.findStudentIdLookup()) {
+            lookup.put(((String) row[0]).trim().toUpperCase(Locale.ROOT), (Long) row[1]);
+        }
+        return lookup;
+    }
+
+    private void readCsv(BufferedReader reader, ImportBatch batch) throws IOException {
+        // Lines read so far and the first line of the current record
+        long[] lines = new long[2];
+        String headerLine = readCsvRecord(reader, lines);
+        if (headerLine == null) {
+            return;
+        }
+        List<String> header = new ArrayList<>();
+        for (String column : parseCsvLine(stripBom(headerLine))) {
+            header.add(normalizeKey(column));
+        }
+        if (!header.contains("studentid") || !header.contains("status")) {
+            throw new RuntimeException("CSV header must contain studentId and status columns");
+        }
+
+        while (true) {
+            String record;
+            try {
+                record = readCsvRecord(reader, lines);
+            } catch (MalformedCsvException e) {
+                // The rest of the file cannot be split into records reliably; keep what was read so far
+                batch.report.setTotalRows(batch.report.getTotalRows() + 1);
+                rejectRow(batch, lines[1], null, e.getMessage() + "; the rest of the file was not imported");
+                return;
+            }
+            if (record == null) {
+                return;
+            }
+            if (record.trim().isEmpty()) {
+                continue;
+            }
+            List<String> values = parseCsvLine(record);
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                fields.put(header.get(i), values.get(i));
+            }
+            processRow(lines[1], fields, batch);
+        }
+    }
+
+    // Next CSV record, joining lines while a quoted field is open; lines holds the lines read and the record's first line
+    static String readCsvRecord(BufferedReader reader, long[] lines) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        long firstLine = ++lines[0];
+        lines[1] = firstLine;
+        StringBuilder record = new StringBuilder(line);
+        // Escaped quotes come in pairs, so an odd count means a quoted field continues on the next line
+        int quotes = countQuotes(line);
+        while (quotes % 2 != 0) {
+            line = reader.readLine();
+            if (line == null) {
+                throw new MalformedCsvException("Unterminated quoted field in CSV record starting at line " + firstLine);
+            }
+            lines[0]++;
+            record.append('\n').append(line);
+            if (record.length() > MAX_CSV_RECORD_LENGTH) {
+                throw new MalformedCsvException("CSV record starting at line " + firstLine + " exceeds "
+                        + MAX_CSV_RECORD_LENGTH + " characters, check for an unbalanced quote");
+            }
+            quotes += countQuotes(line);
+        }
+        return record.toString();
+    }
+
+    private static int countQuotes(String line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    private void readNdjson(BufferedReader reader, ImportBatch batch) throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1) {
+                line = stripBom(line);
+            }
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                batch.report.setTotalRows(batch.report.getTotalRows() + 1);
+                rejectRow(batch, lineNumber, null, "Malformed JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            if (!node.isObject()) {
+                batch.report.setTotalRows(batch.report.getTotalRows() + 1);
+                rejectRow(batch, lineNumber, null, "Each line must be a JSON object");
+                continue;
+            }
+
+            Map<String, String> fields = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> entries = node.fields();
+            while (entries.hasNext()) {
+                Map.Entry<String, JsonNode> entry = entries.next();
+                fields.put(normalizeKey(entry.getKey()), entry.getValue().isNull() ? null : entry.getValue().asText());
+            }
+            processRow(lineNumber, fields, batch);
+        }
+    }
+
+    // Validate one row and add it to the pending batch
+    private void processRow(long lineNumber, Map<String, String> fields, ImportBatch batch) {
+        batch.report.setTotalRows(batch.report.getTotalRows() + 1);
+
+        String studentIdNumber = blankToNull(fields.get("studentid"));
+        if (studentIdNumber == null) {
+            rejectRow(batch, lineNumber, null, "Student ID is required");
+            return;
+        }
+
+        Long studentId = batch.studentIds.get(studentIdNumber.toUpperCase(Locale.ROOT));
+        if (studentId == null) {
+            rejectRow(batch, lineNumber, studentIdNumber, "Unknown student ID: " + studentIdNumber);
+            return;
+        }
+
+        Attendance.AttendanceStatus status;
+        String statusValue = blankToNull(fields.get("status"));
+        try {
+            status = Attendance.AttendanceStatus.valueOf(statusValue == null ? "" : statusValue.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            rejectRow(batch, lineNumber, studentIdNumber, "Invalid attendance status: " + statusValue);
+            return;
+        }
+
+        Double marksObtained;
+        Double maxMarks;
+        try {
+            marksObtained = parseDouble(fields.get("marksobtained"));
+            maxMarks = parseDouble(fields.get("maxmarks"));
+        } catch (NumberFormatException e) {
+            rejectRow(batch, lineNumber, studentIdNumber, "Invalid number for marks: " + e.getMessage());
+            return;
+        }
+
+        // Same rules as MarkAttendanceDTO.AttendanceRecordDTO#hasValidMarks
+        if (marksObtained != null && maxMarks != null
+                && !(marksObtained >= 0 && maxMarks > 0 && marksObtained <= maxMarks)) {
+            rejectRow(batch, lineNumber, studentIdNumber, "Invalid marks");
+            return;
+        }
+
+        String remarks = blankToNull(fields.get("remarks"));
+        if (remarks != null && remarks.length() > MAX_REMARKS_LENGTH) {
+            rejectRow(batch, lineNumber, studentIdNumber, "Remarks must not exceed 500 characters");
+            return;
+        }
+
+        // A later row for the same student replaces an earlier one in the same batch
+        batch.pending.put(studentId, new AttendanceBulkRepository.AttendanceUpsert(
+                studentId, batch.eventId, status, marksObtained, maxMarks, remarks, batch.facultyId));
+        batch.pendingLines.put(studentId, lineNumber);
+        batch.pendingRows++;
+
+        if (batch.pending.size() >= BATCH_SIZE) {
+            flush(batch);
+        }
+    }
+
+    // Write the pending batch; a failed batch is reported against each of its rows
+    private void flush(ImportBatch batch) {
+        if (batch.pending.isEmpty()) {
+            return;
+        }
+        try {
+            attendanceBulkRepository.upsertAll(new ArrayList<>(batch.pending.values()));
+            attendanceChangeTracker.markChanged(batch.eventId, batch.pending.keySet());
+            batch.report.setImportedRows(batch.report.getImportedRows() + batch.pendingRows);
+            batch.report.setBatchesWritten(batch.report.getBatchesWritten() + 1);
+        } catch (DataAccessException e) {
+            logger.error("Attendance import batch failed for event {}: {}", batch.eventId, e.getMessage());
+            for (Map.Entry<Long, Long> entry : batch.pendingLines.entrySet()) {
+                rejectRow(batch, entry.getValue(), null, "Batch write failed: " + e.getMostSpecificCause().getMessage());
+            }
+            // Superseded duplicates in the failed batch were not written either
+            batch.report.setFailedRows(batch.report.getFailedRows() + batch.pendingRows - batch.pendingLines.size());
+        }
+        batch.pending.clear();
+        batch.pendingLines.clear();
+        batch.pendingRows = 0;
+    }
+
+    private void rejectRow(ImportBatch batch, long lineNumber, String studentIdNumber, String message) {
+        AttendanceImportReportDTO report = batch.report;
+        report.setFailedRows(report.getFailedRows() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new AttendanceImportReportDTO.RowError(lineNumber, studentIdNumber, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    // Split one CSV record, honouring double-quoted fields (which may contain line breaks) and "" escapes
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+
+    // "Student_ID", "student id" and "studentId" all map to "studentid"
+    private static String normalizeKey(String key) {
+        return key.replace("_", "").replace(" ", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String stripBom(String line) {
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static Double parseDouble(String value) {
+        String trimmed = blankToNull(value);
+        return trimmed == null ? null : Double.valueOf(trimmed);
+    }
+
+    // A CSV record that cannot be delimited, e.g. because of an unbalanced quote
+    static class MalformedCsvException extends RuntimeException {
+        MalformedCsvException(String message) {
+            super(message);
+        }
+    }
+
+    // Mutable state for one import run
+    private static class ImportBatch {
+        private final Long eventId;
+        private final Long facultyId;
+        private final Map<String, Long> studentIds;
+        private final AttendanceImportReportDTO report;
+        private final Map<Long, AttendanceBulkRepository.AttendanceUpsert> pending = new LinkedHashMap<>();
+        private final Map<Long, Long> pendingLines = new LinkedHashMap<>();
+        private long pendingRows;
+
+        private ImportBatch(Long eventId, Long facultyId, Map<String, Long> studentIds, AttendanceImportReportDTO report) {
+            this.eventId = eventId;
+            this.facultyId = facultyId;
+            this.studentIds = studentIds;
+            this.report = report;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.pearldata.service;
+
+import com.pearldata.repository.AttendancePartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages the monthly partitions of a partitioned attendance table: partitions are created
+ * ahead of time so inserts never land in the default partition, and whole months can be
+ * detached once a term is closed and archived. Does nothing while attendance is a plain table.
+ */
+@Service
+public class AttendancePartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendancePartitionService.class);
+
+    @Value("${attendance.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    @Autowired
+    private AttendancePartitionRepository attendancePartitionRepository;
+
+    @Autowired
+    private AttendanceArchiveService attendanceArchiveService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        ensureFuturePartitions();
+    }
+
+    // Create partitions for the current month and the configured number of months ahead
+    @Scheduled(cron = "${attendance.partitioning.maintenance-cron:0 30 2 * * *}")
+    public void ensureFuturePartitions() {
+        try {
+            if (!attendancePartitionRepository.isPartitioned()) {
+                return;
+            }
+            YearMonth current = YearMonth.now();
+            for (int i = 0; i <= monthsAhead; i++) {
+                attendancePartitionRepository.createMonthlyPartition(current.plusMonths(i));
+            }
+            logger.debug("Attendance partitions ensured through {}", current.plusMonths(monthsAhead));
+        } catch (DataAccessException e) {
+            logger.error("Failed to create attendance partitions: {}", e.getMessage());
+        }
+    }
+
+    // List attached partitions with their bounds and estimated sizes
+    public List<Map<String, Object>> getPartitions() {
+        requirePartitioned();
+        return attendancePartitionRepository.listPartitions();
+    }
+
+    /**
+     * Detach every monthly partition that ends on or before the cutoff.
+     * Events that ended before the cutoff are archived first, so their attendance stays readable and keeps
+     * counting in the totals, rollups and risk state. A partition still holding rows of an event that
+     * cannot be archived yet (not finished, or ended after the cutoff) is not detached.
+     */
+    public List<String> detachPartitionsBefore(LocalDate cutoff) {
+        requirePartitioned();
+
+        YearMonth current = YearMonth.now();
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : attendancePartitionRepository.listMonthlyPartitionNames()) {
+            YearMonth month = AttendancePartitionRepository.monthOf(name);
+            if (month == null || month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                continue;
+            }
+            if (!month.isBefore(current)) {
+                throw new RuntimeException("Cannot detach the current or a future month: " + month);
+            }
+            months.add(month);
+        }
+        if (months.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        attendanceArchiveService.archiveBefore(cutoff);
+        for (YearMonth month : months) {
+            if (attendancePartitionRepository.hasRows(month)) {
+                throw new RuntimeException("Partition " + AttendancePartitionRepository.partitionName(month) +
+                        " still holds attendance of events that are not finished or ended after " + cutoff);
+            }
+        }
+
+        List<String> detached = new ArrayList<>();
+        for (YearMonth month : months) {
+            attendancePartitionRepository.detachMonthlyPartition(month);
+            detached.add(AttendancePartitionRepository.partitionName(month));
+            logger.info("Detached attendance partition {}", AttendancePartitionRepository.partitionName(month));
+        }
+        return detached;
+    }
+
+    private void requirePartitioned() {
+        if (!attendancePartitionRepository.isPartitioned()) {
+            throw new RuntimeException("Attendance table is not partitioned");
+        }
+    }
+}
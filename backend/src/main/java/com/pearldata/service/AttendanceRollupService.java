@@ -0,0 +1,225 @@
+package com.pearldata.service;
+
+import com.pearldata.dto.AttendanceTrendPointDTO;
+import com.pearldata.entity.Event;
+import com.pearldata.repository.AttendanceFactRepository;
+import com.pearldata.repository.AttendanceRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the daily and weekly attendance rollups current and serves trend charts from them.
+ * A scheduled refresh picks up the events whose attendance rows were written since the last
+ * updated_at watermark, plus the events this instance deleted rows of, and recomputes only those
+ * events and the periods they fall in. Archived attendance stays in the rollups.
+ */
+@Service
+public class AttendanceRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceRollupService.class);
+
+    // Longest trend a chart may request, in periods
+    private static final int MAX_PERIODS = 400;
+
+    // Rows written by transactions that committed after a later write are caught by re-reading this far back
+    @Value("${analytics.rollups.watermark-overlap-ms:300000}")
+    private long watermarkOverlapMs;
+
+    @Autowired
+    private AttendanceRollupRepository attendanceRollupRepository;
+
+    @Autowired
+    private AttendanceFactRepository attendanceFactRepository;
+
+    @Autowired
+    private AttendanceArchiveService attendanceArchiveService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Events whose rows may have been deleted; deletes leave no updated_at behind
+    private final Set<Long> pendingEventIds = ConcurrentHashMap.newKeySet();
+
+    // Create the rollup tables and build them the first time
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        Boolean built = transactionTemplate.execute(status -> {
+            attendanceRollupRepository.createTables();
+            return attendanceRollupRepository.lockWatermark() != null;
+        });
+        if (!Boolean.TRUE.equals(built)) {
+            rebuild();
+        }
+    }
+
+    @EventListener
+    public void onAttendanceChanged(AttendanceChangedEvent change) {
+        pendingEventIds.addAll(change.getEventIds());
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.rollups.refresh-interval-ms:60000}",
+               initialDelayString = "${analytics.rollups.refresh-interval-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.error("Refreshing attendance rollups failed: {}", e.getMessage());
+        }
+    }
+
+    // Roll up attendance written since the watermark; returns the number of events recomputed
+    public int refresh() {
+        List<Long> drained = new ArrayList<>(pendingEventIds);
+        pendingEventIds.removeAll(drained);
+        try {
+            Integer refreshed = transactionTemplate.execute(status -> {
+                LocalDateTime watermark = attendanceRollupRepository.lockWatermark();
+                if (watermark == null) {
+                    return 0;
+                }
+
+                Map<Long, LocalDateTime> changed =
+                        attendanceRollupRepository.findChangedEvents(watermark.minus(Duration.ofMillis(watermarkOverlapMs)));
+                Set<Long> eventIds = new HashSet<>(changed.keySet());
+                eventIds.addAll(drained);
+                if (eventIds.isEmpty()) {
+                    return 0;
+                }
+
+                refreshPeriods(attendanceRollupRepository.refreshEvents(eventIds));
+                LocalDateTime latest = changed.values().stream().max(LocalDateTime::compareTo).orElse(watermark);
+                if (latest.isAfter(watermark)) {
+                    attendanceRollupRepository.saveWatermark(latest);
+                }
+                return eventIds.size();
+            });
+            return refreshed != null ? refreshed : 0;
+        } catch (RuntimeException e) {
+            pendingEventIds.addAll(drained);
+            throw e;
+        }
+    }
+
+    /**
+     * Recompute all rollups from the attendance table and the cold archive.
+     * Also picks up students who moved department or course since their attendance was rolled up.
+     */
+    public Map<String, Object> rebuild() {
+        long started = System.currentTimeMillis();
+        Map<String, Object> summary = transactionTemplate.execute(status -> {
+            attendanceRollupRepository.createTables();
+            attendanceRollupRepository.lockWatermark();
+            LocalDateTime watermark = attendanceRollupRepository.findMaxUpdatedAt();
+            pendingEventIds.clear();
+
+            attendanceRollupRepository.rebuildEventsFromAttendance();
+            int archivedEvents = rollUpArchive();
+            attendanceRollupRepository.rebuildPeriods(AttendanceRollupRepository.Granularity.DAY);
+            attendanceRollupRepository.rebuildPeriods(AttendanceRollupRepository.Granularity.WEEK);
+            attendanceRollupRepository.saveWatermark(watermark);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("archivedEvents", archivedEvents);
+            result.put("watermark", watermark);
+            result.put("rebuiltAt", LocalDateTime.now());
+            return result;
+        });
+        logger.info("Rebuilt attendance rollups in {} ms", System.currentTimeMillis() - started);
+        return summary;
+    }
+
+    /**
+     * Attendance trend between two dates, one point per day or week (weeks start on Monday),
+     * optionally limited to a department, course and event type and broken down by any of them.
+     */
+    @Transactional(readOnly = true)
+    public List<AttendanceTrendPointDTO> getTrend(AttendanceRollupRepository.Granularity granularity,
+                                                  LocalDate from, LocalDate to, String department, String course,
+                                                  Event.EventType eventType,
+                                                  Collection<AttendanceRollupRepository.Dimension> breakdown) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("from must not be after to");
+        }
+        LocalDate start = granularity == AttendanceRollupRepository.Granularity.WEEK ? weekOf(from) : from;
+        long periods = granularity == AttendanceRollupRepository.Granularity.WEEK
+                ? ChronoUnit.WEEKS.between(start, to) + 1
+                : ChronoUnit.DAYS.between(start, to) + 1;
+        if (periods > MAX_PERIODS) {
+            throw new RuntimeException("Trend range is limited to " + MAX_PERIODS + " periods");
+        }
+        return attendanceRollupRepository.findTrend(granularity, start, to, department, course,
+                eventType != null ? eventType.name() : null, breakdown);
+    }
+
+    // Recompute the daily rows of the days and the weekly rows of the weeks they fall in
+    private void refreshPeriods(Set<LocalDate> days) {
+        attendanceRollupRepository.refreshPeriods(AttendanceRollupRepository.Granularity.DAY, days, days);
+
+        Set<LocalDate> weeks = new TreeSet<>();
+        Set<LocalDate> weekDays = new TreeSet<>();
+        for (LocalDate day : days) {
+            LocalDate week = weekOf(day);
+            if (weeks.add(week)) {
+                for (int i = 0; i < 7; i++) {
+                    weekDays.add(week.plusDays(i));
+                }
+            }
+        }
+        attendanceRollupRepository.refreshPeriods(AttendanceRollupRepository.Granularity.WEEK, weeks, weekDays);
+    }
+
+    // Event rows of archived attendance, attributed to the students' current department and course
+    private int rollUpArchive() {
+        Map<Long, String[]> students = new HashMap<>();
+        attendanceFactRepository.forEachStudent((id, department, course) -> students.put(id, new String[] {department, course}));
+
+        Set<Long> archivedEvents = new HashSet<>();
+        attendanceArchiveService.forEachArchive(contents -> {
+            Map<Long, AttendanceArchiveFile.EventRow> events = new HashMap<>();
+            contents.getEvents().forEach(event -> events.put(event.getId(), event));
+
+            Map<String, AttendanceRollupRepository.EventContribution> contributions = new HashMap<>();
+            for (AttendanceArchiveFile.AttendanceRow row : contents.getRows()) {
+                AttendanceArchiveFile.EventRow event = events.get(row.getEventId());
+                String[] student = students.get(row.getStudentId());
+                if (!row.isMarked() || event == null || student == null) {
+                    continue;
+                }
+                String key = row.getEventId() + "|" + student[0] + "|" + student[1];
+                contributions.computeIfAbsent(key, k -> new AttendanceRollupRepository.EventContribution(
+                        event.getId(), event.getStartTime().toLocalDate(), student[0], student[1],
+                        event.getEventType().name())).add(row.getStatus(), row.getMarksObtained());
+                archivedEvents.add(event.getId());
+            }
+            attendanceRollupRepository.addEventContributions(contributions.values());
+        });
+        return archivedEvents.size();
+    }
+
+    private static LocalDate weekOf(LocalDate day) {
+        return day.with(DayOfWeek.MONDAY);
+    }
+}
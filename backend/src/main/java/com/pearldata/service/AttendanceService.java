@@ -7,21 +7,42 @@ import com.pearldata.entity.Attendance;
 import com.pearldata.entity.Event;
 import com.pearldata.entity.Student;
 import com.pearldata.entity.User;
+import com.pearldata.repository.AttendanceBulkRepository;
 import com.pearldata.repository.AttendanceRepository;
+import com.pearldata.repository.AttendanceScope;
 import com.pearldata.repository.EventRepository;
+import com.pearldata.repository.StudentAttendanceStatsBulkRepository;
 import com.pearldata.repository.StudentRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,9 +51,27 @@ public class AttendanceService {
 
     private static final Logger logger = LoggerFactory.getLogger(AttendanceService.class);
 
+    @Value("${attendance.recent-window-days:30}")
+    private long recentWindowDays;
+
     @Autowired
     private AttendanceRepository attendanceRepository;
 
+    @Autowired
+    private AttendanceBulkRepository attendanceBulkRepository;
+
+    @Autowired
+    private StudentAttendanceStatsBulkRepository studentAttendanceStatsBulkRepository;
+
+    @Autowired
+    private AttendanceWriteBehindBuffer attendanceWriteBehindBuffer;
+
+    @Autowired
+    private AttendanceArchiveService attendanceArchiveService;
+
+    @Autowired
+    private AttendanceChangeTracker attendanceChangeTracker;
+
     @Autowired
     private EventRepository eventRepository;
 
@@ -48,6 +87,9 @@ public class AttendanceService {
     @Autowired
     private WhatsAppService whatsAppService;
 
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
     // Mark attendance for multiple students
     public List<Attendance> markAttendance(MarkAttendanceDTO markAttendanceDTO, Long facultyId) {
         // Validate faculty
@@ -72,48 +114,28 @@ public class AttendanceService {
             throw new RuntimeException("Cannot mark attendance for past events");
         }
 
-        // Mark attendance for each student
-        List<Attendance> attendanceRecords = markAttendanceDTO.getAttendanceRecords().stream()
-                .map(recordDTO -> {
-                    // Get student
-                    Student student = studentRepository.findById(recordDTO.getStudentId())
-                            .orElseThrow(() -> new RuntimeException("Student not found: " + recordDTO.getStudentId()));
+        // Load the whole roster in one query
+        Map<Long, Student> roster = loadRoster(markAttendanceDTO.getAttendanceRecords().stream()
+                .map(MarkAttendanceDTO.AttendanceRecordDTO::getStudentId)
+                .collect(Collectors.toList()));
 
-                    // Validate marks if provided
-                    if (recordDTO.getMarksObtained() != null && recordDTO.getMaxMarks() != null) {
-                        if (!recordDTO.hasValidMarks()) {
-                            throw new RuntimeException("Invalid marks for student " + student.getName());
-                        }
-                    }
+        // Validate marks if provided
+        for (MarkAttendanceDTO.AttendanceRecordDTO recordDTO : markAttendanceDTO.getAttendanceRecords()) {
+            if (recordDTO.getMarksObtained() != null && recordDTO.getMaxMarks() != null) {
+                if (!recordDTO.hasValidMarks()) {
+                    throw new RuntimeException("Invalid marks for student " + roster.get(recordDTO.getStudentId()).getName());
+                }
+            }
+        }
 
-                    // Check if attendance already exists
-                    Optional<Attendance> existingAttendance = attendanceRepository.findByStudentAndEvent(student, event);
-                    
-                    if (existingAttendance.isPresent()) {
-                        // Update existing attendance
-                        Attendance attendance = existingAttendance.get();
-                        attendance.setStatus(recordDTO.getStatus());
-                        attendance.setMarksObtained(recordDTO.getMarksObtained());
-                        attendance.setMaxMarks(recordDTO.getMaxMarks());
-                        attendance.setRemarks(recordDTO.getRemarks());
-                        attendance.setMarkedByFaculty(faculty);
-                        return attendanceRepository.save(attendance);
-                    } else {
-                        // Create new attendance
-                        Attendance attendance = new Attendance();
-                        attendance.setStudent(student);
-                        attendance.setEvent(event);
-                        attendance.setStatus(recordDTO.getStatus());
-                        attendance.setMarksObtained(recordDTO.getMarksObtained());
-                        attendance.setMaxMarks(recordDTO.getMaxMarks());
-                        attendance.setRemarks(recordDTO.getRemarks());
-                        attendance.setMarkedByFaculty(faculty);
-                        return attendanceRepository.save(attendance);
-                    }
-                })
+        // Mark attendance for all students in one set-based write
+        List<AttendanceBulkRepository.AttendanceUpsert> rows = markAttendanceDTO.getAttendanceRecords().stream()
+                .map(recordDTO -> new AttendanceBulkRepository.AttendanceUpsert(
+                        recordDTO.getStudentId(), event.getId(), recordDTO.getStatus(),
+                        recordDTO.getMarksObtained(), recordDTO.getMaxMarks(), recordDTO.getRemarks(), faculty.getId()))
                 .collect(Collectors.toList());
 
-        return attendanceRecords;
+        return writeAttendanceSheet(event, faculty, roster, rows);
     }
 
     // Enhanced method: Mark attendance and optionally update event status
@@ -144,41 +166,20 @@ public class AttendanceService {
         Event.EventStatus newEventStatus = previousEventStatus;
         boolean eventStatusChanged = false;
 
-        // Process attendance records
-        List<Attendance> attendanceRecords = dto.getAttendanceRecords().stream()
-                .map(recordDTO -> {
-                    // Validate student
-                    Student student = studentRepository.findById(recordDTO.getStudentId())
-                            .orElseThrow(() -> new RuntimeException("Student not found: " + recordDTO.getStudentId()));
-
-                    // Check for existing attendance
-                    Optional<Attendance> existingAttendance = attendanceRepository
-                            .findByStudentAndEvent(student, event);
-                    
-                    if (existingAttendance.isPresent()) {
-                        // Update existing attendance
-                        Attendance attendance = existingAttendance.get();
-                        attendance.setStatus(recordDTO.getStatus());
-                        attendance.setMarksObtained(recordDTO.getMarksObtained());
-                        attendance.setMaxMarks(recordDTO.getMaxMarks());
-                        attendance.setRemarks(recordDTO.getRemarks());
-                        attendance.setMarkedByFaculty(faculty);
-                        return attendanceRepository.save(attendance);
-                    } else {
-                        // Create new attendance
-                        Attendance attendance = new Attendance();
-                        attendance.setStudent(student);
-                        attendance.setEvent(event);
-                        attendance.setStatus(recordDTO.getStatus());
-                        attendance.setMarksObtained(recordDTO.getMarksObtained());
-                        attendance.setMaxMarks(recordDTO.getMaxMarks());
-                        attendance.setRemarks(recordDTO.getRemarks());
-                        attendance.setMarkedByFaculty(faculty);
-                        return attendanceRepository.save(attendance);
-                    }
-                })
+        // Load the whole roster in one query
+        Map<Long, Student> roster = loadRoster(dto.getAttendanceRecords().stream()
+                .map(MarkAttendanceAndUpdateEventDTO.AttendanceRecordDTO::getStudentId)
+                .collect(Collectors.toList()));
+
+        // Process attendance records in one set-based write
+        List<AttendanceBulkRepository.AttendanceUpsert> rows = dto.getAttendanceRecords().stream()
+                .map(recordDTO -> new AttendanceBulkRepository.AttendanceUpsert(
+                        recordDTO.getStudentId(), event.getId(), recordDTO.getStatus(),
+                        recordDTO.getMarksObtained(), recordDTO.getMaxMarks(), recordDTO.getRemarks(), faculty.getId()))
                 .collect(Collectors.toList());
 
+        List<Attendance> attendanceRecords = writeAttendanceSheet(event, faculty, roster, rows);
+
         // Update event status if requested
         if (dto.getMarkEventAsCompleted() != null && dto.getMarkEventAsCompleted()) {
             // Check if attendance has been marked before for this event
@@ -206,6 +207,11 @@ public class AttendanceService {
             }
         }
 
+        if (eventStatusChanged) {
+            applicationEventPublisher.publishEvent(new EventStatusChangedEvent(
+                    List.of(event.getId()), previousEventStatus, newEventStatus, LocalDateTime.now(), false));
+        }
+
         // Calculate attendance summary
         int totalStudents = attendanceRecords.size();
         int presentCount = (int) attendanceRecords.stream()
@@ -264,6 +270,140 @@ public class AttendanceService {
         return new AttendanceMarkingResponseDTO(true, message, attendanceSummary, eventSummary, responseRecords);
     }
 
+    // Load students by ID in one query, failing on the first unknown ID
+    private Map<Long, Student> loadRoster(List<Long> studentIds) {
+        Map<Long, Student> roster = studentRepository.findAllById(new LinkedHashSet<>(studentIds))
+                .stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+
+        for (Long studentId : studentIds) {
+            if (!roster.containsKey(studentId)) {
+                throw new RuntimeException("Student not found: " + studentId);
+            }
+        }
+        return roster;
+    }
+
+    /**
+     * Write attendance rows for one event with a constant number of statements:
+     * one snapshot of the existing sheet, one upsert per 1000 changed rows and one reload.
+     * Returns the stored records in request order.
+     * In write-behind mode the rows are journaled when the transaction commits and unsaved records are returned.
+     */
+    private List<Attendance> writeAttendanceSheet(Event event, User faculty, Map<Long, Student> roster,
+                                                  List<AttendanceBulkRepository.AttendanceUpsert> rows) {
+        if (attendanceWriteBehindBuffer.isEnabled()) {
+            attendanceWriteBehindBuffer.accept(rows);
+            logger.debug("Attendance sheet for event {}: {} submitted to write-behind buffer", event.getId(), rows.size());
+            return rows.stream()
+                    .map(row -> new Attendance(roster.get(row.getStudentId()), event, row.getStatus(),
+                            row.getMarksObtained(), row.getMaxMarks(), row.getRemarks(), faculty))
+                    .collect(Collectors.toList());
+        }
+
+        // Later records for the same student win, as they did with sequential saves
+        Map<Long, AttendanceBulkRepository.AttendanceUpsert> latestByStudent = new LinkedHashMap<>();
+        for (AttendanceBulkRepository.AttendanceUpsert row : rows) {
+            latestByStudent.put(row.getStudentId(), row);
+        }
+
+        Map<Long, Object[]> existing = new HashMap<>();
+        for (Object[] snapshot : attendanceRepository.findAttendanceSnapshotByEvent(event)) {
+            existing.put((Long) snapshot[0], snapshot);
+        }
+
+        // Only new and changed rows are written: rows already on the sheet by attendance ID, the rest inserted
+        Map<Long, AttendanceBulkRepository.AttendanceUpsert> updates = new LinkedHashMap<>();
+        List<AttendanceBulkRepository.AttendanceUpsert> inserts = new ArrayList<>();
+        for (AttendanceBulkRepository.AttendanceUpsert row : latestByStudent.values()) {
+            Object[] snapshot = existing.get(row.getStudentId());
+            if (snapshot == null) {
+                inserts.add(row);
+            } else if (isChanged(snapshot, row)) {
+                updates.put((Long) snapshot[6], row);
+            }
+        }
+
+        int written = attendanceBulkRepository.updateAll(updates) + attendanceBulkRepository.upsertAll(inserts);
+        List<Long> writtenStudentIds = new ArrayList<>();
+        updates.values().forEach(row -> writtenStudentIds.add(row.getStudentId()));
+        inserts.forEach(row -> writtenStudentIds.add(row.getStudentId()));
+        attendanceChangeTracker.markChanged(event.getId(), writtenStudentIds);
+        logger.debug("Attendance sheet for event {}: {} submitted, {} written", event.getId(), rows.size(), written);
+
+        Map<Long, Attendance> stored = attendanceRepository.findByEventWithStudentDetails(event)
+                .stream()
+                .collect(Collectors.toMap(a -> a.getStudent().getId(), Function.identity()));
+
+        return rows.stream()
+                .map(row -> stored.get(row.getStudentId()))
+                .collect(Collectors.toList());
+    }
+
+    private boolean isChanged(Object[] snapshot, AttendanceBulkRepository.AttendanceUpsert row) {
+        if (snapshot == null || Boolean.FALSE.equals(snapshot[7])) {
+            return true;
+        }
+        return snapshot[1] != row.getStatus()
+                || !Objects.equals(snapshot[2], row.getMarksObtained())
+                || !Objects.equals(snapshot[3], row.getMaxMarks())
+                || !Objects.equals(snapshot[4], row.getRemarks())
+                || !Objects.equals(snapshot[5], row.getMarkedByFacultyId());
+    }
+
+    /**
+     * Add the (student, event) unique key the bulk upserts need if it is missing, then backfill the marked flag,
+     * both before the read models load. Removed duplicates go through the totals and the change log; the
+     * backfill changes nothing about its rows, so it leaves them alone.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onStartup() {
+        int removed = attendanceBulkRepository.ensureStudentEventKey();
+        if (removed > 0) {
+            logger.warn("Removed {} duplicate attendance rows to add the (student, event) unique key", removed);
+        }
+        studentAttendanceStatsBulkRepository.skipForCurrentTransaction();
+        int backfilled = attendanceBulkRepository.backfillMarkedFlag();
+        if (backfilled > 0) {
+            logger.info("Flagged {} existing attendance rows as marked", backfilled);
+        }
+    }
+
+    /**
+     * Pre-create the attendance sheet once an event has started, and drop what is left of it once the event is over.
+     * Unmarked rows are placeholders for the faculty's sheet only: no list, total or read model counts them.
+     * A student the faculty never marked has no attendance for the event, as before sheets were pre-created.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onEventStatusChanged(EventStatusChangedEvent statusChange) {
+        Event.EventStatus newStatus = statusChange.getNewStatus();
+        if (newStatus == Event.EventStatus.ONGOING) {
+            int created = attendanceBulkRepository.materializeSheets(statusChange.getEventIds());
+            attendanceChangeTracker.markChanged(statusChange.getEventIds());
+            logger.info("Pre-created {} attendance rows for {} started events", created, statusChange.getEventIds().size());
+        } else if (newStatus == Event.EventStatus.COMPLETED || newStatus == Event.EventStatus.CANCELLED) {
+            int discarded = attendanceBulkRepository.discardUnmarked(statusChange.getEventIds());
+            if (discarded > 0) {
+                logger.info("Discarded {} unmarked attendance rows of {} finished events", discarded, statusChange.getEventIds().size());
+            }
+        }
+    }
+
+    // Get students not yet marked on a pre-created sheet
+    @Transactional(readOnly = true)
+    public List<Attendance> getUnmarkedAttendanceByEvent(Long eventId, Long facultyId) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new RuntimeException("Event not found"));
+
+        if (!event.getFaculty().getId().equals(facultyId)) {
+            throw new RuntimeException("You don't have permission to view attendance for this event");
+        }
+
+        return attendanceRepository.findUnmarkedByEvent(event);
+    }
+
     // Get attendance by ID
     @Transactional(readOnly = true)
     public Optional<Attendance> getAttendanceById(Long attendanceId) {
@@ -282,13 +422,17 @@ public class AttendanceService {
         Student student = studentRepository.findById(studentId)
                 .orElseThrow(() -> new RuntimeException("Student not found"));
         
-        return attendanceRepository.findByStudentWithEventDetails(student);
+        return getAttendanceByStudent(student);
     }
 
-    // Get attendance by student object
+    // Get attendance by student object, including archived terms
     @Transactional(readOnly = true)
     public List<Attendance> getAttendanceByStudent(Student student) {
-        return attendanceRepository.findByStudentWithEventDetails(student);
+        List<Attendance> attendance = attendanceRepository.findByStudentWithEventDetails(student);
+        if (!attendanceArchiveService.hasArchives()) {
+            return attendance;
+        }
+        return mergeArchived(attendance, attendanceArchiveService.findByStudent(student.getId()));
     }
 
     // Get attendance by student with pagination
@@ -297,7 +441,7 @@ public class AttendanceService {
         Student student = studentRepository.findById(studentId)
                 .orElseThrow(() -> new RuntimeException("Student not found"));
         
-        return attendanceRepository.findByStudent(student, pageable);
+        return attendanceRepository.findByStudentAndIsMarkedTrue(student, pageable);
     }
 
     // Get attendance by event
@@ -315,7 +459,7 @@ public class AttendanceService {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new RuntimeException("Event not found"));
         
-        return attendanceRepository.findByEvent(event, pageable);
+        return attendanceRepository.findByEventAndIsMarkedTrue(event, pageable);
     }
 
     // Get attendance by faculty
@@ -333,7 +477,7 @@ public class AttendanceService {
         User faculty = userService.getUserById(facultyId)
                 .orElseThrow(() -> new RuntimeException("Faculty not found"));
         
-        return attendanceRepository.findByMarkedByFaculty(faculty, pageable);
+        return attendanceRepository.findByMarkedByFacultyAndIsMarkedTrue(faculty, pageable);
     }
 
     // Get attendance by status
@@ -345,7 +489,11 @@ public class AttendanceService {
     // Get attendance between dates
     @Transactional(readOnly = true)
     public List<Attendance> getAttendanceBetweenDates(LocalDateTime startDate, LocalDateTime endDate) {
-        return attendanceRepository.findAttendanceBetweenDates(startDate, endDate);
+        List<Attendance> attendance = attendanceRepository.findAttendanceBetweenDates(startDate, endDate);
+        if (!attendanceArchiveService.hasArchives()) {
+            return attendance;
+        }
+        return mergeArchived(attendance, attendanceArchiveService.findBetweenDates(startDate, endDate, null, null));
     }
 
     // Get attendance by student between dates
@@ -354,7 +502,11 @@ public class AttendanceService {
         Student student = studentRepository.findById(studentId)
                 .orElseThrow(() -> new RuntimeException("Student not found"));
         
-        return attendanceRepository.findAttendanceByStudentBetweenDates(student, startDate, endDate);
+        List<Attendance> attendance = attendanceRepository.findAttendanceByStudentBetweenDates(student, startDate, endDate);
+        if (!attendanceArchiveService.hasArchives()) {
+            return attendance;
+        }
+        return mergeArchived(attendance, attendanceArchiveService.findBetweenDates(startDate, endDate, studentId, null));
     }
 
     // Get attendance by faculty between dates
@@ -363,41 +515,43 @@ public class AttendanceService {
         User faculty = userService.getUserById(facultyId)
                 .orElseThrow(() -> new RuntimeException("Faculty not found"));
         
-        return attendanceRepository.findAttendanceByFacultyBetweenDates(faculty, startDate, endDate);
+        List<Attendance> attendance = attendanceRepository.findAttendanceByFacultyBetweenDates(faculty, startDate, endDate);
+        if (!attendanceArchiveService.hasArchives()) {
+            return attendance;
+        }
+        return mergeArchived(attendance, attendanceArchiveService.findBetweenDates(startDate, endDate, null, facultyId));
+    }
+
+    // Combine live and archived rows, newest first; a row still in the live table wins over its archived copy
+    private List<Attendance> mergeArchived(List<Attendance> live, List<Attendance> archived) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        Set<Long> liveIds = live.stream().map(Attendance::getId).collect(Collectors.toSet());
+        List<Attendance> merged = new ArrayList<>(live);
+        archived.stream()
+                .filter(attendance -> !liveIds.contains(attendance.getId()))
+                .forEach(merged::add);
+        merged.sort(Comparator.comparing(Attendance::getMarkedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return merged;
     }
 
     // Get attendance statistics for student
     @Transactional(readOnly = true)
     public AttendanceStatisticsDTO getAttendanceStatisticsByStudent(Long studentId) {
-        Student student = studentRepository.findById(studentId)
-                .orElseThrow(() -> new RuntimeException("Student not found"));
-
-        long totalAttendance = attendanceRepository.countByStudent(student);
-        long presentCount = attendanceRepository.countByStudentAndStatus(student, Attendance.AttendanceStatus.PRESENT);
-        long absentCount = attendanceRepository.countByStudentAndStatus(student, Attendance.AttendanceStatus.ABSENT);
-        long lateCount = attendanceRepository.countByStudentAndStatus(student, Attendance.AttendanceStatus.LATE);
-        long excusedCount = attendanceRepository.countByStudentAndStatus(student, Attendance.AttendanceStatus.EXCUSED);
-
-        double attendancePercentage = totalAttendance > 0 ? (double) presentCount / totalAttendance * 100 : 0.0;
-
-        return new AttendanceStatisticsDTO(totalAttendance, presentCount, absentCount, lateCount, excusedCount, attendancePercentage);
+        if (!studentRepository.existsById(studentId)) {
+            throw new RuntimeException("Student not found");
+        }
+        return getAttendanceStatistics(AttendanceScope.forStudent(studentId));
     }
 
     // Get attendance statistics for event
     @Transactional(readOnly = true)
     public AttendanceStatisticsDTO getAttendanceStatisticsByEvent(Long eventId) {
-        Event event = eventRepository.findById(eventId)
-                .orElseThrow(() -> new RuntimeException("Event not found"));
-
-        long totalAttendance = attendanceRepository.countByEvent(event);
-        long presentCount = attendanceRepository.countByEventAndStatus(event, Attendance.AttendanceStatus.PRESENT);
-        long absentCount = attendanceRepository.countByEventAndStatus(event, Attendance.AttendanceStatus.ABSENT);
-        long lateCount = attendanceRepository.countByEventAndStatus(event, Attendance.AttendanceStatus.LATE);
-        long excusedCount = attendanceRepository.countByEventAndStatus(event, Attendance.AttendanceStatus.EXCUSED);
-
-        double attendancePercentage = totalAttendance > 0 ? (double) presentCount / totalAttendance * 100 : 0.0;
-
-        return new AttendanceStatisticsDTO(totalAttendance, presentCount, absentCount, lateCount, excusedCount, attendancePercentage);
+        if (!eventRepository.existsById(eventId)) {
+            throw new RuntimeException("Event not found");
+        }
+        return getAttendanceStatistics(AttendanceScope.forEvent(eventId));
     }
 
     // Get attendance statistics for faculty
@@ -405,28 +559,23 @@ public class AttendanceService {
     public AttendanceStatisticsDTO getAttendanceStatisticsByFaculty(Long facultyId) {
         User faculty = userService.getUserById(facultyId)
                 .orElseThrow(() -> new RuntimeException("Faculty not found"));
+        return getAttendanceStatistics(AttendanceScope.forFaculty(faculty.getId()));
+    }
 
-        long totalAttendance = attendanceRepository.countByMarkedByFaculty(faculty);
-        long presentCount = attendanceRepository.findByMarkedByFaculty(faculty, Pageable.unpaged())
-                .stream()
-                .mapToLong(attendance -> attendance.getStatus() == Attendance.AttendanceStatus.PRESENT ? 1 : 0)
-                .sum();
-        long absentCount = attendanceRepository.findByMarkedByFaculty(faculty, Pageable.unpaged())
-                .stream()
-                .mapToLong(attendance -> attendance.getStatus() == Attendance.AttendanceStatus.ABSENT ? 1 : 0)
-                .sum();
-        long lateCount = attendanceRepository.findByMarkedByFaculty(faculty, Pageable.unpaged())
-                .stream()
-                .mapToLong(attendance -> attendance.getStatus() == Attendance.AttendanceStatus.LATE ? 1 : 0)
-                .sum();
-        long excusedCount = attendanceRepository.findByMarkedByFaculty(faculty, Pageable.unpaged())
-                .stream()
-                .mapToLong(attendance -> attendance.getStatus() == Attendance.AttendanceStatus.EXCUSED ? 1 : 0)
-                .sum();
-
-        double attendancePercentage = totalAttendance > 0 ? (double) presentCount / totalAttendance * 100 : 0.0;
+    // Get attendance statistics for any scope, e.g. a department over a date range
+    @Transactional(readOnly = true)
+    public AttendanceStatisticsDTO getAttendanceStatistics(AttendanceScope scope) {
+        return AttendanceStatisticsDTO.fromHistogram(attendanceRepository.countByStatus(scope));
+    }
 
-        return new AttendanceStatisticsDTO(totalAttendance, presentCount, absentCount, lateCount, excusedCount, attendancePercentage);
+    // Get attendance statistics for many students, events or faculty members in one query, keyed by ID
+    @Transactional(readOnly = true)
+    public Map<Long, AttendanceStatisticsDTO> getAttendanceStatistics(AttendanceScope.Dimension dimension,
+                                                                      Collection<Long> ids, AttendanceScope scope) {
+        Map<Long, AttendanceStatisticsDTO> statistics = new HashMap<>();
+        attendanceRepository.countByStatus(dimension, ids, scope)
+                .forEach((id, histogram) -> statistics.put(id, AttendanceStatisticsDTO.fromHistogram(histogram)));
+        return statistics;
     }
 
     // Update attendance
@@ -451,8 +600,11 @@ public class AttendanceService {
         attendance.setMarksObtained(recordDTO.getMarksObtained());
         attendance.setMaxMarks(recordDTO.getMaxMarks());
         attendance.setRemarks(recordDTO.getRemarks());
+        attendance.setIsMarked(true);
 
-        return attendanceRepository.save(attendance);
+        Attendance saved = attendanceRepository.save(attendance);
+        attendanceChangeTracker.markChanged(saved.getEvent().getId(), List.of(saved.getStudent().getId()));
+        return saved;
     }
 
     // Delete attendance
@@ -471,11 +623,18 @@ public class AttendanceService {
         }
 
         attendanceRepository.delete(attendance);
+        attendanceChangeTracker.markChanged(attendance.getEvent().getId(), List.of(attendance.getStudent().getId()));
     }
 
     // Get recent attendance
     @Transactional(readOnly = true)
     public List<Attendance> getRecentAttendance(int limit) {
+        // Look at the recent window first and only fall back to the whole table when it is too quiet
+        List<Attendance> recent = attendanceRepository.findRecentAttendanceSince(
+                LocalDateTime.now().minusDays(recentWindowDays), Pageable.ofSize(limit));
+        if (recent.size() >= limit) {
+            return recent;
+        }
         return attendanceRepository.findRecentAttendance(Pageable.ofSize(limit));
     }
 
@@ -521,36 +680,32 @@ public class AttendanceService {
         return attendanceRepository.findAverageMarksByEvent(event);
     }
 
-    // Get average attendance rate by faculty
+    // Average event attendance rate (PRESENT share per event) of a faculty member's events
     @Transactional(readOnly = true)
-    public double getAverageAttendanceRateByFaculty(Long facultyId) {
+    public double getEventAttendanceRateByFaculty(Long facultyId) {
         User faculty = userService.getUserById(facultyId)
                 .orElseThrow(() -> new RuntimeException("Faculty not found"));
-        
-        // Get all events by this faculty
-        List<Event> facultyEvents = eventRepository.findByFaculty(faculty);
-        
-        if (facultyEvents.isEmpty()) {
-            return 0.0;
+        return attendanceRepository.findEventAttendanceRateByFaculty(faculty.getId());
+    }
+
+    // Average event attendance rate of many faculty members in one query; faculty without attendance get 0
+    @Transactional(readOnly = true)
+    public Map<Long, Double> getEventAttendanceRatesByFaculty(Collection<Long> facultyIds) {
+        Map<Long, Double> rates = new HashMap<>();
+        if (facultyIds.isEmpty()) {
+            return rates;
         }
-        
-        // Calculate average attendance rate across all events
-        double totalAttendanceRate = 0.0;
-        int eventsWithAttendance = 0;
-        
-        for (Event event : facultyEvents) {
-            List<Attendance> attendanceRecords = attendanceRepository.findByEvent(event);
-            if (!attendanceRecords.isEmpty()) {
-                long presentCount = attendanceRecords.stream()
-                        .filter(attendance -> attendance.getStatus() == Attendance.AttendanceStatus.PRESENT)
-                        .count();
-                double attendanceRate = (double) presentCount / attendanceRecords.size() * 100;
-                totalAttendanceRate += attendanceRate;
-                eventsWithAttendance++;
-            }
+        facultyIds.forEach(id -> rates.put(id, 0.0));
+        for (Object[] row : attendanceRepository.findEventAttendanceRatesByFaculty(facultyIds)) {
+            rates.put(((Number) row[0]).longValue(), ((Number) row[1]).doubleValue());
         }
-        
-        return eventsWithAttendance > 0 ? totalAttendanceRate / eventsWithAttendance : 0.0;
+        return rates;
+    }
+
+    // Average event attendance rate of a department's students, over the events they attended
+    @Transactional(readOnly = true)
+    public double getEventAttendanceRateByDepartment(String department) {
+        return attendanceRepository.findEventAttendanceRateByDepartment(department);
     }
 
     // Inner class for statistics
@@ -560,24 +715,45 @@ public class AttendanceService {
         private long absentCount;
         private long lateCount;
         private long excusedCount;
+        private long partialCount;
         private double attendancePercentage;
 
         public AttendanceStatisticsDTO(long totalAttendance, long presentCount, long absentCount, 
                                      long lateCount, long excusedCount, double attendancePercentage) {
+            this(totalAttendance, presentCount, absentCount, lateCount, excusedCount, 0, attendancePercentage);
+        }
+
+        public AttendanceStatisticsDTO(long totalAttendance, long presentCount, long absentCount,
+                                     long lateCount, long excusedCount, long partialCount, double attendancePercentage) {
             this.totalAttendance = totalAttendance;
             this.presentCount = presentCount;
             this.absentCount = absentCount;
             this.lateCount = lateCount;
             this.excusedCount = excusedCount;
+            this.partialCount = partialCount;
             this.attendancePercentage = attendancePercentage;
         }
 
+        // Statistics of a status histogram; the percentage counts PRESENT only, as before
+        public static AttendanceStatisticsDTO fromHistogram(Map<Attendance.AttendanceStatus, Long> histogram) {
+            long totalAttendance = histogram.values().stream().mapToLong(Long::longValue).sum();
+            long presentCount = histogram.getOrDefault(Attendance.AttendanceStatus.PRESENT, 0L);
+            double attendancePercentage = totalAttendance > 0 ? (double) presentCount / totalAttendance * 100 : 0.0;
+            return new AttendanceStatisticsDTO(totalAttendance, presentCount,
+                    histogram.getOrDefault(Attendance.AttendanceStatus.ABSENT, 0L),
+                    histogram.getOrDefault(Attendance.AttendanceStatus.LATE, 0L),
+                    histogram.getOrDefault(Attendance.AttendanceStatus.EXCUSED, 0L),
+                    histogram.getOrDefault(Attendance.AttendanceStatus.PARTIAL, 0L),
+                    attendancePercentage);
+        }
+
         // Getters
         public long getTotalAttendance() { return totalAttendance; }
         public long getPresentCount() { return presentCount; }
         public long getAbsentCount() { return absentCount; }
         public long getLateCount() { return lateCount; }
         public long getExcusedCount() { return excusedCount; }
+        public long getPartialCount() { return partialCount; }
         public double getAttendancePercentage() { return attendancePercentage; }
     }
 
@@ -0,0 +1,407 @@
+package com.pearldata.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pearldata.entity.Attendance;
+import com.pearldata.repository.AttendanceBulkRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Optional write-behind mode for attendance marking (attendance.write-behind.enabled).
+ *
+ * Accepted marks are appended to a local journal segment and fsync'd before the request is acknowledged.
+ * Marks are journaled once the marking transaction commits, so a request that rolls back leaves nothing behind.
+ * Concurrent requests share one fsync (group commit): whoever finds no sync in progress forces the segment
+ * for everything appended so far, outside the journal lock, and the others wait for it to cover their entries.
+ * A scheduled flusher coalesces repeated marks for the same (student, event), upserts them in large
+ * batches and deletes the journal segments it covered. Segments left over from a crash are replayed on
+ * startup; the upsert is idempotent, so replaying an already-flushed segment is harmless.
+ * While marks are buffered, reads may lag behind by up to one flush interval.
+ */
+@Service
+public class AttendanceWriteBehindBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceWriteBehindBuffer.class);
+
+    private static final String SEGMENT_PREFIX = "attendance-journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    @Value("${attendance.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${attendance.write-behind.journal-dir:./data/attendance-journal}")
+    private String journalDir;
+
+    @Value("${attendance.write-behind.max-batch-size:5000}")
+    private int maxBatchSize;
+
+    @Autowired
+    private AttendanceBulkRepository attendanceBulkRepository;
+
+    @Autowired
+    private AttendanceChangeTracker attendanceChangeTracker;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Guards the active segment, the pending map, the sealed segment list and the append sequence
+    private final Object lock = new Object();
+
+    // Guards the synced sequence and the in-progress flag of the group fsync
+    private final Object syncLock = new Object();
+
+    // Number of journal appends so far; an append is durable once syncedSequence reaches it
+    private long appendedSequence;
+
+    private long syncedSequence;
+
+    private boolean syncInProgress;
+
+    private Map<String, AttendanceBulkRepository.AttendanceUpsert> pending = new LinkedHashMap<>();
+
+    private final List<Path> sealedSegments = new ArrayList<>();
+
+    private Path journalPath;
+
+    private FileChannel activeChannel;
+
+    private Path activeSegment;
+
+    private long nextSegmentSequence;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        journalPath = Paths.get(journalDir);
+        Files.createDirectories(journalPath);
+
+        List<Path> existingSegments = listSegments();
+        for (Path segment : existingSegments) {
+            replaySegment(segment);
+            sealedSegments.add(segment);
+        }
+        nextSegmentSequence = existingSegments.isEmpty() ? 1 : segmentSequence(existingSegments.get(existingSegments.size() - 1)) + 1;
+        openNewSegment();
+
+        logger.info("Attendance write-behind enabled: journal {}, {} marks replayed from {} segments",
+                journalPath.toAbsolutePath(), pending.size(), existingSegments.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Number of coalesced marks waiting to be flushed
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Journal the rows durably and queue them for the next flush once the surrounding transaction commits.
+     * The commit returns only after the journal write has been forced to disk; a failure to journal is
+     * thrown from the commit, after the transaction's own writes are already in.
+     */
+    public void accept(List<AttendanceBulkRepository.AttendanceUpsert> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        List<AttendanceBulkRepository.AttendanceUpsert> accepted = List.copyOf(rows);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    journal(accepted);
+                }
+            });
+        } else {
+            journal(accepted);
+        }
+    }
+
+    // Append the rows to the active segment and wait for a group fsync to cover them
+    private void journal(List<AttendanceBulkRepository.AttendanceUpsert> rows) {
+        StringBuilder entries = new StringBuilder(rows.size() * 96);
+        for (AttendanceBulkRepository.AttendanceUpsert row : rows) {
+            entries.append(toJournalLine(row)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(entries.toString().getBytes(StandardCharsets.UTF_8));
+
+        long sequence;
+        synchronized (lock) {
+            try {
+                while (buffer.hasRemaining()) {
+                    activeChannel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not journal attendance marks", e);
+            }
+            sequence = ++appendedSequence;
+            // Queued right away so a flush that seals this segment also covers the rows; writing them early is harmless
+            for (AttendanceBulkRepository.AttendanceUpsert row : rows) {
+                pending.put(pendingKey(row), row);
+            }
+        }
+
+        try {
+            awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal attendance marks", e);
+        }
+    }
+
+    // Block until the append with the given sequence is on disk, forcing the segment if no one else is
+    private void awaitDurable(long sequence) throws IOException {
+        synchronized (syncLock) {
+            while (syncedSequence < sequence && syncInProgress) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the attendance journal", e);
+                }
+            }
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            syncInProgress = true;
+        }
+
+        long target;
+        FileChannel channel;
+        synchronized (lock) {
+            target = appendedSequence;
+            channel = activeChannel;
+        }
+        boolean synced = false;
+        try {
+            channel.force(false);
+            synced = true;
+        } catch (ClosedChannelException e) {
+            // The segment was sealed meanwhile, and sealing forces it first
+            synced = true;
+        } finally {
+            synchronized (syncLock) {
+                if (synced) {
+                    syncedSequence = Math.max(syncedSequence, target);
+                }
+                syncInProgress = false;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    // Persist buffered marks in large batches
+    @Scheduled(fixedDelayString = "${attendance.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        Map<String, AttendanceBulkRepository.AttendanceUpsert> batch;
+        List<Path> coveredSegments;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            try {
+                sealActiveSegment();
+            } catch (IOException e) {
+                // Keep the batch queued; the active segment still holds it
+                batch.putAll(pending);
+                pending = batch;
+                logger.error("Could not rotate attendance journal: {}", e.getMessage());
+                return;
+            }
+            coveredSegments = new ArrayList<>(sealedSegments);
+        }
+
+        List<AttendanceBulkRepository.AttendanceUpsert> rows = new ArrayList<>(batch.values());
+        try {
+            for (int from = 0; from < rows.size(); from += maxBatchSize) {
+                writeBatch(rows.subList(from, Math.min(from + maxBatchSize, rows.size())));
+            }
+        } catch (DataAccessException e) {
+            logger.error("Attendance write-behind flush of {} marks failed, will retry: {}", rows.size(), e.getMessage());
+            synchronized (lock) {
+                // Marks accepted during the flush are newer and win
+                for (Map.Entry<String, AttendanceBulkRepository.AttendanceUpsert> entry : batch.entrySet()) {
+                    pending.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            return;
+        }
+
+        synchronized (lock) {
+            for (Path segment : coveredSegments) {
+                try {
+                    Files.deleteIfExists(segment);
+                } catch (IOException e) {
+                    logger.warn("Could not delete flushed attendance journal segment {}: {}", segment, e.getMessage());
+                }
+            }
+            sealedSegments.removeAll(coveredSegments);
+        }
+        logger.debug("Attendance write-behind flushed {} marks", rows.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        synchronized (lock) {
+            try {
+                activeChannel.close();
+            } catch (IOException e) {
+                logger.warn("Could not close attendance journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Rows that violate a constraint (e.g. a student deleted meanwhile) are dropped so they cannot block the rest
+    private void writeBatch(List<AttendanceBulkRepository.AttendanceUpsert> rows) {
+        try {
+            attendanceBulkRepository.upsertAll(rows);
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Attendance write-behind batch rejected, retrying {} marks individually: {}", rows.size(), e.getMessage());
+            for (AttendanceBulkRepository.AttendanceUpsert row : rows) {
+                try {
+                    attendanceBulkRepository.upsertAll(Collections.singletonList(row));
+                } catch (DataIntegrityViolationException rowError) {
+                    logger.error("Dropping attendance mark for student {} event {}: {}",
+                            row.getStudentId(), row.getEventId(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        attendanceChangeTracker.markChanged(rows.stream()
+                .map(AttendanceBulkRepository.AttendanceUpsert::getEventId)
+                .collect(Collectors.toSet()), rows.stream()
+                .map(AttendanceBulkRepository.AttendanceUpsert::getStudentId)
+                .collect(Collectors.toSet()));
+    }
+
+    private void openNewSegment() throws IOException {
+        activeSegment = journalPath.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, nextSegmentSequence++, SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(activeSegment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Called under the journal lock; everything appended so far is durable once the old segment is forced
+    private void sealActiveSegment() throws IOException {
+        Path previous = activeSegment;
+        FileChannel previousChannel = activeChannel;
+        previousChannel.force(false);
+        long sealedSequence = appendedSequence;
+        openNewSegment();
+        previousChannel.close();
+        sealedSegments.add(previous);
+        synchronized (syncLock) {
+            syncedSequence = Math.max(syncedSequence, sealedSequence);
+            syncLock.notifyAll();
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(journalPath)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private long segmentSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void replaySegment(Path segment) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    AttendanceBulkRepository.AttendanceUpsert row = fromJournalLine(line);
+                    pending.put(pendingKey(row), row);
+                } catch (IOException | RuntimeException e) {
+                    // A torn final line from a crash mid-write was never acknowledged
+                    logger.warn("Skipping unreadable attendance journal entry in {}: {}", segment.getFileName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private String toJournalLine(AttendanceBulkRepository.AttendanceUpsert row) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("studentId", row.getStudentId());
+        node.put("eventId", row.getEventId());
+        node.put("status", row.getStatus().name());
+        node.put("marksObtained", row.getMarksObtained());
+        node.put("maxMarks", row.getMaxMarks());
+        node.put("remarks", row.getRemarks());
+        node.put("facultyId", row.getMarkedByFacultyId());
+        return node.toString();
+    }
+
+    private AttendanceBulkRepository.AttendanceUpsert fromJournalLine(String line) throws IOException {
+        JsonNode node = objectMapper.readTree(line);
+        return new AttendanceBulkRepository.AttendanceUpsert(
+                node.get("studentId").asLong(),
+                node.get("eventId").asLong(),
+                Attendance.AttendanceStatus.valueOf(node.get("status").asText()),
+                node.path("marksObtained").isNumber() ? node.get("marksObtained").asDouble() : null,
+                node.path("maxMarks").isNumber() ? node.get("maxMarks").asDouble() : null,
+                node.path("remarks").isTextual() ? node.get("remarks").asText() : null,
+                node.get("facultyId").asLong());
+    }
+
+    private static String pendingKey(AttendanceBulkRepository.AttendanceUpsert row) {
+        return row.getStudentId() + ":" + row.getEventId();
+    }
+}
@@ -0,0 +1,384 @@
+package com.pearldata.service;
+
+import com.pearldata.repository.ChangeWatermarkRepository;
+import com.pearldata.repository.EventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Change watermarks for conditional GETs: one for all events, one for the student records, one per
+ * student's attendance and one per faculty member's events and their attendance. A watermark is the time
+ * of the last committed change to its scope in milliseconds, kept strictly increasing. Dashboards derive
+ * their ETag and Last-Modified from the watermarks they depend on and answer 304 Not Modified before
+ * running any query.
+ * <p>
+ * The watermarks live in the change_watermarks table, so all instances share them. They are advanced after
+ * the writer's transaction has committed, each scope in a short transaction of its own, so writers never hold
+ * a watermark row lock across their commit; a bump lost to a crash in between costs at most one stale 304
+ * until the scope changes again. Reads go through a short-lived local cache: an instance sees its own
+ * changes as soon as they are advanced and other instances' changes within the cache TTL.
+ * <p>
+ * Writes that cannot name the students or events they touched move the "any student" or "any faculty"
+ * watermark, which every per-student or per-faculty tag includes.
+ * <p>
+ * Attendance writes also move a watermark per event, which in-memory read models poll through an
+ * EventChangeCursor to catch up with writes made on other instances.
+ */
+@Service
+public class ChangeWatermarks {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeWatermarks.class);
+
+    // Bound on the remembered event -> faculty member pairs
+    private static final int MAX_EVENT_FACULTY = 50_000;
+
+    // Scope ID of the watermarks that cover everything of their kind
+    private static final long GLOBAL = 0L;
+
+    @Value("${change-watermarks.cache.max-size:100000}")
+    private int maxCacheSize;
+
+    // Longest time a change committed by another instance can go unnoticed here
+    @Value("${change-watermarks.cache.ttl-ms:1000}")
+    private long cacheTtlMs;
+
+    // How far back a cursor looks beyond its last poll, for clock skew between instances and slow advances
+    @Value("${change-watermarks.poll-overlap-ms:60000}")
+    private long pollOverlapMs;
+
+    @Autowired
+    private ChangeWatermarkRepository changeWatermarkRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Each scope is advanced in a transaction of its own, outside any writer's transaction
+    private TransactionTemplate writeTransaction;
+
+    private final Map<String, CachedWatermark> cache = new ConcurrentHashMap<>();
+
+    // Faculty member of each event seen so far; an event never changes faculty member
+    private final Map<Long, Long> eventFaculty = new ConcurrentHashMap<>();
+
+    // Set once the table exists; cursors polling before that see no changes
+    private volatile boolean installed;
+
+    /**
+     * What a watermark covers; the global scopes have a single row with scope ID 0.
+     */
+    public enum Scope {
+        EVENTS, STUDENTS, ANY_STUDENT_ATTENDANCE, ANY_FACULTY_EVENTS, STUDENT_ATTENDANCE, FACULTY_EVENTS, EVENT_ATTENDANCE
+    }
+
+    @PostConstruct
+    public void init() {
+        writeTransaction = new TransactionTemplate(transactionManager);
+        writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Create the table and start the global watermarks at the first startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        List<String> globalScopes = List.of(Scope.EVENTS.name(), Scope.STUDENTS.name(),
+                Scope.ANY_STUDENT_ATTENDANCE.name(), Scope.ANY_FACULTY_EVENTS.name());
+        writeTransaction.executeWithoutResult(status ->
+                changeWatermarkRepository.install(globalScopes, System.currentTimeMillis()));
+        installed = true;
+    }
+
+    // A cursor over the events whose attendance changed on any instance, starting now
+    public EventChangeCursor newEventAttendanceCursor() {
+        return new EventChangeCursor(Scope.EVENT_ATTENDANCE);
+    }
+
+    // Tag of what a student's dashboard, attendance and progress show: their attendance and the events
+    public Tag studentTag(Long studentId) {
+        return new Tag(watermarks(
+                List.of(Scope.STUDENT_ATTENDANCE, Scope.ANY_STUDENT_ATTENDANCE, Scope.EVENTS),
+                List.of(studentId, GLOBAL, GLOBAL)));
+    }
+
+    // Tag of what a faculty member's dashboard and event lists show: their events, their attendance and the students
+    public Tag facultyTag(Long facultyId) {
+        return new Tag(watermarks(
+                List.of(Scope.FACULTY_EVENTS, Scope.ANY_FACULTY_EVENTS, Scope.STUDENTS),
+                List.of(facultyId, GLOBAL, GLOBAL)));
+    }
+
+    // Record a change to one of the faculty member's events; takes effect when the surrounding transaction commits
+    public void markEventsChanged(Long facultyId) {
+        Map<Scope, Set<Long>> changes = new EnumMap<>(Scope.class);
+        changes.put(Scope.EVENTS, Set.of(GLOBAL));
+        changes.put(Scope.FACULTY_EVENTS, Set.of(facultyId));
+        record(changes);
+    }
+
+    // Record a change to the student records, e.g. a new or deactivated student
+    public void markStudentsChanged() {
+        record(Map.of(Scope.STUDENTS, Set.of(GLOBAL)));
+    }
+
+    // Record an attendance write to the given students' rows of the events; null students means any of them
+    public void markAttendanceChanged(Collection<Long> eventIds, Collection<Long> studentIds) {
+        Map<Scope, Set<Long>> changes = new EnumMap<>(Scope.class);
+        if (studentIds != null) {
+            changes.put(Scope.STUDENT_ATTENDANCE, new HashSet<>(studentIds));
+        } else {
+            changes.put(Scope.ANY_STUDENT_ATTENDANCE, Set.of(GLOBAL));
+        }
+        if (!eventIds.isEmpty()) {
+            changes.put(Scope.FACULTY_EVENTS, facultyIdsOf(eventIds));
+            changes.put(Scope.EVENT_ATTENDANCE, new HashSet<>(eventIds));
+        } else {
+            // Not tied to events, e.g. archived terms: events may have gone as well
+            changes.put(Scope.EVENTS, Set.of(GLOBAL));
+            changes.put(Scope.ANY_FACULTY_EVENTS, Set.of(GLOBAL));
+        }
+        record(changes);
+    }
+
+    // Status changes by the lifecycle scheduler, attendance marking and faculty members; advanced once they commit
+    @EventListener
+    public void onEventStatusChanged(EventStatusChangedEvent statusChange) {
+        Map<Scope, Set<Long>> changes = new EnumMap<>(Scope.class);
+        changes.put(Scope.EVENTS, Set.of(GLOBAL));
+        changes.put(Scope.FACULTY_EVENTS, facultyIdsOf(statusChange.getEventIds()));
+        record(changes);
+    }
+
+    // Current watermarks of the (scope, scope ID) pairs, from the cache where fresh and otherwise in one query
+    private long[] watermarks(List<Scope> scopes, List<Long> scopeIds) {
+        long now = System.currentTimeMillis();
+        long[] values = new long[scopes.size()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            CachedWatermark cached = cache.get(ChangeWatermarkRepository.key(scopes.get(i).name(), scopeIds.get(i)));
+            if (cached != null && cached.expiresAt > now) {
+                values[i] = cached.value;
+            } else {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+
+        Map<String, Long> found = changeWatermarkRepository.find(
+                missing.stream().map(i -> scopes.get(i).name()).toList(),
+                missing.stream().map(scopeIds::get).toList());
+        if (cache.size() > maxCacheSize) {
+            cache.clear();
+        }
+        for (int i : missing) {
+            String key = ChangeWatermarkRepository.key(scopes.get(i).name(), scopeIds.get(i));
+            // Scopes that never changed have no row yet
+            values[i] = found.getOrDefault(key, 0L);
+            remember(key, values[i], now);
+        }
+        return values;
+    }
+
+    // Cache a watermark read or written here; a refresh never moves a cached watermark backwards
+    private void remember(String key, long value, long now) {
+        CachedWatermark fresh = new CachedWatermark(value, now + cacheTtlMs);
+        cache.merge(key, fresh, (current, next) -> current.value > next.value ? current.renewed(next.expiresAt) : next);
+    }
+
+    // Advance the watermarks once the surrounding transaction commits, or right away without one
+    private void record(Map<Scope, Set<Long>> changes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            advance(changes);
+            return;
+        }
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(changes);
+    }
+
+    // One short transaction per scope, so a row lock is held for a single statement
+    private void advance(Map<Scope, Set<Long>> changes) {
+        changes.forEach((scope, scopeIds) -> {
+            if (scopeIds.isEmpty()) {
+                return;
+            }
+            try {
+                Map<Long, Long> advanced = writeTransaction.execute(status ->
+                        changeWatermarkRepository.advance(scope.name(), scopeIds, System.currentTimeMillis()));
+                long now = System.currentTimeMillis();
+                advanced.forEach((scopeId, value) -> remember(ChangeWatermarkRepository.key(scope.name(), scopeId), value, now));
+            } catch (DataAccessException e) {
+                // The change is committed; clients may see a stale 304 until the scope changes again
+                logger.error("Failed to advance {} watermarks: {}", scope, e.getMessage());
+            }
+        });
+    }
+
+    private Set<Long> facultyIdsOf(Collection<Long> eventIds) {
+        Set<Long> facultyIds = new HashSet<>();
+        List<Long> unknown = new ArrayList<>();
+        for (Long eventId : eventIds) {
+            Long facultyId = eventFaculty.get(eventId);
+            if (facultyId != null) {
+                facultyIds.add(facultyId);
+            } else {
+                unknown.add(eventId);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            if (eventFaculty.size() > MAX_EVENT_FACULTY) {
+                eventFaculty.clear();
+            }
+            for (Object[] row : eventRepository.findFacultyIdsByEventIds(unknown)) {
+                eventFaculty.put((Long) row[0], (Long) row[1]);
+                facultyIds.add((Long) row[1]);
+            }
+        }
+        return facultyIds;
+    }
+
+    /**
+     * The watermarks a transaction moves, advanced once it has committed.
+     */
+    private class PendingChanges implements TransactionSynchronization {
+        private final Map<Scope, Set<Long>> changes = new EnumMap<>(Scope.class);
+
+        void add(Map<Scope, Set<Long>> more) {
+            more.forEach((scope, scopeIds) -> changes.computeIfAbsent(scope, s -> new TreeSet<>()).addAll(scopeIds));
+        }
+
+        @Override
+        public void afterCommit() {
+            advance(changes);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeWatermarks.this);
+        }
+    }
+
+    /**
+     * Reports each scope ID whose watermark moved since the previous poll, whichever instance moved it.
+     * Looks back further than the last poll, so advances that commit late or on a skewed clock are not missed,
+     * and remembers the watermarks it has reported so they are not reported twice.
+     */
+    public final class EventChangeCursor {
+        private final Scope scope;
+        private final Map<Long, Long> reported = new HashMap<>();
+        private long polledAt = System.currentTimeMillis();
+
+        private EventChangeCursor(Scope scope) {
+            this.scope = scope;
+        }
+
+        // Scope IDs whose watermark moved since they were last reported
+        public synchronized Set<Long> poll() {
+            if (!installed) {
+                return Set.of();
+            }
+            long now = System.currentTimeMillis();
+            long since = polledAt - pollOverlapMs;
+            Set<Long> changed = new HashSet<>();
+            changeWatermarkRepository.findChangedSince(scope.name(), since).forEach((scopeId, changedAt) -> {
+                Long previous = reported.put(scopeId, changedAt);
+                if (previous == null || previous < changedAt) {
+                    changed.add(scopeId);
+                }
+            });
+            // Older entries fall outside every later poll's window
+            polledAt = now;
+            long nextSince = polledAt - pollOverlapMs;
+            reported.values().removeIf(changedAt -> changedAt <= nextSince);
+            return changed;
+        }
+    }
+
+    private static final class CachedWatermark {
+        private final long value;
+        private final long expiresAt;
+
+        private CachedWatermark(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private CachedWatermark renewed(long until) {
+            return new CachedWatermark(value, Math.max(expiresAt, until));
+        }
+    }
+
+    /**
+     * ETag and Last-Modified of a response built from a set of watermarks.
+     */
+    public static final class Tag {
+        private final String eTag;
+        private final long lastModified;
+
+        private Tag(long... watermarks) {
+            StringBuilder tag = new StringBuilder("\"");
+            long latest = 0;
+            for (long watermark : watermarks) {
+                if (tag.length() > 1) {
+                    tag.append('.');
+                }
+                tag.append(Long.toString(watermark, 36));
+                latest = Math.max(latest, watermark);
+            }
+            this.eTag = tag.append('"').toString();
+            this.lastModified = latest;
+        }
+
+        // Getters
+        public String getETag() { return eTag; }
+        public long getLastModified() { return lastModified; }
+
+        /**
+         * True when the client's copy is current, in which case the 304 response is already prepared and the
+         * handler should return null. Otherwise the ETag and Last-Modified headers are set for the full response.
+         * The response may be cached, but only by the client and only after revalidation.
+         */
+        public boolean checkNotModified(WebRequest request) {
+            if (request instanceof NativeWebRequest nativeRequest) {
+                HttpServletResponse response = nativeRequest.getNativeResponse(HttpServletResponse.class);
+                if (response != null) {
+                    response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+                }
+            }
+            return request.checkNotModified(eTag, lastModified);
+        }
+    }
+}
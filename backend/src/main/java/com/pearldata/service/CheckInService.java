@@ -0,0 +1,303 @@
+package com.pearldata.service;
+
+import com.pearldata.entity.Event;
+import com.pearldata.repository.AttendanceBulkRepository;
+import com.pearldata.repository.EventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Student self check-in with short codes that rotate every time slice.
+ *
+ * A code is an HMAC over (event ID, time slice), truncated to a few digits, so a submitted code is
+ * verified in memory without touching the database. Accepted check-ins are collected in a per-event batch
+ * and written by a scheduled flusher with one INSERT per event and transaction, never overwriting a mark the
+ * faculty has already made. Each request waits for its batch to commit before it is answered (group commit),
+ * so a confirmed check-in is never lost, while a full class checking in costs one write per flush.
+ */
+@Service
+public class CheckInService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckInService.class);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final String CHECK_IN_REMARKS = "Self check-in";
+
+    private static final int MAX_STUDENTS_PER_STATEMENT = 5000;
+
+    private static final long OPENS_BEFORE_START_MINUTES = 15;
+
+    public enum CheckInResult {
+        ACCEPTED,
+        ALREADY_CHECKED_IN
+    }
+
+    @Value("${checkin.secret:}")
+    private String secret;
+
+    @Value("${checkin.slice-seconds:30}")
+    private long sliceSeconds;
+
+    @Value("${checkin.code-length:6}")
+    private int codeLength;
+
+    @Value("${checkin.accepted-previous-slices:1}")
+    private int acceptedPreviousSlices;
+
+    @Value("${checkin.max-failed-attempts:5}")
+    private int maxFailedAttempts;
+
+    // Longest a request waits for its batch to commit
+    @Value("${checkin.commit-timeout-ms:10000}")
+    private long commitTimeoutMs;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private AttendanceBulkRepository attendanceBulkRepository;
+
+    @Autowired
+    private AttendanceChangeTracker attendanceChangeTracker;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private SecretKeySpec signingKey;
+
+    private ThreadLocal<Mac> macs;
+
+    private long codeModulus;
+
+    // Guards the pending batches
+    private final Object lock = new Object();
+
+    // eventId -> check-ins waiting for the next flush
+    private Map<Long, CheckInBatch> pending = new HashMap<>();
+
+    // studentId -> wrong codes submitted during the current slice
+    private final Map<Long, AtomicInteger> failedAttempts = new ConcurrentHashMap<>();
+
+    private volatile long failedAttemptsSlice;
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            logger.warn("checkin.secret is not set; using a random key, codes will not be valid across restarts or instances");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        signingKey = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(signingKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Could not initialize check-in code generator", e);
+            }
+        });
+        codeModulus = (long) Math.pow(10, codeLength);
+    }
+
+    // Current code for an event, for the owning faculty to display in class
+    @Transactional(readOnly = true)
+    public Map<String, Object> getCurrentCode(Long eventId, Long facultyId) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new RuntimeException("Event not found"));
+
+        if (!event.getFaculty().getId().equals(facultyId)) {
+            throw new RuntimeException("You don't have permission to open check-in for this event");
+        }
+        if (event.getStatus() == Event.EventStatus.CANCELLED || event.getStatus() == Event.EventStatus.COMPLETED) {
+            throw new RuntimeException("Check-in is closed for " + event.getStatus().name().toLowerCase() + " events");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (now.isAfter(event.getEndTime())) {
+            throw new RuntimeException("Cannot open check-in for past events");
+        }
+        if (now.isBefore(event.getStartTime().minusMinutes(OPENS_BEFORE_START_MINUTES))) {
+            throw new RuntimeException("Check-in opens " + OPENS_BEFORE_START_MINUTES + " minutes before the event starts");
+        }
+
+        long slice = currentSlice();
+        Map<String, Object> code = new HashMap<>();
+        code.put("eventId", eventId);
+        code.put("code", codeFor(eventId, slice));
+        code.put("validUntil", LocalDateTime.ofInstant(Instant.ofEpochSecond((slice + 1) * sliceSeconds), ZoneId.systemDefault()));
+        code.put("sliceSeconds", sliceSeconds);
+        return code;
+    }
+
+    // Verify the code in memory and queue the check-in; returns once the batch holding it has committed
+    public CheckInResult checkIn(Long eventId, String code, Long studentId) {
+        long slice = currentSlice();
+        resetFailedAttemptsIfNewSlice(slice);
+
+        AtomicInteger failures = failedAttempts.get(studentId);
+        if (failures != null && failures.get() >= maxFailedAttempts) {
+            throw new RuntimeException("Too many invalid check-in codes, wait for the next code");
+        }
+
+        if (!isValidCode(eventId, code == null ? "" : code.trim(), slice)) {
+            failedAttempts.computeIfAbsent(studentId, id -> new AtomicInteger()).incrementAndGet();
+            throw new RuntimeException("Invalid or expired check-in code");
+        }
+
+        CheckInBatch batch;
+        boolean added;
+        synchronized (lock) {
+            batch = pending.computeIfAbsent(eventId, id -> new CheckInBatch());
+            added = batch.studentIds.add(studentId);
+        }
+        batch.awaitCommitted(commitTimeoutMs);
+        return added ? CheckInResult.ACCEPTED : CheckInResult.ALREADY_CHECKED_IN;
+    }
+
+    // Write the queued check-ins, one transaction per event, and release the requests waiting on them
+    @Scheduled(fixedDelayString = "${checkin.flush-interval-ms:200}")
+    public void flush() {
+        Map<Long, CheckInBatch> batches;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batches = pending;
+            pending = new HashMap<>();
+        }
+
+        batches.forEach((eventId, batch) -> {
+            List<Long> studentIds = new ArrayList<>(batch.studentIds);
+            try {
+                int inserted = transactionTemplate.execute(status -> {
+                    int rows = 0;
+                    for (int from = 0; from < studentIds.size(); from += MAX_STUDENTS_PER_STATEMENT) {
+                        rows += attendanceBulkRepository.insertCheckIns(eventId,
+                                studentIds.subList(from, Math.min(from + MAX_STUDENTS_PER_STATEMENT, studentIds.size())),
+                                CHECK_IN_REMARKS);
+                    }
+                    attendanceChangeTracker.markChanged(eventId, studentIds);
+                    return rows;
+                });
+                logger.debug("Flushed {} check-ins for event {} ({} new)", studentIds.size(), eventId, inserted);
+                batch.complete(null);
+            } catch (RuntimeException e) {
+                // The waiting students get an error and can submit the code again
+                logger.error("Failed to flush {} check-ins for event {}: {}", studentIds.size(), eventId, e.getMessage());
+                batch.complete(e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private boolean isValidCode(Long eventId, String code, long slice) {
+        if (code.length() != codeLength) {
+            return false;
+        }
+        byte[] submitted = code.getBytes(StandardCharsets.UTF_8);
+        boolean valid = false;
+        // Check every accepted slice so timing does not reveal which one matched
+        for (int i = 0; i <= acceptedPreviousSlices; i++) {
+            valid |= MessageDigest.isEqual(submitted, codeFor(eventId, slice - i).getBytes(StandardCharsets.UTF_8));
+        }
+        return valid;
+    }
+
+    private String codeFor(long eventId, long slice) {
+        byte[] hash = macs.get().doFinal(ByteBuffer.allocate(2 * Long.BYTES).putLong(eventId).putLong(slice).array());
+
+        // Dynamic truncation as in RFC 4226
+        int offset = hash[hash.length - 1] & 0x0f;
+        int binary = ((hash[offset] & 0x7f) << 24)
+                | ((hash[offset + 1] & 0xff) << 16)
+                | ((hash[offset + 2] & 0xff) << 8)
+                | (hash[offset + 3] & 0xff);
+
+        StringBuilder code = new StringBuilder(Long.toString(binary % codeModulus));
+        while (code.length() < codeLength) {
+            code.insert(0, '0');
+        }
+        return code.toString();
+    }
+
+    private long currentSlice() {
+        return Instant.now().getEpochSecond() / sliceSeconds;
+    }
+
+    /**
+     * Check-ins of one event written together; requests wait on it until the flusher has committed it.
+     */
+    private static final class CheckInBatch {
+        private final Set<Long> studentIds = new LinkedHashSet<>();
+        private boolean done;
+        private RuntimeException failure;
+
+        private synchronized void complete(RuntimeException failure) {
+            this.failure = failure;
+            this.done = true;
+            notifyAll();
+        }
+
+        private synchronized void awaitCommitted(long timeoutMs) {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (!done) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new RuntimeException("Check-in is taking longer than expected, please submit the code again");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while saving the check-in");
+                }
+            }
+            if (failure != null) {
+                throw new RuntimeException("Check-in could not be saved, please submit the code again");
+            }
+        }
+    }
+
+    private void resetFailedAttemptsIfNewSlice(long slice) {
+        if (failedAttemptsSlice != slice) {
+            failedAttemptsSlice = slice;
+            failedAttempts.clear();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.pearldata.service;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pearldata.dto.EventResponseDTO;
+import com.pearldata.entity.Event;
+import com.pearldata.repository.EventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-grouped catalog of the events students see: ongoing and scheduled events by start time and
+ * completed events most recent first. The catalog is built with one query and rendered to JSON once.
+ * Each event change marks it stale when its transaction commits, and the next read rebuilds it and swaps
+ * in the new snapshot. Snapshots also expire after a while, because the time-based flags of
+ * EventResponseDTO move with the clock.
+ */
+@Service
+public class EventCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventCatalogService.class);
+
+    private static final byte[] STUDENT_NAME_FIELD = ",\"studentName\":".getBytes(StandardCharsets.UTF_8);
+
+    @Value("${events.catalog.max-age-ms:60000}")
+    private long maxAgeMs;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Bumped by every committed event change; a snapshot built before the latest change is stale
+    private final AtomicLong changes = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    // The current catalog, rebuilt first if events changed since it was built or it has expired
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (!isFresh(current)) {
+                current = build();
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    // Record an event change; the catalog is rebuilt on the first read after the surrounding transaction commits
+    public void markChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changes.incrementAndGet();
+                }
+            });
+        } else {
+            changes.incrementAndGet();
+        }
+    }
+
+    // Status changes by the lifecycle scheduler, attendance marking and faculty members
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventStatusChanged(EventStatusChangedEvent statusChange) {
+        changes.incrementAndGet();
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && current.changeCount == changes.get()
+                && System.currentTimeMillis() - current.builtAtMillis < maxAgeMs;
+    }
+
+    private Snapshot build() {
+        long started = System.currentTimeMillis();
+        long changeCount = changes.get();
+        List<Event> events = transactionTemplate.execute(status -> eventRepository.findCatalogEvents(
+                EnumSet.of(Event.EventStatus.ONGOING, Event.EventStatus.SCHEDULED, Event.EventStatus.COMPLETED)));
+
+        List<EventResponseDTO> ongoing = new ArrayList<>();
+        List<EventResponseDTO> scheduled = new ArrayList<>();
+        List<EventResponseDTO> completed = new ArrayList<>();
+        for (Event event : events) {
+            EventResponseDTO dto = new EventResponseDTO(event);
+            switch (event.getStatus()) {
+                case ONGOING -> ongoing.add(dto);
+                case SCHEDULED -> scheduled.add(dto);
+                default -> completed.add(dto);
+            }
+        }
+        // Most recent first
+        Collections.reverse(completed);
+
+        Snapshot built = new Snapshot(List.copyOf(ongoing), List.copyOf(scheduled), List.copyOf(completed),
+                changeCount, started, render(ongoing, scheduled, completed));
+        logger.debug("Built event catalog of {} events in {} ms", events.size(), System.currentTimeMillis() - started);
+        return built;
+    }
+
+    // The response without its closing brace, so the requesting student's name can be appended
+    private byte[] render(List<EventResponseDTO> ongoing, List<EventResponseDTO> scheduled, List<EventResponseDTO> completed) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("ongoing", ongoing);
+        data.put("scheduled", scheduled);
+        data.put("completed", completed);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("ongoingCount", ongoing.size());
+        summary.put("scheduledCount", scheduled.size());
+        summary.put("completedCount", completed.size());
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("data", data);
+        response.put("summary", summary);
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(response);
+            byte[] head = new byte[json.length - 1];
+            System.arraycopy(json, 0, head, 0, head.length);
+            return head;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to render event catalog: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Immutable event catalog with its pre-rendered JSON. The ETag is derived from the rendered content,
+     * so it is the same on every instance serving the same events.
+     */
+    public static final class Snapshot {
+        private final List<EventResponseDTO> ongoing;
+        private final List<EventResponseDTO> scheduled;
+        private final List<EventResponseDTO> completed;
+        private final long changeCount;
+        private final long builtAtMillis;
+        private final LocalDateTime builtAt;
+        private final byte[] head;
+        private final String contentHash;
+
+        private Snapshot(List<EventResponseDTO> ongoing, List<EventResponseDTO> scheduled, List<EventResponseDTO> completed,
+                         long changeCount, long builtAtMillis, byte[] head) {
+            this.ongoing = ongoing;
+            this.scheduled = scheduled;
+            this.completed = completed;
+            this.changeCount = changeCount;
+            this.builtAtMillis = builtAtMillis;
+            this.builtAt = LocalDateTime.now();
+            this.head = head;
+            this.contentHash = hash(head);
+        }
+
+        // Getters
+        public List<EventResponseDTO> getOngoing() { return ongoing; }
+        public List<EventResponseDTO> getScheduled() { return scheduled; }
+        public List<EventResponseDTO> getCompleted() { return completed; }
+        public LocalDateTime getBuiltAt() { return builtAt; }
+
+        // ETag of the response rendered for this student
+        public String getETag(String studentName) {
+            return "\"" + contentHash + "-" + Integer.toHexString(Objects.hashCode(studentName)) + "\"";
+        }
+
+        // The response JSON for this student
+        public byte[] render(String studentName) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(head.length + 64);
+            out.writeBytes(head);
+            out.writeBytes(STUDENT_NAME_FIELD);
+            if (studentName != null) {
+                out.write('"');
+                out.writeBytes(JsonStringEncoder.getInstance().quoteAsUTF8(studentName));
+                out.write('"');
+            } else {
+                out.writeBytes("null".getBytes(StandardCharsets.UTF_8));
+            }
+            out.write('}');
+            return out.toByteArray();
+        }
+
+        private static String hash(byte[] content) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+                return HexFormat.of().formatHex(digest, 0, 12);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
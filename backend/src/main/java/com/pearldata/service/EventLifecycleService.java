@@ -0,0 +1,63 @@
+package com.pearldata.service;
+
+import com.pearldata.entity.Event;
+import com.pearldata.repository.EventLifecycleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Keeps Event.status in step with the clock so status-based queries need no time re-filtering:
+ * SCHEDULED events become ONGOING at their start time and COMPLETED at their end time.
+ * Each tick runs three bulk UPDATE statements and publishes an EventStatusChangedEvent per non-empty transition.
+ * The statements bypass Hibernate; events are not in the second-level cache, so nothing needs evicting.
+ */
+@Service
+public class EventLifecycleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLifecycleService.class);
+
+    @Value("${events.lifecycle.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private EventLifecycleRepository eventLifecycleRepository;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    // Advance event statuses based on start and end times
+    @Scheduled(fixedDelayString = "${events.lifecycle.interval-ms:60000}", initialDelayString = "${events.lifecycle.initial-delay-ms:10000}")
+    @Transactional
+    public void advanceEventStatuses() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+
+        // Finish ended events first so SCHEDULED events that were missed entirely skip ONGOING
+        publish(eventLifecycleRepository.transitionEnded(Event.EventStatus.ONGOING, Event.EventStatus.COMPLETED, now),
+                Event.EventStatus.ONGOING, Event.EventStatus.COMPLETED, now);
+        publish(eventLifecycleRepository.transitionEnded(Event.EventStatus.SCHEDULED, Event.EventStatus.COMPLETED, now),
+                Event.EventStatus.SCHEDULED, Event.EventStatus.COMPLETED, now);
+        publish(eventLifecycleRepository.transitionStarted(Event.EventStatus.SCHEDULED, Event.EventStatus.ONGOING, now),
+                Event.EventStatus.SCHEDULED, Event.EventStatus.ONGOING, now);
+    }
+
+    private void publish(List<Long> eventIds, Event.EventStatus from, Event.EventStatus to, LocalDateTime now) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        logger.info("Moved {} events from {} to {}", eventIds.size(), from, to);
+        applicationEventPublisher.publishEvent(new EventStatusChangedEvent(eventIds, from, to, now, true));
+    }
+}
@@ -10,7 +10,9 @@ import com.pearldata.repository.EventRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -43,6 +45,15 @@ public class EventService {
     @Autowired
     private WhatsAppService whatsAppService;
 
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private EventCatalogService eventCatalogService;
+
+    @Autowired
+    private ChangeWatermarks changeWatermarks;
+
     // Create event
     public EventResponseDTO createEvent(CreateEventDTO createEventDTO, Long facultyId) {
         // Validate faculty
@@ -75,6 +86,8 @@ public class EventService {
         event.setStatus(Event.EventStatus.SCHEDULED);
 
         Event savedEvent = eventRepository.save(event);
+        eventCatalogService.markChanged();
+        changeWatermarks.markEventsChanged(facultyId);
         
         // Send SMS and WhatsApp notifications to all students asynchronously
         sendEventNotificationsToStudents(savedEvent);
@@ -154,7 +167,7 @@ public class EventService {
         User faculty = userService.getUserById(facultyId)
                 .orElseThrow(() -> new RuntimeException("Faculty not found"));
         
-        return eventRepository.findUpcomingEventsByFaculty(faculty, LocalDateTime.now())
+        return eventRepository.findUpcomingEventsByFaculty(faculty)
                 .stream()
                 .map(EventResponseDTO::new)
                 .collect(Collectors.toList());
@@ -166,7 +179,7 @@ public class EventService {
         User faculty = userService.getUserById(facultyId)
                 .orElseThrow(() -> new RuntimeException("Faculty not found"));
         
-        return eventRepository.findCurrentEventsByFaculty(faculty, LocalDateTime.now())
+        return eventRepository.findCurrentEventsByFaculty(faculty)
                 .stream()
                 .map(EventResponseDTO::new)
                 .collect(Collectors.toList());
@@ -178,7 +191,7 @@ public class EventService {
         User faculty = userService.getUserById(facultyId)
                 .orElseThrow(() -> new RuntimeException("Faculty not found"));
         
-        return eventRepository.findCompletedEventsByFaculty(faculty, LocalDateTime.now())
+        return eventRepository.findCompletedEventsByFaculty(faculty)
                 .stream()
                 .map(EventResponseDTO::new)
                 .collect(Collectors.toList());
@@ -230,11 +243,18 @@ public class EventService {
         if (updateEventDTO.getLocation() != null) {
             event.setLocation(updateEventDTO.getLocation());
         }
+        Event.EventStatus previousStatus = event.getStatus();
         if (updateEventDTO.getStatus() != null) {
             event.setStatus(updateEventDTO.getStatus());
         }
 
         Event updatedEvent = eventRepository.save(event);
+        eventCatalogService.markChanged();
+        changeWatermarks.markEventsChanged(facultyId);
+        if (previousStatus != updatedEvent.getStatus()) {
+            applicationEventPublisher.publishEvent(new EventStatusChangedEvent(
+                    List.of(eventId), previousStatus, updatedEvent.getStatus(), LocalDateTime.now(), false));
+        }
         return new EventResponseDTO(updatedEvent);
     }
 
@@ -261,6 +281,8 @@ public class EventService {
         
         // Log the status change
         System.out.println("Event " + eventId + " status changed from " + previousStatus + " to " + newStatus + " by faculty " + facultyId);
+        applicationEventPublisher.publishEvent(new EventStatusChangedEvent(
+                List.of(eventId), previousStatus, newStatus, LocalDateTime.now(), false));
         
         return new EventResponseDTO(savedEvent);
     }
@@ -300,6 +322,8 @@ public class EventService {
         }
 
         eventRepository.delete(event);
+        eventCatalogService.markChanged();
+        changeWatermarks.markEventsChanged(facultyId);
     }
 
     // Get all events (admin only)
@@ -337,6 +361,12 @@ public class EventService {
         return eventRepository.countByFaculty(faculty);
     }
 
+    // IDs of the most recent completed events, newest first, optionally of one type and faculty member
+    @Transactional(readOnly = true)
+    public List<Long> getRecentCompletedEventIds(Event.EventType eventType, Long facultyId, int limit) {
+        return eventRepository.findRecentCompletedEventIds(eventType, facultyId, PageRequest.of(0, limit));
+    }
+
     // Count upcoming events by faculty
     @Transactional(readOnly = true)
     public long countUpcomingEventsByFaculty(Long facultyId) {
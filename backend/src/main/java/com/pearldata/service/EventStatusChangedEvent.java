@@ -0,0 +1,35 @@
+package com.pearldata.service;
+
+import com.pearldata.entity.Event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Published after one or more events move from one status to another,
+ * either by the lifecycle scheduler or by a faculty member.
+ */
+public class EventStatusChangedEvent {
+
+    private final List<Long> eventIds;
+    private final Event.EventStatus previousStatus;
+    private final Event.EventStatus newStatus;
+    private final LocalDateTime changedAt;
+    private final boolean automatic;
+
+    public EventStatusChangedEvent(List<Long> eventIds, Event.EventStatus previousStatus,
+                                   Event.EventStatus newStatus, LocalDateTime changedAt, boolean automatic) {
+        this.eventIds = List.copyOf(eventIds);
+        this.previousStatus = previousStatus;
+        this.newStatus = newStatus;
+        this.changedAt = changedAt;
+        this.automatic = automatic;
+    }
+
+    // Getters
+    public List<Long> getEventIds() { return eventIds; }
+    public Event.EventStatus getPreviousStatus() { return previousStatus; }
+    public Event.EventStatus getNewStatus() { return newStatus; }
+    public LocalDateTime getChangedAt() { return changedAt; }
+    public boolean isAutomatic() { return automatic; }
+}
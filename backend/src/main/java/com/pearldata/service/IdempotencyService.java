@@ -0,0 +1,221 @@
+package com.pearldata.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pearldata.entity.IdempotencyRecord;
+import com.pearldata.repository.IdempotencyRecordRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Replays the first successful response for a repeated Idempotency-Key instead of running the request again.
+ * A request first claims its key with a pending row in the idempotency_keys table, so only one request per
+ * key runs at a time across all instances; the row then stores the response, so replays survive restarts.
+ * Recent responses are also kept in a bounded in-memory LRU map. Error responses are not stored and release
+ * the claim, so a failed request can be retried with the same key.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    // Lifetime of a claim whose request never finished, e.g. because the instance died
+    @Value("${idempotency.claim-timeout-ms:300000}")
+    private long claimTimeoutMs;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Map<String, IdempotencyRecord> recentResponses;
+
+    @PostConstruct
+    public void init() {
+        recentResponses = Collections.synchronizedMap(new LinkedHashMap<String, IdempotencyRecord>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Run the action once per (operation, owner, key). Without a key the action always runs.
+     */
+    public ResponseEntity<?> execute(String idempotencyKey, String owner, String operation, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", IDEMPOTENCY_KEY_HEADER + " must not exceed " + MAX_KEY_LENGTH + " characters"
+            ));
+        }
+
+        String recordKey = sha256(operation + "|" + owner + "|" + idempotencyKey.trim());
+        String requestHash = sha256(toJson(request));
+
+        IdempotencyRecord stored = findRecent(recordKey);
+        if (stored != null) {
+            return replay(stored, requestHash);
+        }
+
+        if (!claim(recordKey, operation, requestHash)) {
+            stored = idempotencyRecordRepository.findById(recordKey).orElse(null);
+            if (stored != null && !stored.isPending() && !stored.isExpired(LocalDateTime.now())) {
+                recentResponses.put(recordKey, stored);
+                return replay(stored, requestHash);
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "success", false,
+                "message", "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still being processed"
+            ));
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error e) {
+            release(recordKey);
+            throw e;
+        }
+        if (response.getStatusCode().is2xxSuccessful()) {
+            remember(recordKey, operation, requestHash, response);
+        } else {
+            release(recordKey);
+        }
+        return response;
+    }
+
+    // Remove expired records from memory and the database
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (recentResponses) {
+            recentResponses.values().removeIf(record -> record.isExpired(now));
+        }
+        try {
+            int deleted = idempotencyRecordRepository.deleteExpired(now);
+            if (deleted > 0) {
+                logger.info("Purged {} expired idempotency records", deleted);
+            }
+        } catch (DataAccessException e) {
+            logger.error("Failed to purge expired idempotency records: {}", e.getMessage());
+        }
+    }
+
+    private IdempotencyRecord findRecent(String recordKey) {
+        IdempotencyRecord record = recentResponses.get(recordKey);
+        if (record != null && record.isExpired(LocalDateTime.now())) {
+            recentResponses.remove(recordKey);
+            return null;
+        }
+        return record;
+    }
+
+    // Insert the pending row; a record or claim that expired without being purged yet is replaced
+    private boolean claim(String recordKey, String operation, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusNanos(claimTimeoutMs * 1_000_000);
+        if (idempotencyRecordRepository.claim(recordKey, operation, requestHash, now, expiresAt) > 0) {
+            return true;
+        }
+        return idempotencyRecordRepository.deleteIfExpired(recordKey, now) > 0
+                && idempotencyRecordRepository.claim(recordKey, operation, requestHash, now, expiresAt) > 0;
+    }
+
+    private void release(String recordKey) {
+        try {
+            idempotencyRecordRepository.release(recordKey);
+        } catch (DataAccessException e) {
+            // The claim expires on its own after the claim timeout
+            logger.error("Failed to release idempotency claim: {}", e.getMessage());
+        }
+    }
+
+    private void remember(String recordKey, String operation, String requestHash, ResponseEntity<?> response) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord record = new IdempotencyRecord(recordKey, operation, requestHash,
+                response.getStatusCode().value(), toJson(response.getBody()), now, now.plusHours(ttlHours));
+
+        recentResponses.put(recordKey, record);
+        try {
+            if (idempotencyRecordRepository.complete(recordKey, record.getResponseStatus(), record.getResponseBody(),
+                    record.getExpiresAt()) == 0) {
+                logger.warn("Idempotency claim for {} expired before the request finished", operation);
+            }
+        } catch (DataAccessException e) {
+            // The in-memory copy still protects retries on this instance until restart
+            logger.error("Failed to persist idempotency record for {}: {}", operation, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String requestHash) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of(
+                "success", false,
+                "message", IDEMPOTENCY_KEY_HEADER + " was already used with a different request"
+            ));
+        }
+
+        logger.debug("Replaying stored response for {}", record.getOperation());
+        try {
+            return ResponseEntity.status(record.getResponseStatus())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(record.getResponseBody() == null ? null : objectMapper.readTree(record.getResponseBody()));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Stored idempotent response could not be read", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize value for idempotency check", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
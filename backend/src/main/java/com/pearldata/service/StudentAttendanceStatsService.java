@@ -0,0 +1,256 @@
+package com.pearldata.service;
+
+import com.pearldata.dto.CohortStatsDTO;
+import com.pearldata.dto.StudentAttendanceAnalyticsDTO;
+import com.pearldata.dto.StudentProgressDTO;
+import com.pearldata.dto.SubjectPerformanceDTO;
+import com.pearldata.entity.Attendance;
+import com.pearldata.entity.Event;
+import com.pearldata.entity.StudentAttendanceStats;
+import com.pearldata.entity.StudentEventTypeStats;
+import com.pearldata.repository.StudentAttendanceStatsBulkRepository;
+import com.pearldata.repository.StudentAttendanceStatsRepository;
+import com.pearldata.repository.StudentCohortRepository;
+import com.pearldata.repository.StudentEventTypeStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-student attendance totals, overall and per event type, so dashboards and analytics read a few
+ * rows per student instead of the student's whole history. The totals are kept current by a trigger on
+ * attendance and can be rebuilt from the attendance table and the cold archive.
+ */
+@Service
+@Transactional
+public class StudentAttendanceStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAttendanceStatsService.class);
+
+    private static final int MAX_COHORTS = 100;
+
+    // Students under this attendance percentage are counted per cohort
+    @Value("${analytics.cohorts.attendance-threshold:75}")
+    private double cohortAttendanceThreshold;
+
+    @Autowired
+    private StudentAttendanceStatsRepository studentAttendanceStatsRepository;
+
+    @Autowired
+    private StudentAttendanceStatsBulkRepository studentAttendanceStatsBulkRepository;
+
+    @Autowired
+    private StudentEventTypeStatsRepository studentEventTypeStatsRepository;
+
+    @Autowired
+    private StudentCohortRepository studentCohortRepository;
+
+    @Autowired
+    private AttendanceArchiveService attendanceArchiveService;
+
+    @Autowired
+    private AttendanceChangeTracker attendanceChangeTracker;
+
+    // Install the maintenance triggers and build the totals the first time the table is empty or the triggers changed
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        boolean replacedRowTrigger = studentAttendanceStatsBulkRepository.installTrigger();
+        if (replacedRowTrigger || studentAttendanceStatsBulkRepository.isEmpty()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Recompute every student's totals from scratch.
+     * Attendance writes wait until the rebuild commits; reads keep seeing the previous totals meanwhile.
+     */
+    public Map<String, Object> rebuild() {
+        int liveStudents = studentAttendanceStatsBulkRepository.rebuildFromAttendance();
+
+        Map<Long, StudentAttendanceStats> archived = new HashMap<>();
+        Map<StudentEventTypeStats.Key, StudentEventTypeStats> archivedByEventType = new HashMap<>();
+        attendanceArchiveService.forEachArchive(contents -> {
+            Map<Long, Event.EventType> eventTypes = new HashMap<>();
+            contents.getEvents().forEach(event -> eventTypes.put(event.getId(), event.getEventType()));
+
+            for (AttendanceArchiveFile.AttendanceRow row : contents.getRows()) {
+                if (!row.isMarked()) {
+                    continue;
+                }
+                StudentAttendanceStats stats = archived.computeIfAbsent(row.getStudentId(), StudentAttendanceStats::new);
+                stats.setTotalCount(stats.getTotalCount() + 1);
+                switch (row.getStatus()) {
+                    case PRESENT -> stats.setPresentCount(stats.getPresentCount() + 1);
+                    case ABSENT -> stats.setAbsentCount(stats.getAbsentCount() + 1);
+                    case LATE -> stats.setLateCount(stats.getLateCount() + 1);
+                    case EXCUSED -> stats.setExcusedCount(stats.getExcusedCount() + 1);
+                    case PARTIAL -> stats.setPartialCount(stats.getPartialCount() + 1);
+                }
+                if (row.getMarksObtained() != null) {
+                    stats.setMarksSum(stats.getMarksSum() + row.getMarksObtained());
+                    stats.setMarksCount(stats.getMarksCount() + 1);
+                }
+                if (stats.getLastAttendanceAt() == null || !row.getMarkedAt().isBefore(stats.getLastAttendanceAt())) {
+                    stats.setLastAttendanceAt(row.getMarkedAt());
+                    stats.setLastEventId(row.getEventId());
+                    stats.setLastStatus(row.getStatus());
+                }
+
+                Event.EventType eventType = eventTypes.get(row.getEventId());
+                if (eventType != null) {
+                    StudentEventTypeStats typeStats = archivedByEventType.computeIfAbsent(
+                            new StudentEventTypeStats.Key(row.getStudentId(), eventType),
+                            key -> new StudentEventTypeStats(row.getStudentId(), eventType));
+                    typeStats.setTotalCount(typeStats.getTotalCount() + 1);
+                    if (row.getStatus() == Attendance.AttendanceStatus.PRESENT || row.getStatus() == Attendance.AttendanceStatus.LATE) {
+                        typeStats.setAttendedCount(typeStats.getAttendedCount() + 1);
+                    }
+                    if (row.getMarksObtained() != null) {
+                        typeStats.setMarksSum(typeStats.getMarksSum() + row.getMarksObtained());
+                        typeStats.setMarksCount(typeStats.getMarksCount() + 1);
+                    }
+                }
+            }
+        });
+        studentAttendanceStatsBulkRepository.addAll(archived.values());
+        studentAttendanceStatsBulkRepository.addAllEventTypeStats(archivedByEventType.values());
+        attendanceChangeTracker.markChanged();
+
+        logger.info("Rebuilt attendance totals: {} students from attendance, {} from the archive", liveStudents, archived.size());
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("studentsFromAttendance", liveStudents);
+        summary.put("studentsFromArchive", archived.size());
+        summary.put("rebuiltAt", LocalDateTime.now());
+        return summary;
+    }
+
+    /**
+     * Progress of one student: overall attendance with a grade, and attendance and marks per event type.
+     * Reads the student's totals row and one row per event type, however long the history is.
+     */
+    @Transactional(readOnly = true)
+    public StudentProgressDTO getStudentProgress(Long studentId) {
+        StudentAttendanceStats stats = getStatsByStudent(studentId);
+        double attendanceRate = stats.getAttendancePercentage();
+
+        Map<String, SubjectPerformanceDTO> subjectPerformance = new LinkedHashMap<>();
+        for (StudentEventTypeStats typeStats : getEventTypeStatsByStudent(studentId)) {
+            if (typeStats.getTotalCount() <= 0) {
+                continue;
+            }
+            subjectPerformance.put(typeStats.getEventType().toString(), new SubjectPerformanceDTO(
+                    typeStats.getTotalCount(),
+                    typeStats.getAttendedCount(),
+                    round(typeStats.getAttendancePercentage()),
+                    typeStats.getMarksCount() > 0 ? round(typeStats.getAverageMarks()) : null));
+        }
+
+        return new StudentProgressDTO(round(attendanceRate), stats.getTotalCount(), stats.getPresentCount(),
+                stats.getLateCount(), gradeOf(attendanceRate), subjectPerformance);
+    }
+
+    /**
+     * Attendance of the requested departments, courses, academic years and semesters side by side,
+     * each dimension ordered by attendance rate, with an overall row across every matched student.
+     * All cohorts come from one grouped query over the per-student totals.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> compareCohorts(List<String> departments, List<String> courses,
+                                              List<String> academicYears, List<String> semesters) {
+        int requested = departments.size() + courses.size() + academicYears.size() + semesters.size();
+        if (requested == 0) {
+            throw new RuntimeException("At least one department, course, academic year or semester is required");
+        }
+        if (requested > MAX_COHORTS) {
+            throw new RuntimeException("At most " + MAX_COHORTS + " cohorts can be compared at once");
+        }
+
+        List<CohortStatsDTO> rows = studentCohortRepository.compareCohorts(departments, courses, academicYears,
+                semesters, cohortAttendanceThreshold);
+
+        CohortStatsDTO overall = null;
+        Map<String, List<CohortStatsDTO>> byDimension = new LinkedHashMap<>();
+        byDimension.put("DEPARTMENT", new ArrayList<>());
+        byDimension.put("COURSE", new ArrayList<>());
+        byDimension.put("ACADEMIC_YEAR", new ArrayList<>());
+        byDimension.put("SEMESTER", new ArrayList<>());
+        for (CohortStatsDTO row : rows) {
+            if ("ALL".equals(row.getDimension())) {
+                overall = row;
+            } else {
+                byDimension.get(row.getDimension()).add(row);
+            }
+        }
+        byDimension.values().forEach(cohorts ->
+                cohorts.sort(Comparator.comparingDouble(CohortStatsDTO::getAttendanceRate).reversed()));
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("cohorts", byDimension);
+        report.put("overall", overall);
+        report.put("attendanceThreshold", cohortAttendanceThreshold);
+        report.put("cohortsRequested", requested);
+        report.put("cohortsFound", rows.size() - (overall != null ? 1 : 0));
+        report.put("generatedAt", LocalDateTime.now());
+        return report;
+    }
+
+    // Totals of one student per event type; event types without attendance are left out
+    @Transactional(readOnly = true)
+    public List<StudentEventTypeStats> getEventTypeStatsByStudent(Long studentId) {
+        return studentEventTypeStatsRepository.findByStudentId(studentId);
+    }
+
+    // Totals of one student; all zero when the student has no attendance yet
+    @Transactional(readOnly = true)
+    public StudentAttendanceStats getStatsByStudent(Long studentId) {
+        return studentAttendanceStatsRepository.findById(studentId)
+                .orElseGet(() -> new StudentAttendanceStats(studentId));
+    }
+
+    /**
+     * One page of per-student analytics, sorted by attendance percentage or by student name.
+     * Ties are broken by name and ID so that pages stay stable.
+     */
+    @Transactional(readOnly = true)
+    public Page<StudentAttendanceAnalyticsDTO> getStudentAnalytics(String searchTerm, int page, int size,
+                                                                   String sortBy, String sortDir) {
+        Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = sortBy.equals("attendancePercentage")
+                ? JpaSort.unsafe(direction, StudentAttendanceStatsRepository.ATTENDANCE_RATE_ORDER).and(Sort.by("name", "id"))
+                : Sort.by(direction, "name").and(Sort.by("id"));
+
+        String search = searchTerm != null && !searchTerm.trim().isEmpty() ? searchTerm.trim() : null;
+        return studentAttendanceStatsRepository.findStudentAnalytics(search, PageRequest.of(page, size, sort));
+    }
+
+    // Grade based on attendance
+    private static String gradeOf(double attendanceRate) {
+        if (attendanceRate >= 90) return "A+";
+        if (attendanceRate >= 80) return "A";
+        if (attendanceRate >= 70) return "B+";
+        if (attendanceRate >= 60) return "B";
+        if (attendanceRate >= 50) return "C+";
+        return "C";
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
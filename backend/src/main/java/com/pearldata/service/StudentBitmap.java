@@ -0,0 +1,370 @@
+package com.pearldata.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of dense student indexes, in the style of a roaring bitmap: indexes are split by their
+ * high 16 bits into containers, and each container holds its low 16 bits either as a sorted array
+ * (up to 4096 values) or as a 65536-bit bitmap, whichever is smaller.
+ * Set operations return new bitmaps and leave their operands unchanged.
+ */
+public final class StudentBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+
+    private static final int BITMAP_WORDS = 1024;
+
+    // Sorted container keys (high 16 bits) and their containers; a container is a char[] or a long[]
+    private char[] keys;
+    private Object[] containers;
+    private int[] cardinalities;
+    private int count;
+
+    public StudentBitmap() {
+        this(4);
+    }
+
+    private StudentBitmap(int capacity) {
+        keys = new char[capacity];
+        containers = new Object[capacity];
+        cardinalities = new int[capacity];
+    }
+
+    public static StudentBitmap of(int... values) {
+        StudentBitmap bitmap = new StudentBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public void add(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, count, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new char[4], 0);
+        }
+
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinalities[index]++;
+            }
+            return;
+        }
+
+        char[] values = (char[]) container;
+        int cardinality = cardinalities[index];
+        int position = Arrays.binarySearch(values, 0, cardinality, low);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        if (cardinality == ARRAY_MAX) {
+            long[] words = toWords(values, cardinality);
+            words[low >>> 6] |= 1L << low;
+            containers[index] = words;
+            cardinalities[index] = cardinality + 1;
+            return;
+        }
+        if (cardinality == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            containers[index] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, cardinality - position);
+        values[position] = low;
+        cardinalities[index] = cardinality + 1;
+    }
+
+    public void remove(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, count, high);
+        if (index < 0) {
+            return;
+        }
+
+        Object container = containers[index];
+        int cardinality = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                return;
+            }
+            words[low >>> 6] &= ~bit;
+            cardinality--;
+            cardinalities[index] = cardinality;
+            if (cardinality <= ARRAY_MAX) {
+                containers[index] = toValues(words, cardinality);
+            }
+        } else {
+            char[] values = (char[]) container;
+            int position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+            cardinality--;
+            cardinalities[index] = cardinality;
+        }
+        if (cardinality == 0) {
+            removeContainer(index);
+        }
+    }
+
+    public boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, count, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // Visit the values in ascending order
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < count; i++) {
+            int base = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[]) {
+                long[] words = (long[]) container;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        consumer.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int v = 0; v < cardinalities[i]; v++) {
+                    consumer.accept(base | values[v]);
+                }
+            }
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] position = {0};
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    public StudentBitmap and(StudentBitmap other) {
+        StudentBitmap result = new StudentBitmap(Math.max(1, Math.min(count, other.count)));
+        int i = 0;
+        int j = 0;
+        while (i < count && j < other.count) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendWords(keys[i], and(words(i), other.words(j)));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public StudentBitmap or(StudentBitmap other) {
+        StudentBitmap result = new StudentBitmap(Math.max(1, count + other.count));
+        int i = 0;
+        int j = 0;
+        while (i < count || j < other.count) {
+            if (j == other.count || (i < count && keys[i] < other.keys[j])) {
+                result.appendWords(keys[i], words(i));
+                i++;
+            } else if (i == count || keys[i] > other.keys[j]) {
+                result.appendWords(other.keys[j], other.words(j));
+                j++;
+            } else {
+                long[] words = words(i);
+                long[] otherWords = other.words(j);
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] |= otherWords[w];
+                }
+                result.appendWords(keys[i], words);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Values of this bitmap that are not in the other one
+    public StudentBitmap andNot(StudentBitmap other) {
+        StudentBitmap result = new StudentBitmap(Math.max(1, count));
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            while (j < other.count && other.keys[j] < keys[i]) {
+                j++;
+            }
+            long[] words = words(i);
+            if (j < other.count && other.keys[j] == keys[i]) {
+                long[] otherWords = other.words(j);
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] &= ~otherWords[w];
+                }
+            }
+            result.appendWords(keys[i], words);
+        }
+        return result;
+    }
+
+    public static StudentBitmap or(List<StudentBitmap> bitmaps) {
+        StudentBitmap result = new StudentBitmap();
+        for (StudentBitmap bitmap : bitmaps) {
+            result = result.or(bitmap);
+        }
+        return result;
+    }
+
+    /**
+     * Values contained in at least {@code threshold} of the bitmaps, e.g. students absent from
+     * at least 3 of the last 5 events. Counts are kept per container, one container key at a time.
+     */
+    public static StudentBitmap atLeast(int threshold, List<StudentBitmap> bitmaps) {
+        StudentBitmap result = new StudentBitmap();
+        if (threshold <= 0 || threshold > bitmaps.size()) {
+            return threshold <= 0 ? or(bitmaps) : result;
+        }
+
+        StudentBitmap union = or(bitmaps);
+        int[] counts = new int[1 << 16];
+        for (int k = 0; k < union.count; k++) {
+            char key = union.keys[k];
+            Arrays.fill(counts, 0);
+            for (StudentBitmap bitmap : bitmaps) {
+                int index = Arrays.binarySearch(bitmap.keys, 0, bitmap.count, key);
+                if (index < 0) {
+                    continue;
+                }
+                Object container = bitmap.containers[index];
+                if (container instanceof long[]) {
+                    long[] words = (long[]) container;
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        long word = words[w];
+                        while (word != 0) {
+                            counts[(w << 6) | Long.numberOfTrailingZeros(word)]++;
+                            word &= word - 1;
+                        }
+                    }
+                } else {
+                    char[] values = (char[]) container;
+                    for (int v = 0; v < bitmap.cardinalities[index]; v++) {
+                        counts[values[v]]++;
+                    }
+                }
+            }
+
+            long[] words = new long[BITMAP_WORDS];
+            for (int low = 0; low < counts.length; low++) {
+                if (counts[low] >= threshold) {
+                    words[low >>> 6] |= 1L << low;
+                }
+            }
+            result.appendWords(key, words);
+        }
+        return result;
+    }
+
+    // Container i as a fresh 65536-bit bitmap
+    private long[] words(int index) {
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            return ((long[]) container).clone();
+        }
+        return toWords((char[]) container, cardinalities[index]);
+    }
+
+    // Append a container with a key above all current keys, in its smallest form; empty containers are skipped
+    private void appendWords(char key, long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality == 0) {
+            return;
+        }
+        insertContainer(count, key, cardinality <= ARRAY_MAX ? toValues(words, cardinality) : words, cardinality);
+    }
+
+    private void insertContainer(int index, char key, Object container, int cardinality) {
+        if (count == keys.length) {
+            int capacity = Math.max(4, count * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, count - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinalities[index] = cardinality;
+        count++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+        System.arraycopy(cardinalities, index + 1, cardinalities, index, count - index - 1);
+        count--;
+        containers[count] = null;
+    }
+
+    private static long[] and(long[] words, long[] otherWords) {
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            words[w] &= otherWords[w];
+        }
+        return words;
+    }
+
+    private static long[] toWords(char[] values, int cardinality) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < cardinality; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    private static char[] toValues(long[] words, int cardinality) {
+        char[] values = new char[Math.max(4, cardinality)];
+        int position = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[position++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+}
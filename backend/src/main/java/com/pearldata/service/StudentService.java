@@ -6,6 +6,8 @@ import com.pearldata.dto.StudentResponseDTO;
 import com.pearldata.entity.Student;
 import com.pearldata.entity.User;
 import com.pearldata.repository.StudentRepository;
+import com.pearldata.security.IdentityResolver;
+import com.pearldata.security.TokenRevocationRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -14,7 +16,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,6 +35,15 @@ public class StudentService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private IdentityResolver identityResolver;
+
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    @Autowired
+    private ChangeWatermarks changeWatermarks;
+
     // Create student
     public StudentResponseDTO createStudent(CreateStudentDTO createStudentDTO) {
         // Check if email already exists
@@ -61,6 +75,7 @@ public class StudentService {
         student.setIsActive(true);
 
         Student savedStudent = studentRepository.save(student);
+        changeWatermarks.markStudentsChanged();
 
         // Create corresponding user account
         User user = new User();
@@ -105,6 +120,7 @@ public class StudentService {
         student.setIsActive(true);
 
         Student savedStudent = studentRepository.save(student);
+        changeWatermarks.markStudentsChanged();
 
         // Create corresponding user account with provided password
         User user = new User();
@@ -143,6 +159,7 @@ public class StudentService {
         student.setIsActive(true);
 
         Student savedStudent = studentRepository.save(student);
+        changeWatermarks.markStudentsChanged();
         return new StudentResponseDTO(savedStudent);
     }
 
@@ -200,6 +217,7 @@ public class StudentService {
             student.setSemester(studentData.getSemester());
         }
         
+        identityResolver.evictStudent(studentId);
         return studentRepository.save(student);
     }
 
@@ -302,6 +320,19 @@ public class StudentService {
                 .collect(Collectors.toList());
     }
 
+    // Get students by ID, in the order of the IDs
+    @Transactional(readOnly = true)
+    public List<StudentResponseDTO> getStudentsByIds(List<Long> studentIds) {
+        Map<Long, Student> students = studentRepository.findAllById(studentIds)
+                .stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+        return studentIds.stream()
+                .map(students::get)
+                .filter(Objects::nonNull)
+                .map(StudentResponseDTO::new)
+                .collect(Collectors.toList());
+    }
+
     // Get students by course
     @Transactional(readOnly = true)
     public List<StudentResponseDTO> getStudentsByCourse(String course) {
@@ -425,6 +456,8 @@ public class StudentService {
             throw new RuntimeException("Student with this phone number already exists");
         }
 
+        String previousEmail = student.getEmail();
+
         // Update fields
         student.setName(updateStudentDTO.getName());
         student.setEmail(updateStudentDTO.getEmail());
@@ -438,15 +471,19 @@ public class StudentService {
 
         Student updatedStudent = studentRepository.save(student);
         
-        // Update corresponding user account
-        User user = userService.getUserByEmail(student.getEmail()).orElse(null);
+        // Update corresponding user account, found by the email it had until now
+        User user = userService.getUserByEmail(previousEmail).orElse(null);
         if (user != null) {
             user.setName(updateStudentDTO.getName());
             user.setEmail(updateStudentDTO.getEmail());
             user.setPhoneNumber(updateStudentDTO.getPhoneNumber());
             user.setBio(updateStudentDTO.getBio());
             userService.saveUser(user);
+            if (!previousEmail.equals(updateStudentDTO.getEmail())) {
+                tokenRevocationRegistry.revokeTokens(user.getId());
+            }
         }
+        identityResolver.evictStudent(studentId);
 
         return new StudentResponseDTO(updatedStudent);
     }
@@ -458,6 +495,7 @@ public class StudentService {
 
         student.setIsActive(false);
         studentRepository.save(student);
+        changeWatermarks.markStudentsChanged();
 
         // Deactivate corresponding user account
         User user = userService.getUserByEmail(student.getEmail()).orElse(null);
@@ -474,6 +512,7 @@ public class StudentService {
 
         student.setIsActive(true);
         studentRepository.save(student);
+        changeWatermarks.markStudentsChanged();
 
         // Activate corresponding user account
         User user = userService.getUserByEmail(student.getEmail()).orElse(null);
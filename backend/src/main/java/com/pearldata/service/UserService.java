@@ -2,6 +2,8 @@ package com.pearldata.service;
 
 import com.pearldata.entity.User;
 import com.pearldata.repository.UserRepository;
+import com.pearldata.security.IdentityResolver;
+import com.pearldata.security.TokenRevocationRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -21,6 +23,12 @@ public class UserService {
     
     @Autowired
     private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    @Autowired
+    private IdentityResolver identityResolver;
     
     public List<User> getAllUsers() {
         return userRepository.findAllOrderByCreatedAtDesc();
@@ -74,6 +82,11 @@ public class UserService {
             throw new RuntimeException("User with phone number " + userDetails.getPhoneNumber() + " already exists");
         }
         
+        // Tokens carry the email and role, so changing either (or the password) revokes the issued ones
+        boolean revokeTokens = !user.getEmail().equals(userDetails.getEmail())
+                || user.getRole() != userDetails.getRole()
+                || (userDetails.getPassword() != null && !userDetails.getPassword().isEmpty());
+
         user.setName(userDetails.getName());
         user.setEmail(userDetails.getEmail());
         user.setRole(userDetails.getRole());
@@ -86,6 +99,10 @@ public class UserService {
         
         user.setBio(userDetails.getBio());
         
+        if (revokeTokens) {
+            tokenRevocationRegistry.revokeTokens(id);
+        }
+        identityResolver.evictUser(id);
         return userRepository.save(user);
     }
     
@@ -93,6 +110,8 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
         userRepository.delete(user);
+        tokenRevocationRegistry.disable(id);
+        identityResolver.evictUser(id);
     }
     
     public List<User> searchUsers(String searchTerm) {
@@ -112,6 +131,10 @@ public class UserService {
     }
     
     public User saveUser(User user) {
+        // The email, name or role may have changed
+        if (user.getId() != null) {
+            identityResolver.evictUser(user.getId());
+        }
         return userRepository.save(user);
     }
     
@@ -120,6 +143,7 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
         user.setIsActive(true);
         userRepository.save(user);
+        tokenRevocationRegistry.enable(id);
     }
     
     public void deactivateUser(Long id) {
@@ -127,6 +151,7 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
         user.setIsActive(false);
         userRepository.save(user);
+        tokenRevocationRegistry.disable(id);
     }
     
     public long getTotalUsersCount() {
@@ -0,0 +1,83 @@
+-- Converts attendance into a table range-partitioned by marked_at, one partition per month.
+--
+-- Run once in a maintenance window with the application stopped. On restart the application
+-- detects the partitioned table, keeps partitions created ahead of time and switches its bulk
+-- writes from ON CONFLICT (student_id, event_id) to per-event advisory locks, because a
+-- partitioned table can only enforce unique keys that include marked_at.
+--
+-- The (student_id, event_id) unique key uk_attendance_student_event is intentionally not
+-- recreated on the partitioned table; the per-event locks take its place. The application only
+-- adds it at startup while attendance is not partitioned, so it leaves the new table alone.
+--
+-- Old months can later be detached with POST /api/admin/attendance/partitions/detach?before=YYYY-MM-DD.
+
+BEGIN;
+
+ALTER TABLE attendance RENAME TO attendance_unpartitioned;
+
+-- Move every index and index-backed constraint of the old table out of the way, including ones
+-- added after this script was written, so their names are free for the new table
+DO $$
+DECLARE
+    old_index RECORD;
+    new_name TEXT;
+BEGIN
+    FOR old_index IN
+        SELECT i.relname AS name, c.conname IS NOT NULL AS is_constraint
+        FROM pg_index x
+        JOIN pg_class i ON i.oid = x.indexrelid
+        LEFT JOIN pg_constraint c ON c.conindid = x.indexrelid AND c.conrelid = x.indrelid
+        WHERE x.indrelid = 'attendance_unpartitioned'::regclass
+    LOOP
+        new_name := CASE WHEN position('attendance' IN old_index.name) > 0
+                         THEN left(replace(old_index.name, 'attendance', 'attendance_unpartitioned'), 63)
+                         ELSE left(old_index.name || '_unpartitioned', 63) END;
+        IF old_index.is_constraint THEN
+            EXECUTE format('ALTER TABLE attendance_unpartitioned RENAME CONSTRAINT %I TO %I', old_index.name, new_name);
+        ELSE
+            EXECUTE format('ALTER INDEX %I RENAME TO %I', old_index.name, new_name);
+        END IF;
+    END LOOP;
+END $$;
+
+CREATE TABLE attendance (LIKE attendance_unpartitioned INCLUDING DEFAULTS) PARTITION BY RANGE (marked_at);
+
+ALTER TABLE attendance ALTER COLUMN id ADD GENERATED BY DEFAULT AS IDENTITY;
+ALTER TABLE attendance ADD CONSTRAINT attendance_pkey PRIMARY KEY (id, marked_at);
+ALTER TABLE attendance ADD FOREIGN KEY (student_id) REFERENCES students (id);
+ALTER TABLE attendance ADD FOREIGN KEY (event_id) REFERENCES events (id);
+ALTER TABLE attendance ADD FOREIGN KEY (marked_by_faculty_id) REFERENCES users (id);
+
+-- Lookups that used to go through the primary key and the (student_id, event_id) unique key
+CREATE INDEX idx_attendance_id ON attendance (id);
+CREATE INDEX idx_attendance_event_student ON attendance (event_id, student_id);
+CREATE INDEX idx_attendance_student ON attendance (student_id);
+CREATE INDEX idx_attendance_event_marked ON attendance (event_id, is_marked);
+CREATE INDEX idx_attendance_marked_at ON attendance (marked_at);
+CREATE INDEX idx_attendance_marked_by_faculty ON attendance (marked_by_faculty_id);
+CREATE INDEX idx_attendance_updated_at ON attendance (updated_at);
+
+-- One partition per month from the oldest row through three months ahead
+DO $$
+DECLARE
+    month_start DATE := date_trunc('month', COALESCE((SELECT MIN(marked_at) FROM attendance_unpartitioned), now()))::date;
+    last_month DATE := (date_trunc('month', now()) + INTERVAL '3 months')::date;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF attendance FOR VALUES FROM (%L) TO (%L)',
+                       'attendance_p' || to_char(month_start, 'YYYY_MM'),
+                       month_start, (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+CREATE TABLE attendance_default PARTITION OF attendance DEFAULT;
+
+INSERT INTO attendance SELECT * FROM attendance_unpartitioned;
+SELECT setval(pg_get_serial_sequence('attendance', 'id'),
+              (SELECT COALESCE(MAX(id), 0) + 1 FROM attendance), false);
+
+COMMIT;
+
+-- After verifying row counts:
+-- DROP TABLE attendance_unpartitioned;